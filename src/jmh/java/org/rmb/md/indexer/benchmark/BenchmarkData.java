@@ -0,0 +1,100 @@
+package org.rmb.md.indexer.benchmark;
+
+import org.rmb.md.indexer.regex.ReplacementSequence;
+import org.rmb.md.indexer.shortcut.ShortcutFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Inputs shared by the benchmarks, modelled on a real collection of cheat sheets.
+ */
+final class BenchmarkData {
+
+   /**
+    * Web-app base URL.
+    */
+   static final String BASE_URL = "http://localhost:1313/";
+
+   /**
+    * Replacement sequence files shipped with the application.
+    */
+   static final String FILE_SEQUENCE = "/markdown-file-replacement-sequence.txt";
+
+   /**
+    * Replacement sequence for URLs.
+    */
+   static final String URL_SEQUENCE = "/markdown-url-replacement-sequence.txt";
+
+   /**
+    * Replacement sequence for headings.
+    */
+   static final String HEADING_SEQUENCE = "/markdown-heading-replacement-sequence.txt";
+
+   /**
+    * Markdown paths relative to the folder the markdown files are in, as the file and URL sequences see them on
+    * Windows.
+    */
+   static final List<String> RELATIVE_PATHS = List.of(
+         "cheat_git.md",
+         "tech\\cheat_java_streams.md",
+         "tech\\cheat_tools\\maven.md",
+         "work\\project-tech-tips\\docker-compose (local).md",
+         "tech\\cheat_windows_powershell & cmd.md");
+
+   /**
+    * Heading lines, as the heading sequence sees them.
+    */
+   static final List<String> HEADINGS = List.of(
+         "# Git cheat sheet",
+         "## Undo the last commit (but keep changes)",
+         "### `git rebase --onto` - move a branch",
+         "## Java 15: records & text blocks",
+         "####    Trailing spaces and a \u00fcml\u00e4ut   ");
+
+   /**
+    * Not instantiated.
+    */
+   private BenchmarkData() {
+   }
+
+   /**
+    * A markdown file of about 60 KB: sections of prose, lists and code samples with <code>#</code> comments.
+    *
+    * @param sections number of sections
+    *
+    * @return markdown content
+    */
+   static String markdown(final int sections) {
+      final var markdown = new StringBuilder("# Cheat sheet\n\n");
+      for (int section = 0; section < sections; section++) {
+         markdown.append("## ").append(HEADINGS.get(section % HEADINGS.size()).replaceFirst("^#+\\s*", ""))
+               .append(' ').append(section).append("\n\n");
+         for (int line = 0; line < 10; line++) {
+            markdown.append("Some prose about the command, with a [link](http://example.com/").append(line)
+                  .append(") and `inline code`.\n");
+         }
+         markdown.append("\n```bash\n# a comment that is not a heading\ngit log --oneline | head -").append(section)
+               .append("\n```\n\n### Notes\n\n- one\n- two\n\n");
+      }
+      return markdown.toString();
+   }
+
+   /**
+    * Create a shortcut factory using the shipped replacement sequences.
+    *
+    * @param markdownRoot folder the markdown files are in
+    *
+    * @return the factory
+    *
+    * @throws IOException if a sequence cannot be read
+    */
+   static ShortcutFactory shortcutFactory(final Path markdownRoot) throws IOException {
+      return new ShortcutFactory(markdownRoot.toString(), BASE_URL,
+            new ReplacementSequence(FILE_SEQUENCE),
+            new ReplacementSequence(URL_SEQUENCE),
+            new ReplacementSequence(HEADING_SEQUENCE));
+   }
+
+}
@@ -0,0 +1,98 @@
+package org.rmb.md.indexer.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.rmb.md.indexer.markdown.HeadingScanner;
+import org.rmb.md.indexer.shortcut.Shortcut;
+import org.rmb.md.indexer.shortcut.ShortcutFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processing one markdown file from start to finish, as a full run does: read it and find its headings, create
+ * shortcuts for the file and each heading, and render the content of every <code>.url</code> file. Writing the files
+ * is left out, as it measures the disk rather than the indexer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EndToEndBenchmark {
+
+   /**
+    * Folder holding the markdown file.
+    */
+   private Path folder;
+
+   /**
+    * The markdown file.
+    */
+   private Path file;
+
+   /**
+    * Finds headings.
+    */
+   private HeadingScanner scanner;
+
+   /**
+    * Creates shortcuts.
+    */
+   private ShortcutFactory shortcutFactory;
+
+   /**
+    * Write the markdown file.
+    *
+    * @throws IOException if the file cannot be written or a sequence read
+    */
+   @Setup(Level.Trial)
+   public void setUp() throws IOException {
+      folder = Files.createTempDirectory("markdown-indexer-benchmark");
+      file = Files.writeString(folder.resolve("cheat_benchmark.md"), BenchmarkData.markdown(200));
+      scanner = new HeadingScanner();
+      shortcutFactory = BenchmarkData.shortcutFactory(folder);
+   }
+
+   /**
+    * Delete the markdown file.
+    *
+    * @throws IOException if the file cannot be deleted
+    */
+   @TearDown(Level.Trial)
+   public void tearDown() throws IOException {
+      Files.deleteIfExists(file);
+      Files.deleteIfExists(folder);
+   }
+
+   /**
+    * Index the file.
+    *
+    * @param blackhole consumes results
+    *
+    * @throws IOException if the file cannot be read
+    */
+   @Benchmark
+   public void indexOneFile(final Blackhole blackhole) throws IOException {
+      final var scan = scanner.scan(file, false);
+      for (Shortcut shortcut : shortcutFactory.createShortcuts(file, scan.headingLines())) {
+         blackhole.consume(shortcut.fileName());
+         blackhole.consume(shortcut.content());
+      }
+   }
+
+}
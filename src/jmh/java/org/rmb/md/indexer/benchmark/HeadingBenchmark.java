@@ -0,0 +1,125 @@
+package org.rmb.md.indexer.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.rmb.md.indexer.markdown.HeadingScanner;
+import org.rmb.md.indexer.shortcut.Shortcut;
+import org.rmb.md.indexer.shortcut.ShortcutFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Finding headings in a markdown file, and turning headings into shortcut file names and URL anchors as
+ * {@link ShortcutFactory#createShortcutForMarkdownHeader(Shortcut, String)} does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeadingBenchmark {
+
+   /**
+    * Content of a markdown file.
+    */
+   private String markdown;
+
+   /**
+    * UTF-8 bytes of {@link #markdown}.
+    */
+   private byte[] bytes;
+
+   /**
+    * Finds headings in bytes.
+    */
+   private HeadingScanner scanner;
+
+   /**
+    * Creates shortcuts.
+    */
+   private ShortcutFactory shortcutFactory;
+
+   /**
+    * Shortcut to the file the headings are in.
+    */
+   private Shortcut fileShortcut;
+
+   /**
+    * Headings with the heading sequence already applied, as passed to the factory.
+    */
+   private List<String> headings;
+
+   /**
+    * Build the inputs.
+    *
+    * @throws IOException if a sequence cannot be read
+    */
+   @Setup
+   public void setUp() throws IOException {
+      markdown = BenchmarkData.markdown(200);
+      bytes = markdown.getBytes(StandardCharsets.UTF_8);
+      scanner = new HeadingScanner();
+      final var root = Path.of("content").toAbsolutePath();
+      shortcutFactory = BenchmarkData.shortcutFactory(root);
+      fileShortcut = shortcutFactory.createShortcutForMarkdownFile(
+            root.resolve("tech").resolve("cheat_java_streams.md"));
+      headings = BenchmarkData.HEADINGS.stream()
+            .map(heading -> heading.replaceFirst("^#+\\s*", "").trim())
+            .collect(Collectors.toList());
+   }
+
+   /**
+    * Find headings by splitting the decoded file into lines and testing each one. Unlike the scanner, this also takes
+    * comments in fenced code for headings.
+    *
+    * @return heading lines
+    */
+   @Benchmark
+   public List<String> detectLineByLine() {
+      return new String(bytes, StandardCharsets.UTF_8).lines()
+            .filter(ShortcutFactory::lineIsMarkdownHeading)
+            .collect(Collectors.toList());
+   }
+
+   /**
+    * Find headings with the {@link HeadingScanner}.
+    *
+    * @return heading lines
+    *
+    * @throws IOException never
+    */
+   @Benchmark
+   public List<String> detectWithScanner() throws IOException {
+      return scanner.scan(Channels.newChannel(new ByteArrayInputStream(bytes)), false).headingLines();
+   }
+
+   /**
+    * Create a shortcut for each heading: file name and URL anchor.
+    *
+    * @param blackhole consumes results
+    */
+   @Benchmark
+   public void slugs(final Blackhole blackhole) {
+      for (String heading : headings) {
+         blackhole.consume(shortcutFactory.createShortcutForMarkdownHeader(fileShortcut, heading));
+      }
+   }
+
+}
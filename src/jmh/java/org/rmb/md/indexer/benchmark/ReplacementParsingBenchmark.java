@@ -0,0 +1,98 @@
+package org.rmb.md.indexer.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.rmb.md.indexer.regex.Replacement;
+import org.rmb.md.indexer.regex.ReplacementSequence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing find/replace lines from the shipped sequence files, and compiling the result into a sequence.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplacementParsingBenchmark {
+
+   /**
+    * Find and replace lines of all shipped sequence files, alternating.
+    */
+   private List<String> lines;
+
+   /**
+    * Replacements parsed from {@link #lines}.
+    */
+   private List<Replacement> replacements;
+
+   /**
+    * Read the find and replace lines.
+    *
+    * @throws IOException if a sequence file cannot be read
+    */
+   @Setup
+   public void setUp() throws IOException {
+      lines = new ArrayList<>();
+      for (String file : List.of(BenchmarkData.FILE_SEQUENCE, BenchmarkData.URL_SEQUENCE,
+            BenchmarkData.HEADING_SEQUENCE)) {
+         try (InputStream in = ReplacementParsingBenchmark.class.getResourceAsStream(file)) {
+            new String(in.readAllBytes(), StandardCharsets.UTF_8).lines()
+                  .filter(line -> line.startsWith(Replacement.PREFIX_FIND)
+                        || line.startsWith(Replacement.PREFIX_REPLACE))
+                  .forEach(lines::add);
+         }
+      }
+      replacements = parse();
+   }
+
+   /**
+    * Parse every pair of lines with {@link Replacement#buildReplacement(String, String)}.
+    *
+    * @return the replacements
+    */
+   @Benchmark
+   public List<Replacement> buildReplacement() {
+      return parse();
+   }
+
+   /**
+    * Compile parsed replacements into a sequence.
+    *
+    * @param blackhole consumes results
+    */
+   @Benchmark
+   public void compileSequence(final Blackhole blackhole) {
+      blackhole.consume(new ReplacementSequence(replacements));
+   }
+
+   /**
+    * Parse every pair of lines.
+    *
+    * @return the replacements
+    */
+   private List<Replacement> parse() {
+      final var parsed = new ArrayList<Replacement>(lines.size() / 2);
+      for (int index = 0; index + 1 < lines.size(); index += 2) {
+         parsed.add(Replacement.buildReplacement(lines.get(index), lines.get(index + 1)));
+      }
+      return parsed;
+   }
+
+}
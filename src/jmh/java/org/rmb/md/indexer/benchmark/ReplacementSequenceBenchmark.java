@@ -0,0 +1,73 @@
+package org.rmb.md.indexer.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.rmb.md.indexer.regex.ReplacementSequence;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applying each shipped replacement sequence to the kind of text it is used on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplacementSequenceBenchmark {
+
+   /**
+    * The sequence file.
+    */
+   @Param({BenchmarkData.FILE_SEQUENCE, BenchmarkData.URL_SEQUENCE, BenchmarkData.HEADING_SEQUENCE})
+   public String sequenceFile;
+
+   /**
+    * The sequence read from {@link #sequenceFile}.
+    */
+   private ReplacementSequence sequence;
+
+   /**
+    * Inputs the sequence is applied to.
+    */
+   private List<String> inputs;
+
+   /**
+    * Read the sequence.
+    *
+    * @throws IOException if the sequence cannot be read
+    */
+   @Setup
+   public void setUp() throws IOException {
+      sequence = new ReplacementSequence(sequenceFile);
+      inputs = BenchmarkData.HEADING_SEQUENCE.equals(sequenceFile)
+            ? BenchmarkData.HEADINGS
+            : BenchmarkData.RELATIVE_PATHS;
+   }
+
+   /**
+    * Apply the sequence to each input.
+    *
+    * @param blackhole consumes results
+    */
+   @Benchmark
+   public void apply(final Blackhole blackhole) {
+      for (String input : inputs) {
+         blackhole.consume(sequence.apply(input));
+      }
+   }
+
+}
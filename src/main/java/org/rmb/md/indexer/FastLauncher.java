@@ -0,0 +1,65 @@
+package org.rmb.md.indexer;
+
+import org.rmb.md.indexer.config.ApplicationProperties;
+import org.rmb.md.indexer.config.ApplicationPropertiesLoader;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Run the indexer without Spring. Properties are loaded from the same files by {@link ApplicationPropertiesLoader}
+ * and an {@link Indexer} is created directly, so the output is the same as from
+ * {@link MarkdownIndexerApplication#main(String[])}, but the first shortcut is written much sooner. That matters
+ * when the indexer is started for every change, by a hook or a scheduled task, rather than left watching.
+ * <p>
+ * The executable jar starts {@link MarkdownIndexerApplication}; to start this instead:
+ * <pre>
+ * java --enable-preview -Dloader.main=org.rmb.md.indexer.FastLauncher -jar markdown-indexer.jar
+ * </pre>
+ */
+public final class FastLauncher {
+
+   /**
+    * System property naming the logback configuration.
+    */
+   static final String LOGBACK_CONFIGURATION_PROPERTY = "logback.configurationFile";
+
+   /**
+    * Logging configuration Spring would have used.
+    */
+   static final String LOGBACK_CONFIGURATION = "logback-spring.xml";
+
+   /**
+    * Not instantiated.
+    */
+   private FastLauncher() {
+   }
+
+   /**
+    * Run the indexer, then wait for every shortcut file to be written.
+    *
+    * @param args command line arguments: <code>--name=value</code> properties and <code>--watch</code>
+    */
+   public static void main(final String[] args) {
+      // Before the first logger is created, so logback configures itself as it would under Spring; this is also why
+      // this class has no static logger.
+      if (System.getProperty(LOGBACK_CONFIGURATION_PROPERTY) == null) {
+         System.setProperty(LOGBACK_CONFIGURATION_PROPERTY, LOGBACK_CONFIGURATION);
+      }
+      final ApplicationProperties properties;
+      try {
+         properties = ApplicationPropertiesLoader.load(args);
+      } catch (IOException | IllegalArgumentException e) {
+         LoggerFactory.getLogger(FastLauncher.class).error("FATAL: failed to load application properties.", e);
+         System.exit(1);
+         return;
+      }
+      final var indexer = new Indexer(properties);
+      try {
+         indexer.run(args);
+      } finally {
+         indexer.close();
+      }
+   }
+
+}
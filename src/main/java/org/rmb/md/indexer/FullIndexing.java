@@ -0,0 +1,109 @@
+package org.rmb.md.indexer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rmb.md.indexer.metrics.RunMetrics.Stage;
+import org.rmb.md.indexer.shortcut.ShortcutCollisions;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * Index every markdown file of every root and replace the output of the last run with the result, in whatever
+ * <code>application.output-format</code> says.
+ */
+@Slf4j
+final class FullIndexing {
+
+   /**
+    * The roots, pipeline and output of the run.
+    */
+   private final IndexingContext context;
+
+   /**
+    * Absolute path of every markdown file the catalog written last has entries for; empty unless the output is a
+    * catalog.
+    */
+   private final NavigableSet<Path> catalogedFiles = new TreeSet<>();
+
+   /**
+    * Create a full indexing run.
+    *
+    * @param context the roots, pipeline and output of the run
+    */
+   FullIndexing(final IndexingContext context) {
+      this.context = context;
+   }
+
+   /**
+    * Index every markdown file of every root, then replace the output of the last run with the result.
+    */
+   void run() {
+      final var properties = context.properties();
+      final var shortcutSink = context.createShortcutSink();
+      final var searchable = new LinkedHashMap<String, IndexedFile>();
+      final var collisions = new ShortcutCollisions();
+      final var cataloged = new TreeSet<Path>();
+
+      try {
+         context.pipeline().runEach(context.roots(), SourceRoot::tree,
+               (root, path) -> context.readSourceFile(root, path, Optional.empty()),
+               context::createShortcuts,
+               (root, indexed) -> {
+                  final var start = System.nanoTime();
+                  IndexingContext.checkCollisions(root, indexed.shortcuts(), collisions);
+                  indexed.shortcuts().forEach(shortcutSink::accept);
+                  if (properties.getOutputFormat().isCatalog()) {
+                     cataloged.add(indexed.file().path().toAbsolutePath());
+                  }
+                  if (properties.isSearchIndex() || properties.isTextIndex()) {
+                     searchable.put(indexed.file().path().toString(), indexed);
+                  }
+                  context.metrics().time(Stage.OUTPUT, start);
+               });
+      } catch (IOException ex) {
+         // Leave existing shortcuts alone rather than deleting everything we failed to find.
+         log.error("Error while traversing Hugo files", ex);
+         return;
+      }
+
+      final var start = System.nanoTime();
+      try {
+         shortcutSink.commit();
+         catalogedFiles.clear();
+         catalogedFiles.addAll(cataloged);
+      } catch (IOException ex) {
+         log.error("Error while writing shortcuts", ex);
+      } finally {
+         context.metrics().time(Stage.OUTPUT, start);
+      }
+      context.updateSearchIndex(Optional.empty(), searchable);
+      context.updateTextIndex(Optional.empty(), searchable);
+   }
+
+   /**
+    * Could a changed path affect a catalog? Only if it is a markdown file we want, or it was deleted and the catalog
+    * has entries for it or for files inside it - the only way to tell a deleted folder from a deleted file. Other
+    * files, such as an editor's temporary files, are ignored.
+    *
+    * @param path path that was created, modified or deleted
+    *
+    * @return true if the catalog may need to be written again
+    */
+   boolean mayAffectCatalog(final Path path) {
+      if (context.rootOf(path).filter(root -> root.tree().includesFile(path)).isPresent()) {
+         return true;
+      }
+      if (Files.exists(path)) {
+         return false;
+      }
+      final var absolute = path.toAbsolutePath();
+      final var first = catalogedFiles.ceiling(absolute);
+      return first != null && first.startsWith(absolute);
+   }
+
+}
@@ -0,0 +1,504 @@
+package org.rmb.md.indexer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rmb.md.indexer.manifest.GitCheckpoint;
+import org.rmb.md.indexer.manifest.Manifest;
+import org.rmb.md.indexer.manifest.ManifestEntry;
+import org.rmb.md.indexer.metrics.RunMetrics.Stage;
+import org.rmb.md.indexer.output.ReconcileResult;
+import org.rmb.md.indexer.pipeline.RecentFirst;
+import org.rmb.md.indexer.search.TextIndex;
+import org.rmb.md.indexer.shortcut.Shortcut;
+import org.rmb.md.indexer.shortcut.ShortcutCollisions;
+import org.rmb.md.indexer.source.GitRepository;
+import org.rmb.md.indexer.watch.ChangeBatch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Index only what changed since the last run, as recorded in the manifest: files whose statistics or content hash
+ * are unchanged are skipped, and the shortcuts of files that have gone away are deleted. What changed is found by
+ * walking every folder, by asking git, or from a batch of changes seen while watching.
+ */
+@Slf4j
+final class IncrementalIndexing {
+
+   /**
+    * What each configuration input affects, keyed by input name: the replacement sequences by their label and the
+    * inputs of {@link SourceRoots}. Every input is worked into shortcuts from the heading lines alone, so none needs
+    * a file read again.
+    */
+   private static final Map<String, String> INPUT_EFFECTS = Map.of(
+         SourceRoots.WEBAPP_BASE_URL_INPUT, "shortcut URLs",
+         SourceRoots.FILE_PREFIX_INPUT, "shortcut file names",
+         "markdown files", "shortcut file names",
+         "markdown URLs", "shortcut URLs",
+         "markdown headings", "heading shortcuts",
+         SourceRoots.HEADING_ANCHORS_INPUT, "heading shortcuts");
+
+   /**
+    * The roots, pipeline and output of the run.
+    */
+   private final IndexingContext context;
+
+   /**
+    * How long a pass indexing recent files first may go on handing out files, if it is limited.
+    */
+   private final Optional<Duration> timeBudget;
+
+   /**
+    * Tells the time, in nanoseconds, for the time budget.
+    */
+   private final LongSupplier nanoTime;
+
+   /**
+    * Create an incremental indexing run.
+    *
+    * @param context    the roots, pipeline and output of the run
+    * @param timeBudget how long a pass indexing recent files first may go on handing out files, if it is limited
+    * @param nanoTime   tells the time in nanoseconds, as {@link System#nanoTime()} does
+    */
+   IncrementalIndexing(final IndexingContext context, final Optional<Duration> timeBudget,
+                       final LongSupplier nanoTime) {
+      this.context = context;
+      this.timeBudget = timeBudget;
+      this.nanoTime = nanoTime;
+   }
+
+   /**
+    * Index whatever changed since the last run, asking git if so configured and otherwise checking every file.
+    *
+    * @return manifest of this run, or empty if the markdown files could not be traversed
+    */
+   Optional<Manifest> indexSinceLastRun() {
+      return context.properties().isGitChanges() ? indexGitChanges() : indexIncrementally();
+   }
+
+   /**
+    * Index every markdown file, using the manifest to skip files that have not changed since the last run.
+    * <p>
+    * If there is no manifest, or it was written for different source roots, every file is indexed and the output
+    * directory reconciled as for a full run. Otherwise a file whose size and modified time are unchanged is skipped
+    * without being read, a file whose content hash is unchanged is skipped without being processed, and shortcuts
+    * belonging to files that have gone away are deleted. If a root's configuration inputs changed, the shortcuts of
+    * its unchanged files are worked out again from the heading lines in the manifest, and only those that differ are
+    * written.
+    * <p>
+    * With <code>application.recent-first</code>, every root is walked before anything is read, files are indexed most
+    * recently modified first, and the shortcuts of each changed file are written as soon as they are made. If the time
+    * budget runs out, files not yet indexed keep what the last manifest recorded for them, and the manifest is marked
+    * partial, so that the next run walks every folder - even if it would ask git - and indexes what was left.
+    *
+    * @return manifest of this run, or empty if the markdown files could not be traversed
+    */
+   private Optional<Manifest> indexIncrementally() {
+      return indexIncrementally(usableManifest(context.configurationFingerprint()), Map.of());
+   }
+
+   /**
+    * Index every markdown file, as for {@link #indexIncrementally()}, given the manifest of the last run.
+    *
+    * @param previous    manifest of the last run, if an incremental run can trust it
+    * @param checkpoints git checkpoint of each root's folder, keyed by its absolute path, taken before anything was
+    *                    read; empty unless git was asked what changed
+    *
+    * @return manifest of this run, or empty if the markdown files could not be traversed
+    */
+   private Optional<Manifest> indexIncrementally(final Optional<Manifest> previous,
+                                                 final Map<String, GitCheckpoint> checkpoints) {
+      final var roots = context.roots();
+      final var reconciler = context.reconciler();
+      previous.ifPresent(manifest -> roots.forEach(root -> changedInputs(root, manifest).forEach(input ->
+            log.info("Source root {}: {} changed, so {} are worked out again from the recorded headings.",
+                  root.name(), input, INPUT_EFFECTS.get(input)))));
+      final var current = new Manifest(context.configurationFingerprint());
+      final var desired = new LinkedHashMap<String, byte[]>();
+      final var reindexed = new LinkedHashMap<String, IndexedFile>();
+      final var collisions = new ShortcutCollisions();
+      final var recentFirst = context.properties().isRecentFirst();
+      final List<Path> unvisited;
+
+      try {
+         final BiConsumer<SourceRoot, IndexedFile> collect = (root, indexed) -> {
+            IndexingContext.checkCollisions(root, indexed.shortcuts(), collisions);
+            if (recentFirst) {
+               // Publish straight away rather than when every file has been indexed.
+               final var published = new LinkedHashMap<String, byte[]>();
+               recordIncremental(indexed, current, published);
+               published.forEach(reconciler::write);
+            } else {
+               recordIncremental(indexed, current, desired);
+            }
+            recordReindexed(indexed, reindexed);
+         };
+         if (recentFirst) {
+            final var recent = new RecentFirst<>(roots, SourceRoot::tree, timeBudget, nanoTime);
+            context.pipeline().run(recent,
+                  path -> new Rooted<>(recent.sourceOf(path),
+                        context.readSourceFile(recent.sourceOf(path), path, previous)),
+                  read -> new Rooted<>(read.root(), context.createShortcuts(read.root(), read.value())),
+                  indexed -> collect.accept(indexed.root(), indexed.value()));
+            unvisited = recent.unvisited();
+         } else {
+            context.pipeline().runEach(roots, SourceRoot::tree,
+                  (root, path) -> context.readSourceFile(root, path, previous),
+                  context::createShortcuts,
+                  collect);
+            unvisited = List.of();
+         }
+      } catch (IOException ex) {
+         log.error("Error while traversing Hugo files", ex);
+         if (recentFirst) {
+            // Some shortcuts may already be written; wait for them, so they are not reported with the next run.
+            reconciler.finish(List.of(), Set.of());
+         }
+         return Optional.empty();
+      }
+      if (!unvisited.isEmpty()) {
+         log.info("Time budget of {}s ran out with {} markdown files not yet indexed; the next run goes on from here.",
+               timeBudget.orElseThrow().toSeconds(), unvisited.size());
+         previous.ifPresent(manifest -> unvisited.forEach(path ->
+               manifest.get(path.toString()).ifPresent(entry -> current.put(path.toString(), entry))));
+         current.setPartial(true);
+      }
+
+      final var start = System.nanoTime();
+      try {
+         final var previousComplete = previous.isPresent() && !previous.get().isPartial();
+         if (!recentFirst && previousComplete) {
+            final var stale = previous.get().allOutputs();
+            stale.removeAll(current.allOutputs());
+            reportReconciliation(reconciler.reconcile(desired, stale));
+         } else if (!recentFirst && previous.isEmpty()) {
+            reportReconciliation(reconciler.reconcile(desired));
+         } else {
+            // Shortcuts already published by a recent-first run are not in desired.
+            desired.forEach(reconciler::write);
+            if (current.isPartial() || previousComplete) {
+               final var stale = previous.map(Manifest::allOutputs).orElseGet(TreeSet::new);
+               stale.removeAll(current.allOutputs());
+               reportReconciliation(reconciler.finish(stale, current.allOutputs()));
+            } else {
+               // No manifest recorded everything we own, so any owned file not wanted now may be stale.
+               reportReconciliation(reconciler.finish(current.allOutputs()));
+            }
+         }
+      } catch (IOException ex) {
+         log.error("Error while traversing Hugo files to reconcile them", ex);
+         return Optional.empty();
+      } finally {
+         context.metrics().time(Stage.OUTPUT, start);
+      }
+
+      writeManifest(current, checkpoints);
+      context.updateSearchIndex(previous.map(manifest -> current), reindexed);
+      context.updateTextIndex(previous.map(manifest -> current), reindexed);
+      return Optional.of(current);
+   }
+
+   /**
+    * Index only the markdown files git says may have changed since the last run, without walking any folder. The
+    * folder of each root must be in a git work tree; their checkpoints are recorded in the manifest for the next run.
+    * <p>
+    * If git cannot say what changed in every root - there is no checkpoint from the last run, the commit it recorded
+    * has gone, or git fails - every file is checked as for {@link #indexIncrementally()}.
+    *
+    * @return manifest of this run, or empty if the markdown files could not be traversed
+    */
+   private Optional<Manifest> indexGitChanges() {
+      final var previous = usableManifest(context.configurationFingerprint());
+      final var checkpoints = new LinkedHashMap<String, GitCheckpoint>();
+      final var changed = new TreeSet<Path>();
+      var trusted = previous.isPresent();
+      for (SourceRoot root : context.roots()) {
+         final var folder = root.tree().getRoot();
+         final var repository = new GitRepository(folder);
+         final var checkpoint = repository.checkpoint();
+         if (checkpoint.isEmpty()) {
+            log.info("Git cannot say what changed in {}; checking every file.", folder);
+            return indexIncrementally(previous, Map.of());
+         }
+         // Taken before anything is read, so a file changed while indexing is found again next time.
+         checkpoints.put(folder.toString(), checkpoint.get());
+         final var paths = previous.flatMap(manifest -> manifest.getCheckpoint(folder.toString()))
+               .flatMap(last -> repository.changedSince(last, checkpoint.get()));
+         paths.ifPresent(relative -> relative.forEach(path -> changed.add(folder.resolve(path))));
+         trusted &= paths.isPresent();
+      }
+      if (!trusted) {
+         log.info("No usable git checkpoint from the last run; checking every file.");
+         return indexIncrementally(previous, checkpoints);
+      }
+      if (previous.get().isPartial()) {
+         // Files the last run did not get to may have changed before its checkpoint.
+         log.info("The last run stopped before indexing every file; checking every file.");
+         return indexIncrementally(previous, checkpoints);
+      }
+      if (context.roots().stream().anyMatch(root -> !changedInputs(root, previous.get()).isEmpty())) {
+         // Unchanged files need new shortcuts too, so every file must be visited.
+         return indexIncrementally(previous, checkpoints);
+      }
+      log.info("Git reports {} changed paths.", changed.size());
+      return Optional.of(indexChanges(new ChangeBatch(changed, false), previous.get(), checkpoints));
+   }
+
+   /**
+    * Index a batch of changes seen while watching. Markdown files that were created or modified are read again, and
+    * the shortcuts of those that were deleted, or whose headings went away, are deleted. Nothing else is read.
+    * <p>
+    * If the watcher lost events, or indexing the batch fails, everything is indexed incrementally instead.
+    *
+    * @param batch    the changes
+    * @param manifest manifest describing the output directory before the changes; updated in place
+    *
+    * @return manifest describing the output directory after the changes
+    */
+   Manifest indexChanges(final ChangeBatch batch, final Manifest manifest) {
+      // Changes seen by a watcher are not from git, so git can no longer say what was indexed.
+      return indexChanges(batch, manifest, Map.of());
+   }
+
+   /**
+    * Index a batch of changes, as for {@link #indexChanges(ChangeBatch, Manifest)}.
+    *
+    * @param batch       the changes
+    * @param manifest    manifest describing the output directory before the changes; updated in place
+    * @param checkpoints git checkpoints to record in the manifest, keyed by folder
+    *
+    * @return manifest describing the output directory after the changes
+    */
+   private Manifest indexChanges(final ChangeBatch batch, final Manifest manifest,
+                                 final Map<String, GitCheckpoint> checkpoints) {
+      if (batch.overflow()) {
+         log.info("Lost track of some changes; checking every file.");
+         return indexIncrementally(usableManifest(context.configurationFingerprint()), checkpoints).orElse(manifest);
+      }
+      final var changed = new LinkedHashMap<SourceRoot, List<Path>>();
+      final var previousOutputs = new TreeSet<String>();
+      for (Path path : batch.paths()) {
+         if (Files.isRegularFile(path)) {
+            final var root = context.rootOf(path).filter(candidate -> candidate.tree().includesFile(path));
+            if (root.isPresent()) {
+               changed.computeIfAbsent(root.get(), key -> new ArrayList<>()).add(path);
+               manifest.get(path.toString()).ifPresent(entry -> previousOutputs.addAll(entry.outputs()));
+            }
+         } else if (!Files.exists(path)) {
+            // A deleted file, or a deleted folder and everything that was in it.
+            final var folderPrefix = path + File.separator;
+            List.copyOf(manifest.getEntries().keySet()).stream()
+                  .filter(source -> source.equals(path.toString()) || source.startsWith(folderPrefix))
+                  .forEach(source -> manifest.remove(source)
+                        .ifPresent(entry -> previousOutputs.addAll(entry.outputs())));
+         }
+      }
+      if (changed.isEmpty() && previousOutputs.isEmpty()) {
+         log.debug("No markdown files in {} changed paths.", batch.paths().size());
+         return manifest;
+      }
+
+      final var desired = new LinkedHashMap<String, byte[]>();
+      final var reindexed = new LinkedHashMap<String, IndexedFile>();
+      final var collisions = new ShortcutCollisions();
+      try {
+         context.pipeline().runEach(context.roots().stream().filter(changed::containsKey).collect(Collectors.toList()),
+               root -> changed.get(root)::forEach,
+               (root, path) -> context.readSourceFile(root, path, Optional.of(manifest)),
+               context::createShortcuts,
+               (root, indexed) -> {
+                  IndexingContext.checkCollisions(root, indexed.shortcuts(), collisions);
+                  recordIncremental(indexed, manifest, desired);
+                  recordReindexed(indexed, reindexed);
+               });
+         final var stale = new TreeSet<>(previousOutputs);
+         stale.removeAll(manifest.allOutputs());
+         final var start = System.nanoTime();
+         reportReconciliation(context.reconciler().reconcile(desired, stale));
+         context.metrics().time(Stage.OUTPUT, start);
+      } catch (IOException | RuntimeException e) {
+         log.error("Failed to index changes; checking every file.", e);
+         return indexIncrementally(usableManifest(context.configurationFingerprint()), checkpoints).orElse(manifest);
+      }
+      writeManifest(manifest, checkpoints);
+      context.updateSearchIndex(Optional.of(manifest), reindexed);
+      context.updateTextIndex(Optional.of(manifest), reindexed);
+      return manifest;
+   }
+
+   /**
+    * The manifest of the last run, if an incremental run can trust it.
+    *
+    * @param fingerprint fingerprint of the configuration now
+    *
+    * @return the manifest, or empty if there is none, the configuration changed, or an index it relies on is missing
+    */
+   private Optional<Manifest> usableManifest(final String fingerprint) {
+      final var properties = context.properties();
+      return Manifest.read(manifestPath())
+            .filter(manifest -> {
+               final var matches = manifest.getFingerprint().equals(fingerprint);
+               if (!matches) {
+                  log.info("Source roots changed since the last run; doing a full rebuild.");
+               }
+               return matches;
+            })
+            .filter(manifest -> {
+               // Unchanged files are not read again, so their search entries can only come from the last index.
+               final var searchable = !properties.isSearchIndex()
+                     || Files.exists(IndexingContext.searchIndexPath(properties));
+               if (!searchable) {
+                  log.info("No search index from the last run; doing a full rebuild.");
+               }
+               return searchable;
+            })
+            .filter(manifest -> {
+               final var searchable = !properties.isTextIndex()
+                     || TextIndex.exists(IndexingContext.textIndexPath(properties));
+               if (!searchable) {
+                  log.info("No full-text index from the last run; doing a full rebuild.");
+               }
+               return searchable;
+            });
+   }
+
+   /**
+    * Which configuration inputs of a root changed since the last run.
+    *
+    * @param root     the root
+    * @param previous manifest of the last run
+    *
+    * @return names of the inputs that changed, or were not recorded
+    */
+   private static List<String> changedInputs(final SourceRoot root, final Manifest previous) {
+      final var recorded = previous.getInputs(root.name());
+      return root.inputs().keySet().stream()
+            .filter(input -> !root.inputs().get(input).equals(recorded.get(input)))
+            .collect(Collectors.toList());
+   }
+
+   /**
+    * Write the manifest for the next incremental run, with the configuration inputs of every root and the given git
+    * checkpoints. Failure is logged; the next run just does more work.
+    *
+    * @param manifest    the manifest
+    * @param checkpoints git checkpoint of each root's folder, keyed by its absolute path; empty if git was not asked
+    */
+   private void writeManifest(final Manifest manifest, final Map<String, GitCheckpoint> checkpoints) {
+      final var manifestPath = manifestPath();
+      context.roots().forEach(root -> manifest.setInputs(root.name(), root.inputs()));
+      manifest.setCheckpoints(checkpoints);
+      try {
+         manifest.write(manifestPath);
+      } catch (IOException e) {
+         log.error("Failed to write manifest: {}", manifestPath, e);
+      }
+   }
+
+   /**
+    * Where the manifest for incremental runs lives.
+    *
+    * @return path to the manifest
+    */
+   private Path manifestPath() {
+      final var properties = context.properties();
+      if (isBlank(properties.getPathToManifest())) {
+         return Paths.get(properties.getPathToUrls(), Indexer.DEFAULT_MANIFEST_FILE_NAME);
+      }
+      return Paths.get(properties.getPathToManifest());
+   }
+
+   /**
+    * Record an indexed markdown file in the manifest being built and add any new shortcuts to the desired set.
+    *
+    * @param indexed the indexed file
+    * @param current manifest for this run
+    * @param desired shortcut files to write, keyed by file name
+    */
+   private static void recordIncremental(final IndexedFile indexed, final Manifest current,
+                                         final Map<String, byte[]> desired) {
+      final var file = indexed.file();
+      final var source = file.path().toString();
+      switch (file.status()) {
+         case UNCHANGED -> current.put(source, file.previous());
+         case TOUCHED -> current.put(source, file.previous().withStatistics(file.size(), file.lastModified()));
+         case CHANGED -> current.put(source, new ManifestEntry(file.size(), file.lastModified(), file.hash(),
+               addShortcuts(desired, indexed.shortcuts()), List.copyOf(file.headingLines())));
+         case FAILED -> {
+            // Keep what we had, so a file we could not read this time does not lose its shortcuts.
+            if (file.previous() != null) {
+               current.put(source, file.previous());
+            }
+         }
+      }
+   }
+
+   /**
+    * Keep a markdown file that was indexed again, for the search and full-text indexes. Files that were skipped, or
+    * could not be read, keep the entries they already have.
+    *
+    * @param indexed   the indexed file
+    * @param reindexed each file indexed again, keyed by source
+    */
+   private void recordReindexed(final IndexedFile indexed, final Map<String, IndexedFile> reindexed) {
+      final var properties = context.properties();
+      if ((properties.isSearchIndex() || properties.isTextIndex())
+            && indexed.file().status() == SourceFile.Status.CHANGED) {
+         reindexed.put(indexed.file().path().toString(), indexed);
+      }
+   }
+
+   /**
+    * Add shortcuts to the set of desired shortcut files. A later shortcut with the same file name replaces an
+    * earlier one, just as writing it later would have.
+    *
+    * @param desired   shortcut files to write, keyed by file name
+    * @param shortcuts the shortcuts to add
+    *
+    * @return names of the files added, without duplicates, in the order they were first added
+    */
+   private static List<String> addShortcuts(final Map<String, byte[]> desired, final List<Shortcut> shortcuts) {
+      final var added = new LinkedHashSet<String>();
+      for (Shortcut shortcut : shortcuts) {
+         desired.put(shortcut.fileName(), shortcut.content());
+         added.add(shortcut.fileName());
+      }
+      return List.copyOf(added);
+   }
+
+   /**
+    * Log what reconciling the output directory did.
+    *
+    * @param result counts from the reconciler
+    */
+   private static void reportReconciliation(final ReconcileResult result) {
+      log.info("Shortcut files: {}.", result);
+   }
+
+   /**
+    * A value, with the root of the markdown file it came from.
+    *
+    * @param root  the root
+    * @param value the value
+    * @param <T>   type of value
+    */
+   private record Rooted<T>(SourceRoot root, T value) {
+   }
+
+}
@@ -0,0 +1,16 @@
+package org.rmb.md.indexer;
+
+import org.rmb.md.indexer.search.TextSection;
+import org.rmb.md.indexer.shortcut.Shortcut;
+
+import java.util.List;
+
+/**
+ * A markdown file together with the shortcuts created for it.
+ *
+ * @param file      what was read from the markdown file
+ * @param shortcuts shortcut for the file followed by shortcuts for its headings; empty if nothing needed creating
+ * @param sections  text of the file under each of its shortcuts, for the full-text index; empty if there is none
+ */
+record IndexedFile(SourceFile file, List<Shortcut> shortcuts, List<TextSection> sections) {
+}
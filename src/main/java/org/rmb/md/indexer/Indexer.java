@@ -0,0 +1,230 @@
+package org.rmb.md.indexer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rmb.md.indexer.config.ApplicationProperties;
+import org.rmb.md.indexer.output.OutputFormat;
+import org.rmb.md.indexer.shard.ShardSpec;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+
+/**
+ * Index a directory of markdown files (for an app such as <a href="https://gohugo.io/">Hugo</a>) as a set of URL files
+ * that can be indexed with a program such as <a href="https://keypirinha.com/">KeyPirinha</a>: fully, incrementally,
+ * in shards or as files change, as the command line and application properties say. Each of those is done by a class
+ * of its own, such as {@link IncrementalIndexing}; this one only picks which.
+ * <p>
+ * Needs nothing from Spring, so {@link MarkdownIndexerApplication}, {@link FastLauncher} and tests all run it the same
+ * way: create it, {@link #run(String...)} it, then {@link #close()} it.
+ */
+@Slf4j
+public final class Indexer {
+
+   /**
+    * Name of the manifest file written to <code>application.path-to-urls</code> if no other path is configured.
+    */
+   public static final String DEFAULT_MANIFEST_FILE_NAME = ".markdown-indexer-manifest";
+
+   /**
+    * Command line argument that switches on watch mode, as an alternative to <code>application.watch</code>.
+    */
+   public static final String WATCH_ARGUMENT = "--watch";
+
+   /**
+    * Command line argument that searches the search index for the rest of the argument, instead of indexing.
+    */
+   public static final String SEARCH_ARGUMENT = "--search=";
+
+   /**
+    * Command line argument that searches the full-text index for the rest of the argument, instead of indexing.
+    */
+   public static final String SEARCH_TEXT_ARGUMENT = "--search-text=";
+
+   /**
+    * Name of the search index written to <code>application.path-to-urls</code> if no other path is configured.
+    */
+   public static final String DEFAULT_SEARCH_INDEX_FILE_NAME = ".markdown-indexer-search";
+
+   /**
+    * Name of the full-text index folder in <code>application.path-to-urls</code> if no other path is configured.
+    */
+   public static final String DEFAULT_TEXT_INDEX_FOLDER_NAME = ".markdown-indexer-text";
+
+   /**
+    * Command line argument that indexes one shard, written as <code>index/count</code>, and stages its results.
+    */
+   public static final String SHARD_ARGUMENT = "--shard=";
+
+   /**
+    * Command line argument that indexes in the given number of shards, each in a local process, then merges them.
+    */
+   public static final String SHARDS_ARGUMENT = "--shards=";
+
+   /**
+    * Command line argument that merges the staged results of the given number of shards into the output.
+    */
+   public static final String MERGE_SHARDS_ARGUMENT = "--merge-shards=";
+
+   /**
+    * Name of the folder in <code>application.path-to-urls</code> shards are staged in if no other path is configured.
+    */
+   public static final String DEFAULT_SHARDS_FOLDER_NAME = ".markdown-indexer-shards";
+
+   /**
+    * Name of the only source root when no roots are configured.
+    */
+   public static final String DEFAULT_ROOT_NAME = "default";
+
+   /**
+    * The Application properties.
+    */
+   private final ApplicationProperties applicationProperties;
+
+   /**
+    * Tells the time, in nanoseconds, for time budgets.
+    */
+   private final LongSupplier nanoTime;
+
+   /**
+    * The roots, pipeline and output of the run, once it has started; closed by {@link #close()}.
+    */
+   private IndexingContext context;
+
+   /**
+    * Create an indexer.
+    *
+    * @param applicationProperties the application properties
+    */
+   public Indexer(final ApplicationProperties applicationProperties) {
+      this(applicationProperties, System::nanoTime);
+   }
+
+   /**
+    * Create an indexer that tells the time for time budgets with the given clock.
+    *
+    * @param applicationProperties the application properties
+    * @param nanoTime              tells the time in nanoseconds, as {@link System#nanoTime()} does
+    */
+   Indexer(final ApplicationProperties applicationProperties, final LongSupplier nanoTime) {
+      this.applicationProperties = applicationProperties;
+      this.nanoTime = nanoTime;
+   }
+
+   /**
+    * Wait for any shortcut files still being written, then stop the threads writing them.
+    */
+   public void close() {
+      if (context != null) {
+         context.close();
+      }
+   }
+
+   /**
+    * Index, search or merge shards, as the command line says.
+    *
+    * @param args command line arguments
+    */
+   public void run(final String... args) {
+      log.debug("""
+                Application starting.
+                   path to markdown file: {}
+                   web-app base URL: {}
+                   path to URL folder: {}
+                """,
+            applicationProperties.getPathToMarkdownFiles(),
+            applicationProperties.getWebappBaseUrl(),
+            applicationProperties.getPathToUrls());
+
+      final var query = argument(args, SEARCH_ARGUMENT);
+      if (query.isPresent()) {
+         new Search(applicationProperties).searchTitles(query.get());
+         return;
+      }
+      final var textQuery = argument(args, SEARCH_TEXT_ARGUMENT);
+      if (textQuery.isPresent()) {
+         new Search(applicationProperties).searchText(textQuery.get());
+         return;
+      }
+      final var shard = argument(args, SHARD_ARGUMENT).map(ShardSpec::parse);
+      final var shards = argument(args, SHARDS_ARGUMENT).map(Integer::parseInt);
+      final var mergeShards = argument(args, MERGE_SHARDS_ARGUMENT).map(Integer::parseInt);
+      if (shard.isPresent() || shards.isPresent() || mergeShards.isPresent()) {
+         if (applicationProperties.isIncremental() || applicationProperties.isWatch()) {
+            log.info("Sharded runs index everything; not indexing incrementally or watching.");
+         }
+         context = new IndexingContext(applicationProperties, false);
+         final var sharding = new ShardIndexing(context);
+         if (shard.isPresent()) {
+            context.measure("shard", () -> sharding.indexShard(shard.get()));
+         } else if (shards.isPresent()) {
+            sharding.indexInShards(shards.get());
+         } else {
+            context.measure("merge", () -> sharding.mergeShards(mergeShards.get()));
+         }
+         log.debug("Application finished.");
+         return;
+      }
+      final var watch = applicationProperties.isWatch() || Arrays.asList(args).contains(WATCH_ARGUMENT);
+      var incremental = applicationProperties.isIncremental() || watch;
+      if (incremental && applicationProperties.getOutputFormat().isCatalog()) {
+         log.warn("Only {} output can be indexed incrementally; indexing everything into the {} catalog.",
+               OutputFormat.URL_FILES, applicationProperties.getOutputFormat());
+         incremental = false;
+      }
+      if (applicationProperties.isRecentFirst() && !incremental) {
+         log.warn("Recent files can only be indexed first in incremental runs; indexing in the usual order.");
+      }
+      final var timeBudget = timeBudget(incremental, watch);
+      context = new IndexingContext(applicationProperties, incremental);
+      if (watch && incremental) {
+         new Watching(context).run(new IncrementalIndexing(context, timeBudget, nanoTime));
+      } else if (watch) {
+         new Watching(context).run(new FullIndexing(context));
+      } else if (incremental) {
+         context.measure("incremental", new IncrementalIndexing(context, timeBudget, nanoTime)::indexSinceLastRun);
+      } else {
+         context.measure("full", new FullIndexing(context)::run);
+      }
+
+      log.debug("Application finished.");
+   }
+
+   /**
+    * How long an incremental run indexing recent files first may go on handing out files.
+    *
+    * @param incremental is the run incremental?
+    * @param watch       does the run go on watching?
+    *
+    * @return <code>application.time-budget-seconds</code>, or empty if there is none or this run cannot use it
+    */
+   private Optional<Duration> timeBudget(final boolean incremental, final boolean watch) {
+      if (applicationProperties.getTimeBudgetSeconds() <= 0) {
+         return Optional.empty();
+      }
+      if (!incremental || !applicationProperties.isRecentFirst()) {
+         log.warn("A time budget needs an incremental run that indexes recent files first; ignoring it.");
+         return Optional.empty();
+      }
+      if (watch) {
+         log.warn("A time budget is not used when watching, so every file is indexed before watching starts.");
+         return Optional.empty();
+      }
+      return Optional.of(Duration.ofSeconds(applicationProperties.getTimeBudgetSeconds()));
+   }
+
+   /**
+    * Value of a command line argument.
+    *
+    * @param args   the command line arguments
+    * @param prefix start of the argument, up to and including <code>=</code>
+    *
+    * @return what follows the prefix in the first argument that starts with it, or empty if none does
+    */
+   private static Optional<String> argument(final String[] args, final String prefix) {
+      return Arrays.stream(args).filter(arg -> arg.startsWith(prefix)).findFirst()
+            .map(arg -> arg.substring(prefix.length()));
+   }
+
+}
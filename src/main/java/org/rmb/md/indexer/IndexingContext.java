@@ -0,0 +1,557 @@
+package org.rmb.md.indexer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rmb.md.indexer.SourceFile.Status;
+import org.rmb.md.indexer.config.ApplicationProperties;
+import org.rmb.md.indexer.manifest.Hashes;
+import org.rmb.md.indexer.manifest.Manifest;
+import org.rmb.md.indexer.markdown.HeadingScanner;
+import org.rmb.md.indexer.metrics.RunMetrics;
+import org.rmb.md.indexer.metrics.RunMetrics.Count;
+import org.rmb.md.indexer.metrics.RunMetrics.Stage;
+import org.rmb.md.indexer.metrics.RunReport;
+import org.rmb.md.indexer.output.CsvCatalogSink;
+import org.rmb.md.indexer.output.JsonLinesCatalogSink;
+import org.rmb.md.indexer.output.OutputFormat;
+import org.rmb.md.indexer.output.ShortcutReconciler;
+import org.rmb.md.indexer.output.ShortcutSink;
+import org.rmb.md.indexer.output.ShortcutWriter;
+import org.rmb.md.indexer.output.UrlFileSink;
+import org.rmb.md.indexer.pipeline.IndexingPipeline;
+import org.rmb.md.indexer.regex.CacheStatistics;
+import org.rmb.md.indexer.regex.ReplacementSequence;
+import org.rmb.md.indexer.search.SearchEntry;
+import org.rmb.md.indexer.search.SearchIndex;
+import org.rmb.md.indexer.search.SearchIndexBuilder;
+import org.rmb.md.indexer.search.TextIndex;
+import org.rmb.md.indexer.search.TextSection;
+import org.rmb.md.indexer.shortcut.Shortcut;
+import org.rmb.md.indexer.shortcut.ShortcutCollisions;
+import org.rmb.md.indexer.shortcut.ShortcutFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * What every way of indexing shares: the source roots, the pipeline that reads their files and makes shortcuts, the
+ * writer that writes the shortcuts, the search indexes and the metrics of the run. Each is set up once, when the
+ * context is created, and closed with it.
+ */
+@Slf4j
+final class IndexingContext {
+
+   /**
+    * Finds headings in markdown files. Each reading thread has its own, as a scanner reuses its buffers.
+    */
+   private static final ThreadLocal<HeadingScanner> HEADING_SCANNER = ThreadLocal.withInitial(HeadingScanner::new);
+
+   /**
+    * Extension of shortcut files.
+    */
+   private static final String URL_EXTENSION = ".url";
+
+   /**
+    * The Application properties.
+    */
+   private final ApplicationProperties applicationProperties;
+
+   /**
+    * Are files hashed, so an incremental run can tell a touched file from a changed one?
+    */
+   private final boolean incremental;
+
+   /**
+    * Where the time goes in each pass, and how many files and headings it dealt with, for all roots together.
+    */
+   private final RunMetrics runMetrics = new RunMetrics();
+
+   /**
+    * The folders of markdown files to index, in name order.
+    */
+   private final List<SourceRoot> roots;
+
+   /**
+    * Runs discovery, reading and shortcut creation, sequentially or concurrently.
+    */
+   private final IndexingPipeline pipeline;
+
+   /**
+    * Writes and deletes shortcut files in the background; flushed and closed by {@link #close()}.
+    */
+   private final ShortcutWriter shortcutWriter;
+
+   /**
+    * Writes and deletes shortcut files in <code>application.path-to-urls</code>.
+    */
+   private final ShortcutReconciler shortcutReconciler;
+
+   /**
+    * Create the source roots, pipeline and shortcut writer of a run.
+    *
+    * @param applicationProperties the application properties
+    * @param incremental           hash the markdown files, for an incremental run?
+    *
+    * @throws IllegalArgumentException if a source root is unusable
+    */
+   IndexingContext(final ApplicationProperties applicationProperties, final boolean incremental) {
+      this.applicationProperties = applicationProperties;
+      this.incremental = incremental;
+      roots = SourceRoots.create(applicationProperties, runMetrics);
+      final var pathToUrls = Paths.get(applicationProperties.getPathToUrls());
+      if (applicationProperties.isConcurrent()) {
+         pipeline = new IndexingPipeline(true, applicationProperties.getQueueCapacity(),
+               applicationProperties.getReadWorkers(), applicationProperties.getComputeWorkers());
+         shortcutWriter = new ShortcutWriter(pathToUrls, applicationProperties.getWriteWorkers(),
+               applicationProperties.getWriteQueueCapacity(), applicationProperties.getWriteBatchSize());
+      } else {
+         pipeline = IndexingPipeline.sequential();
+         shortcutWriter = new ShortcutWriter(pathToUrls, 1,
+               applicationProperties.getWriteQueueCapacity(), applicationProperties.getWriteBatchSize());
+      }
+      shortcutReconciler = new ShortcutReconciler(pathToUrls, ownedFiles(), shortcutWriter);
+   }
+
+   /**
+    * Wait for any shortcut files still being written, then stop the threads writing them.
+    */
+   void close() {
+      shortcutWriter.close();
+   }
+
+   /**
+    * The application properties.
+    *
+    * @return the properties
+    */
+   ApplicationProperties properties() {
+      return applicationProperties;
+   }
+
+   /**
+    * The folders of markdown files to index.
+    *
+    * @return the roots, in name order
+    */
+   List<SourceRoot> roots() {
+      return roots;
+   }
+
+   /**
+    * The pipeline markdown files are read and turned into shortcuts by.
+    *
+    * @return the pipeline
+    */
+   IndexingPipeline pipeline() {
+      return pipeline;
+   }
+
+   /**
+    * Writes and deletes shortcut files in the output folder.
+    *
+    * @return the reconciler
+    */
+   ShortcutReconciler reconciler() {
+      return shortcutReconciler;
+   }
+
+   /**
+    * Metrics of the current pass, for all roots together.
+    *
+    * @return the metrics
+    */
+   RunMetrics metrics() {
+      return runMetrics;
+   }
+
+   /**
+    * Run an indexing pass with fresh metrics, then log them and write the run report.
+    *
+    * @param mode what kind of pass it is, for the report
+    * @param pass the pass
+    * @param <T>  what the pass returns
+    *
+    * @return what the pass returned
+    */
+   <T> T measure(final String mode, final Supplier<T> pass) {
+      runMetrics.start();
+      for (SourceRoot root : roots) {
+         root.metrics().start();
+         root.sequences().values().forEach(ReplacementSequence::resetRuleStatistics);
+      }
+      try {
+         return pass.get();
+      } finally {
+         final var cacheStatistics = new LinkedHashMap<String, CacheStatistics>();
+         for (SourceRoot root : roots) {
+            root.sequences().forEach((label, sequence) -> {
+               root.metrics().add(Count.RULES_OVER_BUDGET, sequence.takeOverBudgetCount());
+               sequence.takeCacheStatistics().ifPresent(statistics -> {
+                  root.metrics().add(Count.REPLACEMENT_CACHE_HITS, statistics.hits());
+                  root.metrics().add(Count.REPLACEMENT_CACHE_MISSES, statistics.misses());
+                  cacheStatistics.put(label(root, label), statistics);
+               });
+            });
+         }
+         final var report = runMetrics.report(mode);
+         log.info("Run metrics: {}.", report);
+         final var rootReports = new LinkedHashMap<String, RunReport>();
+         if (roots.size() > 1) {
+            roots.forEach(root -> rootReports.put(root.name(), root.metrics().report(mode)));
+            rootReports.forEach((name, rootReport) -> log.info("Run metrics for {}: {}.", name, rootReport));
+         }
+         cacheStatistics.forEach((label, statistics) ->
+               log.info("Replacement cache for {}: {}.", label, statistics));
+         roots.forEach(root -> root.sequences().forEach((label, sequence) -> {
+            if (sequence.isProfiling()) {
+               log.info("Replacement rules for {}, most expensive first:\n{}", label(root, label),
+                     sequence.describeRuleStatistics());
+            }
+         }));
+         if (!isBlank(applicationProperties.getPathToRunReport())) {
+            final var reportPath = Paths.get(applicationProperties.getPathToRunReport());
+            try {
+               report.write(reportPath, rootReports);
+            } catch (IOException e) {
+               log.error("Failed to write run report: {}", reportPath, e);
+            }
+         }
+      }
+   }
+
+   /**
+    * Run an indexing pass that returns nothing with fresh metrics, then log them and write the run report.
+    *
+    * @param mode what kind of pass it is, for the report
+    * @param pass the pass
+    */
+   void measure(final String mode, final Runnable pass) {
+      measure(mode, () -> {
+         pass.run();
+         return null;
+      });
+   }
+
+   /**
+    * Label something belonging to a source root for reports. The root is only named if there is more than one.
+    *
+    * @param root  the root
+    * @param label what it is, such as <code>markdown files</code>
+    *
+    * @return the label
+    */
+   private String label(final SourceRoot root, final String label) {
+      return SourceRoots.label(applicationProperties, root.name(), label);
+   }
+
+   /**
+    * The root a path belongs to.
+    *
+    * @param path an absolute path
+    *
+    * @return the root whose folder contains the path, or empty if it is outside every root
+    */
+   Optional<SourceRoot> rootOf(final Path path) {
+      return roots.stream().filter(root -> root.contains(path)).findFirst();
+   }
+
+   /**
+    * Fingerprint of the source roots: the name and folder of each. The configuration inputs of each root are
+    * fingerprinted separately - see {@link SourceRoot#inputs()}.
+    *
+    * @return fingerprint to store in the manifest
+    */
+   String configurationFingerprint() {
+      final var parts = new ArrayList<String>();
+      roots.forEach(root -> parts.add(root.fingerprint()));
+      return Hashes.sha256(parts.toArray(new String[0]));
+   }
+
+   /**
+    * Read a markdown file, unless the manifest shows it has not changed. If it has not changed but the configuration
+    * has, its heading lines are taken from the manifest rather than read again.
+    *
+    * @param root     root the file belongs to
+    * @param path     the markdown file
+    * @param previous manifest from the last run, if there is a usable one
+    *
+    * @return what was found out about the file
+    */
+   SourceFile readSourceFile(final SourceRoot root, final Path path, final Optional<Manifest> previous) {
+      final var entry = previous.flatMap(manifest -> manifest.get(path.toString())).orElse(null);
+      // If the configuration changed, the last run's shortcuts are wrong, but its heading lines are still right.
+      final var sameInputs = previous.map(manifest -> manifest.getInputs(root.name()).equals(root.inputs()))
+            .orElse(true);
+      final var start = System.nanoTime();
+      try {
+         final var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+         final var size = attributes.size();
+         final var lastModified = attributes.lastModifiedTime().toMillis();
+         if (entry != null && entry.sameStatistics(size, lastModified)) {
+            if (sameInputs) {
+               log.trace("Unchanged: {}", path);
+               return new SourceFile(path, Status.UNCHANGED, size, lastModified, entry.hash(), List.of(), List.of(),
+                     entry);
+            }
+            if (!applicationProperties.isTextIndex()) {
+               // The full-text index needs the text as well, so only then is the file read again.
+               log.trace("Unchanged, using recorded headings: {}", path);
+               root.metrics().increment(Count.FILES_FROM_RECORDED_HEADINGS);
+               return new SourceFile(path, Status.CHANGED, size, lastModified, entry.hash(), entry.headings(),
+                     List.of(), entry);
+            }
+         }
+         final var scan = HEADING_SCANNER.get().scan(path, incremental, applicationProperties.isTextIndex());
+         if (entry != null && sameInputs && entry.hash().equals(scan.hash())) {
+            log.trace("Touched but unchanged: {}", path);
+            return new SourceFile(path, Status.TOUCHED, size, lastModified, scan.hash(), List.of(), List.of(),
+                  entry);
+         }
+         return new SourceFile(path, Status.CHANGED, size, lastModified, scan.hash(), scan.headingLines(),
+               scan.sections(), entry);
+      } catch (IOException e) {
+         log.error("Failed to read contents of file: " + path.toAbsolutePath().toString(), e);
+         root.metrics().increment(Count.FILES_FAILED);
+         // Shortcuts from another configuration are not kept, just as after a full rebuild.
+         return new SourceFile(path, Status.FAILED, 0, 0, null, List.of(), List.of(), sameInputs ? entry : null);
+      } finally {
+         root.metrics().time(Stage.READING, start);
+      }
+   }
+
+   /**
+    * Process file and work out its shortcuts.
+    *
+    * @param root root the file belongs to
+    * @param file what was read from the file
+    *
+    * @return the file with shortcut for the file followed by shortcuts for its headings; no shortcuts if the file
+    * did not change
+    */
+   IndexedFile createShortcuts(final SourceRoot root, final SourceFile file) {
+      log.debug("Processing path: {}", file.path());
+      if (file.status() == Status.CHANGED && !file.sections().isEmpty()) {
+         final var owners = new int[file.headingLines().size()];
+         final var shortcuts = root.factory().createShortcuts(file.path(), file.headingLines(), owners);
+         return new IndexedFile(file, shortcuts, textSections(shortcuts, file.sections(), owners));
+      }
+      return new IndexedFile(file, switch (file.status()) {
+         case CHANGED -> root.factory().createShortcuts(file.path(), file.headingLines());
+         case FAILED -> List.of(root.factory().createShortcutForMarkdownFile(file.path()));
+         case UNCHANGED, TOUCHED -> List.of();
+      }, List.of());
+   }
+
+   /**
+    * Gather the text of a markdown file under each of its shortcuts. Text under a heading that has no shortcut of its
+    * own goes with the shortcut before it.
+    *
+    * @param shortcuts shortcut for the file followed by shortcuts for its headings
+    * @param sections  text before the first heading line, then under each heading line
+    * @param owners    for each heading line, the index of the shortcut it comes under
+    *
+    * @return a section for each shortcut, in the same order
+    */
+   private static List<TextSection> textSections(final List<Shortcut> shortcuts, final List<String> sections,
+                                                 final int[] owners) {
+      final var texts = new ArrayList<StringBuilder>();
+      shortcuts.forEach(shortcut -> texts.add(new StringBuilder()));
+      texts.get(0).append(sections.get(0));
+      for (int line = 0; line < owners.length; line++) {
+         texts.get(owners[line]).append(sections.get(line + 1));
+      }
+      final var textSections = new ArrayList<TextSection>(shortcuts.size());
+      for (int index = 0; index < shortcuts.size(); index++) {
+         textSections.add(new TextSection(SearchEntry.of(shortcuts.get(index)), texts.get(index).toString()));
+      }
+      return textSections;
+   }
+
+   /**
+    * Count and report shortcuts that replace an earlier, different shortcut with the same file name, so that one of
+    * them is lost.
+    *
+    * @param root       root the shortcuts came from
+    * @param shortcuts  the shortcuts, about to be written
+    * @param collisions file names claimed so far in this run
+    */
+   static void checkCollisions(final SourceRoot root, final List<Shortcut> shortcuts,
+                               final ShortcutCollisions collisions) {
+      for (Shortcut shortcut : shortcuts) {
+         collisions.claim(root.name(), shortcut).ifPresent(previous -> {
+            root.metrics().increment(Count.SHORTCUT_COLLISIONS);
+            if (previous.shortcut().source().equals(shortcut.source())) {
+               log.debug("Shortcut file {} is used for more than one heading of {}; {} wins.", shortcut.fileName(),
+                     shortcut.source(), shortcut.url());
+            } else {
+               log.warn("Shortcut file {} for {} (root {}) replaces the one for {} (root {}).", shortcut.fileName(),
+                     shortcut.source(), root.name(), previous.shortcut().source(), previous.root());
+            }
+         });
+      }
+   }
+
+   /**
+    * Create the sink for a full run, according to <code>application.output-format</code>.
+    *
+    * @return the sink
+    */
+   ShortcutSink createShortcutSink() {
+      final var format = applicationProperties.getOutputFormat();
+      return switch (format) {
+         case URL_FILES -> new UrlFileSink(shortcutReconciler);
+         case JSON_LINES -> new JsonLinesCatalogSink(catalogPath(format));
+         case CSV -> new CsvCatalogSink(catalogPath(format));
+      };
+   }
+
+   /**
+    * Where a catalog is written.
+    *
+    * @param format the catalog format
+    *
+    * @return <code>application.path-to-catalog</code>, or the format's default file name inside
+    * <code>application.path-to-urls</code>
+    */
+   private Path catalogPath(final OutputFormat format) {
+      if (isBlank(applicationProperties.getPathToCatalog())) {
+         return Paths.get(applicationProperties.getPathToUrls(), format.getDefaultCatalogFileName());
+      }
+      return Paths.get(applicationProperties.getPathToCatalog());
+   }
+
+   /**
+    * Matches the shortcut files of every root in the output folder, which may be deleted when stale. Files with any
+    * other name are left alone.
+    *
+    * @return matcher for files whose name starts with a root's file prefix and ends with <code>.url</code>
+    */
+   private PathMatcher ownedFiles() {
+      final var prefixes = roots.stream()
+            .map(root -> root.filePrefix() + ShortcutFactory.FILE_PREFIX_SEPARATOR)
+            .collect(Collectors.toSet());
+      return path -> {
+         final var fileName = path.getFileName();
+         return fileName != null && fileName.toString().endsWith(URL_EXTENSION)
+               && prefixes.stream().anyMatch(fileName.toString()::startsWith);
+      };
+   }
+
+   /**
+    * Write the search index, if there is to be one.
+    * <p>
+    * After a full run it holds exactly the given shortcuts. Otherwise the entries of the last index are kept for
+    * markdown files that are still in the manifest and were not indexed again, and the given shortcuts added. If the
+    * index cannot be updated it is deleted, so the next incremental run rebuilds it rather than trusting a stale one.
+    *
+    * @param manifest  manifest of every markdown file now indexed, or empty to replace the index as a whole
+    * @param reindexed each file indexed again, keyed by source
+    */
+   void updateSearchIndex(final Optional<Manifest> manifest, final Map<String, IndexedFile> reindexed) {
+      if (!applicationProperties.isSearchIndex()) {
+         return;
+      }
+      final var path = searchIndexPath(applicationProperties);
+      final var start = System.nanoTime();
+      final var builder = new SearchIndexBuilder();
+      try {
+         if (manifest.isPresent()) {
+            // Read rather than mapped, as a mapped file cannot be replaced on every platform.
+            SearchIndex.read(path).entries().stream()
+                  .filter(entry -> !reindexed.containsKey(entry.source()))
+                  .filter(entry -> manifest.get().get(entry.source()).isPresent())
+                  .forEach(builder::add);
+         }
+         reindexed.values().forEach(indexed -> indexed.shortcuts()
+               .forEach(shortcut -> builder.add(SearchEntry.of(shortcut))));
+         builder.write(path);
+      } catch (IOException e) {
+         log.error("Failed to update search index; it will be rebuilt by the next run: {}", path, e);
+         try {
+            Files.deleteIfExists(path);
+         } catch (IOException ex) {
+            log.error("Failed to delete search index: {}", path, ex);
+         }
+      } finally {
+         runMetrics.time(Stage.OUTPUT, start);
+      }
+   }
+
+   /**
+    * Write the full-text index, if there is to be one.
+    * <p>
+    * After a full run it holds exactly the sections of the given files. Otherwise the sections of files that were
+    * indexed again, or are no longer in the manifest, are deleted and the sections of the given files added in a new
+    * segment. If the index cannot be updated it is discarded, so the next incremental run rebuilds it.
+    *
+    * @param manifest  manifest of every markdown file now indexed, or empty to replace the index as a whole
+    * @param reindexed each file indexed again, keyed by source
+    */
+   void updateTextIndex(final Optional<Manifest> manifest, final Map<String, IndexedFile> reindexed) {
+      if (!applicationProperties.isTextIndex()) {
+         return;
+      }
+      final var path = textIndexPath(applicationProperties);
+      final var start = System.nanoTime();
+      final var sections = new ArrayList<TextSection>();
+      reindexed.values().forEach(indexed -> sections.addAll(indexed.sections()));
+      try {
+         if (manifest.isPresent()) {
+            TextIndex.update(path,
+                  source -> !reindexed.containsKey(source) && manifest.get().get(source).isPresent(), sections);
+         } else {
+            TextIndex.rebuild(path, sections);
+         }
+      } catch (IOException e) {
+         log.error("Failed to update full-text index; it will be rebuilt by the next run: {}", path, e);
+         try {
+            TextIndex.discard(path);
+         } catch (IOException ex) {
+            log.error("Failed to discard full-text index: {}", path, ex);
+         }
+      } finally {
+         runMetrics.time(Stage.OUTPUT, start);
+      }
+   }
+
+   /**
+    * Where the search index lives.
+    *
+    * @param applicationProperties the application properties
+    *
+    * @return path to the search index
+    */
+   static Path searchIndexPath(final ApplicationProperties applicationProperties) {
+      if (isBlank(applicationProperties.getPathToSearchIndex())) {
+         return Paths.get(applicationProperties.getPathToUrls(), Indexer.DEFAULT_SEARCH_INDEX_FILE_NAME);
+      }
+      return Paths.get(applicationProperties.getPathToSearchIndex());
+   }
+
+   /**
+    * Where the full-text index lives.
+    *
+    * @param applicationProperties the application properties
+    *
+    * @return path to the folder holding the full-text index
+    */
+   static Path textIndexPath(final ApplicationProperties applicationProperties) {
+      if (isBlank(applicationProperties.getPathToTextIndex())) {
+         return Paths.get(applicationProperties.getPathToUrls(), Indexer.DEFAULT_TEXT_INDEX_FOLDER_NAME);
+      }
+      return Paths.get(applicationProperties.getPathToTextIndex());
+   }
+
+}
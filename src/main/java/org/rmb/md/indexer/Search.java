@@ -0,0 +1,68 @@
+package org.rmb.md.indexer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rmb.md.indexer.config.ApplicationProperties;
+import org.rmb.md.indexer.search.SearchIndex;
+import org.rmb.md.indexer.search.TextIndex;
+
+import java.io.IOException;
+
+/**
+ * Search the indexes written by earlier runs, instead of indexing, and print the best matches.
+ */
+@Slf4j
+final class Search {
+
+   /**
+    * The Application properties.
+    */
+   private final ApplicationProperties applicationProperties;
+
+   /**
+    * Create a search.
+    *
+    * @param applicationProperties the application properties, which say where the indexes are
+    */
+   Search(final ApplicationProperties applicationProperties) {
+      this.applicationProperties = applicationProperties;
+   }
+
+   /**
+    * Search the search index and print the best matches, one per line: title, a tab, then URL.
+    *
+    * @param query words to look for
+    */
+   void searchTitles(final String query) {
+      final var path = IndexingContext.searchIndexPath(applicationProperties);
+      final var start = System.nanoTime();
+      try {
+         final var index = SearchIndex.open(path);
+         final var results = index.search(query, applicationProperties.getSearchResults());
+         results.forEach(entry -> System.out.println(entry.title() + "\t" + entry.url()));
+         log.debug("Found {} of {} entries matching [{}] in {} microseconds.", results.size(), index.size(), query,
+               (System.nanoTime() - start) / 1_000);
+      } catch (IOException e) {
+         log.error("Failed to read search index (is application.search-index on?): {}", path, e);
+      }
+   }
+
+   /**
+    * Search the full-text index and print the best matching sections, one per line: title, a tab, then URL.
+    *
+    * @param query words to look for
+    */
+   void searchText(final String query) {
+      final var path = IndexingContext.textIndexPath(applicationProperties);
+      final var start = System.nanoTime();
+      try {
+         final var index = TextIndex.open(path);
+         final var results = index.search(query, applicationProperties.getSearchResults());
+         results.forEach(entry -> System.out.println(entry.title() + "\t" + entry.url()));
+         log.debug("Found {} of {} sections matching [{}] in {} microseconds.", results.size(), index.size(), query,
+               (System.nanoTime() - start) / 1_000);
+      } catch (IOException e) {
+         log.error("Failed to read full-text index (is application.text-index on?): {}", path, e);
+      }
+   }
+
+}
@@ -0,0 +1,368 @@
+package org.rmb.md.indexer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rmb.md.indexer.SourceFile.Status;
+import org.rmb.md.indexer.manifest.Hashes;
+import org.rmb.md.indexer.metrics.RunMetrics.Count;
+import org.rmb.md.indexer.metrics.RunMetrics.Stage;
+import org.rmb.md.indexer.pipeline.Discovery;
+import org.rmb.md.indexer.search.SearchEntry;
+import org.rmb.md.indexer.search.TextSection;
+import org.rmb.md.indexer.shard.ShardFile;
+import org.rmb.md.indexer.shard.ShardSpec;
+import org.rmb.md.indexer.shard.ShardWorkers;
+import org.rmb.md.indexer.shortcut.Shortcut;
+import org.rmb.md.indexer.shortcut.ShortcutCollisions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Index in shards, each of which may run in its own process, and merge their results into exactly the output a full
+ * run in one process would have written.
+ */
+@Slf4j
+final class ShardIndexing {
+
+   /**
+    * The roots, pipeline and output of the run.
+    */
+   private final IndexingContext context;
+
+   /**
+    * Create a sharded run.
+    *
+    * @param context the roots, pipeline and output of the run
+    */
+   ShardIndexing(final IndexingContext context) {
+      this.context = context;
+   }
+
+   /**
+    * Index one shard of the markdown files, as for a full run, and stage its shortcuts (and their text, if there is a
+    * full-text index) for {@link #mergeShards(int)}. Every root is still walked in full, so each file can be given its
+    * position in the walk and every shard can check it saw the same files.
+    *
+    * @param shard the shard
+    *
+    * @throws UncheckedIOException if the markdown files cannot be traversed or the shard cannot be staged, so the
+    *                              process fails and the shard can be run again
+    */
+   void indexShard(final ShardSpec shard) {
+      final var roots = context.roots();
+      final var path = shardsPath().resolve(shard.fileName());
+      final var listings = new LinkedHashMap<SourceRoot, MessageDigest>();
+      roots.forEach(root -> listings.put(root, Hashes.newDigest()));
+      final var ordinals = new ConcurrentHashMap<Path, Long>();
+      try (ShardFile.Writer writer = new ShardFile.Writer(path, shard, shardFingerprint())) {
+         context.pipeline().runEach(roots, root -> shardDiscovery(root, shard, listings.get(root), ordinals),
+               (root, file) -> context.readSourceFile(root, file, Optional.empty()),
+               context::createShortcuts,
+               (root, indexed) -> {
+                  final var start = System.nanoTime();
+                  final var texts = indexed.sections().stream().map(TextSection::text).collect(Collectors.toList());
+                  try {
+                     writer.add(new ShardFile.Entry(roots.indexOf(root), ordinals.remove(indexed.file().path()),
+                           indexed.shortcuts(), texts));
+                  } catch (IOException e) {
+                     throw new UncheckedIOException(e);
+                  } finally {
+                     context.metrics().time(Stage.OUTPUT, start);
+                  }
+               });
+         writer.commit(Hashes.sha256(listings.values().stream()
+               .map(listing -> Hashes.toHex(listing.digest()))
+               .toArray(String[]::new)));
+      } catch (IOException e) {
+         throw new UncheckedIOException("Failed to index shard " + shard + " into " + path, e);
+      } catch (UncheckedIOException e) {
+         throw new UncheckedIOException("Failed to index shard " + shard + " into " + path, e.getCause());
+      }
+      log.info("Shard {} staged in {}.", shard, path);
+   }
+
+   /**
+    * Find the markdown files of one shard in a root, noting the position of each among all the root's files and
+    * adding every file to a fingerprint of the listing.
+    *
+    * @param root     the root
+    * @param shard    the shard
+    * @param listing  fingerprint of every file the root's walk finds, in order
+    * @param ordinals filled in with the position of each file handed on, keyed by path
+    *
+    * @return finds the files of the shard
+    */
+   private static Discovery shardDiscovery(final SourceRoot root, final ShardSpec shard, final MessageDigest listing,
+                                           final Map<Path, Long> ordinals) {
+      return sink -> {
+         final var ordinal = new AtomicLong();
+         root.tree().discover(file -> {
+            final var key = shardKey(root, file);
+            listing.update(key.getBytes(StandardCharsets.UTF_8));
+            listing.update((byte) '\n');
+            final var position = ordinal.getAndIncrement();
+            if (shard.owns(key)) {
+               ordinals.put(file, position);
+               sink.accept(file);
+            }
+         });
+      };
+   }
+
+   /**
+    * Identifies a markdown file the same way in every process, wherever the root folder is mounted.
+    *
+    * @param root root the file belongs to
+    * @param file the markdown file
+    *
+    * @return name of the root and path of the file relative to it, separated by <code>/</code>
+    */
+   private static String shardKey(final SourceRoot root, final Path file) {
+      return root.name() + ":" + root.tree().getRoot().relativize(file).toString().replace(File.separatorChar, '/');
+   }
+
+   /**
+    * Index in one local process per shard, running any that fail again, then merge their results. The processes are
+    * started with the same command line as this one, with <code>--shards=count</code> replaced by
+    * <code>--shard=index/count</code>.
+    *
+    * @param count number of shards
+    *
+    * @throws IllegalStateException if the command line cannot be found out, or a shard still fails after every
+    *                               attempt; nothing has been merged in that case
+    */
+   void indexInShards(final int count) {
+      final var command = ShardWorkers.currentCommand().orElseThrow(() -> new IllegalStateException(
+            "Cannot tell how this process was started; run each shard with " + Indexer.SHARD_ARGUMENT + "index/"
+                  + count + " and then " + Indexer.MERGE_SHARDS_ARGUMENT + count + "."));
+      final List<ShardSpec> failed;
+      try {
+         failed = ShardWorkers.run(count, shard -> command.stream()
+                     .map(arg -> arg.startsWith(Indexer.SHARDS_ARGUMENT) ? Indexer.SHARD_ARGUMENT + shard : arg)
+                     .collect(Collectors.toList()),
+               context.properties().getShardAttempts(), shardsPath());
+      } catch (IOException e) {
+         throw new UncheckedIOException("Failed to start shards.", e);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException("Interrupted while waiting for shards.", e);
+      }
+      if (!failed.isEmpty()) {
+         throw new IllegalStateException("Shards " + failed + " failed, so nothing was merged. Run each again with "
+               + Indexer.SHARD_ARGUMENT + "index/" + count + " and then " + Indexer.MERGE_SHARDS_ARGUMENT + count
+               + ".");
+      }
+      context.measure("merge", () -> mergeShards(count));
+   }
+
+   /**
+    * Merge the staged results of every shard into the output, exactly as a full run in one process would have written
+    * them: files are taken in the order one process would have found them, so where two shortcuts have the same file
+    * name - whether from the same shard or not - the same one wins. The staged results are deleted once merged.
+    *
+    * @param count number of shards
+    *
+    * @throws IllegalStateException if a shard is missing, or the shards were indexed with a different configuration
+    *                               or from different files; nothing has been written in that case
+    */
+   void mergeShards(final int count) {
+      final var roots = context.roots();
+      final var properties = context.properties();
+      final var readers = new ArrayList<ShardFile.Reader>();
+      try {
+         openShards(count, readers);
+         final var shortcutSink = context.createShortcutSink();
+         final var searchable = new LinkedHashMap<String, IndexedFile>();
+         final var collisions = new ShortcutCollisions();
+         final var crossShard = new AtomicLong();
+         final var heads = new PriorityQueue<ShardHead>(Comparator.comparingInt((ShardHead head) -> head.entry().root())
+               .thenComparingLong(head -> head.entry().ordinal()));
+         for (ShardFile.Reader reader : readers) {
+            reader.next().ifPresent(entry -> heads.add(new ShardHead(reader, entry)));
+         }
+         while (!heads.isEmpty()) {
+            final var head = heads.poll();
+            final var entry = head.entry();
+            final var root = roots.get(entry.root());
+            final var start = System.nanoTime();
+            for (Shortcut shortcut : entry.shortcuts()) {
+               collisions.claim(root.name(), shortcut).ifPresent(previous -> {
+                  root.metrics().increment(Count.SHORTCUT_COLLISIONS);
+                  final var previousRoot = roots.stream().filter(other -> other.name().equals(previous.root()))
+                        .findFirst().orElse(root);
+                  final var previousShard = ShardSpec.shardOf(shardKey(previousRoot, previous.shortcut().source()),
+                        count);
+                  if (previousShard != head.reader().shard().index()) {
+                     crossShard.incrementAndGet();
+                     log.warn("Shortcut file {} for {} (shard {}) replaces the one for {} (shard {}).",
+                           shortcut.fileName(), shortcut.source(), head.reader().shard().index(),
+                           previous.shortcut().source(), previousShard);
+                  } else {
+                     log.debug("Shortcut file {} for {} replaces the one for {}.", shortcut.fileName(),
+                           shortcut.source(), previous.shortcut().source());
+                  }
+               });
+               shortcutSink.accept(shortcut);
+            }
+            if ((properties.isSearchIndex() || properties.isTextIndex()) && !entry.shortcuts().isEmpty()) {
+               final var source = entry.shortcuts().get(0).source();
+               final var sections = new ArrayList<TextSection>();
+               for (int index = 0; index < entry.texts().size(); index++) {
+                  sections.add(new TextSection(SearchEntry.of(entry.shortcuts().get(index)), entry.texts().get(index)));
+               }
+               // Only its shortcuts and sections are used from here on.
+               final var file = new SourceFile(source, Status.CHANGED, 0, 0, null, List.of(), List.of(), null);
+               searchable.put(source.toString(), new IndexedFile(file, entry.shortcuts(), sections));
+            }
+            context.metrics().time(Stage.OUTPUT, start);
+            head.reader().next().ifPresent(next -> heads.add(new ShardHead(head.reader(), next)));
+         }
+         if (crossShard.get() > 0) {
+            log.warn("{} shortcut file names were used by files in different shards; the later file won, as in a "
+                  + "single process.", crossShard.get());
+         }
+
+         final var start = System.nanoTime();
+         try {
+            shortcutSink.commit();
+         } finally {
+            context.metrics().time(Stage.OUTPUT, start);
+         }
+         context.updateSearchIndex(Optional.empty(), searchable);
+         context.updateTextIndex(Optional.empty(), searchable);
+      } catch (IOException e) {
+         throw new UncheckedIOException("Failed to merge shards.", e);
+      } finally {
+         for (ShardFile.Reader reader : readers) {
+            try {
+               reader.close();
+            } catch (IOException e) {
+               log.warn("Failed to close shard {}.", reader.shard(), e);
+            }
+         }
+      }
+      deleteShards(count);
+   }
+
+   /**
+    * Open the staged results of every shard and check they can be merged.
+    *
+    * @param count   number of shards
+    * @param readers filled in with a reader for each shard, in order
+    *
+    * @throws IllegalStateException if a shard is missing or cannot be read, or the shards were indexed with a
+    *                               different configuration or from different files
+    */
+   private void openShards(final int count, final List<ShardFile.Reader> readers) {
+      final var missing = new ArrayList<ShardSpec>();
+      for (int index = 0; index < count; index++) {
+         final var shard = new ShardSpec(index, count);
+         final var path = shardsPath().resolve(shard.fileName());
+         if (!Files.exists(path)) {
+            missing.add(shard);
+            continue;
+         }
+         try {
+            readers.add(new ShardFile.Reader(path));
+         } catch (IOException e) {
+            log.error("Cannot read shard {}: {}", shard, path, e);
+            missing.add(shard);
+         }
+      }
+      if (!missing.isEmpty()) {
+         throw new IllegalStateException("Shards " + missing + " have not been staged; run each with "
+               + Indexer.SHARD_ARGUMENT + "index/" + count + ", then merge again.");
+      }
+      final var fingerprint = shardFingerprint();
+      final var stale = readers.stream().filter(reader -> !reader.fingerprint().equals(fingerprint))
+            .map(ShardFile.Reader::shard).collect(Collectors.toList());
+      if (!stale.isEmpty()) {
+         throw new IllegalStateException("Shards " + stale + " were indexed with another configuration; run each "
+               + "again with " + Indexer.SHARD_ARGUMENT + "index/" + count + ", then merge again.");
+      }
+      if (readers.stream().map(ShardFile.Reader::listing).distinct().count() > 1) {
+         throw new IllegalStateException("The shards found different markdown files, which changed while they were "
+               + "being indexed; run every shard again, then merge again.");
+      }
+   }
+
+   /**
+    * Delete the staged results of every shard once they are merged, so they cannot be merged again with newer ones,
+    * and the staging folder if nothing else is left in it.
+    *
+    * @param count number of shards
+    */
+   private void deleteShards(final int count) {
+      for (int index = 0; index < count; index++) {
+         final var path = shardsPath().resolve(new ShardSpec(index, count).fileName());
+         try {
+            Files.deleteIfExists(path);
+         } catch (IOException e) {
+            log.warn("Failed to delete merged shard: {}", path, e);
+         }
+      }
+      try {
+         Files.deleteIfExists(shardsPath());
+      } catch (DirectoryNotEmptyException e) {
+         log.debug("Kept {}, which still holds shard logs.", shardsPath());
+      } catch (IOException e) {
+         log.warn("Failed to delete {}.", shardsPath(), e);
+      }
+   }
+
+   /**
+    * Fingerprint of everything that makes the staged results of one shard fit with those of another, apart from the
+    * files found: the source roots, their configuration inputs and whether text is staged.
+    *
+    * @return fingerprint to store in each shard
+    */
+   private String shardFingerprint() {
+      final var parts = new ArrayList<String>();
+      parts.add(context.configurationFingerprint());
+      context.roots().forEach(root -> parts.add(root.inputs().toString()));
+      parts.add(String.valueOf(context.properties().isTextIndex()));
+      return Hashes.sha256(parts.toArray(new String[0]));
+   }
+
+   /**
+    * Where shards stage their results.
+    *
+    * @return path to the staging folder
+    */
+   private Path shardsPath() {
+      final var properties = context.properties();
+      if (isBlank(properties.getPathToShards())) {
+         return Paths.get(properties.getPathToUrls(), Indexer.DEFAULT_SHARDS_FOLDER_NAME);
+      }
+      return Paths.get(properties.getPathToShards());
+   }
+
+   /**
+    * The next file of a shard being merged.
+    *
+    * @param reader reads the rest of the shard
+    * @param entry  the file
+    */
+   private record ShardHead(ShardFile.Reader reader, ShardFile.Entry entry) {
+   }
+
+}
@@ -0,0 +1,50 @@
+package org.rmb.md.indexer;
+
+import org.rmb.md.indexer.manifest.ManifestEntry;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * What was found out about one markdown file when reading it.
+ *
+ * @param path         the markdown file
+ * @param status       whether the file needs to be processed
+ * @param size         size of the file in bytes
+ * @param lastModified last modified time of the file, in milliseconds since the epoch
+ * @param hash         hash of the file contents, or null if the file was not read or not hashed
+ * @param headingLines lines of the file that are markdown headings; empty if the file was not read
+ * @param sections     text before the first heading, then under each heading; empty if the file was not read or
+ *                     there is no full-text index
+ * @param previous     the manifest entry for the file from the last run, or null if there is none
+ */
+record SourceFile(Path path, Status status, long size, long lastModified, String hash, List<String> headingLines,
+                  List<String> sections, ManifestEntry previous) {
+
+   /**
+    * Whether a markdown file needs to be processed.
+    */
+   enum Status {
+
+      /**
+       * Size and modified time match the last run; the file was not read.
+       */
+      UNCHANGED,
+
+      /**
+       * Modified time changed but the content hash matches the last run.
+       */
+      TOUCHED,
+
+      /**
+       * New or changed; shortcuts must be created.
+       */
+      CHANGED,
+
+      /**
+       * The file could not be read.
+       */
+      FAILED
+   }
+
+}
@@ -0,0 +1,40 @@
+package org.rmb.md.indexer;
+
+import org.rmb.md.indexer.metrics.RunMetrics;
+import org.rmb.md.indexer.regex.ReplacementSequence;
+import org.rmb.md.indexer.shortcut.ShortcutFactory;
+import org.rmb.md.indexer.source.SourceTree;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * One folder of markdown files being indexed, such as one Hugo site, with everything needed to turn its files into
+ * shortcuts.
+ *
+ * @param name        name of the root, for reports
+ * @param tree        its markdown files
+ * @param factory     creates its shortcuts
+ * @param filePrefix  start of the file name of each of its shortcuts
+ * @param sequences   its replacement sequences, labelled for reports
+ * @param metrics     metrics for this root alone; everything recorded in them is also recorded for the whole run
+ * @param fingerprint fingerprint of its name and folder, for the manifest
+ * @param inputs      fingerprint of each configuration input its shortcuts are worked out from, keyed by input name,
+ *                    for the manifest
+ */
+record SourceRoot(String name, SourceTree tree, ShortcutFactory factory, String filePrefix,
+                  Map<String, ReplacementSequence> sequences, RunMetrics metrics, String fingerprint,
+                  Map<String, String> inputs) {
+
+   /**
+    * Is a path inside this root's folder?
+    *
+    * @param path an absolute path
+    *
+    * @return true if it is the root folder or inside it
+    */
+   boolean contains(final Path path) {
+      return path.startsWith(tree.getRoot().toAbsolutePath());
+   }
+
+}
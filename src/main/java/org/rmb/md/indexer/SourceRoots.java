@@ -0,0 +1,200 @@
+package org.rmb.md.indexer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rmb.md.indexer.config.ApplicationProperties;
+import org.rmb.md.indexer.config.SourceRootProperties;
+import org.rmb.md.indexer.manifest.Hashes;
+import org.rmb.md.indexer.metrics.RunMetrics;
+import org.rmb.md.indexer.regex.ReplacementOptions;
+import org.rmb.md.indexer.regex.ReplacementSequence;
+import org.rmb.md.indexer.shortcut.ShortcutFactory;
+import org.rmb.md.indexer.shortcut.ShortcutOptions;
+import org.rmb.md.indexer.source.PathRules;
+import org.rmb.md.indexer.source.SourceTree;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Creates the source roots of a run from the application properties: each configured root, or just
+ * <code>application.path-to-markdown-files</code>.
+ */
+@Slf4j
+final class SourceRoots {
+
+   /**
+    * Name of the configuration input for the web-app base URL, which only affects shortcut URLs.
+    */
+   static final String WEBAPP_BASE_URL_INPUT = "webapp base URL";
+
+   /**
+    * Name of the configuration input for the file prefix, which only affects shortcut file names.
+    */
+   static final String FILE_PREFIX_INPUT = "file prefix";
+
+   /**
+    * Name of the configuration input for the anchor style, which only affects heading shortcuts.
+    */
+   static final String HEADING_ANCHORS_INPUT = "heading anchors";
+
+   /**
+    * Not instantiated.
+    */
+   private SourceRoots() {
+   }
+
+   /**
+    * Create the source roots.
+    *
+    * @param applicationProperties the application properties
+    * @param runMetrics            metrics of the whole run, which every root's metrics add to
+    *
+    * @return the roots, in name order
+    *
+    * @throws IllegalArgumentException if a root has no markdown folder or an unusable file prefix, or is inside
+    *                                  another
+    */
+   static List<SourceRoot> create(final ApplicationProperties applicationProperties, final RunMetrics runMetrics) {
+      final var configured = new TreeMap<>(applicationProperties.getRoots());
+      if (configured.isEmpty()) {
+         configured.put(Indexer.DEFAULT_ROOT_NAME, new SourceRootProperties());
+      }
+      final var created = new ArrayList<SourceRoot>();
+      configured.forEach((name, root) -> created.add(createRoot(applicationProperties, runMetrics, name, root)));
+      for (SourceRoot root : created) {
+         for (SourceRoot other : created) {
+            if (root != other && root.contains(other.tree().getRoot().toAbsolutePath())) {
+               // The manifest is keyed by markdown path, so a file must belong to exactly one root.
+               throw new IllegalArgumentException("Source root " + other.name() + " is inside source root "
+                     + root.name() + ".");
+            }
+         }
+      }
+      return List.copyOf(created);
+   }
+
+   /**
+    * Label something belonging to a source root for reports. The root is only named if there is more than one.
+    *
+    * @param applicationProperties the application properties
+    * @param rootName              name of the root
+    * @param label                 what it is, such as <code>markdown files</code>
+    *
+    * @return the label
+    */
+   static String label(final ApplicationProperties applicationProperties, final String rootName,
+                       final String label) {
+      return applicationProperties.getRoots().size() > 1 ? rootName + " " + label : label;
+   }
+
+   /**
+    * Create a source root. Anything it leaves out is taken from the application setting of the same name.
+    *
+    * @param applicationProperties the application properties
+    * @param runMetrics            metrics of the whole run
+    * @param name                  name of the root
+    * @param rootSettings          settings of the root
+    *
+    * @return the root
+    *
+    * @throws IllegalArgumentException if the root has no markdown folder or an unusable file prefix
+    */
+   private static SourceRoot createRoot(final ApplicationProperties applicationProperties,
+                                        final RunMetrics runMetrics, final String name,
+                                        final SourceRootProperties rootSettings) {
+      final var path = orDefault(rootSettings.getPathToMarkdownFiles(), applicationProperties.getPathToMarkdownFiles());
+      final var webappBaseUrl = orDefault(rootSettings.getWebappBaseUrl(), applicationProperties.getWebappBaseUrl());
+      final var filePrefix = orDefault(rootSettings.getFilePrefix(), applicationProperties.getFilePrefix());
+      if (isBlank(path)) {
+         throw new IllegalArgumentException("Source root " + name + " has no path-to-markdown-files.");
+      }
+      if (isBlank(filePrefix) || filePrefix.contains(ShortcutFactory.FILE_PREFIX_SEPARATOR)
+            || filePrefix.contains("/") || filePrefix.contains("\\")) {
+         throw new IllegalArgumentException("Source root " + name + " has an unusable file prefix: '" + filePrefix
+               + "'.");
+      }
+      final var metrics = new RunMetrics(runMetrics);
+      final var sequences = new LinkedHashMap<String, ReplacementSequence>();
+      sequences.put("markdown files", readMdReplacementSequence(applicationProperties,
+            label(applicationProperties, name, "markdown files"),
+            orDefault(rootSettings.getPathToMarkdownFileReplacementSequence(),
+                  applicationProperties.getPathToMarkdownFileReplacementSequence())).orElseThrow());
+      sequences.put("markdown URLs", readMdReplacementSequence(applicationProperties,
+            label(applicationProperties, name, "markdown URLs"),
+            orDefault(rootSettings.getPathToMarkdownUrlReplacementSequence(),
+                  applicationProperties.getPathToMarkdownUrlReplacementSequence())).orElseThrow());
+      sequences.put("markdown headings", readMdReplacementSequence(applicationProperties,
+            label(applicationProperties, name, "markdown headings"),
+            orDefault(rootSettings.getPathToMarkdownHeadingReplacementSequence(),
+                  applicationProperties.getPathToMarkdownHeadingReplacementSequence())).orElseThrow());
+      final var include = rootSettings.getInclude() == null
+            ? applicationProperties.getInclude()
+            : rootSettings.getInclude();
+      final var exclude = rootSettings.getExclude() == null
+            ? applicationProperties.getExclude()
+            : rootSettings.getExclude();
+
+      final var tree = new SourceTree(Paths.get(path), new PathRules(include, exclude), metrics);
+      final var factory = new ShortcutFactory(path, webappBaseUrl, sequences.get("markdown files"),
+            sequences.get("markdown URLs"), sequences.get("markdown headings"), ShortcutOptions.defaults()
+            .withMetrics(metrics)
+            .withAnchorStyle(applicationProperties.getHeadingAnchors())
+            .withFilePrefix(filePrefix));
+      final var inputs = new LinkedHashMap<String, String>();
+      inputs.put(WEBAPP_BASE_URL_INPUT, Hashes.sha256(webappBaseUrl));
+      inputs.put(FILE_PREFIX_INPUT, Hashes.sha256(filePrefix));
+      sequences.forEach((label, sequence) -> inputs.put(label, Hashes.sha256(sequence.toString())));
+      inputs.put(HEADING_ANCHORS_INPUT, Hashes.sha256(applicationProperties.getHeadingAnchors().name()));
+      log.debug("Source root {}: {} served from {}, shortcut files starting with '{}'.", name, path, webappBaseUrl,
+            filePrefix);
+      return new SourceRoot(name, tree, factory, filePrefix, sequences, metrics, Hashes.sha256(name, path),
+            Collections.unmodifiableMap(inputs));
+   }
+
+   /**
+    * A root's own setting, or the application setting if the root leaves it out.
+    *
+    * @param value        the root's setting
+    * @param defaultValue the application setting
+    *
+    * @return the setting to use
+    */
+   private static String orDefault(final String value, final String defaultValue) {
+      return isBlank(value) ? defaultValue : value;
+   }
+
+   /**
+    * Create replacement sequence.
+    *
+    * @param applicationProperties the application properties
+    * @param label                 the label for debugging purposes only
+    * @param path                  string path to file
+    *
+    * @return optional wrapped around {@link ReplacementSequence}, which will be empty if there was an error creating
+    * it.
+    */
+   private static Optional<ReplacementSequence> readMdReplacementSequence(
+         final ApplicationProperties applicationProperties, final String label, final String path) {
+      try {
+         var replacementSequence = new ReplacementSequence(path, ReplacementOptions.DEFAULT
+               .withProfiling(applicationProperties.isProfileReplacements())
+               .withRuleBudget(Duration.ofMillis(applicationProperties.getRuleBudgetMillis()))
+               .withCacheSize(applicationProperties.getReplacementCacheSize()));
+         log.debug("Found replacements for {}: {}", label, replacementSequence);
+         return Optional.of(replacementSequence);
+      } catch (IOException e) {
+         log.error("FATAL: failed to create replacement sequence for " + label + ".", e);
+         return Optional.empty();
+      }
+   }
+
+}
@@ -0,0 +1,121 @@
+package org.rmb.md.indexer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rmb.md.indexer.watch.ChangeBatch;
+import org.rmb.md.indexer.watch.MarkdownWatcher;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Index every markdown file, then watch the markdown folder of every root and index changes as they happen, until
+ * interrupted.
+ */
+@Slf4j
+final class Watching {
+
+   /**
+    * The roots, pipeline and output of the run.
+    */
+   private final IndexingContext context;
+
+   /**
+    * Create a watching run.
+    *
+    * @param context the roots, pipeline and output of the run
+    */
+   Watching(final IndexingContext context) {
+      this.context = context;
+   }
+
+   /**
+    * Index whatever changed since the last run, then index only the files in each batch of changes.
+    *
+    * @param indexing indexes incrementally
+    */
+   void run(final IncrementalIndexing indexing) {
+      context.measure("incremental", indexing::indexSinceLastRun).ifPresent(initial -> {
+         final var manifest = new AtomicReference<>(initial);
+         watch(batch -> manifest.set(context.measure("changes", () -> indexing.indexChanges(batch, manifest.get()))));
+      });
+   }
+
+   /**
+    * Index everything into a catalog, then again for each batch of changes that may affect it.
+    *
+    * @param indexing indexes everything
+    */
+   void run(final FullIndexing indexing) {
+      context.measure("full", indexing::run);
+      watch(batch -> {
+         if (batch.overflow() || batch.paths().stream().anyMatch(indexing::mayAffectCatalog)) {
+            context.measure("full", indexing::run);
+         }
+      });
+   }
+
+   /**
+    * Watch the markdown folder of every root and index changes as they happen, until interrupted. Each root has its own
+    * watcher, on its own thread, but batches of changes are indexed one at a time on this thread.
+    *
+    * @param onChange indexes each batch of changes
+    */
+   private void watch(final Consumer<ChangeBatch> onChange) {
+      final var debounce = Duration.ofMillis(context.properties().getWatchDebounceMillis());
+      final var batches = new LinkedBlockingQueue<ChangeBatch>();
+      final var watchers = new ArrayList<MarkdownWatcher>();
+      final var threads = new ArrayList<Thread>();
+      try {
+         for (SourceRoot root : context.roots()) {
+            final var folder = root.tree().getRoot();
+            final var watcher = new MarkdownWatcher(folder.toAbsolutePath(), debounce, root.tree()::entersFolder);
+            watchers.add(watcher);
+            final var thread = new Thread(() -> forward(watcher, batches), "watch-" + root.name());
+            thread.setDaemon(true);
+            threads.add(thread);
+            log.info("Watching {} for changes.", folder);
+         }
+         threads.forEach(Thread::start);
+         while (!Thread.currentThread().isInterrupted()) {
+            onChange.accept(batches.take());
+         }
+      } catch (IOException e) {
+         log.error("Failed to watch folder.", e);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         log.info("Stopped watching.");
+      } finally {
+         threads.forEach(Thread::interrupt);
+         for (MarkdownWatcher watcher : watchers) {
+            try {
+               watcher.close();
+            } catch (IOException e) {
+               log.warn("Failed to stop watching.", e);
+            }
+         }
+      }
+   }
+
+   /**
+    * Pass each batch of changes seen by a watcher on to be indexed, until interrupted or the watcher is closed.
+    *
+    * @param watcher the watcher
+    * @param batches where batches are indexed from
+    */
+   private static void forward(final MarkdownWatcher watcher, final BlockingQueue<ChangeBatch> batches) {
+      try {
+         while (!Thread.currentThread().isInterrupted()) {
+            batches.put(watcher.take());
+         }
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+}
@@ -1,8 +1,16 @@
 package org.rmb.md.indexer.config;
 
 import lombok.Data;
+import org.rmb.md.indexer.output.OutputFormat;
+import org.rmb.md.indexer.shortcut.AnchorStyle;
+import org.rmb.md.indexer.shortcut.ShortcutFactory;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @ConfigurationProperties(prefix = "application")
 @Data
 public class ApplicationProperties {
@@ -12,6 +20,26 @@ public class ApplicationProperties {
     */
    private String pathToMarkdownFiles;
 
+   /**
+    * Rules for the markdown files that are indexed, as globs or, with a <code>regex:</code> prefix, regular
+    * expressions, matched against the path relative to {@link #pathToMarkdownFiles} with <code>/</code> between
+    * names - see {@link org.rmb.md.indexer.source.PathRules}.
+    */
+   private List<String> include = new ArrayList<>(List.of(
+         "**/cheat_**.md",
+         "**/project-tech-tips/**.md"));
+
+   /**
+    * Rules for markdown files that are not indexed even though they match {@link #include}. Folders matching a rule
+    * are not entered at all.
+    */
+   private List<String> exclude = new ArrayList<>(List.of(
+         "**/{_index,_footer}.md",
+         "**java.md",
+         "**yml.md",
+         "**.history**",
+         "**/current-issue/**"));
+
    /**
     * File containing replacement sequence to apply to each markdown path found.
     */
@@ -37,4 +65,172 @@ public class ApplicationProperties {
     */
    private String webappBaseUrl;
 
+   /**
+    * Start of the file name of each shortcut, before <code> - </code>. Files in {@link #pathToUrls} that start with
+    * some other prefix are left alone.
+    */
+   private String filePrefix = ShortcutFactory.DEFAULT_FILE_PREFIX;
+
+   /**
+    * Source roots to index together, by name. If there are none, {@link #pathToMarkdownFiles} is the only root, with
+    * the settings above.
+    */
+   private Map<String, SourceRootProperties> roots = new LinkedHashMap<>();
+
+   /**
+    * How shortcuts are written: a <code>.url</code> file each, or one catalog of them all.
+    */
+   private OutputFormat outputFormat = OutputFormat.URL_FILES;
+
+   /**
+    * How headings are turned into the anchors at the end of their URLs.
+    */
+   private AnchorStyle headingAnchors = AnchorStyle.HUGO;
+
+   /**
+    * Path to the catalog written by catalog output formats. If blank, a file named for the format inside the
+    * {@link #pathToUrls} folder is used.
+    */
+   private String pathToCatalog;
+
+   /**
+    * Path to a JSON file describing the last run: how long each stage took and how many files and headings it dealt
+    * with. Written after every run, replacing the last one. If blank, no report is written; the same figures are
+    * logged either way.
+    */
+   private String pathToRunReport;
+
+   /**
+    * Profile every replacement of the three replacement sequences: how often it is applied and changes something, how
+    * long it takes, and its slowest input. Logged per sequence at the end of each run. Replacements are not merged
+    * while profiling, so runs are slower.
+    */
+   private boolean profileReplacements;
+
+   /**
+    * Longest time, in milliseconds, one regular expression of a replacement sequence may take on one input before it
+    * is abandoned and the replacement skipped for that input. 0 for no limit.
+    */
+   private long ruleBudgetMillis = 100;
+
+   /**
+    * Most results each replacement sequence keeps, so that an input seen again, such as a common heading, is not
+    * worked out again. 0 for no cache. Ignored while profiling replacements.
+    */
+   private int replacementCacheSize;
+
+   /**
+    * Also write a search index of every shortcut's title and URL, which <code>--search=words</code> queries.
+    */
+   private boolean searchIndex;
+
+   /**
+    * Path to the search index. If blank, <code>.markdown-indexer-search</code> inside
+    * <code>application.path-to-urls</code> is used.
+    */
+   private String pathToSearchIndex;
+
+   /**
+    * Most results <code>--search=words</code> prints.
+    */
+   private int searchResults = 20;
+
+   /**
+    * Also write a full-text index of the text under each heading, which <code>--search-text=words</code> queries.
+    */
+   private boolean textIndex;
+
+   /**
+    * Folder holding the full-text index. If blank, <code>.markdown-indexer-text</code> inside
+    * <code>application.path-to-urls</code> is used.
+    */
+   private String pathToTextIndex;
+
+   /**
+    * Only re-index markdown files that changed since the last run, as recorded in a manifest.
+    */
+   private boolean incremental;
+
+   /**
+    * Path to the manifest used by incremental runs. If blank, <code>.markdown-indexer-manifest</code> inside the
+    * {@link #pathToUrls} folder is used.
+    */
+   private String pathToManifest;
+
+   /**
+    * In incremental runs, ask git which markdown files changed since the last run rather than walking the markdown
+    * folders. Falls back to a walk whenever git cannot say.
+    */
+   private boolean gitChanges;
+
+   /**
+    * In incremental runs, index the most recently modified markdown files first and publish their shortcuts as soon as
+    * they are made, before the rest are indexed.
+    */
+   private boolean recentFirst;
+
+   /**
+    * With {@link #recentFirst}, stop handing on markdown files after this many seconds and leave the manifest as a
+    * checkpoint the next run continues from. Zero or less means no budget.
+    */
+   private int timeBudgetSeconds;
+
+   /**
+    * Keep running after the first run, watching the markdown folder and re-indexing files as they change. Also
+    * switched on by the <code>--watch</code> command line argument. Watching implies {@link #incremental}.
+    */
+   private boolean watch;
+
+   /**
+    * When watching, how long the markdown folder must be quiet, in milliseconds, before a batch of changes is
+    * indexed.
+    */
+   private long watchDebounceMillis = 500;
+
+   /**
+    * Index concurrently: discovery, reading, shortcut creation and writing each run on their own threads.
+    */
+   private boolean concurrent;
+
+   /**
+    * Capacity of each queue between stages when indexing concurrently.
+    */
+   private int queueCapacity = 256;
+
+   /**
+    * Number of threads reading markdown files when indexing concurrently.
+    */
+   private int readWorkers = 2;
+
+   /**
+    * Number of threads applying replacement sequences when indexing concurrently.
+    */
+   private int computeWorkers = Runtime.getRuntime().availableProcessors();
+
+   /**
+    * Number of threads writing URL files when indexing concurrently.
+    */
+   private int writeWorkers = 4;
+
+   /**
+    * Most shortcut files waiting to be written before whoever is asking for more has to wait.
+    */
+   private int writeQueueCapacity = 1024;
+
+   /**
+    * Most shortcut files a writer thread writes as one batch; failures are reported once per batch.
+    */
+   private int writeBatchSize = 64;
+
+   /**
+    * Folder where shards, run with <code>--shard=index/count</code> or <code>--shards=count</code>, stage their results
+    * until they are merged. If blank, <code>.markdown-indexer-shards</code> inside {@link #pathToUrls} is used.
+    */
+   private String pathToShards;
+
+   /**
+    * With <code>--shards=count</code>, most times the process of any one shard is run before giving up.
+    */
+   private int shardAttempts = 2;
+
 }
@@ -0,0 +1,467 @@
+package org.rmb.md.indexer.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Loads {@link ApplicationProperties} from the same files Spring Boot would, without starting an application context.
+ * <p>
+ * <code>application.properties</code> is read, then <code>application-{profile}.properties</code> for each active
+ * profile. Each is looked for on the classpath, in the classpath's <code>config</code> folder, in the working folder
+ * and in its <code>config</code> folder, and the later ones override the earlier ones. Java system properties override
+ * the files, and <code>--name=value</code> command line arguments override everything. Profiles are taken from
+ * <code>spring.profiles.active</code>, wherever it is set, or the <code>SPRING_PROFILES_ACTIVE</code> environment
+ * variable; no other environment variables are read.
+ * <p>
+ * Names are bound as loosely as Spring binds them: <code>path-to-urls</code>, <code>pathToUrls</code> and
+ * <code>path_to_urls</code> are the same property. Lists can be given item by item, as <code>include[0]</code>,
+ * <code>include[1]</code> and so on, or comma separated, and a list given by one source replaces the whole list from
+ * the sources it overrides. <code>${name}</code> and <code>${name:default}</code> placeholders are replaced.
+ * Source roots are bound from <code>application.roots.{name}.{property}</code>, with the root name as written.
+ */
+@Slf4j
+public final class ApplicationPropertiesLoader {
+
+   /**
+    * Prefix of the properties bound to {@link ApplicationProperties}.
+    */
+   public static final String PREFIX = "application.";
+
+   /**
+    * Property listing the active profiles, comma separated.
+    */
+   static final String PROFILES_PROPERTY = "spring.profiles.active";
+
+   /**
+    * Environment variable listing the active profiles, if the property is not set.
+    */
+   static final String PROFILES_VARIABLE = "SPRING_PROFILES_ACTIVE";
+
+   /**
+    * Matches a list item, such as <code>include[0]</code>.
+    */
+   private static final Pattern LIST_ITEM = Pattern.compile("(.+)\\[(\\d+)]");
+
+   /**
+    * Matches a property of a source root, such as <code>roots.docs.path-to-markdown-files</code>: the root name, then
+    * the property.
+    */
+   private static final Pattern ROOT_PROPERTY = Pattern.compile("(?i)roots\\.([^.\\[]+)\\.(.+)");
+
+   /**
+    * Matches a placeholder, with an optional default after the first colon.
+    */
+   private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([^}:]+)(?::([^}]*))?}");
+
+   /**
+    * Class loader the classpath files are read with.
+    */
+   private final ClassLoader classLoader;
+
+   /**
+    * Folder the non-classpath files are read from.
+    */
+   private final Path workingFolder;
+
+   /**
+    * Java system properties.
+    */
+   private final Properties systemProperties;
+
+   /**
+    * Environment variables.
+    */
+   private final Map<String, String> environment;
+
+   /**
+    * Create a loader for somewhere other than this JVM's classpath, working folder and environment.
+    *
+    * @param classLoader      class loader the classpath files are read with
+    * @param workingFolder    folder the other files are read from
+    * @param systemProperties Java system properties
+    * @param environment      environment variables
+    */
+   public ApplicationPropertiesLoader(final ClassLoader classLoader, final Path workingFolder,
+                                      final Properties systemProperties, final Map<String, String> environment) {
+      this.classLoader = classLoader;
+      this.workingFolder = workingFolder;
+      this.systemProperties = systemProperties;
+      this.environment = environment;
+   }
+
+   /**
+    * Load the application properties for this JVM.
+    *
+    * @param args command line arguments
+    *
+    * @return the properties
+    *
+    * @throws IOException              if a properties file cannot be read
+    * @throws IllegalArgumentException if a property has a value that cannot be bound
+    */
+   public static ApplicationProperties load(final String... args) throws IOException {
+      return new ApplicationPropertiesLoader(ApplicationPropertiesLoader.class.getClassLoader(), Path.of(""),
+            System.getProperties(), System.getenv()).loadProperties(args);
+   }
+
+   /**
+    * Load the application properties.
+    *
+    * @param args command line arguments
+    *
+    * @return the properties
+    *
+    * @throws IOException              if a properties file cannot be read
+    * @throws IllegalArgumentException if a property has a value that cannot be bound
+    */
+   public ApplicationProperties loadProperties(final String... args) throws IOException {
+      final var overrides = new LinkedHashMap<String, String>();
+      merge(overrides, systemProperties.stringPropertyNames().stream()
+            .collect(Collectors.toMap(name -> name, systemProperties::getProperty)));
+      merge(overrides, arguments(args));
+
+      final var properties = new LinkedHashMap<String, String>();
+      read("application", properties);
+      final var profiles = activeProfiles(properties, overrides);
+      for (String profile : profiles) {
+         read("application-" + profile, properties);
+      }
+      merge(properties, overrides);
+      log.debug("Loaded application properties for profiles {}.", profiles);
+      return bind(properties);
+   }
+
+   /**
+    * Bind properties to a new {@link ApplicationProperties}. Only those starting with {@link #PREFIX} are bound; the
+    * rest are only used to replace placeholders. Properties that are not recognised are logged and ignored.
+    *
+    * @param properties the properties
+    *
+    * @return the bound properties, with defaults for anything not given
+    *
+    * @throws IllegalArgumentException if a property has a value that cannot be bound
+    */
+   public static ApplicationProperties bind(final Map<String, String> properties) {
+      final var target = new ApplicationProperties();
+      final var setters = Map.of(
+            ApplicationProperties.class, setters(ApplicationProperties.class),
+            SourceRootProperties.class, setters(SourceRootProperties.class));
+      // List items of each object bound, keyed by canonical list name, then by index.
+      final var lists = new IdentityHashMap<Object, TreeMap<String, TreeMap<Integer, String>>>();
+      for (Map.Entry<String, String> property : new TreeMap<>(properties).entrySet()) {
+         if (!property.getKey().startsWith(PREFIX)) {
+            continue;
+         }
+         var name = property.getKey().substring(PREFIX.length());
+         final var value = resolve(property.getValue(), properties, new HashSet<>(Set.of(property.getKey())));
+         Object bean = target;
+         final var root = ROOT_PROPERTY.matcher(name);
+         if (root.matches()) {
+            bean = target.getRoots().computeIfAbsent(root.group(1), key -> new SourceRootProperties());
+            name = root.group(2);
+         }
+         final var item = LIST_ITEM.matcher(name);
+         if (item.matches()) {
+            lists.computeIfAbsent(bean, key -> new TreeMap<>())
+                  .computeIfAbsent(canonical(item.group(1)), list -> new TreeMap<>())
+                  .put(Integer.parseInt(item.group(2)), value);
+            continue;
+         }
+         final var setter = setters.get(bean.getClass()).get(canonical(name));
+         if (setter == null) {
+            log.warn("Ignoring unknown property {}.", property.getKey());
+            continue;
+         }
+         set(bean, setter, property.getKey(), convert(property.getKey(), value, setter));
+      }
+      lists.forEach((bean, beanLists) -> beanLists.forEach((name, items) -> {
+         final var setter = setters.get(bean.getClass()).get(name);
+         if (setter == null || !isListOfStrings(setter)) {
+            log.warn("Ignoring unknown list property {} of {}.", name, bean.getClass().getSimpleName());
+            return;
+         }
+         set(bean, setter, name, new ArrayList<>(items.values()));
+      }));
+      return target;
+   }
+
+   /**
+    * Read a properties file from each location, later ones overriding earlier ones.
+    *
+    * @param baseName   file name without <code>.properties</code>
+    * @param properties receives the properties
+    *
+    * @throws IOException if a file exists but cannot be read
+    */
+   private void read(final String baseName, final Map<String, String> properties) throws IOException {
+      final var fileName = baseName + ".properties";
+      for (String resource : List.of(fileName, "config/" + fileName)) {
+         final var url = classLoader.getResource(resource);
+         if (url != null) {
+            try (InputStream in = url.openStream()) {
+               merge(properties, load(in));
+            }
+         }
+      }
+      for (Path file : List.of(workingFolder.resolve(fileName), workingFolder.resolve("config").resolve(fileName))) {
+         if (Files.isRegularFile(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+               merge(properties, load(in));
+            }
+         }
+      }
+   }
+
+   /**
+    * Load a properties file, in ISO 8859-1 as Spring reads them.
+    *
+    * @param in the file
+    *
+    * @return its properties
+    *
+    * @throws IOException if it cannot be read
+    */
+   private static Map<String, String> load(final InputStream in) throws IOException {
+      final var properties = new Properties();
+      properties.load(in);
+      return properties.stringPropertyNames().stream()
+            .collect(Collectors.toMap(name -> name, properties::getProperty));
+   }
+
+   /**
+    * Override properties with those from another source, however their names are written. A list in the other
+    * source replaces the whole list, so items are never mixed from two sources.
+    *
+    * @param properties properties to override
+    * @param overrides  properties from the other source
+    */
+   static void merge(final Map<String, String> properties, final Map<String, String> overrides) {
+      final var names = overrides.keySet().stream()
+            .map(name -> canonical(withoutIndex(name)))
+            .collect(Collectors.toSet());
+      properties.keySet().removeIf(name -> names.contains(canonical(withoutIndex(name))));
+      properties.putAll(overrides);
+   }
+
+   /**
+    * Properties given on the command line as <code>--name=value</code>. Other arguments are left to the application.
+    *
+    * @param args command line arguments
+    *
+    * @return the properties
+    */
+   private static Map<String, String> arguments(final String... args) {
+      final var properties = new LinkedHashMap<String, String>();
+      for (String arg : args) {
+         final var equals = arg.indexOf('=');
+         if (arg.startsWith("--") && equals > 2) {
+            properties.put(arg.substring(2, equals), arg.substring(equals + 1));
+         }
+      }
+      return properties;
+   }
+
+   /**
+    * The active profiles, from the overrides, the environment or the files, in that order of preference.
+    *
+    * @param properties properties read from files so far
+    * @param overrides  system properties and command line arguments
+    *
+    * @return profiles, in the order their files are read
+    */
+   private List<String> activeProfiles(final Map<String, String> properties, final Map<String, String> overrides) {
+      var profiles = overrides.get(PROFILES_PROPERTY);
+      if (profiles == null) {
+         profiles = environment.get(PROFILES_VARIABLE);
+      }
+      if (profiles == null) {
+         profiles = properties.get(PROFILES_PROPERTY);
+      }
+      return profiles == null ? List.of() : splitList(profiles);
+   }
+
+   /**
+    * Replace placeholders in a value.
+    *
+    * @param value      the value
+    * @param properties properties placeholders refer to
+    * @param resolving  names being resolved, to catch placeholders that refer to themselves
+    *
+    * @return the value with placeholders replaced
+    *
+    * @throws IllegalArgumentException if a placeholder has no value and no default, or refers to itself
+    */
+   private static String resolve(final String value, final Map<String, String> properties,
+                                 final Set<String> resolving) {
+      final var placeholder = PLACEHOLDER.matcher(value);
+      final var resolved = new StringBuilder();
+      while (placeholder.find()) {
+         final var name = placeholder.group(1).trim();
+         var replacement = properties.get(name);
+         if (replacement == null) {
+            replacement = placeholder.group(2);
+            if (replacement == null) {
+               throw new IllegalArgumentException("Could not resolve placeholder ${" + name + "}.");
+            }
+         } else {
+            if (!resolving.add(name)) {
+               throw new IllegalArgumentException("Placeholder ${" + name + "} refers to itself.");
+            }
+            replacement = resolve(replacement, properties, resolving);
+            resolving.remove(name);
+         }
+         placeholder.appendReplacement(resolved, Matcher.quoteReplacement(replacement));
+      }
+      placeholder.appendTail(resolved);
+      return resolved.toString();
+   }
+
+   /**
+    * Convert a value to the type a setter takes.
+    *
+    * @param name   property name, for errors
+    * @param value  the value
+    * @param setter the setter
+    *
+    * @return the converted value
+    *
+    * @throws IllegalArgumentException if the value cannot be converted
+    */
+   private static Object convert(final String name, final String value, final Method setter) {
+      final var type = setter.getParameterTypes()[0];
+      try {
+         if (String.class.equals(type)) {
+            return value;
+         } else if (boolean.class.equals(type) || Boolean.class.equals(type)) {
+            if (!value.trim().equalsIgnoreCase("true") && !value.trim().equalsIgnoreCase("false")) {
+               throw new IllegalArgumentException("not true or false");
+            }
+            return Boolean.parseBoolean(value.trim());
+         } else if (int.class.equals(type) || Integer.class.equals(type)) {
+            return Integer.parseInt(value.trim());
+         } else if (long.class.equals(type) || Long.class.equals(type)) {
+            return Long.parseLong(value.trim());
+         } else if (type.isEnum()) {
+            return Arrays.stream(type.getEnumConstants())
+                  .filter(constant -> canonical(((Enum<?>) constant).name()).equals(canonical(value.trim())))
+                  .findFirst()
+                  .orElseThrow(() -> new IllegalArgumentException("not one of "
+                        + Arrays.toString(type.getEnumConstants())));
+         } else if (List.class.equals(type) && isListOfStrings(setter)) {
+            return new ArrayList<>(splitList(value));
+         }
+      } catch (IllegalArgumentException e) {
+         throw new IllegalArgumentException("Invalid value for " + name + ": '" + value + "' (" + e.getMessage()
+               + ").", e);
+      }
+      throw new IllegalArgumentException("Cannot bind " + name + " to " + setter.getGenericParameterTypes()[0]
+            + ".");
+   }
+
+   /**
+    * Does a setter take a list of strings?
+    *
+    * @param setter the setter
+    *
+    * @return true if it does
+    */
+   private static boolean isListOfStrings(final Method setter) {
+      final var type = setter.getGenericParameterTypes()[0];
+      return type instanceof ParameterizedType
+            && String.class.equals(((ParameterizedType) type).getActualTypeArguments()[0]);
+   }
+
+   /**
+    * Call a setter.
+    *
+    * @param target the properties, or source root properties, being bound
+    * @param setter the setter
+    * @param name   property name, for errors
+    * @param value  the converted value
+    */
+   private static void set(final Object target, final Method setter, final String name,
+                           final Object value) {
+      try {
+         setter.invoke(target, value);
+      } catch (IllegalAccessException | InvocationTargetException e) {
+         throw new IllegalArgumentException("Failed to set " + name + ".", e);
+      }
+   }
+
+   /**
+    * The setters of a properties class, keyed by canonical property name.
+    *
+    * @param type {@link ApplicationProperties} or {@link SourceRootProperties}
+    *
+    * @return the setters
+    */
+   private static Map<String, Method> setters(final Class<?> type) {
+      final var setters = new HashMap<String, Method>();
+      for (Method method : type.getMethods()) {
+         if (method.getName().startsWith("set") && method.getParameterCount() == 1) {
+            setters.put(canonical(method.getName().substring(3)), method);
+         }
+      }
+      return setters;
+   }
+
+   /**
+    * A name with case, dashes and underscores removed, so differently written names of a property compare equal.
+    *
+    * @param name the name
+    *
+    * @return the canonical name
+    */
+   private static String canonical(final String name) {
+      return name.replace("-", "").replace("_", "").toLowerCase(Locale.ROOT);
+   }
+
+   /**
+    * A property name without any list index.
+    *
+    * @param name the name, such as <code>application.include[1]</code>
+    *
+    * @return the name of the list, such as <code>application.include</code>, or the name if it has no index
+    */
+   private static String withoutIndex(final String name) {
+      final var item = LIST_ITEM.matcher(name);
+      return item.matches() ? item.group(1) : name;
+   }
+
+   /**
+    * Split a comma separated list, trimming items and dropping empty ones.
+    *
+    * @param value the list
+    *
+    * @return the items
+    */
+   private static List<String> splitList(final String value) {
+      return Arrays.stream(value.split(","))
+            .map(String::trim)
+            .filter(item -> !item.isEmpty())
+            .collect(Collectors.toList());
+   }
+
+}
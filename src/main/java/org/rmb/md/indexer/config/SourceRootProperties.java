@@ -0,0 +1,54 @@
+package org.rmb.md.indexer.config;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Settings for one named source root, such as one Hugo site, under <code>application.roots.{name}</code>. Anything
+ * left out is taken from the {@link ApplicationProperties} setting of the same name.
+ */
+@Data
+public class SourceRootProperties {
+
+   /**
+    * Path to folder containing the markdown files of this root.
+    */
+   private String pathToMarkdownFiles;
+
+   /**
+    * Base URL for the webapp that serves this root's markdown files.
+    */
+   private String webappBaseUrl;
+
+   /**
+    * Start of the file name of each of this root's shortcuts, before <code> - </code>.
+    */
+   private String filePrefix;
+
+   /**
+    * File containing replacement sequence to apply to each markdown path found in this root.
+    */
+   private String pathToMarkdownFileReplacementSequence;
+
+   /**
+    * File containing replacement sequence to apply to each markdown URL output for this root.
+    */
+   private String pathToMarkdownUrlReplacementSequence;
+
+   /**
+    * File containing replacement sequence to apply to each markdown heading found in this root.
+    */
+   private String pathToMarkdownHeadingReplacementSequence;
+
+   /**
+    * Rules for the markdown files of this root that are indexed.
+    */
+   private List<String> include;
+
+   /**
+    * Rules for markdown files of this root that are not indexed even though they match {@link #include}.
+    */
+   private List<String> exclude;
+
+}
@@ -0,0 +1,15 @@
+package org.rmb.md.indexer.manifest;
+
+import java.util.List;
+
+/**
+ * Where a git repository was when a folder of markdown files was last indexed. Every file in the folder was indexed
+ * as it is in <code>commit</code>, apart from the <code>uncommitted</code> files, which were indexed as they were in
+ * the working tree.
+ *
+ * @param commit      the commit checked out
+ * @param uncommitted paths, relative to the folder and separated by <code>/</code>, of files that were added,
+ *                    changed or deleted in the working tree but not committed, including untracked files
+ */
+public record GitCheckpoint(String commit, List<String> uncommitted) {
+}
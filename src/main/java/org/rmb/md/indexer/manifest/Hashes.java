@@ -0,0 +1,81 @@
+package org.rmb.md.indexer.manifest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashing used to tell whether files or configuration changed between runs.
+ */
+public final class Hashes {
+
+   /**
+    * Hex digits used to print a hash.
+    */
+   private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+   /**
+    * Utility class - no instances.
+    */
+   private Hashes() {
+   }
+
+   /**
+    * SHA-256 hash of some bytes.
+    *
+    * @param bytes the bytes to hash
+    *
+    * @return lower case hex string
+    */
+   public static String sha256(final byte[] bytes) {
+      return toHex(newDigest().digest(bytes));
+   }
+
+   /**
+    * SHA-256 hash of a list of strings. Each string is followed by a zero character so that <code>("ab", "c")</code>
+    * and <code>("a", "bc")</code> hash differently.
+    *
+    * @param values the strings to hash; nulls are treated as empty strings
+    *
+    * @return lower case hex string
+    */
+   public static String sha256(final String... values) {
+      final var digest = newDigest();
+      for (String value : values) {
+         if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+         }
+         digest.update((byte) 0);
+      }
+      return toHex(digest.digest());
+   }
+
+   /**
+    * Create a SHA-256 message digest, for hashing content that is read a piece at a time.
+    *
+    * @return a new digest
+    */
+   public static MessageDigest newDigest() {
+      try {
+         return MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+         throw new IllegalStateException("SHA-256 is required to be supported by every JVM.", e);
+      }
+   }
+
+   /**
+    * Print bytes as hex, e.g. the result of {@link MessageDigest#digest()}.
+    *
+    * @param bytes the bytes
+    *
+    * @return lower case hex string
+    */
+   public static String toHex(final byte[] bytes) {
+      final var hex = new StringBuilder(bytes.length * 2);
+      for (byte b : bytes) {
+         hex.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+      }
+      return hex.toString();
+   }
+
+}
@@ -0,0 +1,442 @@
+package org.rmb.md.indexer.manifest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rmb.md.indexer.output.AtomicFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Record of what the last run indexed: for every markdown file, its size, modified time, content hash, heading lines
+ * and the <code>.url</code> files created for it. Also records a fingerprint of the source roots, so that adding or
+ * moving one forces a full rebuild; a fingerprint of each configuration input of each root, so that changing one only
+ * means working out shortcuts again from the recorded headings; and, when changes are found with git, the
+ * {@link GitCheckpoint} of each folder of markdown files. A run that ran out of time marks its manifest partial:
+ * files it did not get to are not in it, or have the entries of an earlier run.
+ * <p>
+ * Stored as a UTF-8 text file: a few <code>key=value</code> header lines followed by one tab separated line per
+ * folder checkpoint and per markdown file. Tabs, new lines and backslashes inside values are escaped with a
+ * backslash.
+ */
+@Slf4j
+public final class Manifest {
+
+   /**
+    * Version of the file format. A manifest with any other version is ignored.
+    */
+   static final int VERSION = 2;
+
+   /**
+    * Header key for the format version.
+    */
+   private static final String KEY_VERSION = "version=";
+
+   /**
+    * Header key for the configuration fingerprint.
+    */
+   private static final String KEY_FINGERPRINT = "fingerprint=";
+
+   /**
+    * Header key saying whether the run stopped before indexing every file.
+    */
+   private static final String KEY_PARTIAL = "partial=";
+
+   /**
+    * Prefix for a line describing one markdown file.
+    */
+   private static final String PREFIX_FILE = "file\t";
+
+   /**
+    * Prefix for a line describing one configuration input of one source root.
+    */
+   private static final String PREFIX_INPUT = "input\t";
+
+   /**
+    * Prefix for a line describing the git checkpoint of one folder.
+    */
+   private static final String PREFIX_GIT = "git\t";
+
+   /**
+    * Fingerprint of the configuration the outputs were created with.
+    */
+   private final String fingerprint;
+
+   /**
+    * Entries keyed by absolute path of the markdown file.
+    */
+   private final Map<String, ManifestEntry> entries = new TreeMap<>();
+
+   /**
+    * Fingerprint of each configuration input keyed by input name, keyed by source root name.
+    */
+   private final Map<String, Map<String, String>> inputs = new TreeMap<>();
+
+   /**
+    * Git checkpoints keyed by absolute path of the folder of markdown files.
+    */
+   private final Map<String, GitCheckpoint> checkpoints = new TreeMap<>();
+
+   /**
+    * Did the run stop before indexing every file?
+    */
+   private boolean partial;
+
+   /**
+    * Create an empty manifest.
+    *
+    * @param fingerprint fingerprint of the configuration the outputs are created with
+    */
+   public Manifest(final String fingerprint) {
+      this.fingerprint = fingerprint;
+   }
+
+   /**
+    * Fingerprint of the configuration the outputs were created with.
+    *
+    * @return the fingerprint
+    */
+   public String getFingerprint() {
+      return fingerprint;
+   }
+
+   /**
+    * Look up the entry for a markdown file.
+    *
+    * @param source absolute path of the markdown file
+    *
+    * @return the entry, or empty if the file was not indexed
+    */
+   public Optional<ManifestEntry> get(final String source) {
+      return Optional.ofNullable(entries.get(source));
+   }
+
+   /**
+    * Record an entry for a markdown file, replacing any existing entry.
+    *
+    * @param source absolute path of the markdown file
+    * @param entry  what was indexed
+    */
+   public void put(final String source, final ManifestEntry entry) {
+      entries.put(source, entry);
+   }
+
+   /**
+    * Remove the entry for a markdown file.
+    *
+    * @param source absolute path of the markdown file
+    *
+    * @return the entry removed, or empty if there was none
+    */
+   public Optional<ManifestEntry> remove(final String source) {
+      return Optional.ofNullable(entries.remove(source));
+   }
+
+   /**
+    * All entries.
+    *
+    * @return unmodifiable view of entries keyed by absolute path of the markdown file
+    */
+   public Map<String, ManifestEntry> getEntries() {
+      return Collections.unmodifiableMap(entries);
+   }
+
+   /**
+    * Every output file name recorded by any entry.
+    *
+    * @return set of <code>.url</code> file names
+    */
+   public Set<String> allOutputs() {
+      final var outputs = new TreeSet<String>();
+      entries.values().forEach(entry -> outputs.addAll(entry.outputs()));
+      return outputs;
+   }
+
+   /**
+    * Fingerprints of the configuration inputs the outputs of a source root were created with.
+    *
+    * @param root name of the source root
+    *
+    * @return fingerprint keyed by input name; empty if the root is not recorded
+    */
+   public Map<String, String> getInputs(final String root) {
+      return Collections.unmodifiableMap(inputs.getOrDefault(root, Map.of()));
+   }
+
+   /**
+    * Record the configuration inputs the outputs of a source root were created with.
+    *
+    * @param root       name of the source root
+    * @param rootInputs fingerprint keyed by input name
+    */
+   public void setInputs(final String root, final Map<String, String> rootInputs) {
+      inputs.put(root, new TreeMap<>(rootInputs));
+   }
+
+   /**
+    * Look up the git checkpoint of a folder of markdown files.
+    *
+    * @param folder absolute path of the folder
+    *
+    * @return the checkpoint, or empty if the folder was not indexed from git
+    */
+   public Optional<GitCheckpoint> getCheckpoint(final String folder) {
+      return Optional.ofNullable(checkpoints.get(folder));
+   }
+
+   /**
+    * Replace every git checkpoint. A manifest written after indexing changes some other way must have none, since
+    * git no longer knows what was indexed.
+    *
+    * @param newCheckpoints checkpoints keyed by absolute path of the folder of markdown files
+    */
+   public void setCheckpoints(final Map<String, GitCheckpoint> newCheckpoints) {
+      checkpoints.clear();
+      checkpoints.putAll(newCheckpoints);
+   }
+
+   /**
+    * Did the run stop before indexing every file? If so, output of files it did not get to may be left over from
+    * earlier runs without being in the manifest.
+    *
+    * @return true if the run stopped early
+    */
+   public boolean isPartial() {
+      return partial;
+   }
+
+   /**
+    * Say whether the run stopped before indexing every file.
+    *
+    * @param partial true if the run stopped early
+    */
+   public void setPartial(final boolean partial) {
+      this.partial = partial;
+   }
+
+   /**
+    * Read a manifest.
+    *
+    * @param path the manifest file
+    *
+    * @return the manifest, or empty if there is none or it cannot be used
+    */
+   public static Optional<Manifest> read(final Path path) {
+      if (!Files.exists(path)) {
+         log.debug("No manifest at {}", path);
+         return Optional.empty();
+      }
+      try {
+         return Optional.of(parse(Files.readAllLines(path, StandardCharsets.UTF_8)));
+      } catch (IOException | IllegalArgumentException e) {
+         log.warn("Ignoring manifest that cannot be read: {}", path, e);
+         return Optional.empty();
+      }
+   }
+
+   /**
+    * Write this manifest. It is written through {@link AtomicFile}, so a run that dies half way never leaves a
+    * truncated manifest behind.
+    *
+    * @param path the manifest file
+    *
+    * @throws IOException if the manifest cannot be written
+    */
+   public void write(final Path path) throws IOException {
+      AtomicFile.write(path, writer -> {
+         writer.write("# Markdown Indexer manifest - generated, do not edit.\n");
+         writer.write(KEY_VERSION + VERSION + "\n");
+         writer.write(KEY_FINGERPRINT + fingerprint + "\n");
+         if (partial) {
+            writer.write(KEY_PARTIAL + true + "\n");
+         }
+         for (Map.Entry<String, Map<String, String>> root : inputs.entrySet()) {
+            for (Map.Entry<String, String> input : root.getValue().entrySet()) {
+               writer.write(PREFIX_INPUT + escape(root.getKey()) + '\t' + escape(input.getKey()) + '\t'
+                     + input.getValue() + '\n');
+            }
+         }
+         for (Map.Entry<String, GitCheckpoint> checkpoint : checkpoints.entrySet()) {
+            writer.write(format(checkpoint.getKey(), checkpoint.getValue()));
+            writer.write('\n');
+         }
+         for (Map.Entry<String, ManifestEntry> entry : entries.entrySet()) {
+            writer.write(format(entry.getKey(), entry.getValue()));
+            writer.write('\n');
+         }
+      });
+   }
+
+   /**
+    * Parse the lines of a manifest file.
+    *
+    * @param lines lines of the file
+    *
+    * @return the manifest
+    *
+    * @throws IllegalArgumentException if the lines are not a manifest of the current version
+    */
+   static Manifest parse(final List<String> lines) {
+      String version = null;
+      String fingerprint = null;
+      var partial = false;
+      final var fileLines = new ArrayList<String>();
+      final var gitLines = new ArrayList<String>();
+      final var inputLines = new ArrayList<String>();
+      for (String line : lines) {
+         if (line.startsWith(KEY_VERSION)) {
+            version = line.substring(KEY_VERSION.length());
+         } else if (line.startsWith(KEY_FINGERPRINT)) {
+            fingerprint = line.substring(KEY_FINGERPRINT.length());
+         } else if (line.startsWith(KEY_PARTIAL)) {
+            partial = Boolean.parseBoolean(line.substring(KEY_PARTIAL.length()));
+         } else if (line.startsWith(PREFIX_FILE)) {
+            fileLines.add(line);
+         } else if (line.startsWith(PREFIX_GIT)) {
+            gitLines.add(line);
+         } else if (line.startsWith(PREFIX_INPUT)) {
+            inputLines.add(line);
+         }
+      }
+      if (!String.valueOf(VERSION).equals(version) || fingerprint == null) {
+         throw new IllegalArgumentException("Unsupported manifest version [" + version + "].");
+      }
+      final var manifest = new Manifest(fingerprint);
+      manifest.setPartial(partial);
+      for (String line : fileLines) {
+         final var fields = line.substring(PREFIX_FILE.length()).split("\t", -1);
+         if (fields.length < 5 || fields.length < 5 + Integer.parseInt(fields[4])) {
+            throw new IllegalArgumentException("Malformed manifest line: " + line);
+         }
+         final var outputCount = Integer.parseInt(fields[4]);
+         final var outputs = new ArrayList<String>(outputCount);
+         for (int index = 5; index < 5 + outputCount; index++) {
+            outputs.add(unescape(fields[index]));
+         }
+         final var headings = new ArrayList<String>();
+         for (int index = 5 + outputCount; index < fields.length; index++) {
+            headings.add(unescape(fields[index]));
+         }
+         manifest.put(unescape(fields[0]), new ManifestEntry(Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+               fields[3], Collections.unmodifiableList(outputs), Collections.unmodifiableList(headings)));
+      }
+      for (String line : inputLines) {
+         final var fields = line.substring(PREFIX_INPUT.length()).split("\t", -1);
+         if (fields.length != 3) {
+            throw new IllegalArgumentException("Malformed manifest line: " + line);
+         }
+         manifest.inputs.computeIfAbsent(unescape(fields[0]), root -> new TreeMap<>())
+               .put(unescape(fields[1]), fields[2]);
+      }
+      for (String line : gitLines) {
+         final var fields = line.substring(PREFIX_GIT.length()).split("\t", -1);
+         if (fields.length < 2) {
+            throw new IllegalArgumentException("Malformed manifest line: " + line);
+         }
+         final var uncommitted = new ArrayList<String>();
+         for (int index = 2; index < fields.length; index++) {
+            uncommitted.add(unescape(fields[index]));
+         }
+         manifest.checkpoints.put(unescape(fields[0]),
+               new GitCheckpoint(fields[1], Collections.unmodifiableList(uncommitted)));
+      }
+      return manifest;
+   }
+
+   /**
+    * Format one entry as a line of the manifest file.
+    *
+    * @param source absolute path of the markdown file
+    * @param entry  the entry
+    *
+    * @return line without a line terminator
+    */
+   private static String format(final String source, final ManifestEntry entry) {
+      final var line = new StringBuilder(PREFIX_FILE)
+            .append(escape(source)).append('\t')
+            .append(entry.size()).append('\t')
+            .append(entry.lastModified()).append('\t')
+            .append(entry.hash()).append('\t')
+            .append(entry.outputs().size());
+      entry.outputs().forEach(output -> line.append('\t').append(escape(output)));
+      entry.headings().forEach(heading -> line.append('\t').append(escape(heading)));
+      return line.toString();
+   }
+
+   /**
+    * Format a git checkpoint as a line of the manifest file.
+    *
+    * @param folder     absolute path of the folder of markdown files
+    * @param checkpoint the checkpoint
+    *
+    * @return line without a line terminator
+    */
+   private static String format(final String folder, final GitCheckpoint checkpoint) {
+      final var line = new StringBuilder(PREFIX_GIT)
+            .append(escape(folder)).append('\t')
+            .append(checkpoint.commit());
+      checkpoint.uncommitted().forEach(path -> line.append('\t').append(escape(path)));
+      return line.toString();
+   }
+
+   /**
+    * Escape a value so it can be stored in a tab separated line.
+    *
+    * @param value the value
+    *
+    * @return value with backslash, tab, carriage return and new line escaped
+    */
+   private static String escape(final String value) {
+      final var escaped = new StringBuilder(value.length());
+      for (int index = 0; index < value.length(); index++) {
+         final char current = value.charAt(index);
+         switch (current) {
+            case '\\' -> escaped.append("\\\\");
+            case '\t' -> escaped.append("\\t");
+            case '\r' -> escaped.append("\\r");
+            case '\n' -> escaped.append("\\n");
+            default -> escaped.append(current);
+         }
+      }
+      return escaped.toString();
+   }
+
+   /**
+    * Reverse {@link #escape(String)}.
+    *
+    * @param value escaped value
+    *
+    * @return the original value
+    */
+   private static String unescape(final String value) {
+      if (value.indexOf('\\') < 0) {
+         return value;
+      }
+      final var unescaped = new StringBuilder(value.length());
+      for (int index = 0; index < value.length(); index++) {
+         final char current = value.charAt(index);
+         if (current != '\\' || index + 1 == value.length()) {
+            unescaped.append(current);
+            continue;
+         }
+         final char next = value.charAt(++index);
+         unescaped.append(switch (next) {
+            case 't' -> '\t';
+            case 'r' -> '\r';
+            case 'n' -> '\n';
+            default -> next;
+         });
+      }
+      return unescaped.toString();
+   }
+
+}
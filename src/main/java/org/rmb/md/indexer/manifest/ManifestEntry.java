@@ -0,0 +1,53 @@
+package org.rmb.md.indexer.manifest;
+
+import java.util.List;
+
+/**
+ * What the manifest knows about one markdown file from the last run.
+ *
+ * @param size         size of the file in bytes
+ * @param lastModified last modified time of the file, in milliseconds since the epoch
+ * @param hash         hash of the file contents - see {@link Hashes#sha256(byte[])}
+ * @param outputs      names of the <code>.url</code> files created for the markdown file
+ * @param headings     heading lines of the file, so its shortcuts can be worked out again without reading it
+ */
+public record ManifestEntry(long size, long lastModified, String hash, List<String> outputs, List<String> headings) {
+
+   /**
+    * Create an entry without heading lines.
+    *
+    * @param size         size of the file in bytes
+    * @param lastModified last modified time of the file, in milliseconds since the epoch
+    * @param hash         hash of the file contents
+    * @param outputs      names of the <code>.url</code> files created for the markdown file
+    */
+   public ManifestEntry(final long size, final long lastModified, final String hash, final List<String> outputs) {
+      this(size, lastModified, hash, outputs, List.of());
+   }
+
+   /**
+    * Does this entry describe a file with the given size and modified time? If so, the file is assumed unchanged and
+    * there is no need to read it.
+    *
+    * @param otherSize         size of the file now
+    * @param otherLastModified last modified time of the file now
+    *
+    * @return true if both size and modified time are unchanged
+    */
+   public boolean sameStatistics(final long otherSize, final long otherLastModified) {
+      return size == otherSize && lastModified == otherLastModified;
+   }
+
+   /**
+    * Copy of this entry with new file statistics, for a file that was touched but whose content did not change.
+    *
+    * @param newSize         size of the file now
+    * @param newLastModified last modified time of the file now
+    *
+    * @return new entry with the same hash, outputs and headings
+    */
+   public ManifestEntry withStatistics(final long newSize, final long newLastModified) {
+      return new ManifestEntry(newSize, newLastModified, hash, outputs, headings);
+   }
+
+}
@@ -0,0 +1,28 @@
+package org.rmb.md.indexer.markdown;
+
+import java.util.List;
+
+/**
+ * What {@link HeadingScanner} found in a markdown file.
+ *
+ * @param headingLines lines that are markdown headings, in order, outside fenced code blocks
+ * @param sections     text before the first heading, then the text under each heading, so one more than there are
+ *                     headings; empty if text was not collected
+ * @param hash         hash of the whole content - see {@link org.rmb.md.indexer.manifest.Hashes#sha256(byte[])};
+ *                     null if the content was not hashed
+ * @param size         number of bytes scanned
+ */
+public record HeadingScan(List<String> headingLines, List<String> sections, String hash, long size) {
+
+   /**
+    * Create a scan without section text.
+    *
+    * @param headingLines lines that are markdown headings, in order, outside fenced code blocks
+    * @param hash         hash of the whole content, or null if the content was not hashed
+    * @param size         number of bytes scanned
+    */
+   public HeadingScan(final List<String> headingLines, final String hash, final long size) {
+      this(headingLines, List.of(), hash, size);
+   }
+
+}
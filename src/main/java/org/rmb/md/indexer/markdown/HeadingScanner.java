@@ -0,0 +1,463 @@
+package org.rmb.md.indexer.markdown;
+
+import org.rmb.md.indexer.manifest.Hashes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the markdown headings in a file without decoding the rest of it.
+ * <p>
+ * The file is read through one reusable buffer and scanned as bytes. Only lines whose first byte is
+ * <code>#</code> are collected and decoded, and at most {@link #maxHeadingBytes} bytes of each, so memory use does not
+ * depend on the size of the file or the length of its lines. Lines inside fenced code blocks (opened and closed by
+ * <code>```</code> or <code>~~~</code>) are skipped, so <code>#</code> comments in code samples are not mistaken for
+ * headings. The content can be hashed on the way through, for incremental runs.
+ * <p>
+ * The text of each section (everything before the first heading, and everything under each heading up to the next)
+ * can be collected in the same pass, for full-text search. Memory use then grows with the size of the file, so it is
+ * only done when asked for.
+ * <p>
+ * Lines end at <code>\n</code>, <code>\r</code> or <code>\r\n</code>, as for {@link String#lines()}. A scanner holds
+ * its buffers between calls, so it must only be used by one thread at a time.
+ */
+public final class HeadingScanner {
+
+   /**
+    * Default size of the read buffer.
+    */
+   public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+   /**
+    * Default number of bytes kept from each heading line; anything beyond is dropped.
+    */
+   public static final int DEFAULT_MAX_HEADING_BYTES = 4 * 1024;
+
+   /**
+    * Minimum number of backticks or tildes that open or close a fenced code block.
+    */
+   private static final int MIN_FENCE_LENGTH = 3;
+
+   /**
+    * Most spaces allowed in front of a code fence.
+    */
+   private static final int MAX_FENCE_INDENT = 3;
+
+   /**
+    * Read buffer, reused for every file.
+    */
+   private final ByteBuffer buffer;
+
+   /**
+    * Bytes of the heading line being collected.
+    */
+   private final byte[] heading;
+
+   /**
+    * Number of bytes kept from each heading line.
+    */
+   private final int maxHeadingBytes;
+
+   /**
+    * Bytes of the section being collected, when collecting text; reused for every file.
+    */
+   private byte[] text = new byte[0];
+
+   /**
+    * Create a scanner with default buffer sizes.
+    */
+   public HeadingScanner() {
+      this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_HEADING_BYTES);
+   }
+
+   /**
+    * Create a scanner.
+    *
+    * @param bufferSize      size of the read buffer
+    * @param maxHeadingBytes number of bytes kept from each heading line
+    */
+   public HeadingScanner(final int bufferSize, final int maxHeadingBytes) {
+      this.buffer = ByteBuffer.allocate(bufferSize);
+      this.heading = new byte[maxHeadingBytes];
+      this.maxHeadingBytes = maxHeadingBytes;
+   }
+
+   /**
+    * Scan a file.
+    *
+    * @param path        the markdown file
+    * @param hashContent also hash the content?
+    *
+    * @return headings found and, if asked for, hash of the content
+    *
+    * @throws IOException if the file cannot be read
+    */
+   public HeadingScan scan(final Path path, final boolean hashContent) throws IOException {
+      return scan(path, hashContent, false);
+   }
+
+   /**
+    * Scan a file, optionally collecting the text of each section.
+    *
+    * @param path        the markdown file
+    * @param hashContent also hash the content?
+    * @param collectText also collect the text of each section?
+    *
+    * @return headings found and, if asked for, hash of the content and text of each section
+    *
+    * @throws IOException if the file cannot be read
+    */
+   public HeadingScan scan(final Path path, final boolean hashContent, final boolean collectText)
+         throws IOException {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+         return scan(channel, hashContent, collectText);
+      }
+   }
+
+   /**
+    * Scan everything that can be read from a channel. The channel is not closed.
+    *
+    * @param channel     channel to read markdown from
+    * @param hashContent also hash the content?
+    *
+    * @return headings found and, if asked for, hash of the content
+    *
+    * @throws IOException if the channel cannot be read
+    */
+   public HeadingScan scan(final ReadableByteChannel channel, final boolean hashContent) throws IOException {
+      return scan(channel, hashContent, false);
+   }
+
+   /**
+    * Scan everything that can be read from a channel, optionally collecting the text of each section. The channel is
+    * not closed.
+    *
+    * @param channel     channel to read markdown from
+    * @param hashContent also hash the content?
+    * @param collectText also collect the text of each section?
+    *
+    * @return headings found and, if asked for, hash of the content and text of each section
+    *
+    * @throws IOException if the channel cannot be read
+    */
+   public HeadingScan scan(final ReadableByteChannel channel, final boolean hashContent, final boolean collectText)
+         throws IOException {
+      final var digest = hashContent ? Hashes.newDigest() : null;
+      final var state = new State(collectText);
+      final var array = buffer.array();
+      long size = 0;
+      buffer.clear();
+      int read;
+      while ((read = channel.read(buffer)) >= 0) {
+         if (read == 0) {
+            continue;
+         }
+         if (digest != null) {
+            digest.update(array, 0, read);
+         }
+         size += read;
+         state.accept(array, read);
+         buffer.clear();
+      }
+      state.endLine();
+      state.endSection();
+      return new HeadingScan(state.headings, state.sections == null ? List.of() : state.sections,
+            digest == null ? null : Hashes.toHex(digest.digest()), size);
+   }
+
+   /**
+    * What is known about the line being scanned.
+    */
+   private enum LinePart {
+
+      /**
+       * Spaces at the start of the line, which may indent a code fence.
+       */
+      INDENT,
+
+      /**
+       * A run of backticks or tildes that may be a code fence.
+       */
+      FENCE,
+
+      /**
+       * Text after a code fence.
+       */
+      AFTER_FENCE,
+
+      /**
+       * A heading line being collected.
+       */
+      HEADING,
+
+      /**
+       * Any other line, skipped to its end.
+       */
+      OTHER
+   }
+
+   /**
+    * Scanning state for one file.
+    */
+   private final class State {
+
+      /**
+       * Headings found so far.
+       */
+      private final List<String> headings = new ArrayList<>();
+
+      /**
+       * Text of each section finished so far, if collecting text.
+       */
+      private final List<String> sections;
+
+      /**
+       * Bytes of the current section collected so far.
+       */
+      private int textLength;
+
+      /**
+       * What is known about the current line.
+       */
+      private LinePart part = LinePart.INDENT;
+
+      /**
+       * Bytes seen on the current line.
+       */
+      private int column;
+
+      /**
+       * Bytes of the heading collected on the current line.
+       */
+      private int headingLength;
+
+      /**
+       * Character of the fence run on the current line.
+       */
+      private byte runCharacter;
+
+      /**
+       * Length of the fence run on the current line.
+       */
+      private int runLength;
+
+      /**
+       * Is there anything other than white space after the fence run on the current line?
+       */
+      private boolean textAfterRun;
+
+      /**
+       * Was the last byte a carriage return? If so a following line feed is part of the same line terminator.
+       */
+      private boolean afterCarriageReturn;
+
+      /**
+       * Are we inside a fenced code block?
+       */
+      private boolean inFence;
+
+      /**
+       * Character of the fence that opened the current code block.
+       */
+      private byte fenceCharacter;
+
+      /**
+       * Length of the fence that opened the current code block.
+       */
+      private int fenceLength;
+
+      /**
+       * Create the state for one file.
+       *
+       * @param collectText collect the text of each section?
+       */
+      State(final boolean collectText) {
+         this.sections = collectText ? new ArrayList<>() : null;
+      }
+
+      /**
+       * Scan a chunk of bytes. Lines that can no longer be headings or code fences are skipped to their end in a
+       * tight loop, and heading text is copied in bulk.
+       *
+       * @param bytes  the chunk
+       * @param length number of bytes in the chunk
+       */
+      void accept(final byte[] bytes, final int length) {
+         int index = 0;
+         while (index < length) {
+            if (part == LinePart.OTHER || part == LinePart.HEADING) {
+               final int start = index;
+               while (index < length && bytes[index] != '\n' && bytes[index] != '\r') {
+                  index++;
+               }
+               if (part == LinePart.HEADING) {
+                  final int copied = Math.min(index - start, maxHeadingBytes - headingLength);
+                  System.arraycopy(bytes, start, heading, headingLength, copied);
+                  headingLength += copied;
+               } else if (sections != null) {
+                  appendText(bytes, start, index - start);
+               }
+               column += index - start;
+               if (index == length) {
+                  return;
+               }
+            }
+            accept(bytes[index++]);
+         }
+      }
+
+      /**
+       * Scan one byte.
+       *
+       * @param b the byte
+       */
+      private void accept(final byte b) {
+         if (b == '\n' && afterCarriageReturn) {
+            afterCarriageReturn = false;
+            return;
+         }
+         afterCarriageReturn = b == '\r';
+         if (b == '\n' || b == '\r') {
+            endLine();
+            if (sections != null) {
+               appendText((byte) '\n');
+            }
+            return;
+         }
+         if (column++ == 0 && b == '#' && !inFence) {
+            part = LinePart.HEADING;
+            heading[headingLength++] = b;
+            return;
+         }
+         if (sections != null) {
+            appendText(b);
+         }
+         switch (part) {
+            case INDENT -> {
+               if (b == '`' || b == '~') {
+                  part = LinePart.FENCE;
+                  runCharacter = b;
+                  runLength = 1;
+               } else if (b != ' ' || column > MAX_FENCE_INDENT) {
+                  part = LinePart.OTHER;
+               }
+            }
+            case FENCE -> {
+               if (b == runCharacter) {
+                  runLength++;
+               } else {
+                  part = LinePart.AFTER_FENCE;
+                  textAfterRun = !isWhitespace(b);
+               }
+            }
+            case AFTER_FENCE -> textAfterRun |= !isWhitespace(b);
+            default -> {
+               // Headings and other lines are handled a chunk at a time.
+            }
+         }
+      }
+
+      /**
+       * Finish the current line: record a heading, or open or close a code block.
+       */
+      void endLine() {
+         if (part == LinePart.HEADING) {
+            endSection();
+            headings.add(new String(heading, 0, completeCharacters(heading, headingLength), StandardCharsets.UTF_8));
+         } else if ((part == LinePart.FENCE || part == LinePart.AFTER_FENCE) && runLength >= MIN_FENCE_LENGTH) {
+            if (!inFence) {
+               inFence = true;
+               fenceCharacter = runCharacter;
+               fenceLength = runLength;
+            } else if (runCharacter == fenceCharacter && runLength >= fenceLength && !textAfterRun) {
+               inFence = false;
+            }
+         }
+         part = LinePart.INDENT;
+         column = 0;
+         headingLength = 0;
+         runLength = 0;
+         textAfterRun = false;
+      }
+
+      /**
+       * Finish the current section, if collecting text: at a heading, or at the end of the file.
+       */
+      void endSection() {
+         if (sections != null) {
+            sections.add(new String(text, 0, textLength, StandardCharsets.UTF_8));
+            textLength = 0;
+         }
+      }
+
+      /**
+       * Add bytes to the text of the current section.
+       *
+       * @param bytes  the bytes
+       * @param start  index of the first byte
+       * @param length number of bytes
+       */
+      private void appendText(final byte[] bytes, final int start, final int length) {
+         if (textLength + length > text.length) {
+            text = Arrays.copyOf(text, Math.max(textLength + length, Math.max(2 * text.length, 1024)));
+         }
+         System.arraycopy(bytes, start, text, textLength, length);
+         textLength += length;
+      }
+
+      /**
+       * Add one byte to the text of the current section.
+       *
+       * @param b the byte
+       */
+      private void appendText(final byte b) {
+         if (textLength == text.length) {
+            text = Arrays.copyOf(text, Math.max(2 * text.length, 1024));
+         }
+         text[textLength++] = b;
+      }
+
+   }
+
+   /**
+    * Is this byte white space within a line?
+    *
+    * @param b the byte
+    *
+    * @return true for space and tab
+    */
+   private static boolean isWhitespace(final byte b) {
+      return b == ' ' || b == '\t';
+   }
+
+   /**
+    * Length of the leading part of <code>bytes</code> that does not end part way through a UTF-8 character, which
+    * can happen when a long heading is cut short.
+    *
+    * @param bytes  UTF-8 bytes
+    * @param length number of bytes used
+    *
+    * @return <code>length</code>, less any incomplete character at the end
+    */
+   static int completeCharacters(final byte[] bytes, final int length) {
+      int start = length;
+      while (start > 0 && start > length - 4 && (bytes[start - 1] & 0xC0) == 0x80) {
+         start--;
+      }
+      if (start == 0 || start == length && (bytes[length - 1] & 0x80) == 0) {
+         return length;
+      }
+      final int lead = bytes[start - 1] & 0xFF;
+      final int expected = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+      return length - (start - 1) >= expected ? length : start - 1;
+   }
+
+}
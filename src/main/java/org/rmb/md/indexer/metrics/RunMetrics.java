@@ -0,0 +1,294 @@
+package org.rmb.md.indexer.metrics;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where the time goes during an indexing run, and how many of each thing it dealt with.
+ * <p>
+ * Safe to update from any number of threads at once. Stages running on several threads at once add up their time, so
+ * stage times can add up to more than the wall time of the run.
+ * <p>
+ * Metrics for part of a run, such as one source root, can be given a parent: everything recorded is then added to
+ * the parent as well, so the parent holds the totals of the whole run.
+ */
+public final class RunMetrics {
+
+   /**
+    * Stages of a run that are timed.
+    */
+   public enum Stage {
+
+      /**
+       * Walking the markdown folder, not counting what is done with each file found.
+       */
+      TRAVERSAL("traversal"),
+
+      /**
+       * Deciding which files and folders the include and exclude rules want.
+       */
+      FILTERING("filtering"),
+
+      /**
+       * Reading markdown files and finding their headings.
+       */
+      READING("reading"),
+
+      /**
+       * Applying the replacement sequence for markdown paths.
+       */
+      FILE_SEQUENCE("fileSequence"),
+
+      /**
+       * Applying the replacement sequence for URLs.
+       */
+      URL_SEQUENCE("urlSequence"),
+
+      /**
+       * Applying the replacement sequence for headings.
+       */
+      HEADING_SEQUENCE("headingSequence"),
+
+      /**
+       * Handing shortcuts to the output and waiting for it to be written.
+       */
+      OUTPUT("output");
+
+      /**
+       * Name in the report.
+       */
+      private final String reportName;
+
+      /**
+       * Create a stage.
+       *
+       * @param reportName name in the report
+       */
+      Stage(final String reportName) {
+         this.reportName = reportName;
+      }
+
+      /**
+       * Name in the report.
+       *
+       * @return the name
+       */
+      public String getReportName() {
+         return reportName;
+      }
+
+   }
+
+   /**
+    * Things that are counted.
+    */
+   public enum Count {
+
+      /**
+       * Files looked at while walking the markdown folder.
+       */
+      FILES_SEEN("filesSeen"),
+
+      /**
+       * Files the rules include.
+       */
+      FILES_ACCEPTED("filesAccepted"),
+
+      /**
+       * Files the rules leave out.
+       */
+      FILES_REJECTED("filesRejected"),
+
+      /**
+       * Folders the rules leave out, which are not entered.
+       */
+      FOLDERS_SKIPPED("foldersSkipped"),
+
+      /**
+       * Files that could not be read.
+       */
+      FILES_FAILED("filesFailed"),
+
+      /**
+       * Unchanged files whose shortcuts were worked out again from the heading lines in the manifest, without reading
+       * them, because the configuration changed.
+       */
+      FILES_FROM_RECORDED_HEADINGS("filesFromRecordedHeadings"),
+
+      /**
+       * Times a replacement's regular expression ran over its time budget on an input, and was skipped for it.
+       */
+      RULES_OVER_BUDGET("rulesOverBudget"),
+
+      /**
+       * Inputs whose replacement sequence result was found in a cache.
+       */
+      REPLACEMENT_CACHE_HITS("replacementCacheHits"),
+
+      /**
+       * Inputs whose replacement sequence result had to be worked out, although the sequence has a cache.
+       */
+      REPLACEMENT_CACHE_MISSES("replacementCacheMisses"),
+
+      /**
+       * Headings shortcuts were created for.
+       */
+      HEADINGS("headings"),
+
+      /**
+       * Shortcuts created, for files and headings.
+       */
+      SHORTCUTS("shortcuts"),
+
+      /**
+       * Shortcuts replaced by a later, different shortcut with the same file name, so one of them is lost.
+       */
+      SHORTCUT_COLLISIONS("shortcutCollisions");
+
+      /**
+       * Name in the report.
+       */
+      private final String reportName;
+
+      /**
+       * Create a count.
+       *
+       * @param reportName name in the report
+       */
+      Count(final String reportName) {
+         this.reportName = reportName;
+      }
+
+      /**
+       * Name in the report.
+       *
+       * @return the name
+       */
+      public String getReportName() {
+         return reportName;
+      }
+
+   }
+
+   /**
+    * Times each stage was entered.
+    */
+   private final Map<Stage, LongAdder> calls = new EnumMap<>(Stage.class);
+
+   /**
+    * Nanoseconds spent in each stage.
+    */
+   private final Map<Stage, LongAdder> nanos = new EnumMap<>(Stage.class);
+
+   /**
+    * Value of each count.
+    */
+   private final Map<Count, LongAdder> counts = new EnumMap<>(Count.class);
+
+   /**
+    * When the current run started.
+    */
+   private volatile Instant started = Instant.now();
+
+   /**
+    * Metrics everything is also recorded in, or null.
+    */
+   private final RunMetrics parent;
+
+   /**
+    * Create metrics with everything at zero.
+    */
+   public RunMetrics() {
+      this(null);
+   }
+
+   /**
+    * Create metrics with everything at zero, for part of a run.
+    *
+    * @param parent metrics for the whole run, which everything recorded here is also recorded in; null for none
+    */
+   public RunMetrics(final RunMetrics parent) {
+      this.parent = parent;
+      for (Stage stage : Stage.values()) {
+         calls.put(stage, new LongAdder());
+         nanos.put(stage, new LongAdder());
+      }
+      for (Count count : Count.values()) {
+         counts.put(count, new LongAdder());
+      }
+   }
+
+   /**
+    * Record time spent in a stage.
+    *
+    * @param stage      the stage
+    * @param startNanos {@link System#nanoTime()} when the stage was entered
+    */
+   public void time(final Stage stage, final long startNanos) {
+      add(stage, System.nanoTime() - startNanos);
+   }
+
+   /**
+    * Record time spent in a stage.
+    *
+    * @param stage        the stage
+    * @param elapsedNanos nanoseconds spent in it
+    */
+   public void add(final Stage stage, final long elapsedNanos) {
+      calls.get(stage).increment();
+      nanos.get(stage).add(elapsedNanos);
+      if (parent != null) {
+         parent.add(stage, elapsedNanos);
+      }
+   }
+
+   /**
+    * Add one to a count.
+    *
+    * @param count the count
+    */
+   public void increment(final Count count) {
+      add(count, 1);
+   }
+
+   /**
+    * Add to a count.
+    *
+    * @param count the count
+    * @param value how much to add
+    */
+   public void add(final Count count, final long value) {
+      counts.get(count).add(value);
+      if (parent != null) {
+         parent.add(count, value);
+      }
+   }
+
+   /**
+    * Start a new run: everything goes back to zero. The parent, if any, is started separately.
+    */
+   public void start() {
+      calls.values().forEach(LongAdder::reset);
+      nanos.values().forEach(LongAdder::reset);
+      counts.values().forEach(LongAdder::reset);
+      started = Instant.now();
+   }
+
+   /**
+    * Report on the run so far.
+    *
+    * @param mode what kind of run it is, such as <code>full</code> or <code>incremental</code>
+    *
+    * @return the report
+    */
+   public RunReport report(final String mode) {
+      final var stages = new EnumMap<Stage, RunReport.StageTime>(Stage.class);
+      calls.forEach((stage, adder) -> stages.put(stage, new RunReport.StageTime(adder.sum(), nanos.get(stage).sum())));
+      final var values = new EnumMap<Count, Long>(Count.class);
+      counts.forEach((count, adder) -> values.put(count, adder.sum()));
+      return new RunReport(mode, started, Instant.now(), stages, values);
+   }
+
+}
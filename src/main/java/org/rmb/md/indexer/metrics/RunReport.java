@@ -0,0 +1,137 @@
+package org.rmb.md.indexer.metrics;
+
+import org.rmb.md.indexer.output.AtomicFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * What happened during one indexing run, ready to be logged or written as JSON for charting over time.
+ *
+ * @param mode     what kind of run it was, such as <code>full</code> or <code>incremental</code>
+ * @param started  when the run started
+ * @param finished when the run finished
+ * @param stages   time spent in each stage
+ * @param counts   value of each count
+ */
+public record RunReport(String mode, Instant started, Instant finished, Map<RunMetrics.Stage, StageTime> stages,
+                        Map<RunMetrics.Count, Long> counts) {
+
+   /**
+    * Time spent in a stage.
+    *
+    * @param calls times the stage was entered
+    * @param nanos nanoseconds spent in it, added up over all threads
+    */
+   public record StageTime(long calls, long nanos) {
+   }
+
+   /**
+    * Value of a count.
+    *
+    * @param count the count
+    *
+    * @return its value
+    */
+   public long count(final RunMetrics.Count count) {
+      return counts.getOrDefault(count, 0L);
+   }
+
+   /**
+    * Wall time of the run.
+    *
+    * @return time from start to finish
+    */
+   public Duration elapsed() {
+      return Duration.between(started, finished);
+   }
+
+   /**
+    * The report as a JSON object, for example:
+    * <pre>
+    * {"mode":"full","started":"2020-11-22T10:11:12Z","finished":"2020-11-22T10:11:13Z","elapsedMillis":1000,
+    * "counts":{"filesSeen":12,...},"stagesMillis":{"traversal":{"calls":1,"millis":3.25},...}}
+    * </pre>
+    *
+    * @return JSON, on one line
+    */
+   public String toJson() {
+      return toJson(Map.of());
+   }
+
+   /**
+    * The report as a JSON object, as {@link #toJson()}, followed by the reports for each part of the run, such as
+    * each source root, by name: <code>"roots":{"docs":{"mode":"full",...},...}</code>.
+    *
+    * @param roots reports for each part of the run, in the order they are written; none are written if empty
+    *
+    * @return JSON, on one line
+    */
+   public String toJson(final Map<String, RunReport> roots) {
+      final var json = new StringBuilder("{\"mode\":\"").append(mode)
+            .append("\",\"started\":\"").append(started)
+            .append("\",\"finished\":\"").append(finished)
+            .append("\",\"elapsedMillis\":").append(elapsed().toMillis())
+            .append(",\"counts\":{");
+      json.append(counts.entrySet().stream()
+            .map(count -> "\"" + count.getKey().getReportName() + "\":" + count.getValue())
+            .collect(Collectors.joining(",")));
+      json.append("},\"stagesMillis\":{");
+      json.append(stages.entrySet().stream()
+            .map(stage -> String.format(Locale.ROOT, "\"%s\":{\"calls\":%d,\"millis\":%.3f}",
+                  stage.getKey().getReportName(), stage.getValue().calls(), stage.getValue().nanos() / 1e6))
+            .collect(Collectors.joining(",")));
+      json.append("}");
+      if (!roots.isEmpty()) {
+         json.append(",\"roots\":{");
+         json.append(roots.entrySet().stream()
+               .map(root -> "\"" + root.getKey().replace("\\", "\\\\").replace("\"", "\\\"") + "\":"
+                     + root.getValue().toJson())
+               .collect(Collectors.joining(",")));
+         json.append("}");
+      }
+      return json.append("}").toString();
+   }
+
+   /**
+    * Write the report as a JSON file, replacing any report from an earlier run.
+    *
+    * @param path the file
+    *
+    * @throws IOException if the file cannot be written
+    */
+   public void write(final Path path) throws IOException {
+      write(path, Map.of());
+   }
+
+   /**
+    * Write the report, with reports for each part of the run, as a JSON file, replacing any report from an earlier
+    * run - see {@link #toJson(Map)}.
+    *
+    * @param path  the file
+    * @param roots reports for each part of the run
+    *
+    * @throws IOException if the file cannot be written
+    */
+   public void write(final Path path, final Map<String, RunReport> roots) throws IOException {
+      AtomicFile.write(path, writer -> writer.write(toJson(roots) + "\n"));
+   }
+
+   @Override
+   public String toString() {
+      return String.format("%s run in %d ms: %s; %s", mode, elapsed().toMillis(),
+            counts.entrySet().stream()
+                  .map(count -> count.getKey().getReportName() + "=" + count.getValue())
+                  .collect(Collectors.joining(", ")),
+            stages.entrySet().stream()
+                  .map(stage -> String.format("%s %.1f ms", stage.getKey().getReportName(),
+                        stage.getValue().nanos() / 1e6))
+                  .collect(Collectors.joining(", ")));
+   }
+
+}
@@ -0,0 +1,79 @@
+package org.rmb.md.indexer.output;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes a text file by writing a temporary file next to it and then moving that into place, so that a run that
+ * dies half way never leaves a truncated file behind and readers never see a half written one.
+ */
+public final class AtomicFile {
+
+   /**
+    * Writes the content of a file.
+    */
+   @FunctionalInterface
+   public interface Content {
+
+      /**
+       * Write the content.
+       *
+       * @param writer where to write it
+       *
+       * @throws IOException if writing fails
+       */
+      void writeTo(Writer writer) throws IOException;
+
+   }
+
+   /**
+    * Not instantiated.
+    */
+   private AtomicFile() {
+   }
+
+   /**
+    * Write a UTF-8 text file.
+    *
+    * @param path    the file
+    * @param content writes the content of the file
+    *
+    * @throws IOException if the file cannot be written; any existing file is left as it was
+    */
+   public static void write(final Path path, final Content content) throws IOException {
+      final var directory = path.toAbsolutePath().getParent();
+      Files.createDirectories(directory);
+      final var temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+      try {
+         try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            content.writeTo(writer);
+         }
+         moveIntoPlace(temporary, path);
+      } finally {
+         Files.deleteIfExists(temporary);
+      }
+   }
+
+   /**
+    * Move a file over another, atomically if the file system allows it.
+    *
+    * @param source the file to move
+    * @param target where to move it
+    *
+    * @throws IOException if the move fails
+    */
+   public static void moveIntoPlace(final Path source, final Path target) throws IOException {
+      try {
+         Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+         Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+   }
+
+}
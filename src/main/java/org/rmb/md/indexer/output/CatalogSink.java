@@ -0,0 +1,99 @@
+package org.rmb.md.indexer.output;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rmb.md.indexer.shortcut.Shortcut;
+import org.rmb.md.indexer.shortcut.ShortcutTable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+
+/**
+ * Writes every shortcut as one entry of a single catalog file, instead of one file per shortcut. The catalog is
+ * replaced as a whole through {@link AtomicFile}, so a launcher reading it never sees a half written one.
+ * <p>
+ * Each entry has the shortcut's name (its file name without <code>.url</code>), URL, source markdown file and heading.
+ * Subclasses decide how entries are written.
+ */
+@Slf4j
+public abstract class CatalogSink implements ShortcutSink {
+
+   /**
+    * Extension of shortcut file names, left out of catalog names.
+    */
+   private static final String URL_EXTENSION = ".url";
+
+   /**
+    * The catalog file.
+    */
+   private final Path catalog;
+
+   /**
+    * Shortcuts to write, keyed by file name.
+    */
+   private final ShortcutTable shortcuts = new ShortcutTable();
+
+   /**
+    * Create a sink.
+    *
+    * @param catalog the catalog file
+    */
+   protected CatalogSink(final Path catalog) {
+      this.catalog = catalog;
+   }
+
+   @Override
+   public void accept(final Shortcut shortcut) {
+      shortcuts.put(shortcut);
+   }
+
+   @Override
+   public void commit() throws IOException {
+      AtomicFile.write(catalog, writer -> {
+         writeHeader(writer);
+         for (int index = 0; index < shortcuts.size(); index++) {
+            final var heading = shortcuts.heading(index);
+            writeEntry(writer, name(shortcuts.fileName(index)), shortcuts.url(index),
+                  shortcuts.source(index).toString(), heading == null ? "" : heading);
+         }
+      });
+      log.info("Catalog: {} entries written to {}.", shortcuts.size(), catalog);
+   }
+
+   /**
+    * Write whatever comes before the first entry.
+    *
+    * @param writer where to write
+    *
+    * @throws IOException if writing fails
+    */
+   protected abstract void writeHeader(Writer writer) throws IOException;
+
+   /**
+    * Write one entry, including its line terminator.
+    *
+    * @param writer  where to write
+    * @param name    name of the shortcut
+    * @param url     URL the shortcut points to
+    * @param source  markdown file the shortcut was created for
+    * @param heading heading the shortcut points to; empty if it points to the file itself
+    *
+    * @throws IOException if writing fails
+    */
+   protected abstract void writeEntry(Writer writer, String name, String url, String source, String heading)
+         throws IOException;
+
+   /**
+    * Name of a shortcut in the catalog.
+    *
+    * @param fileName file name of the shortcut
+    *
+    * @return the file name without <code>.url</code>
+    */
+   private static String name(final String fileName) {
+      return fileName.endsWith(URL_EXTENSION)
+            ? fileName.substring(0, fileName.length() - URL_EXTENSION.length())
+            : fileName;
+   }
+
+}
@@ -0,0 +1,54 @@
+package org.rmb.md.indexer.output;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+
+/**
+ * Writes the catalog as <a href="https://tools.ietf.org/html/rfc4180">CSV</a>, with a header row of
+ * <code>name,url,source,heading</code>. Values containing a comma, quote or line break are quoted.
+ */
+public final class CsvCatalogSink extends CatalogSink {
+
+   /**
+    * Create a sink.
+    *
+    * @param catalog the catalog file
+    */
+   public CsvCatalogSink(final Path catalog) {
+      super(catalog);
+   }
+
+   @Override
+   protected void writeHeader(final Writer writer) throws IOException {
+      writer.write("name,url,source,heading\r\n");
+   }
+
+   @Override
+   protected void writeEntry(final Writer writer, final String name, final String url, final String source,
+                             final String heading) throws IOException {
+      writer.write(field(name));
+      writer.write(',');
+      writer.write(field(url));
+      writer.write(',');
+      writer.write(field(source));
+      writer.write(',');
+      writer.write(field(heading));
+      writer.write("\r\n");
+   }
+
+   /**
+    * Quote a value if it needs quoting.
+    *
+    * @param value the value
+    *
+    * @return the value as a CSV field
+    */
+   static String field(final String value) {
+      if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+         return value;
+      }
+      return '"' + value.replace("\"", "\"\"") + '"';
+   }
+
+}
@@ -0,0 +1,71 @@
+package org.rmb.md.indexer.output;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+
+/**
+ * Writes the catalog as <a href="https://jsonlines.org/">JSON Lines</a>: one JSON object per line, with fields
+ * <code>name</code>, <code>url</code>, <code>source</code> and <code>heading</code>.
+ */
+public final class JsonLinesCatalogSink extends CatalogSink {
+
+   /**
+    * Create a sink.
+    *
+    * @param catalog the catalog file
+    */
+   public JsonLinesCatalogSink(final Path catalog) {
+      super(catalog);
+   }
+
+   @Override
+   protected void writeHeader(final Writer writer) {
+      // JSON Lines has no header.
+   }
+
+   @Override
+   protected void writeEntry(final Writer writer, final String name, final String url, final String source,
+                             final String heading) throws IOException {
+      writer.write("{\"name\":");
+      writeString(writer, name);
+      writer.write(",\"url\":");
+      writeString(writer, url);
+      writer.write(",\"source\":");
+      writeString(writer, source);
+      writer.write(",\"heading\":");
+      writeString(writer, heading);
+      writer.write("}\n");
+   }
+
+   /**
+    * Write a value as a JSON string.
+    *
+    * @param writer where to write
+    * @param value  the value
+    *
+    * @throws IOException if writing fails
+    */
+   static void writeString(final Writer writer, final String value) throws IOException {
+      writer.write('"');
+      for (int index = 0; index < value.length(); index++) {
+         final char current = value.charAt(index);
+         switch (current) {
+            case '"' -> writer.write("\\\"");
+            case '\\' -> writer.write("\\\\");
+            case '\n' -> writer.write("\\n");
+            case '\r' -> writer.write("\\r");
+            case '\t' -> writer.write("\\t");
+            default -> {
+               if (current < 0x20) {
+                  writer.write(String.format("\\u%04x", (int) current));
+               } else {
+                  writer.write(current);
+               }
+            }
+         }
+      }
+      writer.write('"');
+   }
+
+}
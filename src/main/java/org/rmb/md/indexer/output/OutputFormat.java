@@ -0,0 +1,55 @@
+package org.rmb.md.indexer.output;
+
+/**
+ * How shortcuts are written.
+ */
+public enum OutputFormat {
+
+   /**
+    * One <code>.url</code> file per shortcut. The only format that supports incremental runs.
+    */
+   URL_FILES(null),
+
+   /**
+    * One JSON Lines catalog of every shortcut - see {@link JsonLinesCatalogSink}.
+    */
+   JSON_LINES("markdown-index.jsonl"),
+
+   /**
+    * One CSV catalog of every shortcut - see {@link CsvCatalogSink}.
+    */
+   CSV("markdown-index.csv");
+
+   /**
+    * Name of the catalog file if no other path is configured; null if this format does not write a catalog.
+    */
+   private final String defaultCatalogFileName;
+
+   /**
+    * Create a format.
+    *
+    * @param defaultCatalogFileName name of the catalog file if no other path is configured
+    */
+   OutputFormat(final String defaultCatalogFileName) {
+      this.defaultCatalogFileName = defaultCatalogFileName;
+   }
+
+   /**
+    * Name of the catalog file if no other path is configured.
+    *
+    * @return file name, or null if this format does not write a catalog
+    */
+   public String getDefaultCatalogFileName() {
+      return defaultCatalogFileName;
+   }
+
+   /**
+    * Does this format write a single catalog, rather than a file per shortcut?
+    *
+    * @return true for catalog formats
+    */
+   public boolean isCatalog() {
+      return defaultCatalogFileName != null;
+   }
+
+}
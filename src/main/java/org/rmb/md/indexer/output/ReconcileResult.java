@@ -0,0 +1,20 @@
+package org.rmb.md.indexer.output;
+
+/**
+ * What reconciling shortcut files against the output directory did.
+ *
+ * @param created   files that did not exist and were written
+ * @param updated   files that existed with different content and were rewritten
+ * @param deleted   stale files that were deleted
+ * @param unchanged files that already had the right content and were left alone
+ * @param failed    files that could not be compared, written or deleted
+ */
+public record ReconcileResult(int created, int updated, int deleted, int unchanged, int failed) {
+
+   @Override
+   public String toString() {
+      return created + " created, " + updated + " updated, " + deleted + " deleted, " + unchanged + " unchanged"
+            + (failed == 0 ? "" : ", " + failed + " failed");
+   }
+
+}
@@ -0,0 +1,162 @@
+package org.rmb.md.indexer.output;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Brings the output directory in line with the set of shortcut files a run wants, touching as little as possible:
+ * only new or changed files are written, only stale files are deleted and files that already have the right content
+ * are left alone. The directory is never emptied and refilled, so a launcher watching it never sees it empty.
+ * <p>
+ * Files are written and deleted by a {@link ShortcutWriter}, which the caller owns and closes.
+ */
+public final class ShortcutReconciler {
+
+   /**
+    * The directory shortcut files are written to.
+    */
+   private final Path directory;
+
+   /**
+    * Matches the files in {@link #directory} that belong to us and may be deleted when stale.
+    */
+   private final PathMatcher ownedFiles;
+
+   /**
+    * Writes and deletes files in {@link #directory}.
+    */
+   private final ShortcutWriter writer;
+
+   /**
+    * Create a reconciler.
+    *
+    * @param directory  the directory shortcut files are written to
+    * @param ownedFiles matches files in <code>directory</code> that were written by us
+    * @param writer     writes and deletes files in <code>directory</code>
+    */
+   public ShortcutReconciler(final Path directory, final PathMatcher ownedFiles, final ShortcutWriter writer) {
+      this.directory = directory;
+      this.ownedFiles = ownedFiles;
+      this.writer = writer;
+   }
+
+   /**
+    * Make the output directory hold exactly the desired shortcut files: every file we own that is not desired is
+    * deleted.
+    *
+    * @param desired content for each desired file, keyed by file name relative to the output directory
+    *
+    * @return counts of what was done
+    *
+    * @throws IOException if the output directory cannot be listed; nothing has been changed in that case
+    */
+   public ReconcileResult reconcile(final Map<String, byte[]> desired) throws IOException {
+      return reconcile(desired, listOwnedFiles());
+   }
+
+   /**
+    * Write the desired shortcut files and delete those of <code>candidatesForDeletion</code> that are not desired.
+    * Other existing files are left alone.
+    *
+    * @param desired               content for each desired file, keyed by file name relative to the output directory
+    * @param candidatesForDeletion names of files that should be deleted unless they are desired
+    *
+    * @return counts of what was done
+    */
+   public ReconcileResult reconcile(final Map<String, byte[]> desired,
+                                    final Collection<String> candidatesForDeletion) {
+      desired.forEach(writer::write);
+      deleteAllBut(candidatesForDeletion, desired.keySet());
+      return writer.flush();
+   }
+
+   /**
+    * Start writing one desired file in the background, for a run that hands over its files as it finds them. Finish
+    * the run with {@link #finish(Set)}.
+    *
+    * @param fileName file name relative to the output directory
+    * @param content  desired content
+    */
+   public void write(final String fileName, final byte[] content) {
+      writer.write(fileName, content);
+   }
+
+   /**
+    * Finish a run started with {@link #write(String, byte[])}: delete every file we own that was not desired and wait
+    * for all files to be written.
+    *
+    * @param desired names of all desired files, relative to the output directory
+    *
+    * @return counts of what was done for the whole run
+    *
+    * @throws IOException if the output directory cannot be listed; nothing has been deleted in that case
+    */
+   public ReconcileResult finish(final Set<String> desired) throws IOException {
+      final Set<String> owned;
+      try {
+         owned = listOwnedFiles();
+      } catch (IOException e) {
+         // Still wait for the writes, so their counts are not reported with the next run.
+         writer.flush();
+         throw e;
+      }
+      deleteAllBut(owned, desired);
+      return writer.flush();
+   }
+
+   /**
+    * Finish a run started with {@link #write(String, byte[])} that knows which files may be stale: delete those of
+    * <code>candidatesForDeletion</code> that are not desired and wait for all files to be written. Other existing
+    * files are left alone.
+    *
+    * @param candidatesForDeletion names of files that should be deleted unless they are desired
+    * @param desired               names of all desired files, relative to the output directory
+    *
+    * @return counts of what was done for the whole run
+    */
+   public ReconcileResult finish(final Collection<String> candidatesForDeletion, final Set<String> desired) {
+      deleteAllBut(candidatesForDeletion, desired);
+      return writer.flush();
+   }
+
+   /**
+    * Delete files, except those that are desired.
+    *
+    * @param candidates names of files that should be deleted unless they are desired
+    * @param desired    names of desired files
+    */
+   private void deleteAllBut(final Collection<String> candidates, final Set<String> desired) {
+      for (String fileName : candidates) {
+         if (!desired.contains(fileName)) {
+            writer.delete(fileName);
+         }
+      }
+   }
+
+   /**
+    * List the files in the output directory that belong to us.
+    *
+    * @return file names relative to the output directory
+    *
+    * @throws IOException if the directory cannot be traversed
+    */
+   private Set<String> listOwnedFiles() throws IOException {
+      final var owned = new TreeSet<String>();
+      if (!Files.isDirectory(directory)) {
+         return owned;
+      }
+      try (Stream<Path> files = Files.walk(directory)) {
+         files.filter(ownedFiles::matches)
+               .forEach(path -> owned.add(directory.relativize(path).toString()));
+      }
+      return owned;
+   }
+
+}
@@ -0,0 +1,29 @@
+package org.rmb.md.indexer.output;
+
+import org.rmb.md.indexer.shortcut.Shortcut;
+
+import java.io.IOException;
+
+/**
+ * Where the shortcuts of a run end up. A sink is given every shortcut of a run, in order, and then committed once.
+ * <p>
+ * A later shortcut with the same file name replaces an earlier one, just as writing it later would have. Sinks are
+ * only used from one thread.
+ */
+public interface ShortcutSink {
+
+   /**
+    * Add a shortcut.
+    *
+    * @param shortcut the shortcut
+    */
+   void accept(Shortcut shortcut);
+
+   /**
+    * Make the output hold exactly the shortcuts that were added, replacing whatever an earlier run left there.
+    *
+    * @throws IOException if the output cannot be written; the output of the earlier run is left as it was
+    */
+   void commit() throws IOException;
+
+}
@@ -0,0 +1,364 @@
+package org.rmb.md.indexer.output;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes and deletes shortcut files in the background, so that whoever asks for a file to be written does not wait on
+ * the file system, which matters when the output directory is on a network share.
+ * <p>
+ * Requests go onto bounded queues, one per I/O thread. When a queue is full, asking for another write waits for room,
+ * so a fast producer cannot run far ahead of a slow disk. Each thread takes requests off its queue in batches, and
+ * reports all the failures of a batch together. Every request for the same file name goes to the same thread, so
+ * requests for one file are carried out in the order they were made.
+ * <p>
+ * A file that already has the content asked for is left alone. {@link #flush()} waits for everything asked for so far
+ * and says what was done; {@link #close()} flushes and stops the threads.
+ */
+@Slf4j
+public final class ShortcutWriter implements Closeable {
+
+   /**
+    * Tells a thread to stop.
+    */
+   private static final Request STOP = new Request(Operation.DELETE, "", null);
+
+   /**
+    * The directory shortcut files are written to.
+    */
+   private final Path directory;
+
+   /**
+    * Most requests carried out as one batch.
+    */
+   private final int batchSize;
+
+   /**
+    * Requests waiting for each thread.
+    */
+   private final List<BlockingQueue<Request>> queues = new ArrayList<>();
+
+   /**
+    * The I/O threads.
+    */
+   private final List<Thread> threads = new ArrayList<>();
+
+   /**
+    * What was done since the last flush.
+    */
+   private final Tally tally = new Tally();
+
+   /**
+    * Requests made but not yet carried out. Guarded by <code>this</code>.
+    */
+   private long pending;
+
+   /**
+    * Has this writer been closed? Guarded by <code>this</code>.
+    */
+   private boolean closed;
+
+   /**
+    * Create a writer and start its threads.
+    *
+    * @param directory     the directory shortcut files are written to
+    * @param workers       number of I/O threads
+    * @param queueCapacity most requests waiting, over all threads, before asking for more waits
+    * @param batchSize     most requests carried out as one batch
+    */
+   public ShortcutWriter(final Path directory, final int workers, final int queueCapacity, final int batchSize) {
+      if (workers < 1 || queueCapacity < 1 || batchSize < 1) {
+         throw new IllegalArgumentException("Workers, queue capacity and batch size must be at least 1.");
+      }
+      this.directory = directory;
+      this.batchSize = batchSize;
+      for (int index = 0; index < workers; index++) {
+         final var queue = new ArrayBlockingQueue<Request>(Math.max(1, queueCapacity / workers));
+         final var thread = new Thread(() -> work(queue), "shortcut-writer-" + index);
+         thread.setDaemon(true);
+         queues.add(queue);
+         threads.add(thread);
+         thread.start();
+      }
+   }
+
+   /**
+    * Ask for a file to be written, unless it already has this content. Waits only if the queue is full.
+    *
+    * @param fileName file name relative to the output directory
+    * @param content  desired content
+    *
+    * @throws IllegalStateException if this writer is closed, or the calling thread is interrupted while waiting
+    */
+   public void write(final String fileName, final byte[] content) {
+      submit(new Request(Operation.WRITE, fileName, content));
+   }
+
+   /**
+    * Ask for a file to be deleted, if it exists. Waits only if the queue is full.
+    *
+    * @param fileName file name relative to the output directory
+    *
+    * @throws IllegalStateException if this writer is closed, or the calling thread is interrupted while waiting
+    */
+   public void delete(final String fileName) {
+      submit(new Request(Operation.DELETE, fileName, null));
+   }
+
+   /**
+    * Wait for every request made so far to be carried out.
+    *
+    * @return counts of what was done since the last flush
+    *
+    * @throws IllegalStateException if the calling thread is interrupted while waiting
+    */
+   public ReconcileResult flush() {
+      synchronized (this) {
+         try {
+            while (pending > 0) {
+               wait();
+            }
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing URL files.", e);
+         }
+      }
+      return tally.drain();
+   }
+
+   /**
+    * Flush, then stop the I/O threads. Closing again does nothing.
+    */
+   @Override
+   public void close() {
+      synchronized (this) {
+         if (closed) {
+            return;
+         }
+         closed = true;
+      }
+      final var result = flush();
+      if (!result.equals(new ReconcileResult(0, 0, 0, 0, 0))) {
+         log.info("Shortcut files written while closing: {}.", result);
+      }
+      try {
+         for (BlockingQueue<Request> queue : queues) {
+            queue.put(STOP);
+         }
+         for (Thread thread : threads) {
+            thread.join();
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   /**
+    * Queue a request for the thread that handles its file name.
+    *
+    * @param request the request
+    */
+   private void submit(final Request request) {
+      synchronized (this) {
+         if (closed) {
+            throw new IllegalStateException("Shortcut writer is closed.");
+         }
+         pending++;
+      }
+      try {
+         queues.get(Math.floorMod(request.fileName().hashCode(), queues.size())).put(request);
+      } catch (InterruptedException e) {
+         completed(1);
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException("Interrupted while queuing URL file " + request.fileName(), e);
+      }
+   }
+
+   /**
+    * Work of one I/O thread: carry out batches of requests until told to stop.
+    *
+    * @param queue requests for this thread
+    */
+   private void work(final BlockingQueue<Request> queue) {
+      final var batch = new ArrayList<Request>(batchSize);
+      var stop = false;
+      while (!stop) {
+         batch.clear();
+         try {
+            batch.add(queue.take());
+         } catch (InterruptedException e) {
+            return;
+         }
+         queue.drainTo(batch, batchSize - 1);
+         stop = batch.removeIf(request -> request == STOP);
+         carryOut(batch);
+      }
+   }
+
+   /**
+    * Carry out a batch of requests and report any that failed.
+    *
+    * @param batch the requests
+    */
+   private void carryOut(final List<Request> batch) {
+      final var failures = new StringBuilder();
+      int failed = 0;
+      for (Request request : batch) {
+         try {
+            switch (request.operation()) {
+               case WRITE -> writeFile(request.fileName(), request.content());
+               case DELETE -> deleteFile(request.fileName());
+            }
+         } catch (IOException | RuntimeException e) {
+            failed++;
+            tally.failed.incrementAndGet();
+            failures.append("\n   ").append(request.operation()).append(' ').append(request.fileName())
+                  .append(": ").append(e);
+         }
+      }
+      if (failed > 0) {
+         log.error("Failed {} of {} URL file operations in {}:{}", failed, batch.size(), directory, failures);
+      }
+      completed(batch.size());
+   }
+
+   /**
+    * Write one file, unless it already has the right content.
+    *
+    * @param fileName file name relative to the output directory
+    * @param content  desired content
+    *
+    * @throws IOException if the file cannot be read or written
+    */
+   private void writeFile(final String fileName, final byte[] content) throws IOException {
+      final var path = directory.resolve(fileName);
+      final var existed = Files.exists(path);
+      if (existed && sameContent(path, content)) {
+         tally.unchanged.incrementAndGet();
+         return;
+      }
+      log.debug("Write file: {}", path);
+      Files.write(path, content);
+      (existed ? tally.updated : tally.created).incrementAndGet();
+   }
+
+   /**
+    * Delete one file, if it exists.
+    *
+    * @param fileName file name relative to the output directory
+    *
+    * @throws IOException if the file cannot be deleted
+    */
+   private void deleteFile(final String fileName) throws IOException {
+      final var path = directory.resolve(fileName);
+      log.debug("Delete file: {}", path);
+      if (Files.deleteIfExists(path)) {
+         tally.deleted.incrementAndGet();
+      }
+   }
+
+   /**
+    * Record that requests have been carried out, waking anyone waiting for a flush.
+    *
+    * @param count number of requests
+    */
+   private synchronized void completed(final int count) {
+      pending -= count;
+      if (pending == 0) {
+         notifyAll();
+      }
+   }
+
+   /**
+    * Does a file already hold exactly this content?
+    *
+    * @param path    the existing file
+    * @param content the desired content
+    *
+    * @return true if the file's bytes equal <code>content</code>
+    *
+    * @throws IOException if the file cannot be read
+    */
+   private static boolean sameContent(final Path path, final byte[] content) throws IOException {
+      return Files.size(path) == content.length && Arrays.equals(Files.readAllBytes(path), content);
+   }
+
+   /**
+    * What a request asks for.
+    */
+   private enum Operation {
+
+      /**
+       * Write a file.
+       */
+      WRITE,
+
+      /**
+       * Delete a file.
+       */
+      DELETE
+   }
+
+   /**
+    * A request to write or delete a file.
+    *
+    * @param operation what to do
+    * @param fileName  file name relative to the output directory
+    * @param content   content to write; null for a delete
+    */
+   private record Request(Operation operation, String fileName, byte[] content) {
+   }
+
+   /**
+    * Counts kept by the I/O threads.
+    */
+   private static final class Tally {
+
+      /**
+       * Files created.
+       */
+      private final AtomicInteger created = new AtomicInteger();
+
+      /**
+       * Files updated.
+       */
+      private final AtomicInteger updated = new AtomicInteger();
+
+      /**
+       * Files deleted.
+       */
+      private final AtomicInteger deleted = new AtomicInteger();
+
+      /**
+       * Files left alone.
+       */
+      private final AtomicInteger unchanged = new AtomicInteger();
+
+      /**
+       * Files that could not be handled.
+       */
+      private final AtomicInteger failed = new AtomicInteger();
+
+      /**
+       * Take the counts so far, starting again from zero.
+       *
+       * @return result holding the counts
+       */
+      ReconcileResult drain() {
+         return new ReconcileResult(created.getAndSet(0), updated.getAndSet(0), deleted.getAndSet(0),
+               unchanged.getAndSet(0), failed.getAndSet(0));
+      }
+
+   }
+
+}
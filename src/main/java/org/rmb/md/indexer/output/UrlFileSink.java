@@ -0,0 +1,51 @@
+package org.rmb.md.indexer.output;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rmb.md.indexer.shortcut.Shortcut;
+import org.rmb.md.indexer.shortcut.ShortcutTable;
+
+import java.io.IOException;
+
+/**
+ * Writes each shortcut as its own <code>.url</code> file, through a {@link ShortcutReconciler} so that only new or
+ * changed files are written and stale ones deleted. Files are written in the background as shortcuts arrive; stale
+ * files are only deleted once every shortcut is known.
+ */
+@Slf4j
+public final class UrlFileSink implements ShortcutSink {
+
+   /**
+    * Brings the output directory in line with the desired files.
+    */
+   private final ShortcutReconciler reconciler;
+
+   /**
+    * Shortcut for each desired file, keyed by file name, so that a shortcut repeated with the same URL is not written
+    * twice.
+    */
+   private final ShortcutTable desired = new ShortcutTable();
+
+   /**
+    * Create a sink.
+    *
+    * @param reconciler brings the output directory in line with the desired files
+    */
+   public UrlFileSink(final ShortcutReconciler reconciler) {
+      this.reconciler = reconciler;
+   }
+
+   @Override
+   public void accept(final Shortcut shortcut) {
+      final var previous = desired.indexOf(shortcut.fileName());
+      if (previous < 0 || !desired.url(previous).equals(shortcut.url())) {
+         reconciler.write(shortcut.fileName(), shortcut.content());
+      }
+      desired.put(shortcut);
+   }
+
+   @Override
+   public void commit() throws IOException {
+      log.info("Shortcut files: {}.", reconciler.finish(desired.fileNames()));
+   }
+
+}
@@ -0,0 +1,22 @@
+package org.rmb.md.indexer.pipeline;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * First stage of an {@link IndexingPipeline}: finds the files to index.
+ */
+@FunctionalInterface
+public interface Discovery {
+
+   /**
+    * Find files to index and hand each one to <code>sink</code>, in a stable order.
+    *
+    * @param sink receives each file found
+    *
+    * @throws IOException if the files cannot be traversed
+    */
+   void discover(Consumer<Path> sink) throws IOException;
+
+}
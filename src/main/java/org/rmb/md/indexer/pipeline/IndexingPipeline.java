@@ -0,0 +1,501 @@
+package org.rmb.md.indexer.pipeline;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs indexing as a set of stages: discovery, reading, computing and collecting.
+ * <p>
+ * Sequentially, every file goes through all stages on the calling thread before the next file is discovered.
+ * Concurrently, discovery runs on its own thread and reading and computing each run on their own pool of worker
+ * threads, with the stages connected by bounded queues so a fast stage cannot run far ahead of a slow one. Each file
+ * is numbered as it is discovered and the collect stage, which runs on the calling thread, receives results in
+ * exactly that order. Whatever the collect stage does with the results is therefore identical in both modes.
+ * <p>
+ * Discovery may only run {@link #inFlightLimit()} files ahead of the collect stage, so one slow file holds up
+ * discovery rather than letting every result after it pile up while it is waited for.
+ */
+@Slf4j
+public final class IndexingPipeline {
+
+   /**
+    * Marks the end of a queue.
+    */
+   private static final Item<?> END = new Item<>(-1, null);
+
+   /**
+    * Run stages on their own threads?
+    */
+   private final boolean concurrent;
+
+   /**
+    * Capacity of each queue between stages.
+    */
+   private final int queueCapacity;
+
+   /**
+    * Number of threads reading files.
+    */
+   private final int readWorkers;
+
+   /**
+    * Number of threads computing results from what was read.
+    */
+   private final int computeWorkers;
+
+   /**
+    * Create a pipeline.
+    *
+    * @param concurrent     run stages on their own threads, rather than all on the calling thread
+    * @param queueCapacity  capacity of each queue between stages
+    * @param readWorkers    number of threads reading files
+    * @param computeWorkers number of threads computing results from what was read
+    */
+   public IndexingPipeline(final boolean concurrent, final int queueCapacity, final int readWorkers,
+                           final int computeWorkers) {
+      if (concurrent && (queueCapacity < 1 || readWorkers < 1 || computeWorkers < 1)) {
+         throw new IllegalArgumentException("Queue capacity and worker counts must be at least 1.");
+      }
+      this.concurrent = concurrent;
+      this.queueCapacity = queueCapacity;
+      this.readWorkers = readWorkers;
+      this.computeWorkers = computeWorkers;
+   }
+
+   /**
+    * Most files that may be discovered but not yet collected in a concurrent run: as many as the queues between
+    * stages and the workers can hold. Results that arrive before those ahead of them are held back, so this also bounds
+    * how many are held.
+    *
+    * @return number of files
+    */
+   int inFlightLimit() {
+      return 3 * queueCapacity + readWorkers + computeWorkers;
+   }
+
+   /**
+    * Create a pipeline that runs every stage on the calling thread.
+    *
+    * @return sequential pipeline
+    */
+   public static IndexingPipeline sequential() {
+      return new IndexingPipeline(false, 0, 0, 0);
+   }
+
+   /**
+    * Run the pipeline.
+    *
+    * @param discovery finds the files to index
+    * @param read      reads one file; must not return null
+    * @param compute   computes a result from what was read; must not return null
+    * @param collect   receives each result, on the calling thread, in discovery order
+    * @param <R>       what the read stage produces
+    * @param <C>       what the compute stage produces
+    *
+    * @throws IOException           if discovery fails, or the calling thread is interrupted
+    * @throws IllegalStateException if a read or compute stage throws
+    */
+   public <R, C> void run(final Discovery discovery, final Function<Path, R> read, final Function<R, C> compute,
+                          final Consumer<C> collect) throws IOException {
+      if (!concurrent) {
+         discovery.discover(path -> collect.accept(compute.apply(read.apply(path))));
+         return;
+      }
+      new Run<>(discovery, read, compute, collect).execute();
+   }
+
+   /**
+    * Run the pipeline over several sources, such as separate folders of markdown files, at the same time if the
+    * pipeline is concurrent.
+    * <p>
+    * Each source is run as by {@link #run(Discovery, Function, Function, Consumer)} on a thread of its own. Results
+    * are collected on the calling thread, source by source in the order given and in discovery order within each
+    * source, so the collect stage sees exactly what running the sources one after another would give it. Each source
+    * hands its results over through a queue of its own, so a source ahead is collected as it goes, and one behind
+    * waits once its queue is full until it is its turn. A single source, and every source of a sequential pipeline,
+    * is run on the calling thread, one source after another.
+    *
+    * @param sources   the sources
+    * @param discovery finds the files to index in a source
+    * @param read      reads one file of a source; must not return null
+    * @param compute   computes a result from what was read; must not return null
+    * @param collect   receives each result, on the calling thread, in source and then discovery order
+    * @param <S>       type of source
+    * @param <R>       what the read stage produces
+    * @param <C>       what the compute stage produces
+    *
+    * @throws IOException           if discovery of any source fails, or the calling thread is interrupted; results of
+    *                               the sources ahead of it have been collected
+    * @throws IllegalStateException if a read or compute stage throws
+    */
+   public <S, R, C> void runEach(final List<S> sources, final Function<S, Discovery> discovery,
+                                 final BiFunction<S, Path, R> read, final BiFunction<S, R, C> compute,
+                                 final BiConsumer<S, C> collect) throws IOException {
+      if (!concurrent || sources.size() == 1) {
+         for (S source : sources) {
+            run(discovery.apply(source), path -> read.apply(source, path), value -> compute.apply(source, value),
+                  result -> collect.accept(source, result));
+         }
+         return;
+      }
+      final var threads = new ArrayList<Thread>();
+      final var results = new ArrayList<BlockingQueue<Item<C>>>();
+      final var failures = new ArrayList<AtomicReference<Exception>>();
+      for (int index = 0; index < sources.size(); index++) {
+         final var source = sources.get(index);
+         final var handedOver = new ArrayBlockingQueue<Item<C>>(Math.max(queueCapacity, 1));
+         final var failure = new AtomicReference<Exception>();
+         final var thread = new Thread(() -> {
+            try {
+               run(discovery.apply(source), path -> read.apply(source, path), value -> compute.apply(source, value),
+                     result -> {
+                        try {
+                           handedOver.put(new Item<>(0, result));
+                        } catch (InterruptedException e) {
+                           Thread.currentThread().interrupt();
+                           throw new IllegalStateException("Interrupted while indexing.", e);
+                        }
+                     });
+            } catch (IOException | RuntimeException e) {
+               failure.set(e);
+            } finally {
+               try {
+                  handedOver.put(end());
+               } catch (InterruptedException e) {
+                  // Only interrupted when nobody is collecting any more.
+                  Thread.currentThread().interrupt();
+               }
+            }
+         }, "index-source-" + index);
+         thread.setDaemon(true);
+         threads.add(thread);
+         results.add(handedOver);
+         failures.add(failure);
+      }
+      threads.forEach(Thread::start);
+
+      var finished = false;
+      try {
+         for (int index = 0; index < sources.size(); index++) {
+            final var source = sources.get(index);
+            final var handedOver = results.get(index);
+            for (var item = handedOver.take(); item != END; item = handedOver.take()) {
+               collect.accept(source, item.value());
+            }
+            final var failure = failures.get(index).get();
+            if (failure instanceof IOException) {
+               throw (IOException) failure;
+            } else if (failure != null) {
+               throw (RuntimeException) failure;
+            }
+         }
+         finished = true;
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("Interrupted while indexing.");
+      } finally {
+         if (!finished) {
+            threads.forEach(Thread::interrupt);
+         }
+      }
+   }
+
+   /**
+    * The end marker, typed for a queue.
+    *
+    * @param <T> type of value
+    *
+    * @return {@link #END}
+    */
+   @SuppressWarnings("unchecked")
+   private static <T> Item<T> end() {
+      return (Item<T>) END;
+   }
+
+   /**
+    * A value passing between stages, tagged with the order in which its file was discovered.
+    *
+    * @param sequence position of the file in discovery order
+    * @param value    the value, or null if an earlier stage failed for this file
+    * @param <T>      type of value
+    */
+   private record Item<T>(long sequence, T value) {
+   }
+
+   /**
+    * State of one concurrent run.
+    *
+    * @param <R> what the read stage produces
+    * @param <C> what the compute stage produces
+    */
+   private final class Run<R, C> {
+
+      /**
+       * Finds the files to index.
+       */
+      private final Discovery discovery;
+
+      /**
+       * Reads one file.
+       */
+      private final Function<Path, R> read;
+
+      /**
+       * Computes a result from what was read.
+       */
+      private final Function<R, C> compute;
+
+      /**
+       * Receives results in discovery order.
+       */
+      private final Consumer<C> collect;
+
+      /**
+       * Discovered files, waiting to be read.
+       */
+      private final BlockingQueue<Item<Path>> discovered = new ArrayBlockingQueue<>(queueCapacity);
+
+      /**
+       * Read files, waiting to be computed.
+       */
+      private final BlockingQueue<Item<R>> readQueue = new ArrayBlockingQueue<>(queueCapacity);
+
+      /**
+       * Computed results, waiting to be collected.
+       */
+      private final BlockingQueue<Item<C>> computed = new ArrayBlockingQueue<>(queueCapacity);
+
+      /**
+       * One permit for each file that may still be discovered before the collect stage catches up.
+       */
+      private final Semaphore inFlight = new Semaphore(inFlightLimit());
+
+      /**
+       * First failure in any stage.
+       */
+      private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+      /**
+       * Read workers still running.
+       */
+      private final AtomicInteger readersRunning = new AtomicInteger(readWorkers);
+
+      /**
+       * Compute workers still running.
+       */
+      private final AtomicInteger computersRunning = new AtomicInteger(computeWorkers);
+
+      /**
+       * Every thread started for this run.
+       */
+      private final List<Thread> threads = new ArrayList<>();
+
+      /**
+       * Create a run.
+       *
+       * @param discovery finds the files to index
+       * @param read      reads one file
+       * @param compute   computes a result from what was read
+       * @param collect   receives results in discovery order
+       */
+      Run(final Discovery discovery, final Function<Path, R> read, final Function<R, C> compute,
+          final Consumer<C> collect) {
+         this.discovery = discovery;
+         this.read = read;
+         this.compute = compute;
+         this.collect = collect;
+      }
+
+      /**
+       * Start the stages and collect results until every file has been through the pipeline.
+       *
+       * @throws IOException if discovery fails, or the calling thread is interrupted
+       */
+      void execute() throws IOException {
+         start("index-discovery", this::discover);
+         for (int index = 0; index < readWorkers; index++) {
+            start("index-read-" + index, () -> work(discovered, read, readQueue, readersRunning, computeWorkers));
+         }
+         for (int index = 0; index < computeWorkers; index++) {
+            start("index-compute-" + index, () -> work(readQueue, compute, computed, computersRunning, 1));
+         }
+         var finished = false;
+         try {
+            collectInOrder();
+            finished = true;
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while indexing.");
+         } finally {
+            if (!finished) {
+               // Don't leave workers blocked on a queue nobody will drain.
+               threads.forEach(Thread::interrupt);
+            }
+         }
+         rethrowFailure();
+      }
+
+      /**
+       * Discovery stage: number each file found and queue it for reading, once the collect stage is close enough
+       * behind.
+       */
+      private void discover() {
+         final var sequence = new long[1];
+         try {
+            discovery.discover(path -> {
+               try {
+                  inFlight.acquire();
+               } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  throw new IllegalStateException("Interrupted while indexing.", e);
+               }
+               put(discovered, new Item<>(sequence[0]++, path));
+            });
+         } catch (IOException | RuntimeException e) {
+            failure.compareAndSet(null, e);
+         } finally {
+            for (int index = 0; index < readWorkers; index++) {
+               put(discovered, end());
+            }
+         }
+      }
+
+      /**
+       * Read or compute stage: apply <code>function</code> to everything in <code>input</code> until the end of it.
+       * The last worker of the stage to finish marks the end of <code>output</code> once for each worker of the next
+       * stage.
+       *
+       * @param input         queue to take from
+       * @param function      the stage's work
+       * @param output        queue to put results on
+       * @param running       workers of this stage still running
+       * @param nextStageSize workers in the next stage
+       * @param <I>           input type
+       * @param <O>           output type
+       */
+      private <I, O> void work(final BlockingQueue<Item<I>> input, final Function<I, O> function,
+                               final BlockingQueue<Item<O>> output, final AtomicInteger running,
+                               final int nextStageSize) {
+         try {
+            while (true) {
+               final var item = input.take();
+               if (item == END) {
+                  break;
+               }
+               O result = null;
+               if (item.value() != null) {
+                  try {
+                     result = function.apply(item.value());
+                  } catch (RuntimeException e) {
+                     log.error("Failed to index item {}", item.sequence(), e);
+                     failure.compareAndSet(null, e);
+                  }
+               }
+               output.put(new Item<>(item.sequence(), result));
+            }
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+         }
+         if (running.decrementAndGet() == 0) {
+            for (int index = 0; index < nextStageSize; index++) {
+               put(output, end());
+            }
+         }
+      }
+
+      /**
+       * Collect stage: hand results to {@link #collect} in discovery order, holding back any that arrive early. Each
+       * result handed on, or failure passed over, lets discovery find one more file.
+       *
+       * @throws InterruptedException if the calling thread is interrupted
+       */
+      private void collectInOrder() throws InterruptedException {
+         final var early = new HashMap<Long, C>();
+         final var failed = new HashSet<Long>();
+         long next = 0;
+         while (true) {
+            final var item = computed.take();
+            if (item == END) {
+               break;
+            }
+            if (item.value() == null) {
+               failed.add(item.sequence());
+            } else {
+               early.put(item.sequence(), item.value());
+            }
+            while (early.containsKey(next) || failed.contains(next)) {
+               final var value = early.remove(next);
+               failed.remove(next);
+               if (value != null) {
+                  collect.accept(value);
+               }
+               inFlight.release();
+               next++;
+            }
+         }
+      }
+
+      /**
+       * Throw the first failure from any stage, if there was one.
+       *
+       * @throws IOException if discovery failed
+       */
+      private void rethrowFailure() throws IOException {
+         final var first = failure.get();
+         if (first instanceof IOException) {
+            throw (IOException) first;
+         }
+         if (first != null) {
+            throw new IllegalStateException("Indexing failed.", first);
+         }
+      }
+
+      /**
+       * Start a daemon thread for a stage.
+       *
+       * @param name     thread name
+       * @param runnable the stage's work
+       */
+      private void start(final String name, final Runnable runnable) {
+         final var thread = new Thread(runnable, name);
+         thread.setDaemon(true);
+         threads.add(thread);
+         thread.start();
+      }
+
+      /**
+       * Put an item on a queue, waiting for space.
+       *
+       * @param queue the queue
+       * @param item  the item
+       * @param <T>   type of value
+       */
+      private <T> void put(final BlockingQueue<Item<T>> queue, final Item<T> item) {
+         try {
+            queue.put(item);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while indexing.", e);
+         }
+      }
+
+   }
+
+}
@@ -0,0 +1,160 @@
+package org.rmb.md.indexer.pipeline;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Discovery that finds every file of several sources first, then hands them on most recently modified first, so that
+ * the files just edited are indexed - and their output published - before the rest. Files modified at the same time
+ * keep the order they were found in.
+ * <p>
+ * With a time budget, files stop being handed on once it has run out, counted from when this was created; those left
+ * are then {@link #unvisited()}. Files already handed on are still indexed.
+ *
+ * @param <S> type of source
+ */
+@Slf4j
+public final class RecentFirst<S> implements Discovery {
+
+   /**
+    * The sources.
+    */
+   private final List<S> sources;
+
+   /**
+    * Finds the files of a source.
+    */
+   private final Function<S, Discovery> discovery;
+
+   /**
+    * Tells the time, in nanoseconds, as {@link System#nanoTime()} does.
+    */
+   private final LongSupplier nanoTime;
+
+   /**
+    * When files stop being handed on, as told by {@link #nanoTime}, if there is a budget.
+    */
+   private final Optional<Long> deadline;
+
+   /**
+    * Source of each file found. Filled in before any file is handed on, and only read after that.
+    */
+   private final Map<Path, S> sourceOfFile = new HashMap<>();
+
+   /**
+    * Files found but not handed on because the budget ran out, most recently modified first.
+    */
+   private List<Path> unvisited = List.of();
+
+   /**
+    * A file found, with when it was last modified.
+    *
+    * @param path         the file
+    * @param lastModified when it was last modified, in milliseconds since the epoch
+    */
+   private record Candidate(Path path, long lastModified) {
+   }
+
+   /**
+    * Create a discovery over several sources.
+    *
+    * @param sources   the sources
+    * @param discovery finds the files of a source
+    * @param budget    how long to go on handing on files, if not until every file is handed on
+    */
+   public RecentFirst(final List<S> sources, final Function<S, Discovery> discovery, final Optional<Duration> budget) {
+      this(sources, discovery, budget, System::nanoTime);
+   }
+
+   /**
+    * Create a discovery over several sources, telling the time with the given clock.
+    *
+    * @param sources   the sources
+    * @param discovery finds the files of a source
+    * @param budget    how long to go on handing on files, if not until every file is handed on
+    * @param nanoTime  tells the time in nanoseconds, as {@link System#nanoTime()} does
+    */
+   public RecentFirst(final List<S> sources, final Function<S, Discovery> discovery, final Optional<Duration> budget,
+                      final LongSupplier nanoTime) {
+      this.sources = List.copyOf(sources);
+      this.discovery = discovery;
+      this.nanoTime = nanoTime;
+      final var now = nanoTime.getAsLong();
+      this.deadline = budget.map(duration -> now + duration.toNanos());
+   }
+
+   @Override
+   public void discover(final Consumer<Path> sink) throws IOException {
+      final var candidates = new ArrayList<Candidate>();
+      for (S source : sources) {
+         discovery.apply(source).discover(path -> {
+            if (sourceOfFile.putIfAbsent(path, source) == null) {
+               candidates.add(new Candidate(path, lastModified(path)));
+            }
+         });
+      }
+      // List.sort is stable, so files modified at the same time stay in the order they were found.
+      candidates.sort(Comparator.comparingLong(Candidate::lastModified).reversed());
+      log.debug("Found {} files; indexing the most recently modified first.", candidates.size());
+
+      for (int index = 0; index < candidates.size(); index++) {
+         if (deadline.isPresent() && nanoTime.getAsLong() - deadline.get() >= 0) {
+            final var left = new ArrayList<Path>(candidates.size() - index);
+            candidates.subList(index, candidates.size()).forEach(candidate -> left.add(candidate.path()));
+            unvisited = left;
+            return;
+         }
+         sink.accept(candidates.get(index).path());
+      }
+   }
+
+   /**
+    * The source a file was found in.
+    *
+    * @param path a file handed on by {@link #discover(Consumer)}
+    *
+    * @return its source; the first, if more than one source found it
+    */
+   public S sourceOf(final Path path) {
+      return sourceOfFile.get(path);
+   }
+
+   /**
+    * Files found but not handed on because the budget ran out.
+    *
+    * @return the files, most recently modified first; empty if every file was handed on
+    */
+   public List<Path> unvisited() {
+      return unvisited;
+   }
+
+   /**
+    * When a file was last modified.
+    *
+    * @param path the file
+    *
+    * @return milliseconds since the epoch, or {@link Long#MIN_VALUE} if it cannot be told, so the file comes last and
+    * is reported when it fails to be read
+    */
+   private static long lastModified(final Path path) {
+      try {
+         return Files.getLastModifiedTime(path).toMillis();
+      } catch (IOException e) {
+         return Long.MIN_VALUE;
+      }
+   }
+
+}
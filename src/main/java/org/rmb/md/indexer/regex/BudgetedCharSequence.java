@@ -0,0 +1,100 @@
+package org.rmb.md.indexer.regex;
+
+/**
+ * A string that stops a regular expression matching it once a deadline has passed.
+ * <p>
+ * The regex engine reads its input one character at a time through {@link #charAt(int)}, so however badly a pattern
+ * backtracks it keeps coming back here. Every {@link #CHECK_INTERVAL} characters the clock is checked, and once the
+ * deadline has passed {@link Exhausted} is thrown, which ends the match. Reading the clock that rarely keeps the cost
+ * to a counter per character.
+ */
+final class BudgetedCharSequence implements CharSequence {
+
+   /**
+    * Characters read between looks at the clock; a power of two.
+    */
+   static final int CHECK_INTERVAL = 1024;
+
+   /**
+    * The string being matched.
+    */
+   private final String input;
+
+   /**
+    * {@link System#nanoTime()} after which matching must stop.
+    */
+   private final long deadline;
+
+   /**
+    * Characters read so far.
+    */
+   private int reads;
+
+   /**
+    * Wrap a string.
+    *
+    * @param input    the string being matched
+    * @param deadline {@link System#nanoTime()} after which matching must stop
+    */
+   BudgetedCharSequence(final String input, final long deadline) {
+      this.input = input;
+      this.deadline = deadline;
+   }
+
+   @Override
+   public int length() {
+      return input.length();
+   }
+
+   @Override
+   public char charAt(final int index) {
+      if ((++reads & (CHECK_INTERVAL - 1)) == 0 && System.nanoTime() - deadline > 0) {
+         throw new Exhausted();
+      }
+      return input.charAt(index);
+   }
+
+   /**
+    * Part of the string, for group references and the text between matches; not budgeted, as copying is linear.
+    *
+    * @param start first index
+    * @param end   index after the last
+    *
+    * @return the part
+    */
+   @Override
+   public CharSequence subSequence(final int start, final int end) {
+      return input.subSequence(start, end);
+   }
+
+   /**
+    * The string itself, which is what a matcher returns when nothing matched.
+    *
+    * @return the string
+    */
+   @Override
+   public String toString() {
+      return input;
+   }
+
+   /**
+    * Thrown when matching runs past the deadline. Only ever caught by the step that set the deadline, so it carries
+    * no stack trace.
+    */
+   static final class Exhausted extends RuntimeException {
+
+      /**
+       * Serial version.
+       */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Create the exception, without a stack trace.
+       */
+      Exhausted() {
+         super("Time budget exhausted", null, false, false);
+      }
+
+   }
+
+}
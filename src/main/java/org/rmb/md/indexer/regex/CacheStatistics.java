@@ -0,0 +1,32 @@
+package org.rmb.md.indexer.regex;
+
+import java.util.Locale;
+
+/**
+ * How well the result cache of a {@link ReplacementSequence} is doing.
+ *
+ * @param hits      inputs whose result was found in the cache
+ * @param misses    inputs whose result had to be worked out
+ * @param evictions results dropped to make room for newer ones
+ * @param size      results in the cache now
+ * @param capacity  most results the cache holds
+ */
+public record CacheStatistics(long hits, long misses, long evictions, int size, int capacity) {
+
+   /**
+    * Share of inputs whose result was found in the cache.
+    *
+    * @return the hit rate, from 0 to 1; 0 if nothing was looked up
+    */
+   public double hitRate() {
+      final var lookups = hits + misses;
+      return lookups == 0 ? 0 : (double) hits / lookups;
+   }
+
+   @Override
+   public String toString() {
+      return String.format(Locale.ROOT, "%d hits, %d misses (%.1f%% hit rate), %d evicted, %d of %d entries used",
+            hits, misses, hitRate() * 100, evictions, size, capacity);
+   }
+
+}
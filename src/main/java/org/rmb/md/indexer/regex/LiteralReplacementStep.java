@@ -0,0 +1,264 @@
+package org.rmb.md.indexer.regex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link ReplacementStep} for a run of adjacent {@link Replacement}s whose <code>find</code> and
+ * <code>replace</code> are plain literals, e.g. <code>find=-</code> or <code>find=_</code>. No regular expression is
+ * involved: all literals are replaced in one pass over the input.
+ * <p>
+ * Doing several sequential replacements in one pass is only the same as doing them one after the other when no
+ * literal can see the output of an earlier one. {@link #canAccept(Literal)} only lets a literal join this step when:
+ * <ol>
+ *    <li>its <code>find</code> shares no character with the <code>find</code> of any literal already in the step,
+ *    so matches can never overlap;</li>
+ *    <li>its <code>find</code> shares no character with the <code>replace</code> of any literal already in the
+ *    step, so it can never match text produced by an earlier literal;</li>
+ *    <li>no literal already in the step has an empty <code>replace</code>, so removing text can never join two
+ *    pieces of the input into a new match.</li>
+ * </ol>
+ */
+final class LiteralReplacementStep implements ReplacementStep {
+
+   /**
+    * Characters that have a special meaning in a regular expression.
+    */
+   private static final String REGEX_META_CHARACTERS = "\\^$.|?*+()[]{}";
+
+   /**
+    * The literals in this step, in sequence order.
+    */
+   private final List<Literal> literals;
+
+   /**
+    * Create a step from one literal.
+    *
+    * @param literal the first literal in the step
+    */
+   LiteralReplacementStep(final Literal literal) {
+      this(List.of(literal));
+   }
+
+   /**
+    * Create a step from literals that are known to be safe to apply in one pass.
+    *
+    * @param literals the literals
+    */
+   private LiteralReplacementStep(final List<Literal> literals) {
+      this.literals = Collections.unmodifiableList(literals);
+   }
+
+   /**
+    * Try to read a {@link Replacement} as a pair of plain literals.
+    *
+    * @param replacement the replacement read from a sequence file
+    *
+    * @return the literal, or empty if either side needs the regex engine or <code>find</code> matches nothing but the
+    * empty string
+    */
+   static Optional<Literal> literalOf(final Replacement replacement) {
+      final var find = unescapeFind(replacement.find());
+      // An empty find matches between every character, which only the regex engine does the same way.
+      if (find.isEmpty() || find.get().isEmpty()) {
+         return Optional.empty();
+      }
+      return unescapeReplace(replacement.replace())
+            .map(replace -> new Literal(replacement, find.get(), replace));
+   }
+
+   /**
+    * Can <code>literal</code> be added to this step while giving the same result as sequential application?
+    *
+    * @param literal the literal that follows the last literal of this step in the sequence
+    *
+    * @return true if it is safe to merge <code>literal</code> into this step
+    */
+   boolean canAccept(final Literal literal) {
+      for (Literal existing : literals) {
+         if (existing.replace().isEmpty()
+               || sharesCharacter(literal.find(), existing.find())
+               || sharesCharacter(literal.find(), existing.replace())) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Create a new step that is this step followed by <code>literal</code>.
+    *
+    * @param literal the literal to add - must have been checked with {@link #canAccept(Literal)}
+    *
+    * @return a new step
+    */
+   LiteralReplacementStep with(final Literal literal) {
+      final var merged = new ArrayList<>(literals);
+      merged.add(literal);
+      return new LiteralReplacementStep(merged);
+   }
+
+   @Override
+   public String apply(final String input) {
+      if (literals.size() == 1) {
+         return replaceAll(input, literals.get(0));
+      }
+      StringBuilder result = null;
+      int copied = 0;
+      int index = 0;
+      while (index < input.length()) {
+         final var literal = literalAt(input, index);
+         if (literal == null) {
+            index++;
+            continue;
+         }
+         if (result == null) {
+            result = new StringBuilder(input.length() + 16);
+         }
+         result.append(input, copied, index).append(literal.replace());
+         index += literal.find().length();
+         copied = index;
+      }
+      if (result == null) {
+         return input;
+      }
+      return result.append(input, copied, input.length()).toString();
+   }
+
+   /**
+    * Replace every occurrence of one literal, returning <code>input</code> itself if there is none.
+    *
+    * @param input   the string to replace in
+    * @param literal the literal
+    *
+    * @return the result
+    */
+   private static String replaceAll(final String input, final Literal literal) {
+      int index = input.indexOf(literal.find());
+      if (index < 0) {
+         return input;
+      }
+      final var result = new StringBuilder(input.length() + 16);
+      int copied = 0;
+      do {
+         result.append(input, copied, index).append(literal.replace());
+         copied = index + literal.find().length();
+         index = input.indexOf(literal.find(), copied);
+      } while (index >= 0);
+      return result.append(input, copied, input.length()).toString();
+   }
+
+   @Override
+   public List<Replacement> replacements() {
+      return literals.stream().map(Literal::replacement).collect(Collectors.toList());
+   }
+
+   @Override
+   public String toString() {
+      return "LiteralReplacementStep{" + replacements() + '}';
+   }
+
+   /**
+    * Find the literal that matches at <code>index</code>. Literals in one step never share a first character, so
+    * at most one can match.
+    *
+    * @param input the input being scanned
+    * @param index position in <code>input</code>
+    *
+    * @return the literal that matches at <code>index</code>, or null if none do
+    */
+   private Literal literalAt(final String input, final int index) {
+      final char current = input.charAt(index);
+      for (Literal literal : literals) {
+         if (literal.find().charAt(0) == current && input.startsWith(literal.find(), index)) {
+            return literal;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Turn a <code>find</code> expression into the literal text it matches, if it is a literal. Backslash escaped
+    * punctuation such as <code>\\</code> or <code>\.</code> counts as literal; anything else with a regex meaning
+    * does not.
+    *
+    * @param find the regular expression
+    *
+    * @return the literal text, or empty if <code>find</code> is a real regular expression
+    */
+   private static Optional<String> unescapeFind(final String find) {
+      final var literal = new StringBuilder(find.length());
+      for (int index = 0; index < find.length(); index++) {
+         final char current = find.charAt(index);
+         if (current == '\\') {
+            if (index + 1 == find.length() || Character.isLetterOrDigit(find.charAt(index + 1))) {
+               return Optional.empty();
+            }
+            literal.append(find.charAt(++index));
+         } else if (REGEX_META_CHARACTERS.indexOf(current) >= 0) {
+            return Optional.empty();
+         } else {
+            literal.append(current);
+         }
+      }
+      return Optional.of(literal.toString());
+   }
+
+   /**
+    * Turn a <code>replace</code> string into the literal text {@link java.util.regex.Matcher#replaceAll(String)}
+    * would insert, if it does not refer to any group.
+    *
+    * @param replace the replacement string
+    *
+    * @return the literal text, or empty if <code>replace</code> uses a group reference (or is malformed)
+    */
+   private static Optional<String> unescapeReplace(final String replace) {
+      final var literal = new StringBuilder(replace.length());
+      for (int index = 0; index < replace.length(); index++) {
+         final char current = replace.charAt(index);
+         if (current == '$') {
+            return Optional.empty();
+         }
+         if (current == '\\') {
+            if (index + 1 == replace.length()) {
+               return Optional.empty();
+            }
+            literal.append(replace.charAt(++index));
+         } else {
+            literal.append(current);
+         }
+      }
+      return Optional.of(literal.toString());
+   }
+
+   /**
+    * Do two strings have any character in common?
+    *
+    * @param first  one string
+    * @param second another string
+    *
+    * @return true if any character appears in both
+    */
+   private static boolean sharesCharacter(final String first, final String second) {
+      for (int index = 0; index < first.length(); index++) {
+         if (second.indexOf(first.charAt(index)) >= 0) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * A {@link Replacement} read as literal text.
+    *
+    * @param replacement the replacement as read from the sequence file
+    * @param find        the literal text to find
+    * @param replace     the literal text to replace it with
+    */
+   record Literal(Replacement replacement, String find, String replace) {
+   }
+
+}
@@ -0,0 +1,109 @@
+package org.rmb.md.indexer.regex;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link ReplacementStep} for one {@link Replacement} that records how often it is applied, how often it matches,
+ * how long that takes and which input took longest. Safe to apply from many threads at once.
+ */
+final class ProfiledReplacementStep implements ReplacementStep {
+
+   /**
+    * The step being profiled, covering exactly one replacement.
+    */
+   private final ReplacementStep step;
+
+   /**
+    * Times the step was applied.
+    */
+   private final LongAdder invocations = new LongAdder();
+
+   /**
+    * Times the step matched its input.
+    */
+   private final LongAdder matches = new LongAdder();
+
+   /**
+    * Nanoseconds spent applying the step.
+    */
+   private final LongAdder nanos = new LongAdder();
+
+   /**
+    * Nanoseconds spent on the slowest input. Read without locking so that fast inputs never wait.
+    */
+   private volatile long worstNanos = -1;
+
+   /**
+    * The slowest input; guarded by this.
+    */
+   private String worstInput;
+
+   /**
+    * Profile a step.
+    *
+    * @param step the step, covering exactly one replacement
+    */
+   ProfiledReplacementStep(final ReplacementStep step) {
+      if (step.replacements().size() != 1) {
+         throw new IllegalArgumentException("Only a step for one replacement can be profiled: " + step);
+      }
+      this.step = step;
+   }
+
+   @Override
+   public String apply(final String input) {
+      final var start = System.nanoTime();
+      final var result = step.apply(input);
+      final var elapsed = System.nanoTime() - start;
+      invocations.increment();
+      nanos.add(elapsed);
+      // A step returns its input itself when nothing matched, so this costs no comparison.
+      if (result != input) {
+         matches.increment();
+      }
+      if (elapsed > worstNanos) {
+         synchronized (this) {
+            if (elapsed > worstNanos) {
+               worstNanos = elapsed;
+               worstInput = input;
+            }
+         }
+      }
+      return result;
+   }
+
+   @Override
+   public List<Replacement> replacements() {
+      return step.replacements();
+   }
+
+   /**
+    * What the step has cost so far.
+    *
+    * @param position position of the replacement in its sequence, counting from 1
+    *
+    * @return the statistics
+    */
+   synchronized RuleStatistics statistics(final int position) {
+      return new RuleStatistics(position, step.replacements().get(0), invocations.sum(), matches.sum(), nanos.sum(),
+            Math.max(0, worstNanos), worstInput);
+   }
+
+   /**
+    * Forget everything recorded so far.
+    */
+   synchronized void reset() {
+      invocations.reset();
+      matches.reset();
+      nanos.reset();
+      worstNanos = -1;
+      worstInput = null;
+   }
+
+   @Override
+   public String toString() {
+      return "ProfiledReplacementStep{" + step + '}';
+   }
+
+}
@@ -0,0 +1,267 @@
+package org.rmb.md.indexer.regex;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.apache.commons.lang3.StringUtils.abbreviate;
+
+/**
+ * A {@link ReplacementStep} for a single {@link Replacement} whose <code>find</code> really is a regular expression.
+ * The pattern is compiled once, when the step is created.
+ * <p>
+ * A pattern that backtracks badly can take minutes on a long enough input, so each input gets a time budget. If
+ * matching runs over it, the replacement is skipped for that input - the input is returned unchanged - and that is
+ * logged and counted.
+ */
+@Slf4j
+final class RegexReplacementStep implements ReplacementStep {
+
+   /**
+    * Longest part of an input that is logged when it runs over budget.
+    */
+   private static final int LOGGED_INPUT_LENGTH = 200;
+
+   /**
+    * The replacement this step was compiled from.
+    */
+   private final Replacement replacement;
+
+   /**
+    * The compiled {@link Replacement#find()}.
+    */
+   private final Pattern pattern;
+
+   /**
+    * Nanoseconds matching one input may take, or 0 for no limit.
+    */
+   private final long budgetNanos;
+
+   /**
+    * Counts inputs that ran over budget.
+    */
+   private final LongAdder overBudget;
+
+   /**
+    * Compile a replacement with no time budget.
+    *
+    * @param replacement the replacement to compile
+    *
+    * @throws java.util.regex.PatternSyntaxException if {@link Replacement#find()} is not a valid regular expression
+    */
+   RegexReplacementStep(final Replacement replacement) {
+      this(replacement, 0, new LongAdder());
+   }
+
+   /**
+    * Compile a replacement.
+    *
+    * @param replacement the replacement to compile
+    * @param budgetNanos nanoseconds matching one input may take, or 0 for no limit
+    * @param overBudget  counts inputs that ran over budget
+    *
+    * @throws java.util.regex.PatternSyntaxException if {@link Replacement#find()} is not a valid regular expression
+    */
+   RegexReplacementStep(final Replacement replacement, final long budgetNanos, final LongAdder overBudget) {
+      this.replacement = replacement;
+      this.pattern = Pattern.compile(replacement.find());
+      this.budgetNanos = budgetNanos;
+      this.overBudget = overBudget;
+   }
+
+   @Override
+   public String apply(final String input) {
+      if (budgetNanos <= 0) {
+         return replaceAll(pattern.matcher(input), input);
+      }
+      try {
+         return replaceAll(pattern.matcher(new BudgetedCharSequence(input, System.nanoTime() + budgetNanos)), input);
+      } catch (BudgetedCharSequence.Exhausted e) {
+         overBudget.increment();
+         log.warn("Skipped replacement find=[{}] replace=[{}]: it took over {} ms on a {} character input [{}].",
+               replacement.find(), replacement.replace(), TimeUnit.NANOSECONDS.toMillis(budgetNanos), input.length(),
+               abbreviate(input, LOGGED_INPUT_LENGTH));
+         return input;
+      }
+   }
+
+   /**
+    * Replace every match, as {@link Matcher#replaceAll(String)} does, but return <code>input</code> itself if there
+    * is none.
+    *
+    * @param matcher matcher over <code>input</code>
+    * @param input   the string being matched
+    *
+    * @return the result
+    */
+   private String replaceAll(final Matcher matcher, final String input) {
+      if (!matcher.find()) {
+         return input;
+      }
+      final var result = new StringBuilder(input.length() + 16);
+      do {
+         matcher.appendReplacement(result, replacement.replace());
+      } while (matcher.find());
+      return matcher.appendTail(result).toString();
+   }
+
+   /**
+    * Does a regular expression repeat a group that itself contains a repeat, as in <code>(a+)+</code> or
+    * <code>(\w+\s?)*</code>? Such patterns can backtrack exponentially on inputs that almost match.
+    * <p>
+    * This is a quick check that errs on the side of silence: possessive quantifiers and atomic groups, which cannot
+    * backtrack, are not reported, and neither is a group repeated a bounded number of times.
+    *
+    * @param regex the regular expression
+    *
+    * @return true if a repeated group contains a repeat
+    */
+   static boolean hasNestedQuantifier(final String regex) {
+      final var groups = new ArrayDeque<Group>();
+      var inClass = false;
+      var index = 0;
+      while (index < regex.length()) {
+         final char current = regex.charAt(index);
+         if (current == '\\') {
+            index += 2;
+            continue;
+         }
+         if (inClass) {
+            inClass = current != ']';
+            index++;
+            continue;
+         }
+         switch (current) {
+            case '[' -> {
+               inClass = true;
+               // A ']' straight after '[' or '[^' is part of the class.
+               index += regex.startsWith("^]", index + 1) ? 3 : regex.startsWith("]", index + 1) ? 2 : 1;
+            }
+            case '(' -> {
+               groups.push(new Group(regex.startsWith("?>", index + 1)));
+               index++;
+            }
+            case ')' -> {
+               index++;
+               if (groups.isEmpty()) {
+                  continue;
+               }
+               final var group = groups.pop();
+               final var end = quantifierEnd(regex, index);
+               final var repeated = end > index && backtracksWithoutBound(regex, index, end);
+               if (repeated && group.containsRepeat && !group.atomic) {
+                  return true;
+               }
+               if (!groups.isEmpty() && (repeated || group.containsRepeat && !group.atomic)) {
+                  groups.peek().containsRepeat = true;
+               }
+               index = end;
+            }
+            default -> {
+               final var end = quantifierEnd(regex, index);
+               if (end > index) {
+                  if (!groups.isEmpty() && backtracksWithoutBound(regex, index, end)) {
+                     groups.peek().containsRepeat = true;
+                  }
+                  index = end;
+               } else {
+                  index++;
+               }
+            }
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Find the end of a quantifier, including any <code>?</code> or <code>+</code> that makes it lazy or possessive.
+    *
+    * @param regex the regular expression
+    * @param index where the quantifier would start
+    *
+    * @return index after the quantifier, or <code>index</code> if there is none there
+    */
+   private static int quantifierEnd(final String regex, final int index) {
+      if (index >= regex.length()) {
+         return index;
+      }
+      int end;
+      switch (regex.charAt(index)) {
+         case '*', '+', '?' -> end = index + 1;
+         case '{' -> {
+            final var close = regex.indexOf('}', index);
+            if (close < 0 || !regex.substring(index + 1, close).matches("\\d+(,\\d*)?")) {
+               return index;
+            }
+            end = close + 1;
+         }
+         default -> {
+            return index;
+         }
+      }
+      if (end < regex.length() && (regex.charAt(end) == '?' || regex.charAt(end) == '+')) {
+         end++;
+      }
+      return end;
+   }
+
+   /**
+    * Does a quantifier repeat without bound and give back what it matched: <code>*</code>, <code>+</code> or
+    * <code>{n,}</code>, greedy or lazy but not possessive?
+    *
+    * @param regex the regular expression
+    * @param start where the quantifier starts
+    * @param end   index after the quantifier
+    *
+    * @return true if the quantifier can backtrack over any number of repeats
+    */
+   private static boolean backtracksWithoutBound(final String regex, final int start, final int end) {
+      final char first = regex.charAt(start);
+      final var quantifierEnd = first == '{' ? regex.indexOf('}', start) + 1 : start + 1;
+      final var unbounded = first == '*' || first == '+' || first == '{' && regex.charAt(quantifierEnd - 2) == ',';
+      final var possessive = end > quantifierEnd && regex.charAt(quantifierEnd) == '+';
+      return unbounded && !possessive;
+   }
+
+   @Override
+   public List<Replacement> replacements() {
+      return List.of(replacement);
+   }
+
+   @Override
+   public String toString() {
+      return "RegexReplacementStep{" + replacement + '}';
+   }
+
+   /**
+    * A group found while checking for nested quantifiers.
+    */
+   private static final class Group {
+
+      /**
+       * Is this an atomic group, which never gives back what it matched?
+       */
+      private final boolean atomic;
+
+      /**
+       * Does the group contain a quantifier that can backtrack over any number of repeats?
+       */
+      private boolean containsRepeat;
+
+      /**
+       * Create a group.
+       *
+       * @param atomic is this an atomic group
+       */
+      private Group(final boolean atomic) {
+         this.atomic = atomic;
+      }
+
+   }
+
+}
@@ -0,0 +1,104 @@
+package org.rmb.md.indexer.regex;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of the results of applying a {@link ReplacementSequence}, keyed by the whole input and dropping the
+ * least recently used result when full. Safe to use from many threads at once; results are worked out outside the
+ * lock, so two threads may occasionally both work out the same one.
+ */
+final class ReplacementCache {
+
+   /**
+    * Most results held.
+    */
+   private final int capacity;
+
+   /**
+    * Results keyed by input, least recently used first; guarded by this.
+    */
+   private final LinkedHashMap<String, String> results;
+
+   /**
+    * Lookups that found a result.
+    */
+   private final LongAdder hits = new LongAdder();
+
+   /**
+    * Lookups that found nothing.
+    */
+   private final LongAdder misses = new LongAdder();
+
+   /**
+    * Results dropped to make room; guarded by this.
+    */
+   private long evictions;
+
+   /**
+    * Create an empty cache.
+    *
+    * @param capacity most results held; must be positive
+    */
+   ReplacementCache(final int capacity) {
+      if (capacity <= 0) {
+         throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+      }
+      this.capacity = capacity;
+      this.results = new LinkedHashMap<>(16, 0.75f, true) {
+
+         @Override
+         protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+            if (size() > ReplacementCache.this.capacity) {
+               evictions++;
+               return true;
+            }
+            return false;
+         }
+      };
+   }
+
+   /**
+    * Look up the result for an input, counting a hit or a miss.
+    *
+    * @param input the input
+    *
+    * @return the result, or null if it is not cached
+    */
+   String get(final String input) {
+      final String result;
+      synchronized (this) {
+         result = results.get(input);
+      }
+      (result == null ? misses : hits).increment();
+      return result;
+   }
+
+   /**
+    * Cache the result for an input.
+    *
+    * @param input  the input
+    * @param result the result of applying the sequence to it
+    */
+   synchronized void put(final String input, final String result) {
+      results.put(input, result);
+   }
+
+   /**
+    * How well the cache has done since it was created or the counts were last taken.
+    *
+    * @param reset start counting hits, misses and evictions again from zero
+    *
+    * @return the statistics
+    */
+   synchronized CacheStatistics statistics(final boolean reset) {
+      final var statistics = new CacheStatistics(reset ? hits.sumThenReset() : hits.sum(),
+            reset ? misses.sumThenReset() : misses.sum(), evictions, results.size(), capacity);
+      if (reset) {
+         evictions = 0;
+      }
+      return statistics;
+   }
+
+}
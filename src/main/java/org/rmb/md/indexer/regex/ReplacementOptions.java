@@ -0,0 +1,53 @@
+package org.rmb.md.indexer.regex;
+
+import java.time.Duration;
+
+/**
+ * How a {@link ReplacementSequence} applies its replacements. Start from {@link #DEFAULT} and change what differs.
+ *
+ * @param profiling  record what each replacement costs, rather than merging replacements for speed
+ * @param ruleBudget time a regular expression may take on one input; zero for no limit
+ * @param cacheSize  most results to cache; zero for none, as when profiling
+ */
+public record ReplacementOptions(boolean profiling, Duration ruleBudget, int cacheSize) {
+
+   /**
+    * Not profiled, {@link ReplacementSequence#DEFAULT_RULE_BUDGET} per regular expression and no cache.
+    */
+   public static final ReplacementOptions DEFAULT =
+         new ReplacementOptions(false, ReplacementSequence.DEFAULT_RULE_BUDGET, 0);
+
+   /**
+    * These options, profiled or not.
+    *
+    * @param newProfiling record what each replacement costs, rather than merging replacements for speed
+    *
+    * @return the options
+    */
+   public ReplacementOptions withProfiling(final boolean newProfiling) {
+      return new ReplacementOptions(newProfiling, ruleBudget, cacheSize);
+   }
+
+   /**
+    * These options with another time budget.
+    *
+    * @param newRuleBudget time a regular expression may take on one input; zero for no limit
+    *
+    * @return the options
+    */
+   public ReplacementOptions withRuleBudget(final Duration newRuleBudget) {
+      return new ReplacementOptions(profiling, newRuleBudget, cacheSize);
+   }
+
+   /**
+    * These options with another cache size.
+    *
+    * @param newCacheSize most results to cache; zero for none
+    *
+    * @return the options
+    */
+   public ReplacementOptions withCacheSize(final int newCacheSize) {
+      return new ReplacementOptions(profiling, ruleBudget, newCacheSize);
+   }
+
+}
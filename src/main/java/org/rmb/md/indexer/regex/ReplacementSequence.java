@@ -9,11 +9,17 @@ import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
+import static org.apache.commons.lang3.StringUtils.abbreviate;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.rmb.md.indexer.regex.Replacement.PREFIX_FIND;
 import static org.rmb.md.indexer.regex.Replacement.PREFIX_REPLACE;
@@ -21,15 +27,59 @@ import static org.rmb.md.indexer.regex.Replacement.buildReplacement;
 
 /**
  * Sequence and regular expression based find and replace actions to apply to a string.
+ * <p>
+ * The replacements are compiled once, when the sequence is created, into an immutable list of {@link
+ * ReplacementStep}s: plain literal rules skip the regex engine and adjacent literal rules are merged into a single
+ * pass. Applying the steps gives exactly the same result as calling {@link String#replaceAll(String, String)} for each
+ * replacement in turn.
+ * <p>
+ * A sequence can be created for profiling instead. Then every replacement gets a step of its own, nothing is merged,
+ * and each step records what it costs - see {@link #ruleStatistics()}. Results are the same, only slower.
+ * <p>
+ * Each regular expression gets a time budget per input, {@link #DEFAULT_RULE_BUDGET} unless told otherwise, so one
+ * that backtracks badly on some input cannot hang a run. A replacement that runs over budget is skipped for that input
+ * only; that is logged and counted - see {@link #takeOverBudgetCount()}. Patterns that repeat a group containing a
+ * repeat, the usual cause of runaway backtracking, are warned about when the sequence is created.
+ * <p>
+ * A sequence can also cache its results, keyed by the whole input, so the same input is only worked out once while
+ * it stays among the most recently used - see {@link #cacheStatistics()}. Steps depend on nothing but their input,
+ * so a cached result is exactly what applying the steps again would give; the exception is a result where a
+ * replacement ran over budget, which depends on timing and so is never cached. A profiled sequence is never cached,
+ * so that every input is counted against its replacements.
  */
 @Slf4j
 public final class ReplacementSequence {
 
+   /**
+    * Time a regular expression may take on one input unless told otherwise.
+    */
+   public static final Duration DEFAULT_RULE_BUDGET = Duration.ofMillis(100);
+
    /**
     * The Replacement list.
     */
    private final List<Replacement> replacementList;
 
+   /**
+    * The replacements compiled into steps, in sequence order.
+    */
+   private final List<ReplacementStep> steps;
+
+   /**
+    * Is each replacement profiled?
+    */
+   private final boolean profiling;
+
+   /**
+    * Counts inputs a regular expression ran over budget on.
+    */
+   private final LongAdder overBudget = new LongAdder();
+
+   /**
+    * Results already worked out, or null if results are not cached.
+    */
+   private final ReplacementCache cache;
+
    /**
     * Create replacement sequence from string path to replacement sequence file.
     *
@@ -41,13 +91,118 @@ public final class ReplacementSequence {
       this(readReplacements(path));
    }
 
+   /**
+    * Create replacement sequence from string path to replacement sequence file, applied as <code>options</code>
+    * say.
+    *
+    * @param path    string path to file with find/replace strings.
+    * @param options whether to profile, the time budget of each regular expression and how many results to cache
+    *
+    * @throws IOException IO exception if we cannot read the file
+    */
+   public ReplacementSequence(final String path, final ReplacementOptions options) throws IOException {
+      this(readReplacements(path), options);
+   }
+
    /**
     * Create replacement sequence from list of {@link Replacement}s.
     *
     * @param replacementList the replacement list
+    *
+    * @throws java.util.regex.PatternSyntaxException if any {@link Replacement#find()} is not a valid regular
+    *                                                expression
     */
    public ReplacementSequence(final List<Replacement> replacementList) {
+      this(replacementList, ReplacementOptions.DEFAULT);
+   }
+
+   /**
+    * Create replacement sequence from list of {@link Replacement}s, applied as <code>options</code> say.
+    *
+    * @param replacementList the replacement list
+    * @param options         whether to profile, the time budget of each regular expression and how many results to
+    *                        cache
+    *
+    * @throws java.util.regex.PatternSyntaxException if any {@link Replacement#find()} is not a valid regular
+    *                                                expression
+    */
+   public ReplacementSequence(final List<Replacement> replacementList, final ReplacementOptions options) {
       this.replacementList = Collections.unmodifiableList(replacementList);
+      this.profiling = options.profiling();
+      final var budgetNanos = Math.max(0, options.ruleBudget().toNanos());
+      this.steps = profiling
+            ? compileForProfiling(replacementList, budgetNanos, overBudget)
+            : compile(replacementList, budgetNanos, overBudget);
+      this.cache = profiling || options.cacheSize() <= 0 ? null : new ReplacementCache(options.cacheSize());
+   }
+
+   /**
+    * Compile replacements into steps. Literal replacements are merged with the literal step before them whenever
+    * {@link LiteralReplacementStep#canAccept(LiteralReplacementStep.Literal)} says that is safe.
+    *
+    * @param replacementList the replacements, in sequence order
+    * @param budgetNanos     nanoseconds a regular expression may take on one input, or 0 for no limit
+    * @param overBudget      counts inputs a regular expression ran over budget on
+    *
+    * @return immutable list of compiled steps
+    */
+   private static List<ReplacementStep> compile(final List<Replacement> replacementList, final long budgetNanos,
+                                                final LongAdder overBudget) {
+      final var compiled = new ArrayList<ReplacementStep>();
+      for (Replacement replacement : replacementList) {
+         final var literal = LiteralReplacementStep.literalOf(replacement);
+         if (literal.isEmpty()) {
+            compiled.add(regexStep(replacement, budgetNanos, overBudget));
+            continue;
+         }
+         final var last = compiled.isEmpty() ? null : compiled.get(compiled.size() - 1);
+         if (last instanceof LiteralReplacementStep
+               && ((LiteralReplacementStep) last).canAccept(literal.get())) {
+            compiled.set(compiled.size() - 1, ((LiteralReplacementStep) last).with(literal.get()));
+         } else {
+            compiled.add(new LiteralReplacementStep(literal.get()));
+         }
+      }
+      log.trace("Compiled {} replacements into steps: {}", replacementList.size(), compiled);
+      return Collections.unmodifiableList(compiled);
+   }
+
+   /**
+    * Compile each replacement into a profiled step of its own.
+    *
+    * @param replacementList the replacements, in sequence order
+    * @param budgetNanos     nanoseconds a regular expression may take on one input, or 0 for no limit
+    * @param overBudget      counts inputs a regular expression ran over budget on
+    *
+    * @return immutable list of profiled steps, one per replacement
+    */
+   private static List<ReplacementStep> compileForProfiling(final List<Replacement> replacementList,
+                                                            final long budgetNanos, final LongAdder overBudget) {
+      return replacementList.stream()
+            .map(replacement -> new ProfiledReplacementStep(LiteralReplacementStep.literalOf(replacement)
+                  .<ReplacementStep>map(LiteralReplacementStep::new)
+                  .orElseGet(() -> regexStep(replacement, budgetNanos, overBudget))))
+            .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
+   }
+
+   /**
+    * Compile a replacement that needs the regex engine, warning if its pattern looks like it could backtrack for a
+    * very long time.
+    *
+    * @param replacement the replacement
+    * @param budgetNanos nanoseconds it may take on one input, or 0 for no limit
+    * @param overBudget  counts inputs it ran over budget on
+    *
+    * @return the step
+    */
+   private static ReplacementStep regexStep(final Replacement replacement, final long budgetNanos,
+                                            final LongAdder overBudget) {
+      if (RegexReplacementStep.hasNestedQuantifier(replacement.find())) {
+         log.warn("Replacement find=[{}] repeats a group that contains a repeat, which can backtrack for a very long "
+               + "time on some inputs. A possessive quantifier (such as ++ or *+) or an atomic group (?>...) "
+               + "avoids that.", replacement.find());
+      }
+      return new RegexReplacementStep(replacement, budgetNanos, overBudget);
    }
 
    /**
@@ -135,15 +290,127 @@ public final class ReplacementSequence {
     * @return result of applying replacements to <code>string</code>
     */
    public String apply(final String string) {
+      if (cache == null) {
+         return applySteps(string);
+      }
+      final var cached = cache.get(string);
+      if (cached != null) {
+         log.trace("Cached result for {}: [{}]", string, cached);
+         return cached;
+      }
+      final var overBudgetBefore = overBudget.sum();
+      final var result = applySteps(string);
+      // Any change means a replacement ran over budget, maybe on another thread; not caching then is just cautious.
+      if (overBudget.sum() == overBudgetBefore) {
+         cache.put(string, result);
+      }
+      return result;
+   }
+
+   /**
+    * Apply every step to <code>string</code>, without looking in the cache.
+    *
+    * @param string the string that replacements will be applied to
+    *
+    * @return result of applying replacements to <code>string</code>
+    */
+   private String applySteps(final String string) {
       log.trace("Applying replacements to {}", string);
       var result = string;
-      for (Replacement replacement : replacementList) {
-         result = result.replaceAll(replacement.find(), replacement.replace());
-         log.trace("After replacement {} we have result: [{}]", replacement, result);
+      for (ReplacementStep step : steps) {
+         result = step.apply(result);
+         log.trace("After step {} we have result: [{}]", step, result);
       }
       return result;
    }
 
+   /**
+    * The replacements in this sequence, in the order they are applied.
+    *
+    * @return unmodifiable list of replacements
+    */
+   List<Replacement> replacements() {
+      return replacementList;
+   }
+
+   /**
+    * How many times a regular expression ran over budget and was skipped, since this sequence was created or this was
+    * last called.
+    *
+    * @return the count, which starts again from zero
+    */
+   public long takeOverBudgetCount() {
+      return overBudget.sumThenReset();
+   }
+
+   /**
+    * How well the result cache has done since this sequence was created or this was last called.
+    *
+    * @return the statistics, with counts that start again from zero, or empty if results are not cached
+    */
+   public Optional<CacheStatistics> takeCacheStatistics() {
+      return Optional.ofNullable(cache).map(results -> results.statistics(true));
+   }
+
+   /**
+    * How well the result cache has done since this sequence was created or {@link #takeCacheStatistics()} was last
+    * called.
+    *
+    * @return the statistics, or empty if results are not cached
+    */
+   public Optional<CacheStatistics> cacheStatistics() {
+      return Optional.ofNullable(cache).map(results -> results.statistics(false));
+   }
+
+   /**
+    * Is each replacement profiled?
+    *
+    * @return true if this sequence was created for profiling
+    */
+   public boolean isProfiling() {
+      return profiling;
+   }
+
+   /**
+    * What each replacement has cost since this sequence was created or last reset.
+    *
+    * @return statistics for each replacement in sequence order, or an empty list if not profiling
+    */
+   public List<RuleStatistics> ruleStatistics() {
+      final var statistics = new ArrayList<RuleStatistics>();
+      for (ReplacementStep step : steps) {
+         if (step instanceof ProfiledReplacementStep) {
+            statistics.add(((ProfiledReplacementStep) step).statistics(statistics.size() + 1));
+         }
+      }
+      return statistics;
+   }
+
+   /**
+    * Forget what each replacement has cost so far. Does nothing if not profiling.
+    */
+   public void resetRuleStatistics() {
+      steps.stream()
+            .filter(ProfiledReplacementStep.class::isInstance)
+            .forEach(step -> ((ProfiledReplacementStep) step).reset());
+   }
+
+   /**
+    * Describe what each replacement has cost, most expensive first, one line per replacement.
+    *
+    * @return the description, or an empty string if not profiling
+    */
+   public String describeRuleStatistics() {
+      return ruleStatistics().stream()
+            .sorted(Comparator.comparingLong(RuleStatistics::nanos).reversed())
+            .map(rule -> String.format(Locale.ROOT,
+                  "#%d find=[%s] replace=[%s]: %d calls, %d matched, %.3f ms total, %d ns average, worst %d ns%s",
+                  rule.position(), rule.replacement().find(), rule.replacement().replace(), rule.invocations(),
+                  rule.matches(), rule.nanos() / 1e6, rule.averageNanos(), rule.worstNanos(),
+                  rule.worstInput() == null ? "" : " on [" + abbreviate(rule.worstInput(), 80) + "]"))
+            .collect(Collectors.joining("\n"));
+   }
+
    @Override
    public String toString() {
       return "ReplacementSequence{replacementList=" + replacementList + '}';
@@ -0,0 +1,29 @@
+package org.rmb.md.indexer.regex;
+
+import java.util.List;
+
+/**
+ * One compiled step of a {@link ReplacementSequence}. A step covers one or more adjacent {@link Replacement}s and
+ * applying it gives exactly the same result as applying those replacements one after the other with {@link
+ * String#replaceAll(String, String)}.
+ */
+interface ReplacementStep {
+
+   /**
+    * Apply this step to <code>input</code>.
+    *
+    * @param input the string this step will be applied to
+    *
+    * @return result of applying this step to <code>input</code>, which is <code>input</code> itself if nothing
+    * matched
+    */
+   String apply(String input);
+
+   /**
+    * The replacements this step was compiled from, in the order in which they appeared in the sequence.
+    *
+    * @return the replacements covered by this step
+    */
+   List<Replacement> replacements();
+
+}
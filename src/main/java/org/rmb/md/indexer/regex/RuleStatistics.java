@@ -0,0 +1,26 @@
+package org.rmb.md.indexer.regex;
+
+/**
+ * What one {@link Replacement} of a profiled {@link ReplacementSequence} cost.
+ *
+ * @param position    position of the replacement in its sequence, counting from 1
+ * @param replacement the replacement
+ * @param invocations times it was applied
+ * @param matches     times it matched, even where the replacement left the input as it was
+ * @param nanos       total nanoseconds spent applying it
+ * @param worstNanos  nanoseconds spent on the slowest single input
+ * @param worstInput  the slowest single input, or null if it was never applied
+ */
+public record RuleStatistics(int position, Replacement replacement, long invocations, long matches, long nanos,
+                             long worstNanos, String worstInput) {
+
+   /**
+    * Average nanoseconds per invocation.
+    *
+    * @return the average, or 0 if it was never applied
+    */
+   public long averageNanos() {
+      return invocations == 0 ? 0 : nanos / invocations;
+   }
+
+}
@@ -0,0 +1,40 @@
+package org.rmb.md.indexer.search;
+
+import org.rmb.md.indexer.shortcut.Shortcut;
+import org.rmb.md.indexer.shortcut.ShortcutFactory;
+
+/**
+ * One shortcut in the search index.
+ *
+ * @param title  name of the shortcut: its file name without the file prefix (such as <code>Hugo - </code>) and
+ *               <code>.url</code>
+ * @param url    the URL the shortcut points to
+ * @param source the markdown file the shortcut was created for
+ */
+public record SearchEntry(String title, String url, String source) {
+
+   /**
+    * Extension of shortcut file names, left out of titles.
+    */
+   private static final String URL_EXTENSION = ".url";
+
+   /**
+    * The entry for a shortcut.
+    *
+    * @param shortcut the shortcut
+    *
+    * @return its entry
+    */
+   public static SearchEntry of(final Shortcut shortcut) {
+      var title = shortcut.fileName();
+      final var separator = title.indexOf(ShortcutFactory.FILE_PREFIX_SEPARATOR);
+      if (separator >= 0) {
+         title = title.substring(separator + ShortcutFactory.FILE_PREFIX_SEPARATOR.length());
+      }
+      if (title.endsWith(URL_EXTENSION)) {
+         title = title.substring(0, title.length() - URL_EXTENSION.length());
+      }
+      return new SearchEntry(title, shortcut.url(), shortcut.source().toString());
+   }
+
+}
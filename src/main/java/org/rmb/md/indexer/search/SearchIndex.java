@@ -0,0 +1,478 @@
+package org.rmb.md.indexer.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A search index over shortcut titles, written by {@link SearchIndexBuilder}, answering prefix and typo-tolerant
+ * queries without reading the shortcut files.
+ * <p>
+ * Titles are split into lower case terms of letters and digits. The file holds a table of the distinct terms, sorted
+ * by their UTF-8 bytes, each pointing to the list of entries containing it, and a table of the entries. Lookups read
+ * straight from the file, which is memory-mapped rather than loaded, so opening an index costs the same however large
+ * it is. All numbers are 32-bit big-endian:
+ * <ul>
+ *    <li>Header: {@link #MAGIC}, {@link #VERSION}, entry count, term count, then the offsets of the term table, the
+ *    postings, the entry table and the strings.</li>
+ *    <li>Term table: for each term, the offset of its string, the index of its first posting and its posting
+ *    count.</li>
+ *    <li>Postings: entry numbers, ascending for each term.</li>
+ *    <li>Entry table: for each entry, in title order, the offsets of its title, URL and source.</li>
+ *    <li>Strings: each a byte length followed by that many bytes of UTF-8. Strings used more than once, such as a
+ *    source shared by every heading in a file, are stored once.</li>
+ * </ul>
+ * <p>
+ * Every word of a query must match a term of the title: exactly, or as a prefix for the last word, which may still be
+ * being typed, or within one edit (two for words of {@link #TWO_EDIT_LENGTH} or more characters) of a term, where an
+ * edit inserts, deletes, replaces or swaps adjacent characters. Exact matches rank above prefix matches, which rank
+ * above fuzzy ones; then shorter titles rank first.
+ * <p>
+ * An index is immutable and can be searched from many threads at once.
+ */
+public final class SearchIndex {
+
+   /**
+    * First four bytes of every index: "MDIX".
+    */
+   static final int MAGIC = 0x4D444958;
+
+   /**
+    * Version of the file layout.
+    */
+   static final int VERSION = 1;
+
+   /**
+    * Bytes in the header.
+    */
+   static final int HEADER_SIZE = 8 * Integer.BYTES;
+
+   /**
+    * Bytes per term in the term table.
+    */
+   static final int TERM_SIZE = 3 * Integer.BYTES;
+
+   /**
+    * Bytes per entry in the entry table.
+    */
+   static final int ENTRY_SIZE = 3 * Integer.BYTES;
+
+   /**
+    * Shortest query word matched within one edit of a term.
+    */
+   static final int ONE_EDIT_LENGTH = 4;
+
+   /**
+    * Shortest query word matched within two edits of a term.
+    */
+   static final int TWO_EDIT_LENGTH = 8;
+
+   /**
+    * Score of a word matching a term exactly.
+    */
+   private static final int EXACT = 3;
+
+   /**
+    * Score of a word matching the start of a term.
+    */
+   private static final int PREFIX = 2;
+
+   /**
+    * Score of a word within the allowed edits of a term.
+    */
+   private static final int FUZZY = 1;
+
+   /**
+    * The index file.
+    */
+   private final ByteBuffer buffer;
+
+   /**
+    * Number of entries.
+    */
+   private final int entryCount;
+
+   /**
+    * Number of terms.
+    */
+   private final int termCount;
+
+   /**
+    * Offset of the term table.
+    */
+   private final int termTable;
+
+   /**
+    * Offset of the postings.
+    */
+   private final int postings;
+
+   /**
+    * Offset of the entry table.
+    */
+   private final int entryTable;
+
+   /**
+    * Read an index.
+    *
+    * @param buffer the whole index file
+    *
+    * @throws IOException if it is not an index, or one of another version
+    */
+   private SearchIndex(final ByteBuffer buffer) throws IOException {
+      if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+         throw new IOException("Not a search index.");
+      }
+      if (buffer.getInt(Integer.BYTES) != VERSION) {
+         throw new IOException("Search index is version " + buffer.getInt(Integer.BYTES) + ", not " + VERSION + ".");
+      }
+      this.buffer = buffer;
+      this.entryCount = buffer.getInt(2 * Integer.BYTES);
+      this.termCount = buffer.getInt(3 * Integer.BYTES);
+      this.termTable = buffer.getInt(4 * Integer.BYTES);
+      this.postings = buffer.getInt(5 * Integer.BYTES);
+      this.entryTable = buffer.getInt(6 * Integer.BYTES);
+   }
+
+   /**
+    * Open an index by memory-mapping it, which is quickest for searching.
+    * <p>
+    * The file stays mapped until the index is garbage collected, and on some platforms cannot be replaced until
+    * then, so use {@link #read(Path)} to read an index that is about to be replaced.
+    *
+    * @param path the index file
+    *
+    * @return the index
+    *
+    * @throws IOException if the file cannot be read or is not an index
+    */
+   public static SearchIndex open(final Path path) throws IOException {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+         return new SearchIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      }
+   }
+
+   /**
+    * Read an index into memory, leaving the file free to be replaced.
+    *
+    * @param path the index file
+    *
+    * @return the index
+    *
+    * @throws IOException if the file cannot be read or is not an index
+    */
+   public static SearchIndex read(final Path path) throws IOException {
+      return new SearchIndex(ByteBuffer.wrap(Files.readAllBytes(path)));
+   }
+
+   /**
+    * Split text into the terms it is indexed and searched by: runs of letters and digits, in lower case.
+    *
+    * @param text the text
+    *
+    * @return the distinct terms, in the order they first appear
+    */
+   public static Set<String> terms(final String text) {
+      final var terms = new LinkedHashSet<String>();
+      forEachTerm(text, terms::add);
+      return terms;
+   }
+
+   /**
+    * Split text into terms, as for {@link #terms(String)}, keeping repeats.
+    *
+    * @param text   the text
+    * @param action given each term, in the order they appear
+    */
+   static void forEachTerm(final String text, final Consumer<String> action) {
+      final var lower = text.toLowerCase(Locale.ROOT);
+      var start = -1;
+      for (int index = 0; index <= lower.length(); index++) {
+         final var inTerm = index < lower.length() && Character.isLetterOrDigit(lower.charAt(index));
+         if (inTerm && start < 0) {
+            start = index;
+         } else if (!inTerm && start >= 0) {
+            action.accept(lower.substring(start, index));
+            start = -1;
+         }
+      }
+   }
+
+   /**
+    * Number of entries.
+    *
+    * @return the count
+    */
+   public int size() {
+      return entryCount;
+   }
+
+   /**
+    * Every entry, in title order.
+    *
+    * @return the entries
+    */
+   public List<SearchEntry> entries() {
+      final var entries = new ArrayList<SearchEntry>(entryCount);
+      for (int id = 0; id < entryCount; id++) {
+         entries.add(entry(id));
+      }
+      return entries;
+   }
+
+   /**
+    * Find the entries whose titles best match a query.
+    *
+    * @param query words to look for
+    * @param limit most entries to return
+    *
+    * @return the matching entries, best first; empty if the query has no words
+    */
+   public List<SearchEntry> search(final String query, final int limit) {
+      final var words = new ArrayList<>(terms(query));
+      if (words.isEmpty() || limit <= 0) {
+         return List.of();
+      }
+      Map<Integer, Integer> scores = null;
+      for (int index = 0; index < words.size(); index++) {
+         final var matches = match(words.get(index), index == words.size() - 1);
+         if (scores == null) {
+            scores = matches;
+         } else {
+            final var combined = new HashMap<Integer, Integer>();
+            for (Map.Entry<Integer, Integer> entry : scores.entrySet()) {
+               final var score = matches.get(entry.getKey());
+               if (score != null) {
+                  combined.put(entry.getKey(), entry.getValue() + score);
+               }
+            }
+            scores = combined;
+         }
+         if (scores.isEmpty()) {
+            return List.of();
+         }
+      }
+      final var ranked = new ArrayList<Ranked>(scores.size());
+      scores.forEach((id, score) -> ranked.add(new Ranked(id, score, stringLength(entryTable + id * ENTRY_SIZE))));
+      ranked.sort(Comparator.comparingInt(Ranked::score).reversed()
+            .thenComparingInt(Ranked::titleBytes)
+            .thenComparingInt(Ranked::id));
+      final var results = new ArrayList<SearchEntry>();
+      for (int index = 0; index < Math.min(limit, ranked.size()); index++) {
+         results.add(entry(ranked.get(index).id()));
+      }
+      return results;
+   }
+
+   /**
+    * Entries with a term matching one word of a query, with the best score each gets for it.
+    *
+    * @param word       the word
+    * @param mayBePrefix may the word be the start of a longer term?
+    *
+    * @return scores keyed by entry number
+    */
+   private Map<Integer, Integer> match(final String word, final boolean mayBePrefix) {
+      final var scores = new HashMap<Integer, Integer>();
+      final var bytes = word.getBytes(StandardCharsets.UTF_8);
+      for (int term = firstTermNotBefore(bytes); term < termCount; term++) {
+         final var comparison = compareTerm(term, bytes);
+         if (comparison == 0) {
+            addPostings(term, EXACT, scores);
+         } else if (mayBePrefix && comparison == Integer.MAX_VALUE) {
+            addPostings(term, PREFIX, scores);
+         } else {
+            break;
+         }
+      }
+      final var maxEdits = word.length() >= TWO_EDIT_LENGTH ? 2 : word.length() >= ONE_EDIT_LENGTH ? 1 : 0;
+      if (maxEdits > 0) {
+         for (int term = 0; term < termCount; term++) {
+            final var offset = termStringOffset(term);
+            if (Math.abs(buffer.getInt(offset) - bytes.length) <= maxEdits * 4
+                  && withinEdits(word, string(offset), maxEdits)) {
+               addPostings(term, FUZZY, scores);
+            }
+         }
+      }
+      return scores;
+   }
+
+   /**
+    * Give every entry containing a term at least a score.
+    *
+    * @param term   number of the term
+    * @param score  the score
+    * @param scores scores keyed by entry number
+    */
+   private void addPostings(final int term, final int score, final Map<Integer, Integer> scores) {
+      final var entry = termTable + term * TERM_SIZE;
+      final var first = buffer.getInt(entry + Integer.BYTES);
+      final var count = buffer.getInt(entry + 2 * Integer.BYTES);
+      for (int posting = first; posting < first + count; posting++) {
+         scores.merge(buffer.getInt(postings + posting * Integer.BYTES), score, Math::max);
+      }
+   }
+
+   /**
+    * Number of the first term that sorts at or after some bytes.
+    *
+    * @param bytes the bytes
+    *
+    * @return the term number, or the term count if every term sorts before them
+    */
+   private int firstTermNotBefore(final byte[] bytes) {
+      var low = 0;
+      var high = termCount;
+      while (low < high) {
+         final var middle = (low + high) >>> 1;
+         final var comparison = compareTerm(middle, bytes);
+         if (comparison < 0) {
+            low = middle + 1;
+         } else {
+            high = middle;
+         }
+      }
+      return low;
+   }
+
+   /**
+    * Compare a term with some bytes, as unsigned bytes.
+    *
+    * @param term  number of the term
+    * @param bytes the bytes
+    *
+    * @return 0 if equal, {@link Integer#MAX_VALUE} if the bytes are a proper prefix of the term, otherwise negative or
+    * positive as the term sorts before or after them
+    */
+   private int compareTerm(final int term, final byte[] bytes) {
+      final var offset = termStringOffset(term);
+      final var length = buffer.getInt(offset);
+      for (int index = 0; index < Math.min(length, bytes.length); index++) {
+         final var comparison = Byte.toUnsignedInt(buffer.get(offset + Integer.BYTES + index))
+               - Byte.toUnsignedInt(bytes[index]);
+         if (comparison != 0) {
+            return comparison;
+         }
+      }
+      return length == bytes.length ? 0 : length > bytes.length ? Integer.MAX_VALUE : -1;
+   }
+
+   /**
+    * Offset of a term's string.
+    *
+    * @param term number of the term
+    *
+    * @return the offset
+    */
+   private int termStringOffset(final int term) {
+      return buffer.getInt(termTable + term * TERM_SIZE);
+   }
+
+   /**
+    * An entry.
+    *
+    * @param id number of the entry
+    *
+    * @return the entry
+    */
+   private SearchEntry entry(final int id) {
+      final var offset = entryTable + id * ENTRY_SIZE;
+      return new SearchEntry(string(buffer.getInt(offset)), string(buffer.getInt(offset + Integer.BYTES)),
+            string(buffer.getInt(offset + 2 * Integer.BYTES)));
+   }
+
+   /**
+    * Byte length of the string an entry table field points to.
+    *
+    * @param field offset of the field
+    *
+    * @return the length
+    */
+   private int stringLength(final int field) {
+      return buffer.getInt(buffer.getInt(field));
+   }
+
+   /**
+    * Read a string.
+    *
+    * @param offset offset of the string
+    *
+    * @return the string
+    */
+   private String string(final int offset) {
+      final var bytes = new byte[buffer.getInt(offset)];
+      buffer.get(offset + Integer.BYTES, bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+   }
+
+   /**
+    * Is one string within a number of edits of another? An edit inserts, deletes or replaces a character, or swaps
+    * two adjacent ones.
+    *
+    * @param first    one string
+    * @param second   the other
+    * @param maxEdits most edits allowed
+    *
+    * @return true if it is
+    */
+   static boolean withinEdits(final String first, final String second, final int maxEdits) {
+      if (Math.abs(first.length() - second.length()) > maxEdits) {
+         return false;
+      }
+      // Optimal string alignment distance, keeping the last three rows and giving up once a row is over the limit.
+      var previous2 = new int[second.length() + 1];
+      var previous = new int[second.length() + 1];
+      var current = new int[second.length() + 1];
+      for (int column = 0; column <= second.length(); column++) {
+         previous[column] = column;
+      }
+      for (int row = 1; row <= first.length(); row++) {
+         current[0] = row;
+         var rowMinimum = row;
+         for (int column = 1; column <= second.length(); column++) {
+            final var cost = first.charAt(row - 1) == second.charAt(column - 1) ? 0 : 1;
+            var distance = Math.min(Math.min(previous[column] + 1, current[column - 1] + 1),
+                  previous[column - 1] + cost);
+            if (row > 1 && column > 1 && first.charAt(row - 1) == second.charAt(column - 2)
+                  && first.charAt(row - 2) == second.charAt(column - 1)) {
+               distance = Math.min(distance, previous2[column - 2] + 1);
+            }
+            current[column] = distance;
+            rowMinimum = Math.min(rowMinimum, distance);
+         }
+         if (rowMinimum > maxEdits) {
+            return false;
+         }
+         final var recycled = previous2;
+         previous2 = previous;
+         previous = current;
+         current = recycled;
+      }
+      return previous[second.length()] <= maxEdits;
+   }
+
+   /**
+    * An entry that matched a query.
+    *
+    * @param id         number of the entry
+    * @param score      total score over the query's words
+    * @param titleBytes byte length of its title
+    */
+   private record Ranked(int id, int score, int titleBytes) {
+   }
+
+}
@@ -0,0 +1,211 @@
+package org.rmb.md.indexer.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rmb.md.indexer.output.AtomicFile;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects shortcuts and writes them as a {@link SearchIndex} file. A later entry with the same title replaces an
+ * earlier one, just as a later shortcut file with the same name would.
+ */
+@Slf4j
+public final class SearchIndexBuilder {
+
+   /**
+    * Entries keyed by title.
+    */
+   private final Map<String, SearchEntry> entries = new LinkedHashMap<>();
+
+   /**
+    * Add an entry.
+    *
+    * @param entry the entry
+    */
+   public void add(final SearchEntry entry) {
+      entries.put(entry.title(), entry);
+   }
+
+   /**
+    * Number of entries added, without duplicates.
+    *
+    * @return the count
+    */
+   public int size() {
+      return entries.size();
+   }
+
+   /**
+    * Write the index, replacing any earlier one as a whole.
+    *
+    * @param path the index file
+    *
+    * @throws IOException if it cannot be written, or would be too large; any earlier index is left as it was
+    */
+   public void write(final Path path) throws IOException {
+      final var sorted = new ArrayList<>(entries.values());
+      sorted.sort(Comparator.comparing(SearchEntry::title));
+
+      final var postings = new HashMap<String, List<Integer>>();
+      for (int id = 0; id < sorted.size(); id++) {
+         for (String term : SearchIndex.terms(sorted.get(id).title())) {
+            postings.computeIfAbsent(term, key -> new ArrayList<>()).add(id);
+         }
+      }
+      // Sorted by their UTF-8 bytes, which is the order the index is searched in.
+      final var terms = new ArrayList<Term>();
+      postings.keySet().forEach(term -> terms.add(new Term(term, term.getBytes(StandardCharsets.UTF_8))));
+      terms.sort((first, second) -> Arrays.compareUnsigned(first.utf8(), second.utf8()));
+
+      // Work out every offset first, so the file can be written in one pass.
+      final var strings = new Strings();
+      final var termOffsets = new int[terms.size()];
+      final var postingCount = postings.values().stream().mapToLong(List::size).sum();
+      final var entryTableOffset = SearchIndex.HEADER_SIZE + (long) terms.size() * SearchIndex.TERM_SIZE
+            + postingCount * Integer.BYTES;
+      final var stringsOffset = entryTableOffset + (long) sorted.size() * SearchIndex.ENTRY_SIZE;
+      if (stringsOffset > Integer.MAX_VALUE) {
+         throw new IOException("Search index would be too large: " + sorted.size() + " entries.");
+      }
+      strings.start((int) stringsOffset);
+      for (int index = 0; index < terms.size(); index++) {
+         termOffsets[index] = strings.offsetOf(terms.get(index).utf8());
+      }
+      final var entryOffsets = new int[sorted.size() * 3];
+      for (int id = 0; id < sorted.size(); id++) {
+         final var entry = sorted.get(id);
+         entryOffsets[id * 3] = strings.offsetOf(entry.title().getBytes(StandardCharsets.UTF_8));
+         entryOffsets[id * 3 + 1] = strings.offsetOf(entry.url().getBytes(StandardCharsets.UTF_8));
+         entryOffsets[id * 3 + 2] = strings.offsetOf(entry.source().getBytes(StandardCharsets.UTF_8));
+      }
+
+      final var directory = path.toAbsolutePath().getParent();
+      Files.createDirectories(directory);
+      final var temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+      try {
+         try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+               Files.newOutputStream(temporary)))) {
+            out.writeInt(SearchIndex.MAGIC);
+            out.writeInt(SearchIndex.VERSION);
+            out.writeInt(sorted.size());
+            out.writeInt(terms.size());
+            out.writeInt(SearchIndex.HEADER_SIZE);
+            out.writeInt(SearchIndex.HEADER_SIZE + terms.size() * SearchIndex.TERM_SIZE);
+            out.writeInt((int) entryTableOffset);
+            out.writeInt((int) stringsOffset);
+            var postingStart = 0;
+            for (int index = 0; index < terms.size(); index++) {
+               final var count = postings.get(terms.get(index).text()).size();
+               out.writeInt(termOffsets[index]);
+               out.writeInt(postingStart);
+               out.writeInt(count);
+               postingStart += count;
+            }
+            for (Term term : terms) {
+               for (int id : postings.get(term.text())) {
+                  out.writeInt(id);
+               }
+            }
+            for (int offset : entryOffsets) {
+               out.writeInt(offset);
+            }
+            for (byte[] string : strings.inOrder()) {
+               out.writeInt(string.length);
+               out.write(string);
+            }
+         }
+         AtomicFile.moveIntoPlace(temporary, path);
+      } finally {
+         Files.deleteIfExists(temporary);
+      }
+      log.info("Search index: {} entries and {} terms written to {}.", sorted.size(), terms.size(), path);
+   }
+
+   /**
+    * A term and its UTF-8 bytes.
+    *
+    * @param text the term
+    * @param utf8 its UTF-8 bytes
+    */
+   private record Term(String text, byte[] utf8) {
+   }
+
+   /**
+    * The strings section of an index file, each distinct string stored once. Also used for text segments.
+    */
+   static final class Strings {
+
+      /**
+       * Offset of each string, keyed by its content.
+       */
+      private final Map<ByteBuffer, Integer> offsets = new HashMap<>();
+
+      /**
+       * Strings in the order they are stored.
+       */
+      private final List<byte[]> inOrder = new ArrayList<>();
+
+      /**
+       * Offset of the next string.
+       */
+      private long next;
+
+      /**
+       * Set where the section starts.
+       *
+       * @param offset offset of the section in the file
+       */
+      void start(final int offset) {
+         next = offset;
+      }
+
+      /**
+       * Where a string is stored, storing it if it is new.
+       *
+       * @param bytes the string, in UTF-8
+       *
+       * @return its offset in the file
+       *
+       * @throws IOException if the file would be too large
+       */
+      int offsetOf(final byte[] bytes) throws IOException {
+         final var key = ByteBuffer.wrap(bytes);
+         final var existing = offsets.get(key);
+         if (existing != null) {
+            return existing;
+         }
+         if (next + Integer.BYTES + bytes.length > Integer.MAX_VALUE) {
+            throw new IOException("Search index would be too large.");
+         }
+         final var offset = (int) next;
+         offsets.put(key, offset);
+         inOrder.add(bytes);
+         next += Integer.BYTES + bytes.length;
+         return offset;
+      }
+
+      /**
+       * The strings, in the order they are stored.
+       *
+       * @return the strings
+       */
+      List<byte[]> inOrder() {
+         return inOrder;
+      }
+
+   }
+
+}
@@ -0,0 +1,636 @@
+package org.rmb.md.indexer.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rmb.md.indexer.output.AtomicFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A full-text index over the sections of markdown files: the text before the first heading, and the text under each
+ * heading, so that every hit leads to the shortcut, and so the anchor, of the section it is in.
+ * <p>
+ * The index is a folder of immutable {@link TextSegment} files, each memory-mapped when searched, and a small commit
+ * file listing the segments in use and the sources deleted from each. Updating the index never changes a segment:
+ * the sections of markdown files that changed go into a new segment, and their old sections, and those of files that
+ * went away, are marked deleted (tombstoned) in the commit file. The commit file is replaced atomically, so a search
+ * sees either the index before an update or after it. When there are more than {@link #MAX_SEGMENTS} segments, the
+ * newest half are merged into one, and when more than half of all sections are deleted, everything is merged into one
+ * segment without them. Segment files no longer listed are deleted by the next update, or left for a later one if
+ * they cannot be deleted yet.
+ * <p>
+ * Text is split into terms as for {@link SearchIndex#terms(String)}; terms longer than {@link #MAX_TERM_LENGTH}
+ * characters, such as encoded data, are left out. Every word of a query must be in a section: exactly, or as a prefix
+ * for the last word, which may still be being typed. Sections are ranked by BM25 over the words of the query.
+ * <p>
+ * An index is immutable and can be searched from many threads at once. Only one process may update an index at a
+ * time.
+ */
+@Slf4j
+public final class TextIndex {
+
+   /**
+    * Name of the commit file.
+    */
+   static final String COMMIT_FILE_NAME = "segments";
+
+   /**
+    * Most segments kept before the newest are merged.
+    */
+   static final int MAX_SEGMENTS = 8;
+
+   /**
+    * Longest term indexed, in characters.
+    */
+   static final int MAX_TERM_LENGTH = 64;
+
+   /**
+    * Version of the commit file layout.
+    */
+   static final int VERSION = 1;
+
+   /**
+    * Start of segment file names.
+    */
+   private static final String SEGMENT_PREFIX = "segment-";
+
+   /**
+    * Extension of segment file names.
+    */
+   private static final String SEGMENT_EXTENSION = ".seg";
+
+   /**
+    * Key of the version line of the commit file.
+    */
+   private static final String KEY_VERSION = "version=";
+
+   /**
+    * Key of the generation line of the commit file: the number of the last segment written.
+    */
+   private static final String KEY_GENERATION = "generation=";
+
+   /**
+    * Key of a segment line of the commit file.
+    */
+   private static final String KEY_SEGMENT = "segment=";
+
+   /**
+    * Key of a deleted source line of the commit file: a segment name, a tab, then the source.
+    */
+   private static final String KEY_DELETED = "deleted=";
+
+   /**
+    * BM25 term frequency saturation.
+    */
+   private static final double K1 = 1.2;
+
+   /**
+    * BM25 length normalisation.
+    */
+   private static final double B = 0.75;
+
+   /**
+    * Weight of a word matching the start of a term rather than the whole of it.
+    */
+   private static final double PREFIX_WEIGHT = 0.5;
+
+   /**
+    * The segments in use, oldest first.
+    */
+   private final List<Segment> segments;
+
+   /**
+    * Number of sections in all segments, deleted or not.
+    */
+   private final long documentCount;
+
+   /**
+    * Average length of all sections, deleted or not, in terms.
+    */
+   private final double averageLength;
+
+   /**
+    * Create an index.
+    *
+    * @param segments the segments in use, oldest first
+    */
+   private TextIndex(final List<Segment> segments) {
+      this.segments = segments;
+      this.documentCount = segments.stream().mapToLong(segment -> segment.segment().documentCount()).sum();
+      final var totalLength = segments.stream().mapToLong(segment -> segment.segment().totalLength()).sum();
+      this.averageLength = documentCount == 0 ? 1 : Math.max(1, (double) totalLength / documentCount);
+   }
+
+   /**
+    * Open an index.
+    *
+    * @param directory folder holding the index
+    *
+    * @return the index
+    *
+    * @throws IOException if there is no index, or it cannot be read
+    */
+   public static TextIndex open(final Path directory) throws IOException {
+      return new TextIndex(load(directory, Commit.read(directory)));
+   }
+
+   /**
+    * Is there an index?
+    *
+    * @param directory folder that may hold an index
+    *
+    * @return true if it has a commit file
+    */
+   public static boolean exists(final Path directory) {
+      return Files.isRegularFile(directory.resolve(COMMIT_FILE_NAME));
+   }
+
+   /**
+    * Replace an index, or create one, holding exactly some sections.
+    *
+    * @param directory folder holding the index
+    * @param sections  the sections
+    *
+    * @throws IOException if the index cannot be written; the index is then as it was
+    */
+   public static void rebuild(final Path directory, final List<TextSection> sections) throws IOException {
+      Files.createDirectories(directory);
+      // Carry on numbering from any index being replaced, so no segment file in use is overwritten.
+      var generation = 0L;
+      if (exists(directory)) {
+         try {
+            generation = Commit.read(directory).generation();
+         } catch (IOException e) {
+            log.warn("Replacing text index that cannot be read: {} :: {}", directory, e.toString());
+         }
+      }
+      final var names = new ArrayList<String>();
+      if (!sections.isEmpty()) {
+         final var writer = new TextSegmentWriter();
+         sections.forEach(writer::add);
+         final var name = segmentName(++generation);
+         writer.write(directory.resolve(name));
+         names.add(name);
+      }
+      new Commit(generation, names, Map.of()).write(directory);
+      deleteUnused(directory, names);
+      log.info("Text index: {} sections written to {}.", sections.size(), directory);
+   }
+
+   /**
+    * Discard an index, so that it no longer exists. Its segment files are deleted by the next rebuild.
+    *
+    * @param directory folder holding the index
+    *
+    * @throws IOException if the commit file cannot be deleted
+    */
+   public static void discard(final Path directory) throws IOException {
+      Files.deleteIfExists(directory.resolve(COMMIT_FILE_NAME));
+   }
+
+   /**
+    * Update an index: delete the sections of markdown files that changed or went away, and add new sections.
+    *
+    * @param directory folder holding the index
+    * @param keep      is a source's existing sections still wanted? False for markdown files that changed, whose
+    *                  new sections are being added, and for files that went away
+    * @param sections  sections to add
+    *
+    * @throws IOException if there is no index, or it cannot be updated; the index is then as it was
+    */
+   public static void update(final Path directory, final Predicate<String> keep, final List<TextSection> sections)
+         throws IOException {
+      final var commit = Commit.read(directory);
+      final var segments = new ArrayList<>(load(directory, commit));
+      var generation = commit.generation();
+      var deletedNow = 0;
+      for (Segment segment : segments) {
+         for (int source = 0; source < segment.segment().sourceCount(); source++) {
+            final var name = segment.segment().source(source);
+            if (!segment.deletedSources().contains(name) && !keep.test(name)) {
+               segment.deletedSources().add(name);
+               final var first = segment.segment().firstDocument(source);
+               segment.deleted().set(first, first + segment.segment().documentCount(source));
+               deletedNow += segment.segment().documentCount(source);
+            }
+         }
+      }
+      if (deletedNow == 0 && sections.isEmpty()) {
+         log.debug("Text index: nothing to update in {}.", directory);
+         return;
+      }
+      if (!sections.isEmpty()) {
+         final var writer = new TextSegmentWriter();
+         sections.forEach(writer::add);
+         final var name = segmentName(++generation);
+         writer.write(directory.resolve(name));
+         segments.add(new Segment(name, TextSegment.open(directory.resolve(name)), new BitSet(),
+               new LinkedHashSet<>()));
+      }
+
+      final var total = segments.stream().mapToLong(segment -> segment.segment().documentCount()).sum();
+      final var deleted = segments.stream().mapToLong(segment -> segment.deleted().cardinality()).sum();
+      if (deleted * 2 > total) {
+         generation = merge(directory, segments, 0, generation);
+      } else if (segments.size() > MAX_SEGMENTS) {
+         generation = merge(directory, segments, MAX_SEGMENTS / 2, generation);
+      }
+
+      final var names = new ArrayList<String>();
+      final var deletedSources = new LinkedHashMap<String, Set<String>>();
+      for (Segment segment : segments) {
+         names.add(segment.name());
+         if (!segment.deletedSources().isEmpty()) {
+            deletedSources.put(segment.name(), segment.deletedSources());
+         }
+      }
+      new Commit(generation, names, deletedSources).write(directory);
+      deleteUnused(directory, names);
+      log.info("Text index: {} sections deleted and {} added in {}; {} segments.", deletedNow, sections.size(),
+            directory, segments.size());
+   }
+
+   /**
+    * Split text into terms and count them.
+    *
+    * @param text the text
+    *
+    * @return number of times each term appears
+    */
+   static Map<String, Integer> termFrequencies(final String text) {
+      final var frequencies = new HashMap<String, Integer>();
+      SearchIndex.forEachTerm(text, term -> {
+         if (term.length() <= MAX_TERM_LENGTH) {
+            frequencies.merge(term, 1, Integer::sum);
+         }
+      });
+      return frequencies;
+   }
+
+   /**
+    * Number of sections, not counting deleted ones.
+    *
+    * @return the count
+    */
+   public long size() {
+      return documentCount - segments.stream().mapToLong(segment -> segment.deleted().cardinality()).sum();
+   }
+
+   /**
+    * Number of segments.
+    *
+    * @return the count
+    */
+   public int segmentCount() {
+      return segments.size();
+   }
+
+   /**
+    * Find the sections that best match a query.
+    *
+    * @param query words to look for
+    * @param limit most sections to return
+    *
+    * @return shortcuts of the matching sections, best first; empty if the query has no words
+    */
+   public List<SearchEntry> search(final String query, final int limit) {
+      final var words = new ArrayList<>(SearchIndex.terms(query));
+      if (words.isEmpty() || limit <= 0) {
+         return List.of();
+      }
+      Map<Long, Double> scores = null;
+      for (int index = 0; index < words.size(); index++) {
+         final var matches = match(words.get(index), index == words.size() - 1);
+         if (scores == null) {
+            scores = matches;
+         } else {
+            final var combined = new HashMap<Long, Double>();
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+               final var score = matches.get(entry.getKey());
+               if (score != null) {
+                  combined.put(entry.getKey(), entry.getValue() + score);
+               }
+            }
+            scores = combined;
+         }
+         if (scores.isEmpty()) {
+            return List.of();
+         }
+      }
+      final var ranked = new ArrayList<Ranked>(scores.size());
+      scores.forEach((key, score) -> ranked.add(new Ranked(key, score,
+            segment(key).titleBytes(document(key)))));
+      ranked.sort(Comparator.comparingDouble(Ranked::score).reversed()
+            .thenComparingInt(Ranked::titleBytes)
+            .thenComparingLong(Ranked::key));
+      final var results = new ArrayList<SearchEntry>();
+      for (int index = 0; index < Math.min(limit, ranked.size()); index++) {
+         final var key = ranked.get(index).key();
+         results.add(segment(key).entry(document(key)));
+      }
+      return results;
+   }
+
+   /**
+    * Sections with a term matching one word of a query, with the best score each gets for it.
+    *
+    * @param word        the word
+    * @param mayBePrefix may the word be the start of a longer term?
+    *
+    * @return scores keyed by section - see {@link #key(int, int)}
+    */
+   private Map<Long, Double> match(final String word, final boolean mayBePrefix) {
+      final var bytes = word.getBytes(StandardCharsets.UTF_8);
+      final var matches = new ArrayList<Match>();
+      final var documentFrequencies = new HashMap<String, Integer>();
+      for (int index = 0; index < segments.size(); index++) {
+         final var segment = segments.get(index).segment();
+         for (int term = segment.firstTermNotBefore(bytes); term < segment.termCount(); term++) {
+            final var comparison = segment.compareTerm(term, bytes);
+            final double weight;
+            if (comparison == 0) {
+               weight = 1;
+            } else if (mayBePrefix && comparison == Integer.MAX_VALUE) {
+               weight = PREFIX_WEIGHT;
+            } else {
+               break;
+            }
+            final var text = segment.term(term);
+            matches.add(new Match(index, term, text, weight));
+            documentFrequencies.merge(text, segment.documentFrequency(term), Integer::sum);
+         }
+      }
+      final var scores = new HashMap<Long, Double>();
+      for (Match match : matches) {
+         final var frequency = documentFrequencies.get(match.text());
+         final var idf = Math.log(1 + Math.max(0, documentCount - frequency + 0.5) / (frequency + 0.5));
+         final var segment = segments.get(match.segment());
+         segment.segment().forEachPosting(match.term(), (document, termFrequency) -> {
+            if (!segment.deleted().get(document)) {
+               final var norm = K1 * (1 - B + B * segment.segment().length(document) / averageLength);
+               final var score = match.weight() * idf * termFrequency * (K1 + 1) / (termFrequency + norm);
+               scores.merge(key(match.segment(), document), score, Math::max);
+            }
+         });
+      }
+      return scores;
+   }
+
+   /**
+    * Key of a section for scoring.
+    *
+    * @param segment  index of the segment
+    * @param document number of the section in the segment
+    *
+    * @return the key
+    */
+   private static long key(final int segment, final int document) {
+      return (long) segment << Integer.SIZE | document;
+   }
+
+   /**
+    * Segment of a section.
+    *
+    * @param key key of the section
+    *
+    * @return the segment
+    */
+   private TextSegment segment(final long key) {
+      return segments.get((int) (key >>> Integer.SIZE)).segment();
+   }
+
+   /**
+    * Number of a section in its segment.
+    *
+    * @param key key of the section
+    *
+    * @return the number
+    */
+   private static int document(final long key) {
+      return (int) key;
+   }
+
+   /**
+    * Open the segments a commit lists, marking the sections of its deleted sources.
+    *
+    * @param directory folder holding the index
+    * @param commit    the commit
+    *
+    * @return the segments, oldest first
+    *
+    * @throws IOException if a segment cannot be read
+    */
+   private static List<Segment> load(final Path directory, final Commit commit) throws IOException {
+      final var segments = new ArrayList<Segment>();
+      for (String name : commit.segments()) {
+         final var segment = TextSegment.open(directory.resolve(name));
+         final var deletedSources = new LinkedHashSet<>(commit.deleted().getOrDefault(name, Set.of()));
+         final var deleted = new BitSet(segment.documentCount());
+         if (!deletedSources.isEmpty()) {
+            for (int source = 0; source < segment.sourceCount(); source++) {
+               if (deletedSources.contains(segment.source(source))) {
+                  final var first = segment.firstDocument(source);
+                  deleted.set(first, first + segment.documentCount(source));
+               }
+            }
+         }
+         segments.add(new Segment(name, segment, deleted, deletedSources));
+      }
+      return segments;
+   }
+
+   /**
+    * Merge the segments from some index on into one new segment, leaving out deleted sections.
+    *
+    * @param directory  folder holding the index
+    * @param segments   the segments, oldest first; the merged ones are replaced by the new one
+    * @param from       index of the first segment to merge
+    * @param generation number of the last segment written
+    *
+    * @return number of the last segment written, now the new one
+    *
+    * @throws IOException if the new segment cannot be written
+    */
+   private static long merge(final Path directory, final List<Segment> segments, final int from,
+                             final long generation) throws IOException {
+      final var merging = List.copyOf(segments.subList(from, segments.size()));
+      final var writer = new TextSegmentWriter();
+      for (Segment segment : merging) {
+         final var text = segment.segment();
+         final var frequencies = new HashMap<Integer, Map<String, Integer>>();
+         for (int term = 0; term < text.termCount(); term++) {
+            final var termText = text.term(term);
+            text.forEachPosting(term, (document, frequency) -> {
+               if (!segment.deleted().get(document)) {
+                  frequencies.computeIfAbsent(document, key -> new HashMap<>()).put(termText, frequency);
+               }
+            });
+         }
+         for (int document = 0; document < text.documentCount(); document++) {
+            if (!segment.deleted().get(document)) {
+               writer.add(text.entry(document), frequencies.getOrDefault(document, Map.of()));
+            }
+         }
+      }
+      final var name = segmentName(generation + 1);
+      writer.write(directory.resolve(name));
+      segments.subList(from, segments.size()).clear();
+      segments.add(new Segment(name, TextSegment.open(directory.resolve(name)), new BitSet(),
+            new LinkedHashSet<>()));
+      log.debug("Text index: merged {} segments into {} with {} sections.", merging.size(), name, writer.size());
+      return generation + 1;
+   }
+
+   /**
+    * Delete segment files that are no longer in use. A file that cannot be deleted yet, such as one still mapped by
+    * a search on some platforms, is left for a later update.
+    *
+    * @param directory folder holding the index
+    * @param inUse     names of the segments in use
+    */
+   private static void deleteUnused(final Path directory, final List<String> inUse) {
+      final var keep = new HashSet<>(inUse);
+      final var glob = SEGMENT_PREFIX + "*" + SEGMENT_EXTENSION;
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, glob)) {
+         for (Path file : files) {
+            if (!keep.contains(file.getFileName().toString())) {
+               try {
+                  Files.deleteIfExists(file);
+               } catch (IOException e) {
+                  log.debug("Cannot delete unused text index segment yet: {} :: {}", file, e.toString());
+               }
+            }
+         }
+      } catch (IOException e) {
+         log.warn("Failed to look for unused text index segments in {}", directory, e);
+      }
+   }
+
+   /**
+    * Name of a segment file.
+    *
+    * @param generation number of the segment
+    *
+    * @return the name
+    */
+   private static String segmentName(final long generation) {
+      return SEGMENT_PREFIX + generation + SEGMENT_EXTENSION;
+   }
+
+   /**
+    * A segment in use.
+    *
+    * @param name           name of its file
+    * @param segment        the segment
+    * @param deleted        its deleted sections
+    * @param deletedSources sources whose sections are deleted
+    */
+   private record Segment(String name, TextSegment segment, BitSet deleted, Set<String> deletedSources) {
+   }
+
+   /**
+    * A term of one segment matching a word of a query.
+    *
+    * @param segment index of the segment
+    * @param term    number of the term in the segment
+    * @param text    the term
+    * @param weight  how well it matches
+    */
+   private record Match(int segment, int term, String text, double weight) {
+   }
+
+   /**
+    * A section that matched a query.
+    *
+    * @param key        key of the section - see {@link #key(int, int)}
+    * @param score      total score over the query's words
+    * @param titleBytes byte length of its title
+    */
+   private record Ranked(long key, double score, int titleBytes) {
+   }
+
+   /**
+    * What the commit file says: the segments in use and the sources deleted from each.
+    *
+    * @param generation number of the last segment written
+    * @param segments   names of the segments in use, oldest first
+    * @param deleted    sources whose sections are deleted, keyed by segment name
+    */
+   private record Commit(long generation, List<String> segments, Map<String, Set<String>> deleted) {
+
+      /**
+       * Read the commit file.
+       *
+       * @param directory folder holding the index
+       *
+       * @return the commit
+       *
+       * @throws IOException if there is no commit file, or it cannot be read
+       */
+      static Commit read(final Path directory) throws IOException {
+         String version = null;
+         var generation = 0L;
+         final var segments = new ArrayList<String>();
+         final var deleted = new HashMap<String, Set<String>>();
+         for (String line : Files.readAllLines(directory.resolve(COMMIT_FILE_NAME), StandardCharsets.UTF_8)) {
+            if (line.startsWith(KEY_VERSION)) {
+               version = line.substring(KEY_VERSION.length());
+            } else if (line.startsWith(KEY_GENERATION)) {
+               generation = Long.parseLong(line.substring(KEY_GENERATION.length()));
+            } else if (line.startsWith(KEY_SEGMENT)) {
+               segments.add(line.substring(KEY_SEGMENT.length()));
+            } else if (line.startsWith(KEY_DELETED)) {
+               final var tab = line.indexOf('\t');
+               if (tab < 0) {
+                  throw new IOException("Bad text index commit line: " + line);
+               }
+               deleted.computeIfAbsent(line.substring(KEY_DELETED.length(), tab), key -> new LinkedHashSet<>())
+                     .add(line.substring(tab + 1));
+            }
+         }
+         if (!String.valueOf(VERSION).equals(version)) {
+            throw new IOException("Unsupported text index version [" + version + "].");
+         }
+         return new Commit(generation, segments, deleted);
+      }
+
+      /**
+       * Replace the commit file.
+       *
+       * @param directory folder holding the index
+       *
+       * @throws IOException if it cannot be written; the old one is then left as it was
+       */
+      void write(final Path directory) throws IOException {
+         AtomicFile.write(directory.resolve(COMMIT_FILE_NAME), writer -> {
+            writer.write("# Markdown Indexer text index - generated, do not edit.\n");
+            writer.write(KEY_VERSION + VERSION + "\n");
+            writer.write(KEY_GENERATION + generation + "\n");
+            for (String segment : segments) {
+               writer.write(KEY_SEGMENT + segment + "\n");
+            }
+            for (Map.Entry<String, Set<String>> entry : deleted.entrySet()) {
+               for (String source : entry.getValue()) {
+                  writer.write(KEY_DELETED + entry.getKey() + "\t" + source + "\n");
+               }
+            }
+         });
+      }
+
+   }
+
+}
@@ -0,0 +1,10 @@
+package org.rmb.md.indexer.search;
+
+/**
+ * The text under one heading of a markdown file (or before its first heading), for the full-text index.
+ *
+ * @param entry the shortcut the text is found at
+ * @param text  the text, without the heading line
+ */
+public record TextSection(SearchEntry entry, String text) {
+}
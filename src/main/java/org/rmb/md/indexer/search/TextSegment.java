@@ -0,0 +1,380 @@
+package org.rmb.md.indexer.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One immutable segment of a {@link TextIndex}, written by {@link TextSegmentWriter} and memory-mapped rather than
+ * loaded. A segment holds the sections of some markdown files; sections are its documents.
+ * <p>
+ * Documents are sorted by source, so the documents of one markdown file are numbered consecutively. All numbers are
+ * 32-bit big-endian, apart from the total length:
+ * <ul>
+ *    <li>Header: {@link #MAGIC}, {@link #VERSION}, document count, term count, source count, then the offsets of the
+ *    term table, the postings, the document table, the source table and the strings, then the total number of terms
+ *    in all documents as a 64-bit number.</li>
+ *    <li>Term table: for each term, sorted by its UTF-8 bytes, the offset of its string, the index of its first
+ *    posting and its posting count.</li>
+ *    <li>Postings: document number and the number of times the term appears in it, ascending by document for each
+ *    term.</li>
+ *    <li>Document table: for each document, the offsets of its title, URL and source, and its length in terms.</li>
+ *    <li>Source table: for each source, in order, the offset of its string, its first document and its document
+ *    count.</li>
+ *    <li>Strings: as for {@link SearchIndex}.</li>
+ * </ul>
+ * <p>
+ * A segment can be read from many threads at once.
+ */
+final class TextSegment {
+
+   /**
+    * First four bytes of every segment: "MDTX".
+    */
+   static final int MAGIC = 0x4D445458;
+
+   /**
+    * Version of the file layout.
+    */
+   static final int VERSION = 1;
+
+   /**
+    * Bytes in the header.
+    */
+   static final int HEADER_SIZE = 10 * Integer.BYTES + Long.BYTES;
+
+   /**
+    * Bytes per term in the term table.
+    */
+   static final int TERM_SIZE = 3 * Integer.BYTES;
+
+   /**
+    * Bytes per posting.
+    */
+   static final int POSTING_SIZE = 2 * Integer.BYTES;
+
+   /**
+    * Bytes per document in the document table.
+    */
+   static final int DOCUMENT_SIZE = 4 * Integer.BYTES;
+
+   /**
+    * Bytes per source in the source table.
+    */
+   static final int SOURCE_SIZE = 3 * Integer.BYTES;
+
+   /**
+    * Receives postings.
+    */
+   @FunctionalInterface
+   interface PostingConsumer {
+
+      /**
+       * Accept a posting.
+       *
+       * @param document  number of the document
+       * @param frequency number of times the term appears in it
+       */
+      void accept(int document, int frequency);
+
+   }
+
+   /**
+    * The segment file.
+    */
+   private final ByteBuffer buffer;
+
+   /**
+    * Number of documents.
+    */
+   private final int documentCount;
+
+   /**
+    * Number of terms.
+    */
+   private final int termCount;
+
+   /**
+    * Number of sources.
+    */
+   private final int sourceCount;
+
+   /**
+    * Offset of the term table.
+    */
+   private final int termTable;
+
+   /**
+    * Offset of the postings.
+    */
+   private final int postings;
+
+   /**
+    * Offset of the document table.
+    */
+   private final int documentTable;
+
+   /**
+    * Offset of the source table.
+    */
+   private final int sourceTable;
+
+   /**
+    * Number of terms in all documents.
+    */
+   private final long totalLength;
+
+   /**
+    * Read a segment.
+    *
+    * @param buffer the whole segment file
+    *
+    * @throws IOException if it is not a segment, or one of another version
+    */
+   private TextSegment(final ByteBuffer buffer) throws IOException {
+      if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+         throw new IOException("Not a text index segment.");
+      }
+      if (buffer.getInt(Integer.BYTES) != VERSION) {
+         throw new IOException("Text index segment is version " + buffer.getInt(Integer.BYTES) + ", not " + VERSION
+               + ".");
+      }
+      this.buffer = buffer;
+      this.documentCount = buffer.getInt(2 * Integer.BYTES);
+      this.termCount = buffer.getInt(3 * Integer.BYTES);
+      this.sourceCount = buffer.getInt(4 * Integer.BYTES);
+      this.termTable = buffer.getInt(5 * Integer.BYTES);
+      this.postings = buffer.getInt(6 * Integer.BYTES);
+      this.documentTable = buffer.getInt(7 * Integer.BYTES);
+      this.sourceTable = buffer.getInt(8 * Integer.BYTES);
+      this.totalLength = buffer.getLong(10 * Integer.BYTES);
+   }
+
+   /**
+    * Open a segment by memory-mapping it.
+    *
+    * @param path the segment file
+    *
+    * @return the segment
+    *
+    * @throws IOException if the file cannot be read or is not a segment
+    */
+   static TextSegment open(final Path path) throws IOException {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+         return new TextSegment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      }
+   }
+
+   /**
+    * Number of documents.
+    *
+    * @return the count
+    */
+   int documentCount() {
+      return documentCount;
+   }
+
+   /**
+    * Number of terms in all documents together.
+    *
+    * @return the count
+    */
+   long totalLength() {
+      return totalLength;
+   }
+
+   /**
+    * A document.
+    *
+    * @param document number of the document
+    *
+    * @return its title, URL and source
+    */
+   SearchEntry entry(final int document) {
+      final var offset = documentTable + document * DOCUMENT_SIZE;
+      return new SearchEntry(string(buffer.getInt(offset)), string(buffer.getInt(offset + Integer.BYTES)),
+            string(buffer.getInt(offset + 2 * Integer.BYTES)));
+   }
+
+   /**
+    * Length of a document.
+    *
+    * @param document number of the document
+    *
+    * @return number of terms in it
+    */
+   int length(final int document) {
+      return buffer.getInt(documentTable + document * DOCUMENT_SIZE + 3 * Integer.BYTES);
+   }
+
+   /**
+    * Byte length of a document's title.
+    *
+    * @param document number of the document
+    *
+    * @return the length
+    */
+   int titleBytes(final int document) {
+      return buffer.getInt(buffer.getInt(documentTable + document * DOCUMENT_SIZE));
+   }
+
+   /**
+    * Number of sources.
+    *
+    * @return the count
+    */
+   int sourceCount() {
+      return sourceCount;
+   }
+
+   /**
+    * A source.
+    *
+    * @param source number of the source
+    *
+    * @return the markdown file
+    */
+   String source(final int source) {
+      return string(buffer.getInt(sourceTable + source * SOURCE_SIZE));
+   }
+
+   /**
+    * First document of a source.
+    *
+    * @param source number of the source
+    *
+    * @return number of its first document
+    */
+   int firstDocument(final int source) {
+      return buffer.getInt(sourceTable + source * SOURCE_SIZE + Integer.BYTES);
+   }
+
+   /**
+    * Number of documents of a source.
+    *
+    * @param source number of the source
+    *
+    * @return the count
+    */
+   int documentCount(final int source) {
+      return buffer.getInt(sourceTable + source * SOURCE_SIZE + 2 * Integer.BYTES);
+   }
+
+   /**
+    * Number of terms.
+    *
+    * @return the count
+    */
+   int termCount() {
+      return termCount;
+   }
+
+   /**
+    * A term.
+    *
+    * @param term number of the term
+    *
+    * @return the term
+    */
+   String term(final int term) {
+      return string(termStringOffset(term));
+   }
+
+   /**
+    * Number of documents a term appears in.
+    *
+    * @param term number of the term
+    *
+    * @return the count
+    */
+   int documentFrequency(final int term) {
+      return buffer.getInt(termTable + term * TERM_SIZE + 2 * Integer.BYTES);
+   }
+
+   /**
+    * Visit the postings of a term.
+    *
+    * @param term     number of the term
+    * @param consumer given each document the term appears in, in order, and how many times
+    */
+   void forEachPosting(final int term, final PostingConsumer consumer) {
+      final var entry = termTable + term * TERM_SIZE;
+      final var first = buffer.getInt(entry + Integer.BYTES);
+      final var count = buffer.getInt(entry + 2 * Integer.BYTES);
+      for (int posting = first; posting < first + count; posting++) {
+         final var offset = postings + posting * POSTING_SIZE;
+         consumer.accept(buffer.getInt(offset), buffer.getInt(offset + Integer.BYTES));
+      }
+   }
+
+   /**
+    * Number of the first term that sorts at or after some bytes.
+    *
+    * @param bytes the bytes
+    *
+    * @return the term number, or the term count if every term sorts before them
+    */
+   int firstTermNotBefore(final byte[] bytes) {
+      var low = 0;
+      var high = termCount;
+      while (low < high) {
+         final var middle = (low + high) >>> 1;
+         if (compareTerm(middle, bytes) < 0) {
+            low = middle + 1;
+         } else {
+            high = middle;
+         }
+      }
+      return low;
+   }
+
+   /**
+    * Compare a term with some bytes, as unsigned bytes.
+    *
+    * @param term  number of the term
+    * @param bytes the bytes
+    *
+    * @return 0 if equal, {@link Integer#MAX_VALUE} if the bytes are a proper prefix of the term, otherwise negative or
+    * positive as the term sorts before or after them
+    */
+   int compareTerm(final int term, final byte[] bytes) {
+      final var offset = termStringOffset(term);
+      final var length = buffer.getInt(offset);
+      for (int index = 0; index < Math.min(length, bytes.length); index++) {
+         final var comparison = Byte.toUnsignedInt(buffer.get(offset + Integer.BYTES + index))
+               - Byte.toUnsignedInt(bytes[index]);
+         if (comparison != 0) {
+            return comparison;
+         }
+      }
+      return length == bytes.length ? 0 : length > bytes.length ? Integer.MAX_VALUE : -1;
+   }
+
+   /**
+    * Offset of a term's string.
+    *
+    * @param term number of the term
+    *
+    * @return the offset
+    */
+   private int termStringOffset(final int term) {
+      return buffer.getInt(termTable + term * TERM_SIZE);
+   }
+
+   /**
+    * Read a string.
+    *
+    * @param offset offset of the string
+    *
+    * @return the string
+    */
+   private String string(final int offset) {
+      final var bytes = new byte[buffer.getInt(offset)];
+      buffer.get(offset + Integer.BYTES, bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+   }
+
+}
@@ -0,0 +1,189 @@
+package org.rmb.md.indexer.search;
+
+import org.rmb.md.indexer.output.AtomicFile;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects documents and writes them as a {@link TextSegment} file.
+ */
+final class TextSegmentWriter {
+
+   /**
+    * Documents added, in the order they were added.
+    */
+   private final List<Document> documents = new ArrayList<>();
+
+   /**
+    * Add a section of a markdown file, indexed by its title and text.
+    *
+    * @param section the section
+    */
+   void add(final TextSection section) {
+      add(section.entry(), TextIndex.termFrequencies(section.entry().title() + "\n" + section.text()));
+   }
+
+   /**
+    * Add a document.
+    *
+    * @param entry       title, URL and source of the document
+    * @param frequencies number of times each term appears in the document
+    */
+   void add(final SearchEntry entry, final Map<String, Integer> frequencies) {
+      documents.add(new Document(entry, entry.source().getBytes(StandardCharsets.UTF_8), frequencies));
+   }
+
+   /**
+    * Number of documents added.
+    *
+    * @return the count
+    */
+   int size() {
+      return documents.size();
+   }
+
+   /**
+    * Write the segment.
+    *
+    * @param path the segment file, which must not exist yet
+    *
+    * @throws IOException if it cannot be written, or would be too large
+    */
+   void write(final Path path) throws IOException {
+      // Stable, so the sections of a file keep their order.
+      final var sorted = new ArrayList<>(documents);
+      sorted.sort((first, second) -> Arrays.compareUnsigned(first.source(), second.source()));
+
+      final var termPostings = new HashMap<String, List<int[]>>();
+      final var sources = new ArrayList<int[]>();
+      long totalLength = 0;
+      for (int id = 0; id < sorted.size(); id++) {
+         final var document = sorted.get(id);
+         final var posting = id;
+         document.frequencies().forEach((term, frequency) ->
+               termPostings.computeIfAbsent(term, key -> new ArrayList<>()).add(new int[]{posting, frequency}));
+         totalLength += document.length();
+         if (id == 0 || !Arrays.equals(sorted.get(id - 1).source(), document.source())) {
+            sources.add(new int[]{id, 0});
+         }
+         sources.get(sources.size() - 1)[1]++;
+      }
+      final var terms = new ArrayList<Term>();
+      termPostings.keySet().forEach(term -> terms.add(new Term(term, term.getBytes(StandardCharsets.UTF_8))));
+      terms.sort((first, second) -> Arrays.compareUnsigned(first.utf8(), second.utf8()));
+
+      // Work out every offset first, so the file can be written in one pass.
+      final var postingCount = termPostings.values().stream().mapToLong(List::size).sum();
+      final var postingsOffset = TextSegment.HEADER_SIZE + (long) terms.size() * TextSegment.TERM_SIZE;
+      final var documentTableOffset = postingsOffset + postingCount * TextSegment.POSTING_SIZE;
+      final var sourceTableOffset = documentTableOffset + (long) sorted.size() * TextSegment.DOCUMENT_SIZE;
+      final var stringsOffset = sourceTableOffset + (long) sources.size() * TextSegment.SOURCE_SIZE;
+      if (stringsOffset > Integer.MAX_VALUE) {
+         throw new IOException("Text index segment would be too large: " + sorted.size() + " sections.");
+      }
+      final var strings = new SearchIndexBuilder.Strings();
+      strings.start((int) stringsOffset);
+      final var termOffsets = new int[terms.size()];
+      for (int index = 0; index < terms.size(); index++) {
+         termOffsets[index] = strings.offsetOf(terms.get(index).utf8());
+      }
+      final var documentOffsets = new int[sorted.size() * 3];
+      for (int id = 0; id < sorted.size(); id++) {
+         final var entry = sorted.get(id).entry();
+         documentOffsets[id * 3] = strings.offsetOf(entry.title().getBytes(StandardCharsets.UTF_8));
+         documentOffsets[id * 3 + 1] = strings.offsetOf(entry.url().getBytes(StandardCharsets.UTF_8));
+         documentOffsets[id * 3 + 2] = strings.offsetOf(sorted.get(id).source());
+      }
+
+      final var temporary = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(),
+            ".tmp");
+      try {
+         try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+               Files.newOutputStream(temporary)))) {
+            out.writeInt(TextSegment.MAGIC);
+            out.writeInt(TextSegment.VERSION);
+            out.writeInt(sorted.size());
+            out.writeInt(terms.size());
+            out.writeInt(sources.size());
+            out.writeInt(TextSegment.HEADER_SIZE);
+            out.writeInt((int) postingsOffset);
+            out.writeInt((int) documentTableOffset);
+            out.writeInt((int) sourceTableOffset);
+            out.writeInt((int) stringsOffset);
+            out.writeLong(totalLength);
+            var postingStart = 0;
+            for (int index = 0; index < terms.size(); index++) {
+               final var count = termPostings.get(terms.get(index).text()).size();
+               out.writeInt(termOffsets[index]);
+               out.writeInt(postingStart);
+               out.writeInt(count);
+               postingStart += count;
+            }
+            for (Term term : terms) {
+               for (int[] posting : termPostings.get(term.text())) {
+                  out.writeInt(posting[0]);
+                  out.writeInt(posting[1]);
+               }
+            }
+            for (int id = 0; id < sorted.size(); id++) {
+               out.writeInt(documentOffsets[id * 3]);
+               out.writeInt(documentOffsets[id * 3 + 1]);
+               out.writeInt(documentOffsets[id * 3 + 2]);
+               out.writeInt(sorted.get(id).length());
+            }
+            for (int[] source : sources) {
+               out.writeInt(documentOffsets[source[0] * 3 + 2]);
+               out.writeInt(source[0]);
+               out.writeInt(source[1]);
+            }
+            for (byte[] string : strings.inOrder()) {
+               out.writeInt(string.length);
+               out.write(string);
+            }
+         }
+         AtomicFile.moveIntoPlace(temporary, path);
+      } finally {
+         Files.deleteIfExists(temporary);
+      }
+   }
+
+   /**
+    * A term and its UTF-8 bytes.
+    *
+    * @param text the term
+    * @param utf8 its UTF-8 bytes
+    */
+   private record Term(String text, byte[] utf8) {
+   }
+
+   /**
+    * A document to write.
+    *
+    * @param entry       title, URL and source of the document
+    * @param source      the source, in UTF-8
+    * @param frequencies number of times each term appears in the document
+    */
+   private record Document(SearchEntry entry, byte[] source, Map<String, Integer> frequencies) {
+
+      /**
+       * Length of the document.
+       *
+       * @return number of terms in it
+       */
+      int length() {
+         return frequencies.values().stream().mapToInt(Integer::intValue).sum();
+      }
+
+   }
+
+}
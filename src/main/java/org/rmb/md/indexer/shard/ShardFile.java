@@ -0,0 +1,369 @@
+package org.rmb.md.indexer.shard;
+
+import org.rmb.md.indexer.output.AtomicFile;
+import org.rmb.md.indexer.shortcut.Shortcut;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The staged results of one shard: for each markdown file of the shard, in discovery order, its shortcuts and, if
+ * there is a full-text index, the text under each of them.
+ * <p>
+ * The header holds {@link #MAGIC}, {@link #VERSION}, the shard number and count, the configuration fingerprint and the
+ * listing fingerprint as 64 ASCII characters each, then the number of files. Each file follows as its root number,
+ * its position among all files the root's walk found, its shortcut count and each shortcut's file name, URL, source,
+ * heading and text. Strings are written as their UTF-8 length and bytes; a missing heading or text as length -1.
+ * <p>
+ * The listing fingerprint and file count are only filled in when the shard is complete, and the file is moved into
+ * place after that, so a shard whose process died is never mistaken for a finished one.
+ */
+public final class ShardFile {
+
+   /**
+    * First four bytes of every shard file: "MDSH".
+    */
+   static final int MAGIC = 0x4D445348;
+
+   /**
+    * Version of the file layout.
+    */
+   static final int VERSION = 1;
+
+   /**
+    * Length of each fingerprint, which is a SHA-256 hash in hex.
+    */
+   private static final int FINGERPRINT_LENGTH = 64;
+
+   /**
+    * Offset of the listing fingerprint.
+    */
+   private static final int LISTING_OFFSET = 4 * Integer.BYTES + FINGERPRINT_LENGTH;
+
+   /**
+    * The staged results of one markdown file.
+    *
+    * @param root      number of the source root the file belongs to
+    * @param ordinal   position of the file among all files found by the walk of its root, in every shard
+    * @param shortcuts the file's shortcuts
+    * @param texts     text under each shortcut, in the same order, or empty if no text was staged
+    */
+   public record Entry(int root, long ordinal, List<Shortcut> shortcuts, List<String> texts) {
+   }
+
+   /**
+    * Not instantiated.
+    */
+   private ShardFile() {
+   }
+
+   /**
+    * Writes a shard file. Files must be added in the order they were discovered.
+    */
+   public static final class Writer implements Closeable {
+
+      /**
+       * The shard file.
+       */
+      private final Path path;
+
+      /**
+       * Where the file is written until it is complete.
+       */
+      private final Path temporary;
+
+      /**
+       * Writes to {@link #temporary}.
+       */
+      private final DataOutputStream out;
+
+      /**
+       * Files added so far.
+       */
+      private long count;
+
+      /**
+       * Start writing a shard file.
+       *
+       * @param path        the shard file; replaced only by {@link #commit(String)}
+       * @param shard       the shard
+       * @param fingerprint fingerprint of the configuration, as 64 hex digits
+       *
+       * @throws IOException if the file cannot be created
+       */
+      public Writer(final Path path, final ShardSpec shard, final String fingerprint) throws IOException {
+         this.path = path;
+         Files.createDirectories(path.toAbsolutePath().getParent());
+         this.temporary = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(),
+               ".tmp");
+         this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)));
+         out.writeInt(MAGIC);
+         out.writeInt(VERSION);
+         out.writeInt(shard.index());
+         out.writeInt(shard.count());
+         out.write(fingerprintBytes(fingerprint));
+         out.write(new byte[FINGERPRINT_LENGTH]);
+         out.writeLong(0);
+      }
+
+      /**
+       * Add a file.
+       *
+       * @param entry the file
+       *
+       * @throws IOException if it cannot be written
+       */
+      public void add(final Entry entry) throws IOException {
+         out.writeInt(entry.root());
+         out.writeLong(entry.ordinal());
+         out.writeInt(entry.shortcuts().size());
+         for (int index = 0; index < entry.shortcuts().size(); index++) {
+            final var shortcut = entry.shortcuts().get(index);
+            writeString(out, shortcut.fileName());
+            writeString(out, shortcut.url());
+            writeString(out, shortcut.source().toString());
+            writeString(out, shortcut.heading());
+            writeString(out, entry.texts().isEmpty() ? null : entry.texts().get(index));
+         }
+         count++;
+      }
+
+      /**
+       * Finish the file and move it into place.
+       *
+       * @param listing fingerprint of every file found by the walk of every root, as 64 hex digits
+       *
+       * @throws IOException if it cannot be written
+       */
+      public void commit(final String listing) throws IOException {
+         out.close();
+         try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            final var trailer = ByteBuffer.allocate(FINGERPRINT_LENGTH + Long.BYTES);
+            trailer.put(fingerprintBytes(listing)).putLong(count).flip();
+            while (trailer.hasRemaining()) {
+               channel.write(trailer, LISTING_OFFSET + trailer.position());
+            }
+            channel.force(true);
+         }
+         AtomicFile.moveIntoPlace(temporary, path);
+      }
+
+      /**
+       * Stop writing. Unless committed, the file is discarded.
+       *
+       * @throws IOException if the temporary file cannot be deleted
+       */
+      @Override
+      public void close() throws IOException {
+         try {
+            out.close();
+         } finally {
+            Files.deleteIfExists(temporary);
+         }
+      }
+
+   }
+
+   /**
+    * Reads a shard file, one markdown file at a time.
+    */
+   public static final class Reader implements Closeable {
+
+      /**
+       * Reads the shard file.
+       */
+      private final DataInputStream in;
+
+      /**
+       * The shard.
+       */
+      private final ShardSpec shard;
+
+      /**
+       * Fingerprint of the configuration.
+       */
+      private final String fingerprint;
+
+      /**
+       * Fingerprint of every file found by the walk.
+       */
+      private final String listing;
+
+      /**
+       * Files not read yet.
+       */
+      private long remaining;
+
+      /**
+       * Open a shard file and read its header.
+       *
+       * @param path the shard file
+       *
+       * @throws IOException if it cannot be read or is not a shard file
+       */
+      public Reader(final Path path) throws IOException {
+         this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+         try {
+            if (in.readInt() != MAGIC) {
+               throw new IOException("Not a shard file: " + path);
+            }
+            final var version = in.readInt();
+            if (version != VERSION) {
+               throw new IOException("Shard file " + path + " is version " + version + ", not " + VERSION + ".");
+            }
+            this.shard = new ShardSpec(in.readInt(), in.readInt());
+            this.fingerprint = readFingerprint(in);
+            this.listing = readFingerprint(in);
+            this.remaining = in.readLong();
+         } catch (IOException | IllegalArgumentException e) {
+            in.close();
+            throw e instanceof IOException ? (IOException) e : new IOException("Not a shard file: " + path, e);
+         }
+      }
+
+      /**
+       * The shard.
+       *
+       * @return the shard the file holds
+       */
+      public ShardSpec shard() {
+         return shard;
+      }
+
+      /**
+       * Fingerprint of the configuration the shard was indexed with.
+       *
+       * @return the fingerprint
+       */
+      public String fingerprint() {
+         return fingerprint;
+      }
+
+      /**
+       * Fingerprint of every file found by the walk of every root, which every shard of one run must agree on.
+       *
+       * @return the fingerprint
+       */
+      public String listing() {
+         return listing;
+      }
+
+      /**
+       * Read the next markdown file.
+       *
+       * @return the file, or empty if there are no more
+       *
+       * @throws IOException if the file cannot be read or is truncated
+       */
+      public Optional<Entry> next() throws IOException {
+         if (remaining == 0) {
+            return Optional.empty();
+         }
+         remaining--;
+         final var root = in.readInt();
+         final var ordinal = in.readLong();
+         final var size = in.readInt();
+         final var shortcuts = new ArrayList<Shortcut>(size);
+         final var texts = new ArrayList<String>(size);
+         for (int index = 0; index < size; index++) {
+            final var fileName = readString(in);
+            final var url = readString(in);
+            final var source = Paths.get(readString(in));
+            shortcuts.add(new Shortcut(fileName, url, source, readString(in)));
+            final var text = readString(in);
+            if (text != null) {
+               texts.add(text);
+            }
+         }
+         return Optional.of(new Entry(root, ordinal, shortcuts, texts.size() == size ? texts : List.of()));
+      }
+
+      @Override
+      public void close() throws IOException {
+         in.close();
+      }
+
+   }
+
+   /**
+    * A fingerprint as bytes.
+    *
+    * @param fingerprint 64 hex digits
+    *
+    * @return its ASCII bytes
+    */
+   private static byte[] fingerprintBytes(final String fingerprint) {
+      final var bytes = fingerprint.getBytes(StandardCharsets.US_ASCII);
+      if (bytes.length != FINGERPRINT_LENGTH) {
+         throw new IllegalArgumentException("Not a fingerprint: " + fingerprint);
+      }
+      return bytes;
+   }
+
+   /**
+    * Read a fingerprint.
+    *
+    * @param in where to read it
+    *
+    * @return 64 hex digits
+    *
+    * @throws IOException if it cannot be read
+    */
+   private static String readFingerprint(final DataInputStream in) throws IOException {
+      final var bytes = new byte[FINGERPRINT_LENGTH];
+      in.readFully(bytes);
+      return new String(bytes, StandardCharsets.US_ASCII);
+   }
+
+   /**
+    * Write a string, or null.
+    *
+    * @param out   where to write it
+    * @param value the string, or null
+    *
+    * @throws IOException if it cannot be written
+    */
+   private static void writeString(final DataOutputStream out, final String value) throws IOException {
+      if (value == null) {
+         out.writeInt(-1);
+         return;
+      }
+      final var bytes = value.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+   }
+
+   /**
+    * Read a string written by {@link #writeString(DataOutputStream, String)}.
+    *
+    * @param in where to read it
+    *
+    * @return the string, or null
+    *
+    * @throws IOException if it cannot be read
+    */
+   private static String readString(final DataInputStream in) throws IOException {
+      final var length = in.readInt();
+      if (length < 0) {
+         return null;
+      }
+      final var bytes = new byte[length];
+      in.readFully(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+   }
+
+}
@@ -0,0 +1,85 @@
+package org.rmb.md.indexer.shard;
+
+/**
+ * One of a number of shards markdown files are split between, so each can be indexed by its own process. A file
+ * belongs to a shard by a hash of its key - see {@link #shardOf(String, int)} - so the split is the same in every
+ * process and on every run.
+ *
+ * @param index number of this shard, from 0
+ * @param count number of shards
+ */
+public record ShardSpec(int index, int count) {
+
+   /**
+    * Check the shard exists.
+    *
+    * @param index number of this shard, from 0
+    * @param count number of shards
+    */
+   public ShardSpec {
+      if (count < 1 || index < 0 || index >= count) {
+         throw new IllegalArgumentException("No shard " + index + " of " + count + ".");
+      }
+   }
+
+   /**
+    * Parse a shard written as <code>index/count</code>, such as <code>0/4</code>.
+    *
+    * @param value the shard
+    *
+    * @return the shard
+    *
+    * @throws IllegalArgumentException if it is not a shard
+    */
+   public static ShardSpec parse(final String value) {
+      final var slash = value.indexOf('/');
+      if (slash < 0) {
+         throw new IllegalArgumentException("Shard must be written as index/count, not '" + value + "'.");
+      }
+      try {
+         return new ShardSpec(Integer.parseInt(value.substring(0, slash).trim()),
+               Integer.parseInt(value.substring(slash + 1).trim()));
+      } catch (NumberFormatException e) {
+         throw new IllegalArgumentException("Shard must be written as index/count, not '" + value + "'.", e);
+      }
+   }
+
+   /**
+    * Which shard a file belongs to. {@link String#hashCode()} is used because its value is part of its contract, so
+    * every JVM agrees.
+    *
+    * @param key   identifies the file the same way in every process, such as its root and relative path
+    * @param count number of shards
+    *
+    * @return number of the shard
+    */
+   public static int shardOf(final String key, final int count) {
+      return Math.floorMod(key.hashCode(), count);
+   }
+
+   /**
+    * Does a file belong to this shard?
+    *
+    * @param key identifies the file - see {@link #shardOf(String, int)}
+    *
+    * @return true if it does
+    */
+   public boolean owns(final String key) {
+      return shardOf(key, count) == index;
+   }
+
+   /**
+    * Name of the staging file this shard's results are written to.
+    *
+    * @return the file name
+    */
+   public String fileName() {
+      return "shard-" + index + "-of-" + count;
+   }
+
+   @Override
+   public String toString() {
+      return index + "/" + count;
+   }
+
+}
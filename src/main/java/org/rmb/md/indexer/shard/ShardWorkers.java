@@ -0,0 +1,126 @@
+package org.rmb.md.indexer.shard;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Runs one local process per shard, all at once, and runs any that fail again on their own. Each process writes
+ * everything it logs to <code>shard-index-of-count.log</code> in the staging folder, after the log of any earlier
+ * attempt.
+ */
+@Slf4j
+public final class ShardWorkers {
+
+   /**
+    * Not instantiated.
+    */
+   private ShardWorkers() {
+   }
+
+   /**
+    * The command line this process was started with, so workers can be started the same way.
+    *
+    * @return the java executable followed by every argument, or empty if the platform does not say
+    */
+   public static Optional<List<String>> currentCommand() {
+      final var info = ProcessHandle.current().info();
+      if (info.command().isEmpty() || info.arguments().isEmpty()) {
+         return Optional.empty();
+      }
+      final var command = new ArrayList<String>();
+      command.add(info.command().get());
+      command.addAll(List.of(info.arguments().get()));
+      return Optional.of(command);
+   }
+
+   /**
+    * Run a process for every shard, wait for them all, then run those that failed again, until every shard has
+    * succeeded or used up its attempts.
+    *
+    * @param count    number of shards
+    * @param command  command line for the process of a shard
+    * @param attempts most times any one shard is run
+    * @param staging  folder for the log of each process
+    *
+    * @return the shards that still failed
+    *
+    * @throws IOException          if the staging folder cannot be created
+    * @throws InterruptedException if interrupted while waiting; every process is then stopped
+    */
+   public static List<ShardSpec> run(final int count, final Function<ShardSpec, List<String>> command,
+                                     final int attempts, final Path staging) throws IOException, InterruptedException {
+      Files.createDirectories(staging);
+      var pending = new ArrayList<ShardSpec>();
+      for (int index = 0; index < count; index++) {
+         pending.add(new ShardSpec(index, count));
+      }
+      for (int attempt = 1; attempt <= attempts && !pending.isEmpty(); attempt++) {
+         if (attempt > 1) {
+            log.warn("Running {} failed shards again: {}.", pending.size(), pending);
+         }
+         final var running = new LinkedHashMap<ShardSpec, Process>();
+         try {
+            for (ShardSpec shard : pending) {
+               running.put(shard, start(shard, command.apply(shard), staging));
+            }
+            pending = waitForAll(running);
+         } finally {
+            running.values().forEach(Process::destroy);
+         }
+      }
+      return pending;
+   }
+
+   /**
+    * Start the process of one shard.
+    *
+    * @param shard   the shard
+    * @param command its command line
+    * @param staging folder for its log
+    *
+    * @return the process
+    *
+    * @throws IOException if it cannot be started
+    */
+   private static Process start(final ShardSpec shard, final List<String> command, final Path staging)
+         throws IOException {
+      final var logFile = staging.resolve(shard.fileName() + ".log");
+      log.info("Starting shard {}; its log is {}.", shard, logFile);
+      return new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.appendTo(logFile.toFile()))
+            .start();
+   }
+
+   /**
+    * Wait for every process.
+    *
+    * @param running the process of each shard
+    *
+    * @return the shards whose process failed
+    *
+    * @throws InterruptedException if interrupted while waiting
+    */
+   private static ArrayList<ShardSpec> waitForAll(final Map<ShardSpec, Process> running)
+         throws InterruptedException {
+      final var failed = new ArrayList<ShardSpec>();
+      for (Map.Entry<ShardSpec, Process> entry : running.entrySet()) {
+         final var exitCode = entry.getValue().waitFor();
+         if (exitCode != 0) {
+            log.warn("Shard {} failed with exit code {}.", entry.getKey(), exitCode);
+            failed.add(entry.getKey());
+         }
+      }
+      return failed;
+   }
+
+}
@@ -0,0 +1,22 @@
+package org.rmb.md.indexer.shortcut;
+
+/**
+ * How a heading is turned into the anchor at the end of its shortcut's URL.
+ */
+public enum AnchorStyle {
+
+   /**
+    * As Hugo's default (Goldmark, <code>github</code> style) heading IDs: letters, digits, <code>_</code> and
+    * <code>-</code> are kept, lower case, and spaces become <code>-</code>. The second heading in a file with the same
+    * anchor gets <code>-1</code> added, the third <code>-2</code>, and so on, and a heading with no anchor left becomes
+    * <code>heading</code>.
+    */
+   HUGO,
+
+   /**
+    * As earlier versions of this indexer: spaces become <code>-</code>, and anything that is not then an ASCII letter,
+    * digit or <code>-</code> after lower casing is dropped. Duplicate headings all get the same anchor.
+    */
+   LEGACY
+
+}
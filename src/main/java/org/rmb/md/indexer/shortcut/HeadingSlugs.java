@@ -0,0 +1,257 @@
+package org.rmb.md.indexer.shortcut;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Turns the headings of one markdown file into shortcut file names and URL anchors, in a single pass over each heading
+ * and into one reused buffer, rather than through a chain of regular expressions.
+ * <p>
+ * Use a new instance for each markdown file, passing it the headings in the order they appear: with
+ * {@link AnchorStyle#HUGO} it remembers the anchors already given out, so duplicate headings get the same suffixes Hugo
+ * gives them. Not thread safe.
+ */
+public final class HeadingSlugs {
+
+   /**
+    * Extension of shortcut file names.
+    */
+   private static final String URL_EXTENSION = ".url";
+
+   /**
+    * Goes between the name of a markdown file's shortcut and a heading in a heading's shortcut file name.
+    */
+   private static final String HEADING_SEPARATOR = " - ";
+
+   /**
+    * Hugo's anchor for a heading with nothing left to make one from.
+    */
+   private static final String EMPTY_ANCHOR = "heading";
+
+   /**
+    * Most <code>#</code> characters a heading line can start with.
+    */
+   private static final int MAX_HEADING_LEVEL = 6;
+
+   /**
+    * How anchors are made.
+    */
+   private final AnchorStyle style;
+
+   /**
+    * Anchors given out so far, for {@link AnchorStyle#HUGO}.
+    */
+   private final Set<String> anchors = new HashSet<>();
+
+   /**
+    * Reused for every name and anchor built.
+    */
+   private final StringBuilder buffer = new StringBuilder(64);
+
+   /**
+    * Create slugs for one markdown file.
+    *
+    * @param style how anchors are made
+    */
+   public HeadingSlugs(final AnchorStyle style) {
+      this.style = style;
+   }
+
+   /**
+    * File name of the shortcut to a heading: the file's shortcut name without <code>.url</code>, <code> - </code>, then
+    * the ASCII letters, digits, hyphens and spaces of the heading, then <code>.url</code>.
+    *
+    * @param fileName file name of the shortcut to the markdown file
+    * @param heading  the heading
+    *
+    * @return the file name
+    */
+   public String fileName(final String fileName, final String heading) {
+      buffer.setLength(0);
+      final var baseLength = fileName.endsWith(URL_EXTENSION)
+            ? fileName.length() - URL_EXTENSION.length()
+            : fileName.length();
+      buffer.append(fileName, 0, baseLength).append(HEADING_SEPARATOR);
+      for (int index = 0; index < heading.length(); index++) {
+         final var c = heading.charAt(index);
+         if (isAsciiLetterOrDigit(c) || c == '-' || c == ' ') {
+            buffer.append(c);
+         }
+      }
+      return buffer.append(URL_EXTENSION).toString();
+   }
+
+   /**
+    * Anchor for a heading, in this object's style. With {@link AnchorStyle#HUGO}, an anchor already given out for an
+    * earlier heading gets the next free suffix.
+    *
+    * @param heading the heading
+    *
+    * @return the anchor, without <code>#</code>
+    */
+   public String anchor(final String heading) {
+      buffer.setLength(0);
+      if (style == AnchorStyle.LEGACY) {
+         appendLegacy(heading);
+         return buffer.toString();
+      }
+      appendHugo(heading);
+      if (buffer.length() == 0) {
+         buffer.append(EMPTY_ANCHOR);
+      }
+      var anchor = buffer.toString();
+      if (anchors.contains(anchor)) {
+         buffer.append('-');
+         final var base = buffer.length();
+         for (int suffix = 1; ; suffix++) {
+            buffer.setLength(base);
+            anchor = buffer.append(suffix).toString();
+            if (!anchors.contains(anchor)) {
+               break;
+            }
+         }
+      }
+      anchors.add(anchor);
+      return anchor;
+   }
+
+   /**
+    * Note a heading line that gets no shortcut, such as one the heading replacement sequence blanked out. Hugo still
+    * gives it an anchor, so with {@link AnchorStyle#HUGO} that anchor is taken, and a later heading with the same text
+    * gets the next suffix, as in Hugo.
+    *
+    * @param line the heading line, as in the markdown file
+    */
+   public void skip(final String line) {
+      if (style == AnchorStyle.HUGO) {
+         headingText(line).ifPresent(this::anchor);
+      }
+   }
+
+   /**
+    * The text of an ATX heading line, as Hugo makes its anchor from: after the opening <code>#</code> characters and
+    * before any closing ones.
+    *
+    * @param line a line of a markdown file
+    *
+    * @return the text, or empty if the line is not a heading: it has more than six <code>#</code> characters, or no
+    * white space after them
+    */
+   private static Optional<String> headingText(final String line) {
+      var start = 0;
+      while (start < line.length() && line.charAt(start) == '#') {
+         start++;
+      }
+      if (start == 0 || start > MAX_HEADING_LEVEL
+            || start < line.length() && line.charAt(start) != ' ' && line.charAt(start) != '\t') {
+         return Optional.empty();
+      }
+      var end = line.length();
+      while (end > start && isSpace(line.charAt(end - 1))) {
+         end--;
+      }
+      var closing = end;
+      while (closing > start && line.charAt(closing - 1) == '#') {
+         closing--;
+      }
+      if (closing == start || line.charAt(closing - 1) == ' ' || line.charAt(closing - 1) == '\t') {
+         end = closing;
+      }
+      return Optional.of(line.substring(start, end));
+   }
+
+   /**
+    * Append the {@link AnchorStyle#LEGACY} anchor for a heading: the same as <code>heading.trim().replaceAll(" ",
+    * "-").toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9-]", "")</code>.
+    *
+    * @param heading the heading
+    */
+   private void appendLegacy(final String heading) {
+      var start = 0;
+      var end = heading.length();
+      while (start < end && heading.charAt(start) <= ' ') {
+         start++;
+      }
+      while (end > start && heading.charAt(end - 1) <= ' ') {
+         end--;
+      }
+      for (int index = start; index < end; index++) {
+         final var c = heading.charAt(index);
+         if (c == ' ' || c == '-') {
+            buffer.append('-');
+         } else if (isAsciiLetterOrDigit(c)) {
+            buffer.append(toLowerAscii(c));
+         } else if (c == '\u0130') {
+            // Capital I with dot lower cases to i and a combining dot; the dot is then dropped.
+            buffer.append('i');
+         } else if (c == '\u212a') {
+            // Kelvin sign.
+            buffer.append('k');
+         }
+      }
+   }
+
+   /**
+    * Append the {@link AnchorStyle#HUGO} anchor for a heading, before any suffix: white space trimmed, then letters,
+    * digits and <code>_</code> in lower case, <code>-</code> for each space or hyphen, and nothing for anything else.
+    *
+    * @param heading the heading
+    */
+   private void appendHugo(final String heading) {
+      var start = 0;
+      var end = heading.length();
+      while (start < end && isSpace(heading.codePointAt(start))) {
+         start += Character.charCount(heading.codePointAt(start));
+      }
+      while (end > start && isSpace(heading.codePointBefore(end))) {
+         end -= Character.charCount(heading.codePointBefore(end));
+      }
+      for (int index = start; index < end; ) {
+         final var codePoint = heading.codePointAt(index);
+         if (codePoint == ' ' || codePoint == '-') {
+            buffer.append('-');
+         } else if (codePoint == '_' || Character.isLetter(codePoint) || Character.isDigit(codePoint)) {
+            buffer.appendCodePoint(Character.toLowerCase(codePoint));
+         }
+         index += Character.charCount(codePoint);
+      }
+   }
+
+   /**
+    * Is a character white space, as Hugo trims it?
+    *
+    * @param codePoint the character
+    *
+    * @return true for white space
+    */
+   private static boolean isSpace(final int codePoint) {
+      return switch (codePoint) {
+         case '\t', '\n', '\u000b', '\f', '\r', ' ', '\u0085', '\u00a0' -> true;
+         default -> codePoint > '\u00ff' && Character.isSpaceChar(codePoint);
+      };
+   }
+
+   /**
+    * Is a character an ASCII letter or digit?
+    *
+    * @param c the character
+    *
+    * @return true for <code>[a-zA-Z0-9]</code>
+    */
+   private static boolean isAsciiLetterOrDigit(final char c) {
+      return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9';
+   }
+
+   /**
+    * Lower case an ASCII letter or digit.
+    *
+    * @param c the character
+    *
+    * @return its lower case
+    */
+   private static char toLowerAscii(final char c) {
+      return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+   }
+
+}
@@ -0,0 +1,26 @@
+package org.rmb.md.indexer.shortcut;
+
+import java.nio.file.Path;
+
+/**
+ * A URL shortcut to a markdown file, or to a heading within one.
+ *
+ * @param fileName name of the <code>.url</code> file, relative to the <code>application.path-to-urls</code> directory
+ * @param url      the URL the shortcut points to
+ * @param source   the markdown file the shortcut was created for
+ * @param heading  the heading the shortcut points to, or null if it points to the file itself
+ */
+public record Shortcut(String fileName, String url, Path source, String heading) {
+
+   /**
+    * Contents of the <code>.url</code> file.
+    *
+    * @return bytes to write to {@link #fileName()}
+    */
+   public byte[] content() {
+      return ("""
+            [InternetShortcut]
+            URL=""" + url).getBytes();
+   }
+
+}
@@ -0,0 +1,78 @@
+package org.rmb.md.indexer.shortcut;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Notices shortcuts that would be written to the same file as an earlier, different shortcut, which is then lost: two
+ * headings that differ only in punctuation, two markdown files whose paths map to the same name, or two source roots
+ * with the same file prefix. A shortcut repeated with the same URL is not a collision.
+ * <p>
+ * Only used from one thread.
+ */
+public final class ShortcutCollisions {
+
+   /**
+    * Latest shortcut claiming each file name.
+    */
+   private final ShortcutTable claims = new ShortcutTable();
+
+   /**
+    * Names of the source roots seen so far.
+    */
+   private final List<String> roots = new ArrayList<>();
+
+   /**
+    * Number of the source root of each claim, in {@link #roots}, by index in {@link #claims}.
+    */
+   private int[] claimRoots = new int[0];
+
+   /**
+    * A shortcut and the source root it came from.
+    *
+    * @param root     name of the source root
+    * @param shortcut the shortcut
+    */
+   public record Claim(String root, Shortcut shortcut) {
+   }
+
+   /**
+    * Claim a shortcut's file name. The shortcut replaces whichever claimed the name before.
+    *
+    * @param root     name of the source root the shortcut came from
+    * @param shortcut the shortcut
+    *
+    * @return the earlier claim, if there was one for a shortcut with a different URL
+    */
+   public Optional<Claim> claim(final String root, final Shortcut shortcut) {
+      final var existing = claims.indexOf(shortcut.fileName());
+      final var previous = existing < 0 || claims.url(existing).equals(shortcut.url())
+            ? Optional.<Claim>empty()
+            : Optional.of(new Claim(roots.get(claimRoots[existing]), claims.get(existing)));
+      final var index = claims.put(shortcut);
+      if (index == claimRoots.length) {
+         claimRoots = Arrays.copyOf(claimRoots, Math.max(16, index + (index >> 1)));
+      }
+      claimRoots[index] = rootNumber(root);
+      return previous;
+   }
+
+   /**
+    * Number a source root.
+    *
+    * @param root name of the source root
+    *
+    * @return its number in {@link #roots}, which there are few enough of to search
+    */
+   private int rootNumber(final String root) {
+      final var number = roots.indexOf(root);
+      if (number >= 0) {
+         return number;
+      }
+      roots.add(root);
+      return roots.size() - 1;
+   }
+
+}
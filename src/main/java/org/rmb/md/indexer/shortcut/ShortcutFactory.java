@@ -0,0 +1,249 @@
+package org.rmb.md.indexer.shortcut;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.rmb.md.indexer.metrics.RunMetrics;
+import org.rmb.md.indexer.metrics.RunMetrics.Count;
+import org.rmb.md.indexer.metrics.RunMetrics.Stage;
+import org.rmb.md.indexer.regex.ReplacementSequence;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Works out which shortcuts a markdown file needs: one for the file itself and one for each heading in it. Nothing is
+ * read or written here, so the same shortcuts can be written out, compared or recorded.
+ */
+@Slf4j
+public final class ShortcutFactory {
+
+   /**
+    * Shortcut file names start with this unless another prefix is given.
+    */
+   public static final String DEFAULT_FILE_PREFIX = "Hugo";
+
+   /**
+    * Goes between the file prefix and the rest of a shortcut file name.
+    */
+   public static final String FILE_PREFIX_SEPARATOR = " - ";
+
+   /**
+    * Path to folder containing markdown files, which is removed from the front of each markdown path.
+    */
+   private final String pathToMarkdownFiles;
+
+   /**
+    * Base URL for the webapp that serves the markdown files.
+    */
+   private final String webappBaseUrl;
+
+   /**
+    * The replacement sequence to apply against markdown paths.
+    */
+   private final ReplacementSequence replacementSequenceMd;
+
+   /**
+    * The replacement sequence to apply against markdown URLs.
+    */
+   private final ReplacementSequence replacementSequenceUrl;
+
+   /**
+    * The replacement sequence to apply against markdown headings.
+    */
+   private final ReplacementSequence replacementSequenceHeadings;
+
+   /**
+    * Records time spent applying each replacement sequence, and counts shortcuts created.
+    */
+   private final RunMetrics metrics;
+
+   /**
+    * How headings are turned into URL anchors.
+    */
+   private final AnchorStyle anchorStyle;
+
+   /**
+    * Start of every shortcut file name: the file prefix and {@link #FILE_PREFIX_SEPARATOR}.
+    */
+   private final String fileNamePrefix;
+
+   /**
+    * Instantiates a new shortcut factory.
+    *
+    * @param pathToMarkdownFiles         path to folder containing markdown files
+    * @param webappBaseUrl               base URL for the webapp that serves the markdown files
+    * @param replacementSequenceMd       the replacement sequence to apply against markdown paths
+    * @param replacementSequenceUrl      the replacement sequence to apply against markdown URLs
+    * @param replacementSequenceHeadings the replacement sequence to apply against markdown headings
+    */
+   public ShortcutFactory(final String pathToMarkdownFiles, final String webappBaseUrl,
+                          final ReplacementSequence replacementSequenceMd,
+                          final ReplacementSequence replacementSequenceUrl,
+                          final ReplacementSequence replacementSequenceHeadings) {
+      this(pathToMarkdownFiles, webappBaseUrl, replacementSequenceMd, replacementSequenceUrl,
+            replacementSequenceHeadings, ShortcutOptions.defaults());
+   }
+
+   /**
+    * Instantiates a new shortcut factory that records what it does and names what it makes as <code>options</code>
+    * say.
+    *
+    * @param pathToMarkdownFiles         path to folder containing markdown files
+    * @param webappBaseUrl               base URL for the webapp that serves the markdown files
+    * @param replacementSequenceMd       the replacement sequence to apply against markdown paths
+    * @param replacementSequenceUrl      the replacement sequence to apply against markdown URLs
+    * @param replacementSequenceHeadings the replacement sequence to apply against markdown headings
+    * @param options                     the metrics to record into, the anchor style and the file prefix
+    */
+   public ShortcutFactory(final String pathToMarkdownFiles, final String webappBaseUrl,
+                          final ReplacementSequence replacementSequenceMd,
+                          final ReplacementSequence replacementSequenceUrl,
+                          final ReplacementSequence replacementSequenceHeadings,
+                          final ShortcutOptions options) {
+      this.pathToMarkdownFiles = pathToMarkdownFiles;
+      this.webappBaseUrl = webappBaseUrl;
+      this.replacementSequenceMd = replacementSequenceMd;
+      this.replacementSequenceUrl = replacementSequenceUrl;
+      this.replacementSequenceHeadings = replacementSequenceHeadings;
+      this.metrics = options.metrics();
+      this.anchorStyle = options.anchorStyle();
+      this.fileNamePrefix = options.filePrefix() + FILE_PREFIX_SEPARATOR;
+   }
+
+   /**
+    * Create shortcuts for a markdown file and every heading in it.
+    *
+    * @param path  path to the markdown file
+    * @param lines lines read from the markdown file
+    *
+    * @return the file shortcut followed by one shortcut per heading, in the order the headings appear
+    */
+   public List<Shortcut> createShortcuts(final Path path, final List<String> lines) {
+      return createShortcuts(path, lines, new int[lines.size()]);
+   }
+
+   /**
+    * Create shortcuts for a markdown file and every heading in it, noting which shortcut each line comes under.
+    *
+    * @param path   path to the markdown file
+    * @param lines  lines read from the markdown file
+    * @param owners filled in with, for each line, the index in the result of the shortcut it comes under: its own for
+    *               a heading that gets a shortcut, otherwise that of the nearest such heading before it, or of the file
+    *
+    * @return the file shortcut followed by one shortcut per heading, in the order the headings appear
+    */
+   public List<Shortcut> createShortcuts(final Path path, final List<String> lines, final int[] owners) {
+      final var fileShortcut = createShortcutForMarkdownFile(path);
+      final var shortcuts = new ArrayList<Shortcut>();
+      shortcuts.add(fileShortcut);
+      final var slugs = new HeadingSlugs(anchorStyle);
+      for (int index = 0; index < lines.size(); index++) {
+         final var line = lines.get(index);
+         if (lineIsMarkdownHeading(line)) {
+            final var heading = apply(Stage.HEADING_SEQUENCE, replacementSequenceHeadings, line);
+            if (StringUtils.isNotBlank(heading)) {
+               shortcuts.add(createShortcutForMarkdownHeader(fileShortcut, heading, slugs));
+            } else {
+               slugs.skip(line);
+            }
+         }
+         owners[index] = shortcuts.size() - 1;
+      }
+      return shortcuts;
+   }
+
+   /**
+    * Create shortcut to a markdown file.
+    *
+    * @param path path to the file we are creating a shortcut to
+    *
+    * @return the shortcut
+    */
+   public Shortcut createShortcutForMarkdownFile(final Path path) {
+      log.trace("Path: {}", path);
+      final var relativePath = path.toAbsolutePath().toString().replace(pathToMarkdownFiles + "\\", "");
+      final var fileName = fileNamePrefix + apply(Stage.FILE_SEQUENCE, replacementSequenceMd, relativePath) + ".url";
+      final var url = webappBaseUrl + apply(Stage.URL_SEQUENCE, replacementSequenceUrl, relativePath) + ".html";
+      log.debug("URL file name: {}", fileName);
+      log.debug("URL: {}", url);
+      metrics.increment(Count.SHORTCUTS);
+      return new Shortcut(fileName, url, path, null);
+   }
+
+   /**
+    * Create shortcut to a heading within a markdown file, as if it were the only heading in the file.
+    *
+    * @param fileShortcut shortcut to the file the heading is in; its file name and URL are built on
+    * @param heading      the heading, after the heading replacement sequence has been applied
+    *
+    * @return the shortcut
+    */
+   public Shortcut createShortcutForMarkdownHeader(final Shortcut fileShortcut, final String heading) {
+      return createShortcutForMarkdownHeader(fileShortcut, heading, new HeadingSlugs(anchorStyle));
+   }
+
+   /**
+    * Create shortcut to a heading within a markdown file.
+    *
+    * @param fileShortcut shortcut to the file the heading is in; its file name and URL are built on
+    * @param heading      the heading, after the heading replacement sequence has been applied
+    * @param slugs        slugs for the file's headings, given each heading of the file in order
+    *
+    * @return the shortcut
+    */
+   public Shortcut createShortcutForMarkdownHeader(final Shortcut fileShortcut, final String heading,
+                                                   final HeadingSlugs slugs) {
+      log.debug("Heading: {}", heading);
+
+      /*
+         1. Apply heading replacement sequence.
+         2. Turn the result into an anchor - see AnchorStyle.
+       */
+
+      final var headingFileName = slugs.fileName(fileShortcut.fileName(), heading);
+      log.debug("Heading file name: {}", headingFileName);
+
+      final var headingUrl = fileShortcut.url() + "#"
+            + slugs.anchor(apply(Stage.HEADING_SEQUENCE, replacementSequenceHeadings, heading));
+      log.debug("Heading URL: {}", headingUrl);
+      metrics.increment(Count.HEADINGS);
+      metrics.increment(Count.SHORTCUTS);
+      return new Shortcut(headingFileName, headingUrl, fileShortcut.source(), heading);
+   }
+
+   /**
+    * Apply a replacement sequence, recording the time it took.
+    *
+    * @param stage    the stage to record the time against
+    * @param sequence the sequence
+    * @param input    what to apply it to
+    *
+    * @return the result
+    */
+   private String apply(final Stage stage, final ReplacementSequence sequence, final String input) {
+      final var start = System.nanoTime();
+      try {
+         return sequence.apply(input);
+      } finally {
+         metrics.time(stage, start);
+      }
+   }
+
+   /**
+    * Tests if a Line is a markdown heading.
+    *
+    * @param line read from a file
+    *
+    * @return true if the line represents a markdown heading we want to create a shortcut for
+    */
+   public static boolean lineIsMarkdownHeading(final String line) {
+      if (isBlank(line)) {
+         return false;
+      }
+      return line.startsWith("#");
+   }
+
+}
@@ -0,0 +1,57 @@
+package org.rmb.md.indexer.shortcut;
+
+import org.rmb.md.indexer.metrics.RunMetrics;
+
+/**
+ * How a {@link ShortcutFactory} records what it does and names what it makes. Start from {@link #defaults()} and
+ * change what differs.
+ *
+ * @param metrics     records time spent applying each replacement sequence, and counts shortcuts created
+ * @param anchorStyle how headings are turned into URL anchors
+ * @param filePrefix  start of every shortcut file name, before {@link ShortcutFactory#FILE_PREFIX_SEPARATOR}
+ */
+public record ShortcutOptions(RunMetrics metrics, AnchorStyle anchorStyle, String filePrefix) {
+
+   /**
+    * Metrics of their own, {@link AnchorStyle#HUGO} anchors and {@link ShortcutFactory#DEFAULT_FILE_PREFIX}.
+    *
+    * @return new options; not shared, as the metrics are not
+    */
+   public static ShortcutOptions defaults() {
+      return new ShortcutOptions(new RunMetrics(), AnchorStyle.HUGO, ShortcutFactory.DEFAULT_FILE_PREFIX);
+   }
+
+   /**
+    * These options recording into other metrics.
+    *
+    * @param newMetrics records time spent applying each replacement sequence, and counts shortcuts created
+    *
+    * @return the options
+    */
+   public ShortcutOptions withMetrics(final RunMetrics newMetrics) {
+      return new ShortcutOptions(newMetrics, anchorStyle, filePrefix);
+   }
+
+   /**
+    * These options with another anchor style.
+    *
+    * @param newAnchorStyle how headings are turned into URL anchors
+    *
+    * @return the options
+    */
+   public ShortcutOptions withAnchorStyle(final AnchorStyle newAnchorStyle) {
+      return new ShortcutOptions(metrics, newAnchorStyle, filePrefix);
+   }
+
+   /**
+    * These options with another file prefix.
+    *
+    * @param newFilePrefix start of every shortcut file name
+    *
+    * @return the options
+    */
+   public ShortcutOptions withFilePrefix(final String newFilePrefix) {
+      return new ShortcutOptions(metrics, anchorStyle, newFilePrefix);
+   }
+
+}
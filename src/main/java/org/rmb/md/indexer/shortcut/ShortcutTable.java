@@ -0,0 +1,973 @@
+package org.rmb.md.indexer.shortcut;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Every shortcut of a run, keyed by file name, held compactly enough for millions of them. As in a
+ * {@link java.util.LinkedHashMap}, a later shortcut with the same file name replaces the earlier one in its place.
+ * <p>
+ * No {@link Shortcut}, {@link String} or {@link Path} is kept. Each entry is a row of primitive columns pointing into
+ * one shared arena of UTF-8 bytes:
+ * <ul>
+ *    <li>the file name, which is nearly always unique; the names of a markdown file's shortcuts come one after the
+ *    other and usually start with the name of the first, such as "Hugo - cheat - git" in "Hugo - cheat - git - Rebase",
+ *    so only the rest of each later name is stored;</li>
+ *    <li>the URL, split into its base - everything up to the last <code>/</code> before any <code>#</code>, which all
+ *    shortcuts of a markdown file and usually of its folder share - stored once in a table, and the rest;</li>
+ *    <li>the source, split into its folder, stored once in a table, and its file name, likewise;</li>
+ *    <li>the heading, stored once in a table, since headings such as "Examples" recur in many files.</li>
+ * </ul>
+ * Shortcuts are only built again when asked for, one at a time, and {@link #sortedByFileName()} sorts the entries by
+ * comparing bytes. Bytes written for an entry that is later replaced are not reclaimed.
+ * <p>
+ * Only used from one thread.
+ */
+public final class ShortcutTable {
+
+   /**
+    * Stands for a missing heading in {@link #headings}.
+    */
+   private static final int NO_HEADING = -1;
+
+   /**
+    * Fewest entries a table has room for.
+    */
+   private static final int INITIAL_CAPACITY = 64;
+
+   /**
+    * Fewest bytes a file name must share with the first file name of its source for only the rest to be stored.
+    */
+   private static final int MIN_SHARED_PREFIX = 8;
+
+   /**
+    * Below this many entries, {@link #sort(int[], int[], int, int)} uses insertion sort.
+    */
+   private static final int INSERTION_SORT_THRESHOLD = 16;
+
+   /**
+    * Holds the bytes of every file name, URL, folder, source file name and heading.
+    */
+   private final ByteArena arena = new ByteArena();
+
+   /**
+    * Distinct URL bases.
+    */
+   private final StringPool urlBases = new StringPool(arena);
+
+   /**
+    * Distinct source folders.
+    */
+   private final StringPool folders = new StringPool(arena);
+
+   /**
+    * Distinct source file names.
+    */
+   private final StringPool sourceNames = new StringPool(arena);
+
+   /**
+    * Distinct headings.
+    */
+   private final StringPool headingPool = new StringPool(arena);
+
+   /**
+    * Finds entries by file name.
+    */
+   private final HashSlots slots = new HashSlots();
+
+   /**
+    * Address of each entry's file name in {@link #arena}, or of the rest of it after its shared prefix.
+    */
+   private long[] fileNames = new long[INITIAL_CAPACITY];
+
+   /**
+    * Entry whose file name each entry's file name starts with, or -1 if it is stored whole.
+    */
+   private int[] namePrefixes = new int[INITIAL_CAPACITY];
+
+   /**
+    * Number of bytes each entry's file name shares with that of {@link #namePrefixes}.
+    */
+   private int[] namePrefixLengths = new int[INITIAL_CAPACITY];
+
+   /**
+    * Hash of each entry's file name.
+    */
+   private int[] fileNameHashes = new int[INITIAL_CAPACITY];
+
+   /**
+    * Each entry's URL base, in {@link #urlBases}.
+    */
+   private int[] urls = new int[INITIAL_CAPACITY];
+
+   /**
+    * Address of the rest of each entry's URL in {@link #arena}.
+    */
+   private long[] urlRests = new long[INITIAL_CAPACITY];
+
+   /**
+    * Each entry's source folder, in {@link #folders}.
+    */
+   private int[] sourceFolders = new int[INITIAL_CAPACITY];
+
+   /**
+    * Each entry's source file name, in {@link #sourceNames}.
+    */
+   private int[] sourceFileNames = new int[INITIAL_CAPACITY];
+
+   /**
+    * Each entry's heading, in {@link #headingPool}, or {@link #NO_HEADING}.
+    */
+   private int[] headings = new int[INITIAL_CAPACITY];
+
+   /**
+    * Number of entries.
+    */
+   private int size;
+
+   /**
+    * First entry added for the source of the entry added last, or -1 if there is none.
+    */
+   private int sourceStart = -1;
+
+   /**
+    * Source folder of {@link #sourceStart}.
+    */
+   private int sourceStartFolder;
+
+   /**
+    * Source file name of {@link #sourceStart}.
+    */
+   private int sourceStartFileName;
+
+   /**
+    * Add a shortcut, replacing any with the same file name.
+    *
+    * @param shortcut the shortcut
+    *
+    * @return index of its entry, which is that of the shortcut it replaced if there was one
+    */
+   public int put(final Shortcut shortcut) {
+      final var source = shortcut.source();
+      final var folder = source.getFileName() == null ? source : source.getParent();
+      final var sourceFolder = folders.intern(utf8(folder == null ? "" : folder.toString()));
+      final var sourceFileName = sourceNames.intern(utf8(source.getFileName() == null
+            ? "" : source.getFileName().toString()));
+
+      final var name = utf8(shortcut.fileName());
+      final var hash = StringPool.hash(name);
+      var index = find(name, hash);
+      if (index < 0) {
+         index = size++;
+         grow();
+         addFileName(index, name, sourceFolder, sourceFileName);
+         fileNameHashes[index] = hash;
+         slots.insert(hash, index, fileNameHashes);
+      }
+
+      final var url = shortcut.url();
+      final var base = baseLength(url);
+      final var rest = utf8(url.substring(base));
+      // A new entry has no URL yet; a replaced one keeps its bytes if the rest of its URL is the same.
+      if (urlRests[index] == 0 || !arena.equals(urlRests[index], rest)) {
+         urlRests[index] = arena.add(rest);
+      }
+      urls[index] = urlBases.intern(utf8(url.substring(0, base)));
+
+      sourceFolders[index] = sourceFolder;
+      sourceFileNames[index] = sourceFileName;
+      headings[index] = shortcut.heading() == null ? NO_HEADING : headingPool.intern(utf8(shortcut.heading()));
+      return index;
+   }
+
+   /**
+    * Find the entry with a file name.
+    *
+    * @param fileName the file name
+    *
+    * @return its index, or -1 if there is none
+    */
+   public int indexOf(final String fileName) {
+      final var name = utf8(fileName);
+      return find(name, StringPool.hash(name));
+   }
+
+   /**
+    * Number of entries, which is the number of distinct file names.
+    *
+    * @return the number of entries
+    */
+   public int size() {
+      return size;
+   }
+
+   /**
+    * Build the shortcut of an entry.
+    *
+    * @param index index of the entry
+    *
+    * @return the shortcut
+    */
+   public Shortcut get(final int index) {
+      return new Shortcut(fileName(index), url(index), source(index), heading(index));
+   }
+
+   /**
+    * File name of an entry.
+    *
+    * @param index index of the entry
+    *
+    * @return the file name
+    */
+   public String fileName(final int index) {
+      checkIndex(index);
+      final var prefix = namePrefixes[index];
+      if (prefix < 0) {
+         return arena.string(fileNames[index]);
+      }
+      final var shared = namePrefixLengths[index];
+      final var rest = arena.length(fileNames[index]);
+      final var bytes = new byte[shared + rest];
+      arena.copy(fileNames[prefix], bytes, 0, shared);
+      arena.copy(fileNames[index], bytes, shared, rest);
+      return new String(bytes, StandardCharsets.UTF_8);
+   }
+
+   /**
+    * URL of an entry.
+    *
+    * @param index index of the entry
+    *
+    * @return the URL
+    */
+   public String url(final int index) {
+      checkIndex(index);
+      return urlBases.string(urls[index]) + arena.string(urlRests[index]);
+   }
+
+   /**
+    * Source of an entry.
+    *
+    * @param index index of the entry
+    *
+    * @return the markdown file the shortcut was created for
+    */
+   public Path source(final int index) {
+      checkIndex(index);
+      return Paths.get(folders.string(sourceFolders[index]), sourceNames.string(sourceFileNames[index]));
+   }
+
+   /**
+    * Heading of an entry.
+    *
+    * @param index index of the entry
+    *
+    * @return the heading, or null if the shortcut points to the file itself
+    */
+   public String heading(final int index) {
+      checkIndex(index);
+      return headings[index] == NO_HEADING ? null : headingPool.string(headings[index]);
+   }
+
+   /**
+    * Build each shortcut in turn, in the order their file names were first added.
+    *
+    * @param action receives each shortcut
+    */
+   public void forEach(final Consumer<Shortcut> action) {
+      for (int index = 0; index < size; index++) {
+         action.accept(get(index));
+      }
+   }
+
+   /**
+    * Indexes of all entries, ordered by file name. Names are compared as UTF-8 bytes, which orders them by code
+    * point; that differs from {@link String#compareTo(String)} only for characters outside the Basic Multilingual
+    * Plane. Nothing is built to sort them.
+    *
+    * @return the indexes
+    */
+   public int[] sortedByFileName() {
+      final var order = new int[size];
+      for (int index = 0; index < size; index++) {
+         order[index] = index;
+      }
+      sort(order, new int[size], 0, size);
+      return order;
+   }
+
+   /**
+    * The file names of all entries, as a set backed by the table. Looking a name up builds nothing; iterating builds
+    * each name in turn.
+    *
+    * @return the file names
+    */
+   public Set<String> fileNames() {
+      return new AbstractSet<>() {
+
+         @Override
+         public int size() {
+            return size;
+         }
+
+         @Override
+         public boolean contains(final Object value) {
+            return value instanceof String && indexOf((String) value) >= 0;
+         }
+
+         @Override
+         public Iterator<String> iterator() {
+            return new Iterator<>() {
+
+               /**
+                * Index of the next entry.
+                */
+               private int next;
+
+               @Override
+               public boolean hasNext() {
+                  return next < size;
+               }
+
+               @Override
+               public String next() {
+                  if (next >= size) {
+                     throw new NoSuchElementException();
+                  }
+                  return fileName(next++);
+               }
+
+            };
+         }
+
+      };
+   }
+
+   /**
+    * Find the entry with a file name.
+    *
+    * @param name the file name in UTF-8
+    * @param hash its hash
+    *
+    * @return its index, or -1 if there is none
+    */
+   private int find(final byte[] name, final int hash) {
+      return slots.find(hash, index -> fileNameHashes[index] == hash && fileNameEquals(index, name));
+   }
+
+   /**
+    * Test whether an entry has a file name.
+    *
+    * @param index index of the entry
+    * @param name  the file name in UTF-8
+    *
+    * @return true if it has
+    */
+   private boolean fileNameEquals(final int index, final byte[] name) {
+      final var prefix = namePrefixes[index];
+      if (prefix < 0) {
+         return arena.equals(fileNames[index], name, 0);
+      }
+      final var shared = namePrefixLengths[index];
+      return name.length >= shared && arena.startsWith(fileNames[prefix], name, shared)
+            && arena.equals(fileNames[index], name, shared);
+   }
+
+   /**
+    * Store the file name of a new entry: whole if it is the first of its source, or if it does not share enough with
+    * the first, and otherwise only what follows the start they share.
+    *
+    * @param index          index of the entry
+    * @param name           the file name in UTF-8
+    * @param sourceFolder   the entry's source folder
+    * @param sourceFileName the entry's source file name
+    */
+   private void addFileName(final int index, final byte[] name, final int sourceFolder, final int sourceFileName) {
+      if (sourceStart < 0 || sourceStartFolder != sourceFolder || sourceStartFileName != sourceFileName) {
+         sourceStart = index;
+         sourceStartFolder = sourceFolder;
+         sourceStartFileName = sourceFileName;
+      }
+      final var shared = sourceStart == index ? 0 : arena.commonPrefix(fileNames[sourceStart], name);
+      if (shared < MIN_SHARED_PREFIX) {
+         namePrefixes[index] = -1;
+         fileNames[index] = arena.add(name, 0);
+      } else {
+         namePrefixes[index] = sourceStart;
+         namePrefixLengths[index] = shared;
+         fileNames[index] = arena.add(name, shared);
+      }
+   }
+
+   /**
+    * Make room for entry {@link #size} - 1.
+    */
+   private void grow() {
+      if (size <= fileNames.length) {
+         return;
+      }
+      final var capacity = fileNames.length + (fileNames.length >> 1);
+      fileNames = Arrays.copyOf(fileNames, capacity);
+      namePrefixes = Arrays.copyOf(namePrefixes, capacity);
+      namePrefixLengths = Arrays.copyOf(namePrefixLengths, capacity);
+      fileNameHashes = Arrays.copyOf(fileNameHashes, capacity);
+      urls = Arrays.copyOf(urls, capacity);
+      urlRests = Arrays.copyOf(urlRests, capacity);
+      sourceFolders = Arrays.copyOf(sourceFolders, capacity);
+      sourceFileNames = Arrays.copyOf(sourceFileNames, capacity);
+      headings = Arrays.copyOf(headings, capacity);
+   }
+
+   /**
+    * Check an entry exists.
+    *
+    * @param index index of the entry
+    */
+   private void checkIndex(final int index) {
+      if (index < 0 || index >= size) {
+         throw new IndexOutOfBoundsException("No entry " + index + " of " + size + ".");
+      }
+   }
+
+   /**
+    * Merge sort entry indexes by file name.
+    *
+    * @param order   the indexes, sorted in place
+    * @param scratch room for merging, as long as <code>order</code>
+    * @param from    first index to sort, inclusive
+    * @param to      last index to sort, exclusive
+    */
+   private void sort(final int[] order, final int[] scratch, final int from, final int to) {
+      if (to - from < INSERTION_SORT_THRESHOLD) {
+         for (int next = from + 1; next < to; next++) {
+            final var value = order[next];
+            var position = next;
+            while (position > from && compareFileNames(order[position - 1], value) > 0) {
+               order[position] = order[position - 1];
+               position--;
+            }
+            order[position] = value;
+         }
+         return;
+      }
+      final var middle = (from + to) >>> 1;
+      sort(order, scratch, from, middle);
+      sort(order, scratch, middle, to);
+      if (compareFileNames(order[middle - 1], order[middle]) <= 0) {
+         return;
+      }
+      System.arraycopy(order, from, scratch, from, to - from);
+      var left = from;
+      var right = middle;
+      for (int position = from; position < to; position++) {
+         if (right >= to || left < middle && compareFileNames(scratch[left], scratch[right]) <= 0) {
+            order[position] = scratch[left++];
+         } else {
+            order[position] = scratch[right++];
+         }
+      }
+   }
+
+   /**
+    * Compare the file names of two entries.
+    *
+    * @param first  index of one entry
+    * @param second index of the other
+    *
+    * @return negative, zero or positive as the first name sorts before, with or after the second
+    */
+   private int compareFileNames(final int first, final int second) {
+      final var firstPrefix = namePrefixes[first];
+      final var secondPrefix = namePrefixes[second];
+      if (firstPrefix < 0 && secondPrefix < 0
+            || firstPrefix == secondPrefix && namePrefixLengths[first] == namePrefixLengths[second]) {
+         return arena.compare(fileNames[first], fileNames[second]);
+      }
+      final var firstShared = firstPrefix < 0 ? 0 : namePrefixLengths[first];
+      final var secondShared = secondPrefix < 0 ? 0 : namePrefixLengths[second];
+      final var firstLength = firstShared + arena.length(fileNames[first]);
+      final var secondLength = secondShared + arena.length(fileNames[second]);
+      for (int position = 0; position < Math.min(firstLength, secondLength); position++) {
+         final var difference = fileNameByte(first, firstShared, position)
+               - fileNameByte(second, secondShared, position);
+         if (difference != 0) {
+            return difference;
+         }
+      }
+      return firstLength - secondLength;
+   }
+
+   /**
+    * One byte of an entry's file name.
+    *
+    * @param index    index of the entry
+    * @param shared   number of bytes it shares with its prefix
+    * @param position position of the byte
+    *
+    * @return the byte, unsigned
+    */
+   private int fileNameByte(final int index, final int shared, final int position) {
+      return position < shared
+            ? arena.byteAt(fileNames[namePrefixes[index]], position)
+            : arena.byteAt(fileNames[index], position - shared);
+   }
+
+   /**
+    * Length of the base of a URL: everything up to and including the last <code>/</code> before any <code>#</code>.
+    *
+    * @param url the URL
+    *
+    * @return number of characters in its base
+    */
+   private static int baseLength(final String url) {
+      final var fragment = url.indexOf('#');
+      return url.lastIndexOf('/', fragment < 0 ? url.length() - 1 : fragment - 1) + 1;
+   }
+
+   /**
+    * Encode a string.
+    *
+    * @param value the string
+    *
+    * @return its UTF-8 bytes
+    */
+   private static byte[] utf8(final String value) {
+      return value.getBytes(StandardCharsets.UTF_8);
+   }
+
+   /**
+    * Byte strings, each stored once, by number.
+    */
+   private static final class StringPool {
+
+      /**
+       * Holds the bytes.
+       */
+      private final ByteArena arena;
+
+      /**
+       * Finds strings by their bytes.
+       */
+      private final HashSlots slots = new HashSlots();
+
+      /**
+       * Address of each string in {@link #arena}.
+       */
+      private long[] addresses = new long[INITIAL_CAPACITY];
+
+      /**
+       * Hash of each string.
+       */
+      private int[] hashes = new int[INITIAL_CAPACITY];
+
+      /**
+       * Number of strings.
+       */
+      private int size;
+
+      /**
+       * Create an empty pool.
+       *
+       * @param arena holds the bytes
+       */
+      StringPool(final ByteArena arena) {
+         this.arena = arena;
+      }
+
+      /**
+       * Number a string, storing it if it is new.
+       *
+       * @param bytes the string in UTF-8
+       *
+       * @return its number
+       */
+      int intern(final byte[] bytes) {
+         final var hash = hash(bytes);
+         final var found = slots.find(hash, id -> hashes[id] == hash && arena.equals(addresses[id], bytes));
+         if (found >= 0) {
+            return found;
+         }
+         if (size == addresses.length) {
+            addresses = Arrays.copyOf(addresses, size + (size >> 1));
+            hashes = Arrays.copyOf(hashes, addresses.length);
+         }
+         addresses[size] = arena.add(bytes);
+         hashes[size] = hash;
+         slots.insert(hash, size, hashes);
+         return size++;
+      }
+
+      /**
+       * Build a string.
+       *
+       * @param id its number
+       *
+       * @return the string
+       */
+      String string(final int id) {
+         return arena.string(addresses[id]);
+      }
+
+      /**
+       * Hash bytes, spreading the bits so that low bits alone are usable.
+       *
+       * @param bytes the bytes
+       *
+       * @return the hash
+       */
+      static int hash(final byte[] bytes) {
+         final var hash = Arrays.hashCode(bytes) * 0x9E3779B9;
+         return hash ^ (hash >>> 16);
+      }
+
+   }
+
+   /**
+    * An open addressing hash table of numbers, each standing for a value held elsewhere.
+    */
+   private static final class HashSlots {
+
+      /**
+       * Each number plus one, or 0 for an empty slot. The length is a power of two.
+       */
+      private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+      /**
+       * Number of occupied slots.
+       */
+      private int used;
+
+      /**
+       * Tells whether a number stands for the value looked for.
+       */
+      @FunctionalInterface
+      interface Match {
+
+         /**
+          * Test a number.
+          *
+          * @param number the number
+          *
+          * @return true if it stands for the value looked for
+          */
+         boolean test(int number);
+
+      }
+
+      /**
+       * Find a value.
+       *
+       * @param hash  hash of the value
+       * @param match tells whether a number stands for it
+       *
+       * @return its number, or -1 if there is none
+       */
+      int find(final int hash, final Match match) {
+         final var mask = slots.length - 1;
+         for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (match.test(slots[slot] - 1)) {
+               return slots[slot] - 1;
+            }
+         }
+         return -1;
+      }
+
+      /**
+       * Add a number, known not to be there yet.
+       *
+       * @param hash   hash of the value it stands for
+       * @param number the number
+       * @param hashes hash of the value each number stands for, for growing the table
+       */
+      void insert(final int hash, final int number, final int[] hashes) {
+         if (++used * 2 > slots.length) {
+            final var old = slots;
+            slots = new int[old.length * 2];
+            for (int value : old) {
+               if (value != 0) {
+                  place(hashes[value - 1], value - 1);
+               }
+            }
+         }
+         place(hash, number);
+      }
+
+      /**
+       * Put a number in the first free slot for its hash.
+       *
+       * @param hash   hash of the value it stands for
+       * @param number the number
+       */
+      private void place(final int hash, final int number) {
+         final var mask = slots.length - 1;
+         var slot = hash & mask;
+         while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+         }
+         slots[slot] = number + 1;
+      }
+
+   }
+
+   /**
+    * Byte strings, each stored as its length and bytes in pages that are allocated once and never copied. An address
+    * holds the page number in its high 32 bits and the offset in the page in its low 32 bits. Address 0 is never
+    * handed out, so it can stand for nothing.
+    */
+   private static final class ByteArena {
+
+      /**
+       * Size of a page; a string longer than this gets a page of its own.
+       */
+      private static final int PAGE_SIZE = 1 << 16;
+
+      /**
+       * Every page.
+       */
+      private final List<byte[]> pages = new ArrayList<>();
+
+      /**
+       * The page being filled.
+       */
+      private byte[] page = new byte[PAGE_SIZE];
+
+      /**
+       * Next free offset in {@link #page}; starts at 1 so that address 0 is never used.
+       */
+      private int position = 1;
+
+      /**
+       * Create an arena with one page.
+       */
+      ByteArena() {
+         pages.add(page);
+      }
+
+      /**
+       * Store a string.
+       *
+       * @param bytes the string
+       *
+       * @return its address
+       */
+      long add(final byte[] bytes) {
+         return add(bytes, 0);
+      }
+
+      /**
+       * Store the end of a string.
+       *
+       * @param bytes the string
+       * @param from  offset of the first byte to store
+       *
+       * @return its address
+       */
+      long add(final byte[] bytes, final int from) {
+         final var count = bytes.length - from;
+         final var needed = lengthSize(count) + count;
+         if (position + needed > page.length) {
+            page = new byte[Math.max(PAGE_SIZE, needed)];
+            pages.add(page);
+            position = 0;
+         }
+         final var address = (long) (pages.size() - 1) << 32 | position;
+         var length = count;
+         while (length >= 0x80) {
+            page[position++] = (byte) (length | 0x80);
+            length >>>= 7;
+         }
+         page[position++] = (byte) length;
+         System.arraycopy(bytes, from, page, position, count);
+         position += count;
+         return address;
+      }
+
+      /**
+       * Build a string.
+       *
+       * @param address its address
+       *
+       * @return the string
+       */
+      String string(final long address) {
+         final var bytes = pages.get((int) (address >>> 32));
+         final var start = start(bytes, (int) address);
+         return new String(bytes, start, length(bytes, (int) address), StandardCharsets.UTF_8);
+      }
+
+      /**
+       * Test whether a stored string has the given bytes.
+       *
+       * @param address address of the stored string
+       * @param other   the bytes
+       *
+       * @return true if they are the same
+       */
+      boolean equals(final long address, final byte[] other) {
+         return equals(address, other, 0);
+      }
+
+      /**
+       * Test whether a stored string is the end of the given bytes.
+       *
+       * @param address address of the stored string
+       * @param other   the bytes
+       * @param from    offset in <code>other</code> of the end to compare with
+       *
+       * @return true if they are the same
+       */
+      boolean equals(final long address, final byte[] other, final int from) {
+         final var bytes = pages.get((int) (address >>> 32));
+         final var start = start(bytes, (int) address);
+         return Arrays.equals(bytes, start, start + length(bytes, (int) address), other, from, other.length);
+      }
+
+      /**
+       * Test whether a stored string starts with the start of the given bytes.
+       *
+       * @param address address of the stored string
+       * @param other   the bytes
+       * @param count   number of bytes to compare
+       *
+       * @return true if the string is at least that long and its first bytes are the same
+       */
+      boolean startsWith(final long address, final byte[] other, final int count) {
+         final var bytes = pages.get((int) (address >>> 32));
+         final var start = start(bytes, (int) address);
+         return length(bytes, (int) address) >= count && Arrays.equals(bytes, start, start + count, other, 0, count);
+      }
+
+      /**
+       * Number of bytes a stored string starts with that the given bytes start with too.
+       *
+       * @param address address of the stored string
+       * @param other   the bytes
+       *
+       * @return length of the start they share
+       */
+      int commonPrefix(final long address, final byte[] other) {
+         final var bytes = pages.get((int) (address >>> 32));
+         final var start = start(bytes, (int) address);
+         final var length = length(bytes, (int) address);
+         final var mismatch = Arrays.mismatch(bytes, start, start + length, other, 0, other.length);
+         return mismatch < 0 ? length : mismatch;
+      }
+
+      /**
+       * Length of a stored string.
+       *
+       * @param address its address
+       *
+       * @return its length in bytes
+       */
+      int length(final long address) {
+         return length(pages.get((int) (address >>> 32)), (int) address);
+      }
+
+      /**
+       * Copy the start of a stored string.
+       *
+       * @param address address of the stored string
+       * @param target  where to copy it to
+       * @param offset  where in <code>target</code>
+       * @param count   number of bytes to copy
+       */
+      void copy(final long address, final byte[] target, final int offset, final int count) {
+         final var bytes = pages.get((int) (address >>> 32));
+         System.arraycopy(bytes, start(bytes, (int) address), target, offset, count);
+      }
+
+      /**
+       * One byte of a stored string.
+       *
+       * @param address  address of the stored string
+       * @param position position of the byte
+       *
+       * @return the byte, unsigned
+       */
+      int byteAt(final long address, final int position) {
+         final var bytes = pages.get((int) (address >>> 32));
+         return Byte.toUnsignedInt(bytes[start(bytes, (int) address) + position]);
+      }
+
+      /**
+       * Compare two stored strings byte by byte, as unsigned bytes.
+       *
+       * @param first  address of one string
+       * @param second address of the other
+       *
+       * @return negative, zero or positive as the first sorts before, with or after the second
+       */
+      int compare(final long first, final long second) {
+         final var firstPage = pages.get((int) (first >>> 32));
+         final var firstStart = start(firstPage, (int) first);
+         final var secondPage = pages.get((int) (second >>> 32));
+         final var secondStart = start(secondPage, (int) second);
+         return Arrays.compareUnsigned(firstPage, firstStart, firstStart + length(firstPage, (int) first),
+               secondPage, secondStart, secondStart + length(secondPage, (int) second));
+      }
+
+      /**
+       * Length of a stored string.
+       *
+       * @param bytes  its page
+       * @param offset its offset
+       *
+       * @return its length in bytes
+       */
+      private static int length(final byte[] bytes, final int offset) {
+         var length = 0;
+         var shift = 0;
+         var position = offset;
+         int current;
+         do {
+            current = bytes[position++];
+            length |= (current & 0x7F) << shift;
+            shift += 7;
+         } while ((current & 0x80) != 0);
+         return length;
+      }
+
+      /**
+       * Offset of the first byte of a stored string, after its length.
+       *
+       * @param bytes  its page
+       * @param offset its offset
+       *
+       * @return offset of its bytes
+       */
+      private static int start(final byte[] bytes, final int offset) {
+         var position = offset;
+         while ((bytes[position] & 0x80) != 0) {
+            position++;
+         }
+         return position + 1;
+      }
+
+      /**
+       * Number of bytes needed to store a length.
+       *
+       * @param length the length
+       *
+       * @return 1 to 5
+       */
+      private static int lengthSize(final int length) {
+         var size = 1;
+         for (int rest = length >>> 7; rest != 0; rest >>>= 7) {
+            size++;
+         }
+         return size;
+      }
+
+   }
+
+}
@@ -0,0 +1,186 @@
+package org.rmb.md.indexer.source;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rmb.md.indexer.manifest.GitCheckpoint;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asks git which files in a folder changed, so an incremental run need not walk the folder. Only git plumbing
+ * commands are run, in the folder itself, with paths limited to it and separated by <code>/</code>.
+ * <p>
+ * Whenever git cannot answer - it is not installed, the folder is not in a work tree, the commit of the last run is no
+ * longer in the repository, a command fails or takes too long - the answer is empty and the caller should walk the
+ * folder instead.
+ */
+@Slf4j
+public final class GitRepository {
+
+   /**
+    * Longest any one git command may take, in seconds.
+    */
+   private static final long TIMEOUT_SECONDS = 60;
+
+   /**
+    * Folder of markdown files, in a git work tree.
+    */
+   private final Path folder;
+
+   /**
+    * Create a repository for a folder. Nothing is run until it is asked something.
+    *
+    * @param folder folder of markdown files, anywhere in a git work tree
+    */
+   public GitRepository(final Path folder) {
+      this.folder = folder.toAbsolutePath();
+   }
+
+   /**
+    * Where the repository is now: the commit checked out, and every file in the folder that differs from it in the
+    * working tree, including untracked files that are not ignored.
+    *
+    * @return the checkpoint, or empty if git cannot say
+    */
+   public Optional<GitCheckpoint> checkpoint() {
+      final var head = run("rev-parse", "--verify", "-q", "HEAD^{commit}")
+            .map(output -> new String(output, StandardCharsets.UTF_8).strip());
+      if (head.isEmpty() || head.get().isEmpty()) {
+         return Optional.empty();
+      }
+      final var commit = head.get();
+      final var uncommitted = changedSince(commit);
+      return uncommitted.map(paths -> new GitCheckpoint(commit, List.copyOf(paths)));
+   }
+
+   /**
+    * Every file in the folder that may have changed since it was indexed at one checkpoint, now that the repository
+    * is at another. Files that were deleted or renamed away are included, as well as those added and changed.
+    *
+    * @param previous checkpoint when the folder was last indexed
+    * @param current  checkpoint now, from {@link #checkpoint()}
+    *
+    * @return paths relative to the folder, or empty if git cannot say
+    */
+   public Optional<Set<String>> changedSince(final GitCheckpoint previous, final GitCheckpoint current) {
+      final var changed = new TreeSet<>(previous.uncommitted());
+      changed.addAll(current.uncommitted());
+      if (previous.commit().equals(current.commit())) {
+         return Optional.of(changed);
+      }
+      if (run("cat-file", "-e", previous.commit() + "^{commit}").isEmpty()) {
+         log.info("Commit {} is no longer in the repository at {}.", previous.commit(), folder);
+         return Optional.empty();
+      }
+      final var committed = changedSince(previous.commit());
+      committed.ifPresent(changed::addAll);
+      return committed.map(paths -> changed);
+   }
+
+   /**
+    * Every file in the folder whose working tree copy differs from a commit, or that is untracked and not ignored.
+    *
+    * @param commit the commit
+    *
+    * @return paths relative to the folder, or empty if git cannot say
+    */
+   private Optional<Set<String>> changedSince(final String commit) {
+      // Renames are reported as a deletion and an addition, which is what indexing needs and is cheaper to find.
+      final var differences = run("diff-index", "-z", "--name-only", "--no-renames", "--relative", commit, "--");
+      final var untracked = run("ls-files", "-z", "--others", "--exclude-standard", "--");
+      if (differences.isEmpty() || untracked.isEmpty()) {
+         return Optional.empty();
+      }
+      final var changed = new TreeSet<>(paths(differences.get()));
+      changed.addAll(paths(untracked.get()));
+      return Optional.of(changed);
+   }
+
+   /**
+    * Run a git command in the folder.
+    *
+    * @param arguments arguments after <code>git</code>
+    *
+    * @return its output, or empty if it could not be run, failed or timed out
+    */
+   private Optional<byte[]> run(final String... arguments) {
+      final var command = new ArrayList<String>();
+      command.add("git");
+      command.addAll(List.of(arguments));
+      Path output = null;
+      try {
+         // Output goes to a file, so a command that hangs cannot block us reading it.
+         output = Files.createTempFile("markdown-indexer-git", ".out");
+         final var builder = new ProcessBuilder(command)
+               .directory(folder.toFile())
+               .redirectOutput(output.toFile())
+               .redirectError(ProcessBuilder.Redirect.DISCARD);
+         // Never take the index lock just to refresh it, in case someone is committing at the same time.
+         builder.environment().put("GIT_OPTIONAL_LOCKS", "0");
+         final var process = builder.start();
+         if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            log.warn("Gave up waiting for {} in {}.", command, folder);
+            return Optional.empty();
+         }
+         if (process.exitValue() != 0) {
+            log.debug("{} failed in {} with exit code {}.", command, folder, process.exitValue());
+            return Optional.empty();
+         }
+         return Optional.of(Files.readAllBytes(output));
+      } catch (IOException e) {
+         log.warn("Failed to run {} in {}.", command, folder, e);
+         return Optional.empty();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         return Optional.empty();
+      } finally {
+         deleteQuietly(output);
+      }
+   }
+
+   /**
+    * Delete a temporary file, if there is one.
+    *
+    * @param file the file, or null
+    */
+   private static void deleteQuietly(final Path file) {
+      if (file != null) {
+         try {
+            Files.deleteIfExists(file);
+         } catch (IOException e) {
+            log.debug("Failed to delete {}.", file, e);
+         }
+      }
+   }
+
+   /**
+    * Split the output of a command run with <code>-z</code> into its NUL terminated paths.
+    *
+    * @param output the output
+    *
+    * @return the paths
+    */
+   private static List<String> paths(final byte[] output) {
+      final var fields = new ArrayList<String>();
+      var start = 0;
+      for (int index = 0; index <= output.length; index++) {
+         if (index == output.length || output[index] == 0) {
+            if (index > start) {
+               fields.add(new String(output, start, index - start, StandardCharsets.UTF_8));
+            }
+            start = index + 1;
+         }
+      }
+      return fields;
+   }
+
+}
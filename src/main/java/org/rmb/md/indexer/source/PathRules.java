@@ -0,0 +1,236 @@
+package org.rmb.md.indexer.source;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+
+/**
+ * Include and exclude rules deciding which markdown files are indexed, compiled once into a pattern for each list.
+ * <p>
+ * Rules are matched against the path of a file relative to the folder being indexed, with <code>/</code> between
+ * names whatever the platform, so the same rules work on Windows and elsewhere. A rule is a glob (the default, or
+ * with a <code>glob:</code> prefix) or a regular expression (with a <code>regex:</code> prefix), and must match the
+ * whole relative path. Globs support:
+ * <ul>
+ *    <li><code>*</code> - any characters within one name</li>
+ *    <li><code>**</code> - any characters, crossing names; <code>**&#47;</code> also matches nothing, so
+ *    <code>**&#47;a.md</code> matches <code>a.md</code> at the top</li>
+ *    <li><code>?</code> - one character within a name</li>
+ *    <li><code>[abc]</code>, <code>[a-z]</code>, <code>[!abc]</code> - one character from, or not from, a set</li>
+ *    <li><code>{a,b}</code> - either of the alternatives</li>
+ *    <li><code>\</code> - the next character is taken literally</li>
+ * </ul>
+ * A file is indexed if it matches an include rule and no exclude rule. A folder is not entered at all if its
+ * relative path followed by <code>/</code> matches an exclude rule, so a rule such as <code>**&#47;.history/**</code>
+ * skips everything under every <code>.history</code> folder without looking at it.
+ */
+public final class PathRules {
+
+   /**
+    * Prefix of a glob rule.
+    */
+   private static final String GLOB = "glob:";
+
+   /**
+    * Prefix of a regular expression rule.
+    */
+   private static final String REGEX = "regex:";
+
+   /**
+    * Matches paths that may be indexed; null if there are no include rules.
+    */
+   private final Pattern include;
+
+   /**
+    * Matches paths that must not be indexed, and folders that must not be entered; null if there are no exclude
+    * rules.
+    */
+   private final Pattern exclude;
+
+   /**
+    * Compile rules.
+    *
+    * @param include rules for paths that may be indexed; nothing is indexed if there are none
+    * @param exclude rules for paths that must not be indexed
+    *
+    * @throws IllegalArgumentException if a rule is not a valid glob or regular expression
+    */
+   public PathRules(final List<String> include, final List<String> exclude) {
+      this.include = compile(include);
+      this.exclude = compile(exclude);
+   }
+
+   /**
+    * Should a file be indexed?
+    *
+    * @param relativePath path of the file relative to the folder being indexed
+    *
+    * @return true if it matches an include rule and no exclude rule
+    */
+   public boolean includesFile(final Path relativePath) {
+      return includesFile(normalise(relativePath));
+   }
+
+   /**
+    * Should a file be indexed?
+    *
+    * @param relativePath path of the file relative to the folder being indexed, with <code>/</code> between names
+    *
+    * @return true if it matches an include rule and no exclude rule
+    */
+   public boolean includesFile(final String relativePath) {
+      return include != null && include.matcher(relativePath).matches()
+            && (exclude == null || !exclude.matcher(relativePath).matches());
+   }
+
+   /**
+    * Should a folder be entered?
+    *
+    * @param relativePath path of the folder relative to the folder being indexed; empty for that folder itself
+    *
+    * @return false if the folder's path followed by <code>/</code> matches an exclude rule
+    */
+   public boolean entersFolder(final Path relativePath) {
+      final var normalised = normalise(relativePath);
+      return normalised.isEmpty() || exclude == null || !exclude.matcher(normalised + "/").matches();
+   }
+
+   /**
+    * Path as matched by the rules.
+    *
+    * @param relativePath relative path
+    *
+    * @return the path with <code>/</code> between names
+    */
+   static String normalise(final Path relativePath) {
+      final var path = relativePath.toString();
+      return File.separatorChar == '/' ? path : path.replace(File.separatorChar, '/');
+   }
+
+   /**
+    * Compile a list of rules into one pattern matching any of them.
+    *
+    * @param rules the rules
+    *
+    * @return the pattern, or null if there are no rules
+    */
+   private static Pattern compile(final List<String> rules) {
+      if (rules == null || rules.isEmpty()) {
+         return null;
+      }
+      try {
+         return Pattern.compile(rules.stream()
+               .map(rule -> "(?:" + toRegex(rule) + ")")
+               .collect(Collectors.joining("|")));
+      } catch (PatternSyntaxException e) {
+         throw new IllegalArgumentException("Invalid rule in " + rules + ": " + e.getMessage(), e);
+      }
+   }
+
+   /**
+    * Regular expression for one rule.
+    *
+    * @param rule a glob or regular expression rule
+    *
+    * @return regular expression
+    */
+   private static String toRegex(final String rule) {
+      if (rule.startsWith(REGEX)) {
+         return rule.substring(REGEX.length());
+      }
+      return globToRegex(rule.startsWith(GLOB) ? rule.substring(GLOB.length()) : rule);
+   }
+
+   /**
+    * Convert a glob to a regular expression.
+    *
+    * @param glob the glob
+    *
+    * @return equivalent regular expression
+    *
+    * @throws IllegalArgumentException if the glob is not valid
+    */
+   static String globToRegex(final String glob) {
+      final var regex = new StringBuilder();
+      var inGroup = false;
+      for (int index = 0; index < glob.length(); index++) {
+         final char current = glob.charAt(index);
+         switch (current) {
+            case '*' -> {
+               if (index + 1 < glob.length() && glob.charAt(index + 1) == '*') {
+                  index++;
+                  final var atNameStart = index == 1 || glob.charAt(index - 2) == '/';
+                  if (atNameStart && index + 1 < glob.length() && glob.charAt(index + 1) == '/') {
+                     index++;
+                     regex.append("(?:.*/)?");
+                  } else {
+                     regex.append(".*");
+                  }
+               } else {
+                  regex.append("[^/]*");
+               }
+            }
+            case '?' -> regex.append("[^/]");
+            case '[' -> index = appendCharacterClass(glob, index, regex);
+            case '{' -> {
+               if (inGroup) {
+                  throw new IllegalArgumentException("Nested { in glob: " + glob);
+               }
+               inGroup = true;
+               regex.append("(?:");
+            }
+            case '}' -> {
+               if (!inGroup) {
+                  throw new IllegalArgumentException("Unmatched } in glob: " + glob);
+               }
+               inGroup = false;
+               regex.append(')');
+            }
+            case ',' -> regex.append(inGroup ? "|" : ",");
+            case '\\' -> {
+               if (++index == glob.length()) {
+                  throw new IllegalArgumentException("Glob ends with \\: " + glob);
+               }
+               regex.append(Pattern.quote(String.valueOf(glob.charAt(index))));
+            }
+            default -> regex.append(Character.isLetterOrDigit(current) || current == '/' || current == '_'
+                  || current == '-' || current == ' ' ? String.valueOf(current) : "\\" + current);
+         }
+      }
+      if (inGroup) {
+         throw new IllegalArgumentException("Unmatched { in glob: " + glob);
+      }
+      return regex.toString();
+   }
+
+   /**
+    * Convert a <code>[...]</code> character class of a glob.
+    *
+    * @param glob  the glob
+    * @param start index of the <code>[</code>
+    * @param regex receives the regular expression
+    *
+    * @return index of the closing <code>]</code>
+    *
+    * @throws IllegalArgumentException if the class is not closed
+    */
+   private static int appendCharacterClass(final String glob, final int start, final StringBuilder regex) {
+      final var end = glob.indexOf(']', start + 2);
+      if (end < 0) {
+         throw new IllegalArgumentException("Unmatched [ in glob: " + glob);
+      }
+      var content = glob.substring(start + 1, end);
+      final var negated = content.startsWith("!");
+      regex.append(negated ? "[^" : "[");
+      for (char current : (negated ? content.substring(1) : content).toCharArray()) {
+         regex.append(current == '-' || Character.isLetterOrDigit(current) ? String.valueOf(current) : "\\" + current);
+      }
+      // Like *, a negated character class never matches the separator.
+      regex.append(negated ? "/]" : "]");
+      return end;
+   }
+
+}
@@ -0,0 +1,164 @@
+package org.rmb.md.indexer.source;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rmb.md.indexer.metrics.RunMetrics;
+import org.rmb.md.indexer.metrics.RunMetrics.Count;
+import org.rmb.md.indexer.metrics.RunMetrics.Stage;
+import org.rmb.md.indexer.pipeline.Discovery;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.Consumer;
+
+/**
+ * The markdown files under a folder that {@link PathRules} say should be indexed.
+ * <p>
+ * Folders the rules exclude are skipped without being listed, so nothing inside them is ever looked at.
+ */
+@Slf4j
+public final class SourceTree implements Discovery {
+
+   /**
+    * Folder containing the markdown files, as an absolute path.
+    */
+   private final Path root;
+
+   /**
+    * Decide which files are indexed and which folders are entered.
+    */
+   private final PathRules rules;
+
+   /**
+    * Records traversal and filtering time, and counts files and folders.
+    */
+   private final RunMetrics metrics;
+
+   /**
+    * Create a tree.
+    *
+    * @param root  folder containing the markdown files
+    * @param rules decide which files are indexed and which folders are entered
+    */
+   public SourceTree(final Path root, final PathRules rules) {
+      this(root, rules, new RunMetrics());
+   }
+
+   /**
+    * Create a tree that records what discovery does.
+    *
+    * @param root    folder containing the markdown files
+    * @param rules   decide which files are indexed and which folders are entered
+    * @param metrics records traversal and filtering time, and counts files and folders
+    */
+   public SourceTree(final Path root, final PathRules rules, final RunMetrics metrics) {
+      this.root = root.toAbsolutePath();
+      this.rules = rules;
+      this.metrics = metrics;
+   }
+
+   /**
+    * Folder containing the markdown files.
+    *
+    * @return absolute path
+    */
+   public Path getRoot() {
+      return root;
+   }
+
+   /**
+    * Should a file be indexed? The file need not exist.
+    *
+    * @param path absolute path of the file
+    *
+    * @return true if the file is under the root and the rules include it
+    */
+   public boolean includesFile(final Path path) {
+      return path.startsWith(root) && !path.equals(root) && rules.includesFile(root.relativize(path));
+   }
+
+   /**
+    * Should a folder be entered?
+    *
+    * @param path absolute path of the folder
+    *
+    * @return true if the folder is the root, or under it and not excluded by the rules
+    */
+   public boolean entersFolder(final Path path) {
+      return path.startsWith(root) && rules.entersFolder(root.relativize(path));
+   }
+
+   /**
+    * Find the markdown files to index, as absolute paths, in the order the file system lists them.
+    * <p>
+    * Time spent applying the rules is recorded as {@link Stage#FILTERING}, and the rest of the walk, apart from
+    * whatever <code>sink</code> does with each file, as {@link Stage#TRAVERSAL}.
+    *
+    * @param sink receives each file found
+    *
+    * @throws IOException if the root cannot be traversed
+    */
+   @Override
+   public void discover(final Consumer<Path> sink) throws IOException {
+      final var start = System.nanoTime();
+      // Time spent filtering and in the sink, so that it can be left out of the traversal time.
+      final var elsewhereNanos = new long[1];
+      try {
+         Files.walkFileTree(root, new SimpleFileVisitor<>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+               final var filterStart = System.nanoTime();
+               final var enter = entersFolder(dir);
+               elsewhereNanos[0] += filtered(filterStart);
+               if (enter) {
+                  return FileVisitResult.CONTINUE;
+               }
+               log.trace("Skipping folder: {}", dir);
+               metrics.increment(Count.FOLDERS_SKIPPED);
+               return FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+               if (!attrs.isRegularFile()) {
+                  return FileVisitResult.CONTINUE;
+               }
+               metrics.increment(Count.FILES_SEEN);
+               final var filterStart = System.nanoTime();
+               final var include = rules.includesFile(root.relativize(file));
+               elsewhereNanos[0] += filtered(filterStart);
+               if (include) {
+                  metrics.increment(Count.FILES_ACCEPTED);
+                  final var sinkStart = System.nanoTime();
+                  sink.accept(file);
+                  elsewhereNanos[0] += System.nanoTime() - sinkStart;
+               } else {
+                  metrics.increment(Count.FILES_REJECTED);
+               }
+               return FileVisitResult.CONTINUE;
+            }
+
+         });
+      } finally {
+         metrics.add(Stage.TRAVERSAL, System.nanoTime() - start - elsewhereNanos[0]);
+      }
+   }
+
+   /**
+    * Record time spent applying the rules.
+    *
+    * @param startNanos {@link System#nanoTime()} before the rules were applied
+    *
+    * @return nanoseconds spent
+    */
+   private long filtered(final long startNanos) {
+      final var elapsed = System.nanoTime() - startNanos;
+      metrics.add(Stage.FILTERING, elapsed);
+      return elapsed;
+   }
+
+}
@@ -0,0 +1,14 @@
+package org.rmb.md.indexer.watch;
+
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Changes seen under a watched folder during one burst of activity.
+ *
+ * @param paths    absolute paths of files and folders that were created, modified or deleted, in sorted order; a
+ *                 folder that was created is followed by every file already inside it
+ * @param overflow true if events were lost, so <code>paths</code> may be incomplete and everything should be rescanned
+ */
+public record ChangeBatch(Set<Path> paths, boolean overflow) {
+}
@@ -0,0 +1,253 @@
+package org.rmb.md.indexer.watch;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Watches a folder and all its sub-folders for changes, and hands them out in debounced batches.
+ * <p>
+ * Saving a file in an editor, or checking out a branch, causes a burst of events. Rather than reacting to each one,
+ * events are collected until none have arrived for the debounce period, and then handed out together, with duplicates
+ * removed. So that a burst that never quietens down still gets processed, a batch is also handed out once it has been
+ * collecting for {@link #MAX_DELAY_FACTOR} times the debounce period.
+ * <p>
+ * Folders created while watching are watched too, and any files already inside them when they are registered are
+ * reported as changed, as they may have been created before the folder could be watched. Folders that are not of
+ * interest, such as an editor's history folder, can be left unwatched so their churn is never even reported.
+ */
+@Slf4j
+public final class MarkdownWatcher implements Closeable {
+
+   /**
+    * Longest a batch collects events for, as a multiple of the debounce period.
+    */
+   static final int MAX_DELAY_FACTOR = 10;
+
+   /**
+    * Watch service all folders are registered with.
+    */
+   private final WatchService watchService;
+
+   /**
+    * Folder watched by each key.
+    */
+   private final Map<WatchKey, Path> folders = new HashMap<>();
+
+   /**
+    * Quiet time that ends a batch.
+    */
+   private final Duration debounce;
+
+   /**
+    * Decides which folders are watched.
+    */
+   private final Predicate<Path> watchFolder;
+
+   /**
+    * Start watching a folder and all its sub-folders.
+    *
+    * @param root     folder to watch
+    * @param debounce quiet time that ends a batch
+    *
+    * @throws IOException if the folder cannot be watched
+    */
+   public MarkdownWatcher(final Path root, final Duration debounce) throws IOException {
+      this(root, debounce, folder -> true);
+   }
+
+   /**
+    * Start watching a folder and those of its sub-folders that are wanted.
+    *
+    * @param root        folder to watch
+    * @param debounce    quiet time that ends a batch
+    * @param watchFolder decides which folders are watched, given their absolute path; a folder that is not watched
+    *                    is not entered either
+    *
+    * @throws IOException if the folder cannot be watched
+    */
+   public MarkdownWatcher(final Path root, final Duration debounce, final Predicate<Path> watchFolder)
+         throws IOException {
+      if (!Files.isDirectory(root)) {
+         throw new NoSuchFileException(root.toString(), null, "Not a folder.");
+      }
+      this.watchService = FileSystems.getDefault().newWatchService();
+      this.debounce = debounce;
+      this.watchFolder = watchFolder;
+      try {
+         register(root.toAbsolutePath(), null);
+      } catch (IOException | RuntimeException e) {
+         watchService.close();
+         throw e;
+      }
+      log.debug("Watching {} folders under {}", folders.size(), root);
+   }
+
+   /**
+    * Wait for the next batch of changes.
+    *
+    * @return the changes
+    *
+    * @throws InterruptedException       if interrupted while waiting
+    * @throws ClosedWatchServiceException if this watcher is closed while waiting
+    */
+   public ChangeBatch take() throws InterruptedException {
+      return collect(watchService.take());
+   }
+
+   /**
+    * Wait a limited time for the next batch of changes. Once the first change arrives, this waits for the batch to
+    * finish however long <code>timeout</code> is.
+    *
+    * @param timeout how long to wait for the first change
+    *
+    * @return the changes, or empty if there were none within <code>timeout</code>
+    *
+    * @throws InterruptedException       if interrupted while waiting
+    * @throws ClosedWatchServiceException if this watcher is closed while waiting
+    */
+   public Optional<ChangeBatch> poll(final Duration timeout) throws InterruptedException {
+      final var first = watchService.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
+      return first == null ? Optional.empty() : Optional.of(collect(first));
+   }
+
+   @Override
+   public void close() throws IOException {
+      watchService.close();
+   }
+
+   /**
+    * Collect events, starting with the given key, until the debounce period passes without any.
+    *
+    * @param first first key with events
+    *
+    * @return the batch
+    *
+    * @throws InterruptedException if interrupted while waiting
+    */
+   private ChangeBatch collect(final WatchKey first) throws InterruptedException {
+      final var paths = new TreeSet<Path>();
+      final var deadline = System.nanoTime() + debounce.toNanos() * MAX_DELAY_FACTOR;
+      var overflow = false;
+      var key = first;
+      while (key != null) {
+         overflow |= drain(key, paths);
+         final var remaining = deadline - System.nanoTime();
+         if (remaining <= 0) {
+            break;
+         }
+         key = watchService.poll(Math.min(debounce.toNanos(), remaining), TimeUnit.NANOSECONDS);
+      }
+      log.debug("Collected {} changed paths{}", paths.size(), overflow ? " and lost some events" : "");
+      return new ChangeBatch(paths, overflow);
+   }
+
+   /**
+    * Take all events from a key and reset it.
+    *
+    * @param key   key with events
+    * @param paths receives the paths that changed
+    *
+    * @return true if events were lost
+    */
+   private boolean drain(final WatchKey key, final Set<Path> paths) {
+      final var folder = folders.get(key);
+      var overflow = false;
+      for (WatchEvent<?> event : key.pollEvents()) {
+         if (event.kind() == StandardWatchEventKinds.OVERFLOW || folder == null) {
+            overflow = true;
+            continue;
+         }
+         final var path = folder.resolve((Path) event.context());
+         log.trace("{} {}", event.kind().name(), path);
+         if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+               && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            if (!watchFolder.test(path)) {
+               continue;
+            }
+            try {
+               register(path, paths);
+            } catch (IOException e) {
+               log.warn("Failed to watch new folder: {}", path, e);
+               overflow = true;
+            }
+         } else if (event.kind() != StandardWatchEventKinds.ENTRY_MODIFY
+               || !Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            // Some platforms report a folder as modified when its content changes; the content is reported anyway.
+            paths.add(path);
+         }
+      }
+      if (!key.reset()) {
+         // The folder has gone; its deletion is reported by its parent.
+         folders.remove(key);
+      }
+      return overflow;
+   }
+
+   /**
+    * Watch a folder and all its sub-folders.
+    *
+    * @param root  the folder
+    * @param files receives every file found, or null if not interested
+    *
+    * @throws IOException if a folder cannot be watched
+    */
+   private void register(final Path root, final Set<Path> files) throws IOException {
+      Files.walkFileTree(root, new SimpleFileVisitor<>() {
+
+         @Override
+         public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+            if (!dir.equals(root) && !watchFolder.test(dir)) {
+               return FileVisitResult.SKIP_SUBTREE;
+            }
+            try {
+               folders.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                     StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+            } catch (NoSuchFileException e) {
+               // Deleted again before we got to it.
+               return FileVisitResult.SKIP_SUBTREE;
+            }
+            return FileVisitResult.CONTINUE;
+         }
+
+         @Override
+         public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+            if (files != null) {
+               files.add(file);
+            }
+            return FileVisitResult.CONTINUE;
+         }
+
+         @Override
+         public FileVisitResult visitFileFailed(final Path file, final IOException exc) throws IOException {
+            if (exc instanceof NoSuchFileException) {
+               return FileVisitResult.CONTINUE;
+            }
+            throw exc;
+         }
+      });
+   }
+
+}
@@ -0,0 +1,590 @@
+package org.rmb.md.indexer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rmb.md.indexer.config.ApplicationProperties;
+import org.rmb.md.indexer.config.ApplicationPropertiesLoader;
+import org.rmb.md.indexer.config.SourceRootProperties;
+import org.rmb.md.indexer.manifest.Manifest;
+import org.rmb.md.indexer.output.OutputFormat;
+import org.rmb.md.indexer.shard.ShardSpec;
+import org.rmb.md.indexer.shard.ShardWorkers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Test indexing a small tree of markdown files, run as {@link FastLauncher} runs it, without Spring.
+ */
+class IndexerTest {
+
+   /**
+    * Modified time given to files whose statistics must look unchanged, in milliseconds since the epoch.
+    */
+   private static final long OLD_TIME = 1_600_000_000_000L;
+
+   /**
+    * Folder holding the markdown files and output of a test.
+    */
+   @TempDir
+   Path folder;
+
+   /**
+    * The markdown files.
+    */
+   private Path markdown;
+
+   /**
+    * The output folder.
+    */
+   private Path urls;
+
+   /**
+    * Create the markdown and output folders.
+    *
+    * @throws IOException if they cannot be created
+    */
+   @BeforeEach
+   void createFolders() throws IOException {
+      markdown = Files.createDirectories(folder.resolve("markdown"));
+      urls = Files.createDirectories(folder.resolve("urls"));
+   }
+
+   /**
+    * Test a file whose size and modified time are unchanged is not read again, so even a change that kept both is
+    * not noticed until the file is touched.
+    *
+    * @throws IOException if the files cannot be written or read
+    */
+   @Test
+   void testUnchangedFileIsNotRead() throws IOException {
+      writeMarkdown("cheat_git.md", "# Git\n## Branches\n", OLD_TIME);
+      index(properties());
+      assertTrue(shortcutUrls(urls).contains("#branches"));
+
+      writeMarkdown("cheat_git.md", "# Git\n## Branchez\n", OLD_TIME);
+      index(properties());
+      assertTrue(shortcutUrls(urls).contains("#branches"));
+      assertFalse(shortcutUrls(urls).contains("#branchez"));
+
+      Files.setLastModifiedTime(markdown.resolve("cheat_git.md"), FileTime.fromMillis(OLD_TIME + 1_000));
+      index(properties());
+      assertTrue(shortcutUrls(urls).contains("#branchez"));
+      assertFalse(shortcutUrls(urls).contains("#branches"));
+   }
+
+   /**
+    * Test a file that was touched but not changed leaves its shortcut files alone, and its new modified time is
+    * recorded.
+    *
+    * @throws IOException if the files cannot be written or read
+    */
+   @Test
+   void testTouchedFileIsNotRewritten() throws IOException {
+      writeMarkdown("cheat_git.md", "# Git\n## Branches\n", OLD_TIME);
+      index(properties());
+      final var before = shortcuts(urls);
+      for (String name : before.keySet()) {
+         Files.setLastModifiedTime(urls.resolve(name), FileTime.fromMillis(OLD_TIME));
+      }
+
+      Files.setLastModifiedTime(markdown.resolve("cheat_git.md"), FileTime.fromMillis(OLD_TIME + 1_000));
+      index(properties());
+      assertEquals(before, shortcuts(urls));
+      for (String name : before.keySet()) {
+         assertEquals(OLD_TIME, Files.getLastModifiedTime(urls.resolve(name)).toMillis(), name);
+      }
+      final var entry = manifest().get(markdown.resolve("cheat_git.md").toString()).orElseThrow();
+      assertEquals(OLD_TIME + 1_000, entry.lastModified());
+   }
+
+   /**
+    * Test the shortcuts of a markdown file that was deleted are deleted, and no others.
+    *
+    * @throws IOException if the files cannot be written or read
+    */
+   @Test
+   void testDeletedFileLosesItsShortcuts() throws IOException {
+      writeMarkdown("cheat_git.md", "# Git\n## Branches\n", OLD_TIME);
+      writeMarkdown("cheat_vim.md", "# Vim\n## Macros\n", OLD_TIME);
+      index(properties());
+      final var vim = manifest().get(markdown.resolve("cheat_vim.md").toString()).orElseThrow().outputs();
+
+      Files.delete(markdown.resolve("cheat_vim.md"));
+      index(properties());
+      final var left = shortcuts(urls);
+      assertTrue(shortcutUrls(urls).contains("#branches"));
+      vim.forEach(name -> assertFalse(left.containsKey(name), name));
+      assertTrue(manifest().get(markdown.resolve("cheat_vim.md").toString()).isEmpty());
+   }
+
+   /**
+    * Test changing the source roots makes the next run rebuild everything, reading even files whose statistics are
+    * unchanged.
+    *
+    * @throws IOException if the files cannot be written or read
+    */
+   @Test
+   void testChangedRootsForceRebuild() throws IOException {
+      writeMarkdown("cheat_git.md", "# Git\n## Branches\n", OLD_TIME);
+      index(properties());
+      final var fingerprint = manifest().getFingerprint();
+
+      writeMarkdown("cheat_git.md", "# Git\n## Branchez\n", OLD_TIME);
+      final var renamed = properties();
+      renamed.getRoots().put("notes", new SourceRootProperties());
+      index(renamed);
+      assertTrue(shortcutUrls(urls).contains("#branchez"));
+      assertFalse(shortcutUrls(urls).contains("#branches"));
+      assertFalse(fingerprint.equals(manifest().getFingerprint()));
+   }
+
+   /**
+    * Test changing the heading sequence of one root works out the shortcuts of just that root again, from the
+    * recorded headings rather than by reading its files, and leaves the other root's files alone.
+    *
+    * @throws IOException if the files cannot be written or read
+    */
+   @Test
+   void testChangedSequenceRebuildsOnlyItsRoot() throws IOException {
+      writeMarkdown("a/cheat_git.md", "# Git\n## Branches\n", OLD_TIME);
+      writeMarkdown("b/cheat_vim.md", "# Vim\n## Branches\n", OLD_TIME);
+      final var headingsA = headingSequence("headings-a.txt");
+      final var headingsB = headingSequence("headings-b.txt");
+      index(twoRoots(urls, headingsA, headingsB));
+      final var vimOutputs = manifest().get(markdown.resolve("b/cheat_vim.md").toString()).orElseThrow().outputs();
+      final var before = shortcuts(urls);
+      for (String name : before.keySet()) {
+         Files.setLastModifiedTime(urls.resolve(name), FileTime.fromMillis(OLD_TIME));
+      }
+
+      // Same size and modified time, so only recorded headings can tell the new shortcuts.
+      writeMarkdown("a/cheat_git.md", "# Git\n## Brunches\n", OLD_TIME);
+      Files.writeString(headingsA, "\nfind=Branches\nreplace=Limbs\n", StandardOpenOption.APPEND);
+      index(twoRoots(urls, headingsA, headingsB));
+
+      final var after = shortcuts(urls);
+      assertTrue(after.keySet().stream().anyMatch(name -> name.contains("git") && name.contains("Limbs")),
+            after.keySet().toString());
+      assertFalse(after.keySet().stream().anyMatch(name -> name.contains("Brunches")), after.keySet().toString());
+      for (String name : vimOutputs) {
+         assertEquals(before.get(name), after.get(name), name);
+         assertEquals(OLD_TIME, Files.getLastModifiedTime(urls.resolve(name)).toMillis(), name);
+      }
+   }
+
+   /**
+    * Test shortcuts worked out again from recorded headings, after the base URL and a heading sequence changed, are
+    * exactly those a fresh run with the new configuration writes.
+    *
+    * @throws IOException if the files cannot be written or read
+    */
+   @Test
+   void testRebuildFromHeadingsMatchesFreshRun() throws IOException {
+      writeMarkdown("a/cheat_git.md", "# Git\n## Branches\n### Remote branches\n## Tags\n", OLD_TIME);
+      writeMarkdown("a/project-tech-tips/docker.md", "# Docker\n## Volumes\n", OLD_TIME);
+      writeMarkdown("b/cheat_vim.md", "# Vim\n## Macros\n", OLD_TIME);
+      final var headingsA = headingSequence("headings-a.txt");
+      final var headingsB = headingSequence("headings-b.txt");
+      index(twoRoots(urls, headingsA, headingsB));
+
+      Files.writeString(headingsA, "\nfind=branches\nreplace=limbs\n", StandardOpenOption.APPEND);
+      final var changed = twoRoots(urls, headingsA, headingsB);
+      changed.setWebappBaseUrl("https://notes.example.com/");
+      index(changed);
+
+      final var fresh = Files.createDirectories(folder.resolve("fresh"));
+      final var freshProperties = twoRoots(fresh, headingsA, headingsB);
+      freshProperties.setWebappBaseUrl("https://notes.example.com/");
+      freshProperties.setIncremental(false);
+      index(freshProperties);
+      assertEquals(shortcuts(fresh), shortcuts(urls));
+      assertTrue(shortcutUrls(urls).contains("https://notes.example.com/"));
+   }
+
+   /**
+    * Test indexing in shards, each in a process of its own, then merging gives exactly what one process writes,
+    * including which of two files in different shards wins a shortcut file name, and even when a shard fails at first
+    * and is run again.
+    *
+    * @throws Exception if the files cannot be written or read, or a process cannot be run
+    */
+   @Test
+   void testShardsMatchSingleProcess() throws Exception {
+      final var count = 3;
+      for (int file = 0; file < 12; file++) {
+         writeMarkdown("cheat_topic" + file + ".md", "# Topic " + file + "\n## Usage\n## Notes " + file + "\n",
+               OLD_TIME);
+      }
+      writeMarkdown("project-tech-tips/docker.md", "# Docker\n## Volumes\n", OLD_TIME);
+      // The shortcuts for both files are named "cheat - tip N", and the files fall in different shards.
+      var tip = 0;
+      while (ShardSpec.shardOf("default:cheat_tip-" + tip + ".md", count)
+            == ShardSpec.shardOf("default:cheat_tip " + tip + ".md", count)) {
+         tip++;
+      }
+      writeMarkdown("cheat_tip-" + tip + ".md", "# Tip\n## Dashed\n", OLD_TIME);
+      writeMarkdown("cheat_tip " + tip + ".md", "# Tip\n## Spaced\n", OLD_TIME);
+
+      final var single = Files.createDirectories(folder.resolve("single"));
+      index(ApplicationPropertiesLoader.load(arguments(single)), arguments(single));
+
+      final var attempts = new ConcurrentHashMap<ShardSpec, Integer>();
+      final var java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+      final var failed = ShardWorkers.run(count, shard -> {
+         final var command = new ArrayList<>(List.of(java));
+         if (attempts.merge(shard, 1, Integer::sum) == 1 && shard.index() == 1) {
+            // Fails before the indexer starts, as a crashed process would.
+            command.add("-XX:+NoSuchOption");
+            return command;
+         }
+         if (ManagementFactory.getRuntimeMXBean().getInputArguments().contains("--enable-preview")) {
+            command.add("--enable-preview");
+         }
+         command.addAll(List.of("-cp", System.getProperty("java.class.path"), FastLauncher.class.getName(),
+               Indexer.SHARD_ARGUMENT + shard));
+         command.addAll(List.of(arguments(urls)));
+         return command;
+      }, 2, urls.resolve(Indexer.DEFAULT_SHARDS_FOLDER_NAME));
+      assertEquals(List.of(), failed);
+      assertEquals(Integer.valueOf(2), attempts.get(new ShardSpec(1, count)));
+
+      final var merge = new ArrayList<>(List.of(arguments(urls)));
+      merge.add(Indexer.MERGE_SHARDS_ARGUMENT + count);
+      index(ApplicationPropertiesLoader.load(arguments(urls)), merge.toArray(new String[0]));
+      assertEquals(shortcuts(single), shortcuts(urls));
+      // Only the shortcuts for the files themselves share a name; those for their headings do not.
+      assertTrue(shortcutUrls(urls).contains("#spaced") && shortcutUrls(urls).contains("#dashed"));
+   }
+
+   /**
+    * Test watching a catalog tells a deleted folder from a deleted file by what the catalog holds, not by whether the
+    * name has a dot in it.
+    *
+    * @throws IOException if the files cannot be written, read or deleted
+    */
+   @Test
+   void testDeletedPathsThatMayAffectCatalog() throws IOException {
+      writeMarkdown("v1.2/cheat_git.md", "# Git\n## Branches\n", OLD_TIME);
+      writeMarkdown("notes/cheat_vim.md", "# Vim\n## Macros\n", OLD_TIME);
+      writeMarkdown("drafts/todo.txt", "Later.", OLD_TIME);
+      writeMarkdown("LICENSE", "Free.", OLD_TIME);
+      final var properties = properties();
+      properties.setIncremental(false);
+      properties.setOutputFormat(OutputFormat.CSV);
+      final var context = new IndexingContext(properties, false);
+      final var indexing = new FullIndexing(context);
+      try {
+         indexing.run();
+      } finally {
+         context.close();
+      }
+
+      for (String name : List.of("v1.2", "notes", "drafts", "LICENSE")) {
+         final var path = markdown.resolve(name);
+         if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.list(path)) {
+               for (Path file : (Iterable<Path>) files::iterator) {
+                  Files.delete(file);
+               }
+            }
+         }
+         Files.delete(path);
+      }
+      assertTrue(indexing.mayAffectCatalog(markdown.resolve("v1.2")));
+      assertTrue(indexing.mayAffectCatalog(markdown.resolve("notes")));
+      assertTrue(indexing.mayAffectCatalog(markdown.resolve("v1.2/cheat_git.md")));
+      assertFalse(indexing.mayAffectCatalog(markdown.resolve("drafts")));
+      assertFalse(indexing.mayAffectCatalog(markdown.resolve("LICENSE")));
+      assertFalse(indexing.mayAffectCatalog(markdown.resolve("v1")));
+   }
+
+   /**
+    * Test a run that indexes recent files first and runs out of time indexes the newest file, keeps what the last
+    * manifest had for the others and marks its manifest partial; the next run finishes them, giving what a fresh run
+    * gives.
+    *
+    * @throws IOException if the files cannot be written or read
+    */
+   @Test
+   void testTimeBudgetLeavesCheckpoint() throws IOException {
+      writeMarkdown("cheat_a.md", "# A\n## Old a\n", OLD_TIME);
+      writeMarkdown("cheat_b.md", "# B\n## Old b\n", OLD_TIME);
+      writeMarkdown("cheat_c.md", "# C\n## Old c\n", OLD_TIME);
+      index(properties());
+      writeMarkdown("cheat_a.md", "# A\n## New a\n", OLD_TIME + 1_000);
+      writeMarkdown("cheat_b.md", "# B\n## New b\n", OLD_TIME + 2_000);
+      writeMarkdown("cheat_c.md", "# C\n## New c\n", OLD_TIME + 3_000);
+
+      final var budgeted = properties();
+      budgeted.setRecentFirst(true);
+      budgeted.setTimeBudgetSeconds(2);
+      index(new Indexer(budgeted, secondsTicking()));
+      final var partial = manifest();
+      assertTrue(partial.isPartial());
+      assertEquals(OLD_TIME + 3_000, partial.get(markdown.resolve("cheat_c.md").toString()).orElseThrow()
+            .lastModified());
+      assertEquals(OLD_TIME, partial.get(markdown.resolve("cheat_a.md").toString()).orElseThrow().lastModified());
+      assertEquals(OLD_TIME, partial.get(markdown.resolve("cheat_b.md").toString()).orElseThrow().lastModified());
+      final var published = shortcutUrls(urls);
+      assertTrue(published.contains("#new-c") && published.contains("#old-a") && published.contains("#old-b"));
+      assertFalse(published.contains("#old-c") || published.contains("#new-a") || published.contains("#new-b"));
+
+      final var resumed = properties();
+      resumed.setRecentFirst(true);
+      index(resumed);
+      assertFalse(manifest().isPartial());
+      final var fresh = Files.createDirectories(folder.resolve("fresh"));
+      final var freshProperties = properties();
+      freshProperties.setPathToUrls(fresh.toString());
+      freshProperties.setIncremental(false);
+      index(freshProperties);
+      assertEquals(shortcuts(fresh), shortcuts(urls));
+   }
+
+   /**
+    * Test a run that asks git what changed, after a run that ran out of time, walks every folder rather than trusting
+    * git, which cannot know about files the last run did not get to.
+    *
+    * @throws Exception if the files cannot be written or read, or git cannot be run
+    */
+   @Test
+   void testGitChangesAfterPartialRunWalks() throws Exception {
+      assumeTrue(git("init", "-q"), "git is not installed");
+      writeMarkdown("cheat_git.md", "# Git\n## Branches\n", OLD_TIME);
+      writeMarkdown("cheat_vim.md", "# Vim\n## Macros\n", OLD_TIME);
+      assertTrue(git("add", "-A"));
+      assertTrue(git("-c", "user.name=Test", "-c", "user.email=test@example.com", "commit", "-q", "-m", "Test"));
+
+      final var budgeted = properties();
+      budgeted.setGitChanges(true);
+      budgeted.setRecentFirst(true);
+      budgeted.setTimeBudgetSeconds(1);
+      index(new Indexer(budgeted, secondsTicking()));
+      assertTrue(manifest().isPartial());
+      assertEquals(Map.of(), shortcuts(urls));
+
+      final var next = properties();
+      next.setGitChanges(true);
+      index(next);
+      assertFalse(manifest().isPartial());
+      assertTrue(shortcutUrls(urls).contains("#branches") && shortcutUrls(urls).contains("#macros"));
+   }
+
+   /**
+    * Properties for an incremental run over {@link #markdown} into {@link #urls}, with the replacement sequences the
+    * tests are run with.
+    *
+    * @return the properties
+    */
+   private ApplicationProperties properties() {
+      final var properties = new ApplicationProperties();
+      properties.setPathToMarkdownFiles(markdown.toString());
+      properties.setPathToUrls(urls.toString());
+      properties.setWebappBaseUrl("http://localhost:1313/");
+      properties.setPathToMarkdownFileReplacementSequence("/markdown-file-replacement-sequence.txt");
+      properties.setPathToMarkdownUrlReplacementSequence("/markdown-url-replacement-sequence.txt");
+      properties.setPathToMarkdownHeadingReplacementSequence("/markdown-heading-replacement-sequence.txt");
+      properties.setIncremental(true);
+      return properties;
+   }
+
+   /**
+    * Properties for an incremental run over two roots, <code>a</code> and <code>b</code> in {@link #markdown}, each
+    * with a heading sequence of its own.
+    *
+    * @param output    folder to write shortcuts to
+    * @param headingsA heading sequence of root <code>a</code>
+    * @param headingsB heading sequence of root <code>b</code>
+    *
+    * @return the properties
+    */
+   private ApplicationProperties twoRoots(final Path output, final Path headingsA, final Path headingsB) {
+      final var properties = properties();
+      properties.setPathToUrls(output.toString());
+      properties.getRoots().put("a", root("a", headingsA));
+      properties.getRoots().put("b", root("b", headingsB));
+      return properties;
+   }
+
+   /**
+    * Settings of a root that is a folder of {@link #markdown}.
+    *
+    * @param name     name of the folder
+    * @param headings its heading sequence
+    *
+    * @return the settings
+    */
+   private SourceRootProperties root(final String name, final Path headings) {
+      final var root = new SourceRootProperties();
+      root.setPathToMarkdownFiles(markdown.resolve(name).toString());
+      root.setPathToMarkdownHeadingReplacementSequence(headings.toString());
+      return root;
+   }
+
+   /**
+    * Copy the heading sequence the tests are run with, so it can be changed.
+    *
+    * @param name file name of the copy
+    *
+    * @return the copy
+    *
+    * @throws IOException if it cannot be copied
+    */
+   private Path headingSequence(final String name) throws IOException {
+      try (InputStream sequence = getClass().getResourceAsStream("/markdown-heading-replacement-sequence.txt")) {
+         final var copy = folder.resolve(name);
+         Files.copy(sequence, copy);
+         return copy;
+      }
+   }
+
+   /**
+    * Command line for a full run over {@link #markdown}, as given to a process of its own.
+    *
+    * @param output folder to write shortcuts to
+    *
+    * @return the arguments
+    */
+   private String[] arguments(final Path output) {
+      return new String[]{
+            "--application.path-to-markdown-files=" + markdown,
+            "--application.path-to-urls=" + output,
+            "--application.webapp-base-url=http://localhost:1313/"};
+   }
+
+   /**
+    * Run an indexer to the end.
+    *
+    * @param properties its properties
+    * @param args       its command line
+    */
+   private static void index(final ApplicationProperties properties, final String... args) {
+      index(new Indexer(properties), args);
+   }
+
+   /**
+    * Run an indexer to the end.
+    *
+    * @param indexer the indexer
+    * @param args    its command line
+    */
+   private static void index(final Indexer indexer, final String... args) {
+      try {
+         indexer.run(args);
+      } finally {
+         indexer.close();
+      }
+   }
+
+   /**
+    * A clock that moves on a second every time it is asked the time.
+    *
+    * @return the clock, in nanoseconds
+    */
+   private static LongSupplier secondsTicking() {
+      final var ticks = new AtomicLong();
+      return () -> ticks.getAndAdd(1_000_000_000L);
+   }
+
+   /**
+    * Run git in {@link #markdown}.
+    *
+    * @param arguments arguments after <code>git</code>
+    *
+    * @return true if it succeeded
+    *
+    * @throws InterruptedException if interrupted waiting for git
+    */
+   private boolean git(final String... arguments) throws InterruptedException {
+      final var command = new ArrayList<String>();
+      command.add("git");
+      command.addAll(List.of(arguments));
+      try {
+         return new ProcessBuilder(command).directory(markdown.toFile()).inheritIO().start().waitFor() == 0;
+      } catch (IOException e) {
+         return false;
+      }
+   }
+
+   /**
+    * Write a markdown file and set when it was last modified.
+    *
+    * @param name         path relative to {@link #markdown}
+    * @param content      its content
+    * @param lastModified its modified time, in milliseconds since the epoch
+    *
+    * @throws IOException if it cannot be written
+    */
+   private void writeMarkdown(final String name, final String content, final long lastModified) throws IOException {
+      final var path = markdown.resolve(name);
+      Files.createDirectories(path.getParent());
+      Files.writeString(path, content);
+      Files.setLastModifiedTime(path, FileTime.fromMillis(lastModified));
+   }
+
+   /**
+    * The manifest written to {@link #urls}.
+    *
+    * @return the manifest
+    */
+   private Manifest manifest() {
+      return Manifest.read(urls.resolve(Indexer.DEFAULT_MANIFEST_FILE_NAME)).orElseThrow();
+   }
+
+   /**
+    * The shortcut files in an output folder.
+    *
+    * @param output the folder
+    *
+    * @return content of each file, keyed by name
+    *
+    * @throws IOException if the folder cannot be read
+    */
+   private static Map<String, String> shortcuts(final Path output) throws IOException {
+      final var shortcuts = new TreeMap<String, String>();
+      try (Stream<Path> files = Files.list(output)) {
+         for (Path file : (Iterable<Path>) files::iterator) {
+            final var name = file.getFileName().toString();
+            if (name.endsWith(".url")) {
+               shortcuts.put(name, Files.readString(file, StandardCharsets.UTF_8));
+            }
+         }
+      }
+      return shortcuts;
+   }
+
+   /**
+    * Everything the shortcut files in an output folder point to, for checking which headings have a shortcut.
+    *
+    * @param output the folder
+    *
+    * @return the content of every file, one after another
+    *
+    * @throws IOException if the folder cannot be read
+    */
+   private static String shortcutUrls(final Path output) throws IOException {
+      return String.join("\n", shortcuts(output).values());
+   }
+
+}
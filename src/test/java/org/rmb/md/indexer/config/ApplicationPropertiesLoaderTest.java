@@ -0,0 +1,183 @@
+package org.rmb.md.indexer.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rmb.md.indexer.output.OutputFormat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test loading application properties without Spring.
+ */
+class ApplicationPropertiesLoaderTest {
+
+   /**
+    * Working folder, empty unless a test writes properties files to it.
+    */
+   @TempDir
+   Path folder;
+
+   /**
+    * Test the classpath's application.properties is bound as Spring binds it.
+    *
+    * @throws IOException if a properties file cannot be read
+    */
+   @Test
+   void testClasspath() throws IOException {
+      final var properties = loader(new Properties(), Map.of()).loadProperties();
+
+      assertEquals("/path/to/markdown/files/directory", properties.getPathToMarkdownFiles());
+      assertEquals("/path/where/we/write/url/files/to", properties.getPathToUrls());
+      assertEquals(List.of("**/cheat_**.md", "**/project-tech-tips/**.md"), properties.getInclude());
+      assertEquals(5, properties.getExclude().size());
+      assertEquals("/markdown-url-replacement-sequence.txt", properties.getPathToMarkdownUrlReplacementSequence());
+      assertEquals(OutputFormat.URL_FILES, properties.getOutputFormat());
+      assertEquals("", properties.getPathToCatalog());
+      assertEquals(100, properties.getRuleBudgetMillis());
+      assertEquals(1024, properties.getWriteQueueCapacity());
+      assertFalse(properties.isWatch());
+   }
+
+   /**
+    * Test files in the working folder, profile files, system properties and arguments override each other in that
+    * order, and a list is replaced as a whole.
+    *
+    * @throws IOException if a properties file cannot be written or read
+    */
+   @Test
+   void testPrecedence() throws IOException {
+      Files.writeString(folder.resolve("application.properties"), String.join("\n",
+            "application.path-to-urls=/from/file",
+            "application.path-to-catalog=/from/file",
+            "application.read-workers=3",
+            "base=http://file/"));
+      Files.createDirectories(folder.resolve("config"));
+      Files.writeString(folder.resolve("config").resolve("application-dev.properties"), String.join("\n",
+            "application.include[0]=dev.md",
+            "application.webappBaseUrl=${base}dev/",
+            "application.path_to_catalog=/from/profile"));
+      final var system = new Properties();
+      system.setProperty("application.concurrent", "true");
+      system.setProperty("application.read-workers", "5");
+
+      final var properties = loader(system, Map.of()).loadProperties("--spring.profiles.active=dev",
+            "--application.pathToUrls=/from/args", "--watch");
+
+      assertEquals("/from/args", properties.getPathToUrls());
+      assertEquals("/from/profile", properties.getPathToCatalog());
+      assertEquals(List.of("dev.md"), properties.getInclude());
+      assertEquals("http://file/dev/", properties.getWebappBaseUrl());
+      assertEquals(5, properties.getReadWorkers());
+      assertTrue(properties.isConcurrent());
+      assertEquals("/path/to/markdown/files/directory", properties.getPathToMarkdownFiles());
+   }
+
+   /**
+    * Test the profile can come from the environment.
+    *
+    * @throws IOException if a properties file cannot be written or read
+    */
+   @Test
+   void testProfileFromEnvironment() throws IOException {
+      Files.writeString(folder.resolve("application-ci.properties"), "application.output-format=json-lines");
+
+      final var properties = loader(new Properties(), Map.of("SPRING_PROFILES_ACTIVE", "other, ci"))
+            .loadProperties();
+
+      assertEquals(OutputFormat.JSON_LINES, properties.getOutputFormat());
+   }
+
+   /**
+    * Test names, lists and enums are bound however they are written.
+    */
+   @Test
+   void testRelaxedBinding() {
+      final var properties = ApplicationPropertiesLoader.bind(Map.of(
+            "application.Path_To_Urls", "/urls",
+            "application.exclude", " a.md, ,b.md ",
+            "application.output-format", "csv",
+            "application.write-batch-size", " 7 ",
+            "application.incremental", "TRUE",
+            "application.no-such-property", "ignored"));
+
+      assertEquals("/urls", properties.getPathToUrls());
+      assertEquals(List.of("a.md", "b.md"), properties.getExclude());
+      assertEquals(OutputFormat.CSV, properties.getOutputFormat());
+      assertEquals(7, properties.getWriteBatchSize());
+      assertTrue(properties.isIncremental());
+      assertEquals(new ApplicationProperties().getInclude(), properties.getInclude());
+   }
+
+   /**
+    * Test source roots are bound by name, including their lists, leaving out what they don't set.
+    */
+   @Test
+   void testRoots() {
+      final var properties = ApplicationPropertiesLoader.bind(Map.of(
+            "application.roots.notes.path-to-markdown-files", "/notes",
+            "application.roots.notes.filePrefix", "Notes",
+            "application.roots.notes.include[1]", "b.md",
+            "application.roots.notes.include[0]", "a.md",
+            "application.roots.site-2.webapp_base_url", "http://site2/",
+            "application.roots.site-2.exclude", "x.md, y.md"));
+
+      assertEquals(List.of("notes", "site-2"), List.copyOf(properties.getRoots().keySet()));
+      final var notes = properties.getRoots().get("notes");
+      assertEquals("/notes", notes.getPathToMarkdownFiles());
+      assertEquals("Notes", notes.getFilePrefix());
+      assertEquals(List.of("a.md", "b.md"), notes.getInclude());
+      assertNull(notes.getExclude());
+      final var site = properties.getRoots().get("site-2");
+      assertEquals("http://site2/", site.getWebappBaseUrl());
+      assertEquals(List.of("x.md", "y.md"), site.getExclude());
+      assertNull(site.getPathToMarkdownFiles());
+      assertEquals("Hugo", properties.getFilePrefix());
+      assertThrows(IllegalArgumentException.class,
+            () -> ApplicationPropertiesLoader.bind(Map.of("application.roots", "notes")));
+   }
+
+   /**
+    * Test values that cannot be bound are reported with the property they belong to.
+    */
+   @Test
+   void testInvalidValues() {
+      final var flag = assertThrows(IllegalArgumentException.class,
+            () -> ApplicationPropertiesLoader.bind(Map.of("application.watch", "yes")));
+      assertTrue(flag.getMessage().contains("application.watch"), flag.getMessage());
+      final var number = assertThrows(IllegalArgumentException.class,
+            () -> ApplicationPropertiesLoader.bind(Map.of("application.queue-capacity", "lots")));
+      assertTrue(number.getMessage().contains("application.queue-capacity"), number.getMessage());
+      assertThrows(IllegalArgumentException.class,
+            () -> ApplicationPropertiesLoader.bind(Map.of("application.output-format", "pdf")));
+      assertThrows(IllegalArgumentException.class,
+            () -> ApplicationPropertiesLoader.bind(Map.of("application.path-to-urls", "${missing}")));
+      assertThrows(IllegalArgumentException.class,
+            () -> ApplicationPropertiesLoader.bind(Map.of("application.path-to-urls", "${application.path-to-urls}")));
+      assertEquals("/default", ApplicationPropertiesLoader
+            .bind(Map.of("application.path-to-urls", "${missing:/default}")).getPathToUrls());
+   }
+
+   /**
+    * A loader reading the test classpath and the temporary working folder.
+    *
+    * @param system      system properties
+    * @param environment environment variables
+    *
+    * @return the loader
+    */
+   private ApplicationPropertiesLoader loader(final Properties system, final Map<String, String> environment) {
+      return new ApplicationPropertiesLoader(getClass().getClassLoader(), folder, system, environment);
+   }
+
+}
@@ -0,0 +1,116 @@
+package org.rmb.md.indexer.manifest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test reading and writing manifests.
+ */
+class ManifestTest {
+
+   /**
+    * Folder for manifest files.
+    */
+   @TempDir
+   Path folder;
+
+   /**
+    * Test a manifest survives being written and read back, including values that need escaping.
+    *
+    * @throws IOException if the manifest cannot be written
+    */
+   @Test
+   void testRoundTrip() throws IOException {
+      final var manifest = new Manifest("fingerprint");
+      manifest.put("C:\\notes\\cheat_git\\index.md", new ManifestEntry(12, 34, "abc",
+            List.of("Hugo - cheat - git.url", "Hugo - cheat - git - Tabs\tand\nlines.url")));
+      manifest.put("/notes/empty.md", new ManifestEntry(0, 1, "def", List.of()));
+      manifest.put("/notes/headings.md", new ManifestEntry(5, 6, "ghi", List.of("Hugo - headings.url"),
+            List.of("# Headings", "## Tabs\tand\\slashes")));
+      manifest.setInputs("default", Map.of("markdown headings", "123", "webapp base URL", "456"));
+      final var path = folder.resolve("manifest");
+      manifest.write(path);
+
+      final var read = Manifest.read(path).orElseThrow();
+      assertEquals("fingerprint", read.getFingerprint());
+      assertEquals(manifest.getEntries(), read.getEntries());
+      assertEquals(Set.of("Hugo - cheat - git.url", "Hugo - cheat - git - Tabs\tand\nlines.url",
+            "Hugo - headings.url"), read.allOutputs());
+      assertEquals(Map.of("markdown headings", "123", "webapp base URL", "456"), read.getInputs("default"));
+      assertEquals(Map.of(), read.getInputs("other"));
+   }
+
+   /**
+    * Test git checkpoints survive being written and read back, and can be cleared.
+    *
+    * @throws IOException if the manifest cannot be written
+    */
+   @Test
+   void testCheckpoints() throws IOException {
+      final var manifest = new Manifest("fingerprint");
+      final var checkpoint = new GitCheckpoint("0123abcd", List.of("cheat_git.md", "tabs\tin/cheat_name.md"));
+      manifest.setCheckpoints(Map.of("/notes", checkpoint, "/empty", new GitCheckpoint("4567", List.of())));
+      final var path = folder.resolve("manifest");
+      manifest.write(path);
+
+      final var read = Manifest.read(path).orElseThrow();
+      assertEquals(Optional.of(checkpoint), read.getCheckpoint("/notes"));
+      assertEquals(Optional.of(new GitCheckpoint("4567", List.of())), read.getCheckpoint("/empty"));
+      assertTrue(read.getCheckpoint("/other").isEmpty());
+
+      read.setCheckpoints(Map.of());
+      read.write(path);
+      assertTrue(Manifest.read(path).orElseThrow().getCheckpoint("/notes").isEmpty());
+   }
+
+   /**
+    * Test a manifest of a run that stopped early says so, and one that did not says nothing.
+    *
+    * @throws IOException if the manifest cannot be written
+    */
+   @Test
+   void testPartial() throws IOException {
+      final var manifest = new Manifest("fingerprint");
+      final var path = folder.resolve("manifest");
+      manifest.write(path);
+      assertFalse(Manifest.read(path).orElseThrow().isPartial());
+      assertFalse(Files.readString(path).contains("partial"));
+
+      manifest.setPartial(true);
+      manifest.write(path);
+      assertTrue(Manifest.read(path).orElseThrow().isPartial());
+   }
+
+   /**
+    * Test a missing manifest reads as empty.
+    */
+   @Test
+   void testMissing() {
+      assertTrue(Manifest.read(folder.resolve("missing")).isEmpty());
+   }
+
+   /**
+    * Test a manifest from another version of the format is ignored.
+    *
+    * @throws IOException if the manifest cannot be written
+    */
+   @Test
+   void testOtherVersion() throws IOException {
+      final var path = folder.resolve("manifest");
+      Files.writeString(path, "version=0\nfingerprint=x\n");
+      assertTrue(Manifest.read(path).isEmpty());
+   }
+
+}
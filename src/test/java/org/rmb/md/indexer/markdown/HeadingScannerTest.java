@@ -0,0 +1,124 @@
+package org.rmb.md.indexer.markdown;
+
+import org.junit.jupiter.api.Test;
+import org.rmb.md.indexer.manifest.Hashes;
+import org.rmb.md.indexer.shortcut.ShortcutFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test finding headings in markdown content.
+ */
+class HeadingScannerTest {
+
+   /**
+    * Test headings match those found by reading every line, for all kinds of line terminator and a buffer small
+    * enough to split lines and terminators.
+    *
+    * @throws IOException never
+    */
+   @Test
+   void testMatchesLineByLine() throws IOException {
+      final var markdown = "\uFEFF# Title\r\n\r\n## Second \u00fcn\u00efc\u00f8d\u00e9\rtext # not a heading\n #indented\n"
+            + "###Third\r\n#\n\n## Last without terminator";
+      for (int bufferSize : List.of(1, 2, 3, 7, 64)) {
+         final var scan = scan(new HeadingScanner(bufferSize, 1024), markdown);
+         assertEquals(readLineByLine(markdown), scan.headingLines(), "buffer size " + bufferSize);
+         assertEquals(Hashes.sha256(markdown.getBytes(StandardCharsets.UTF_8)), scan.hash());
+         assertEquals(markdown.getBytes(StandardCharsets.UTF_8).length, scan.size());
+      }
+   }
+
+   /**
+    * Test lines in fenced code blocks are not headings.
+    *
+    * @throws IOException never
+    */
+   @Test
+   void testSkipsFencedCode() throws IOException {
+      final var markdown = """
+            ## Before
+            ```bash
+            # a comment
+            ~~~
+            # still code
+            ```
+            ## Between
+               ~~~~
+            # code
+            ~~~ not a closing fence
+            ```
+            # code
+            ~~~~~
+            ## After
+            ````
+            """;
+      assertEquals(List.of("## Before", "## Between", "## After"),
+            scan(new HeadingScanner(), markdown).headingLines());
+   }
+
+   /**
+    * Test long headings are cut short without splitting a character.
+    *
+    * @throws IOException never
+    */
+   @Test
+   void testLongHeading() throws IOException {
+      final var markdown = "## ab\u20ac" + "x".repeat(10_000) + "\n## Next";
+      assertEquals(List.of("## ab", "## Next"), scan(new HeadingScanner(16, 7), markdown).headingLines());
+      assertEquals(List.of("## ab\u20ac", "## Next"), scan(new HeadingScanner(16, 8), markdown).headingLines());
+   }
+
+   /**
+    * Test the text of each section is collected, with every line terminator made a line feed and heading lines left
+    * out, for a buffer small enough to split lines and terminators.
+    *
+    * @throws IOException never
+    */
+   @Test
+   void testSections() throws IOException {
+      final var markdown = "intro\r\n# One\r\nbody \u00fcn\n```\n# code\n```\n## Two\rlast";
+      for (int bufferSize : List.of(1, 2, 3, 7, 64)) {
+         final var scan = new HeadingScanner(bufferSize, 1024).scan(
+               Channels.newChannel(new ByteArrayInputStream(markdown.getBytes(StandardCharsets.UTF_8))), false, true);
+         assertEquals(List.of("# One", "## Two"), scan.headingLines(), "buffer size " + bufferSize);
+         assertEquals(List.of("intro\n", "\nbody \u00fcn\n```\n# code\n```\n", "\nlast"), scan.sections(),
+               "buffer size " + bufferSize);
+      }
+      assertEquals(List.of(), scan(new HeadingScanner(), markdown).sections());
+   }
+
+   /**
+    * Scan markdown held in a string.
+    *
+    * @param scanner  the scanner
+    * @param markdown the markdown
+    *
+    * @return what the scanner found
+    *
+    * @throws IOException never
+    */
+   private static HeadingScan scan(final HeadingScanner scanner, final String markdown) throws IOException {
+      return scanner.scan(Channels.newChannel(new ByteArrayInputStream(markdown.getBytes(StandardCharsets.UTF_8))),
+            true);
+   }
+
+   /**
+    * Find headings the way they were found before: split into lines and test each one.
+    *
+    * @param markdown the markdown
+    *
+    * @return heading lines
+    */
+   private static List<String> readLineByLine(final String markdown) {
+      return markdown.lines().filter(ShortcutFactory::lineIsMarkdownHeading).collect(Collectors.toList());
+   }
+
+}
@@ -0,0 +1,142 @@
+package org.rmb.md.indexer.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rmb.md.indexer.metrics.RunMetrics.Count;
+import org.rmb.md.indexer.metrics.RunMetrics.Stage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test recording and reporting run metrics.
+ */
+class RunMetricsTest {
+
+   /**
+    * Test counts and times from many threads add up.
+    *
+    * @throws Exception if a thread fails
+    */
+   @Test
+   void testConcurrentUpdates() throws Exception {
+      final var metrics = new RunMetrics();
+      final var executor = Executors.newFixedThreadPool(4);
+      try {
+         final var futures = new ArrayList<Future<?>>();
+         for (int thread = 0; thread < 4; thread++) {
+            futures.add(executor.submit(() -> {
+               for (int file = 0; file < 1_000; file++) {
+                  metrics.increment(Count.FILES_SEEN);
+                  metrics.add(Count.HEADINGS, 3);
+                  metrics.add(Stage.READING, 2);
+               }
+            }));
+         }
+         for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+         }
+      } finally {
+         executor.shutdownNow();
+      }
+
+      final var report = metrics.report("full");
+      assertEquals(4_000, report.count(Count.FILES_SEEN));
+      assertEquals(12_000, report.count(Count.HEADINGS));
+      assertEquals(new RunReport.StageTime(4_000, 8_000), report.stages().get(Stage.READING));
+      assertEquals(0, report.count(Count.FILES_FAILED));
+   }
+
+   /**
+    * Test starting a new run puts everything back to zero.
+    */
+   @Test
+   void testStartResets() {
+      final var metrics = new RunMetrics();
+      metrics.increment(Count.SHORTCUTS);
+      metrics.time(Stage.OUTPUT, System.nanoTime());
+      metrics.start();
+
+      final var report = metrics.report("changes");
+      assertTrue(report.counts().values().stream().allMatch(value -> value == 0));
+      assertTrue(report.stages().values().stream().allMatch(time -> time.calls() == 0 && time.nanos() == 0));
+   }
+
+   /**
+    * Test metrics for part of a run also add up in the metrics for the whole run, and are reported with them.
+    */
+   @Test
+   void testParent() {
+      final var run = new RunMetrics();
+      final var docs = new RunMetrics(run);
+      final var notes = new RunMetrics(run);
+      docs.increment(Count.SHORTCUTS);
+      docs.add(Count.SHORTCUTS, 2);
+      notes.increment(Count.SHORTCUTS);
+      notes.add(Stage.READING, 1_000);
+      run.increment(Count.SHORTCUT_COLLISIONS);
+
+      assertEquals(3, docs.report("full").count(Count.SHORTCUTS));
+      assertEquals(0, docs.report("full").count(Count.SHORTCUT_COLLISIONS));
+      assertEquals(4, run.report("full").count(Count.SHORTCUTS));
+      assertEquals(new RunReport.StageTime(1, 1_000), run.report("full").stages().get(Stage.READING));
+      notes.start();
+      assertEquals(0, notes.report("full").count(Count.SHORTCUTS));
+      assertEquals(4, run.report("full").count(Count.SHORTCUTS));
+
+      final var roots = new LinkedHashMap<String, RunReport>();
+      roots.put("docs", docs.report("full"));
+      roots.put("notes", notes.report("full"));
+      final var json = run.report("full").toJson(roots);
+      assertTrue(json.contains("},\"roots\":{\"docs\":{\"mode\":\"full\","), json);
+      assertTrue(json.contains("}},\"notes\":{\"mode\":\"full\","), json);
+      assertTrue(json.endsWith("}}}}"), json);
+   }
+
+   /**
+    * Test the JSON report names every count and stage, and replaces an earlier report.
+    *
+    * @param folder temporary folder
+    *
+    * @throws IOException if the report cannot be written
+    */
+   @Test
+   void testJsonReport(@TempDir final Path folder) throws IOException {
+      final var metrics = new RunMetrics();
+      metrics.add(Count.FILES_ACCEPTED, 7);
+      metrics.add(Stage.TRAVERSAL, 1_500_000);
+      final var report = metrics.report("incremental");
+      final var started = Instant.parse("2020-11-22T10:11:12Z");
+      final var fixed = new RunReport(report.mode(), started, started.plusMillis(1_234), report.stages(),
+            report.counts());
+
+      final var json = fixed.toJson();
+      assertTrue(json.startsWith("{\"mode\":\"incremental\",\"started\":\"2020-11-22T10:11:12Z\","
+            + "\"finished\":\"2020-11-22T10:11:13.234Z\",\"elapsedMillis\":1234,\"counts\":{\"filesSeen\":0,"
+            + "\"filesAccepted\":7,"), json);
+      assertTrue(json.contains("\"stagesMillis\":{\"traversal\":{\"calls\":1,\"millis\":1.500},"), json);
+      for (Count count : Count.values()) {
+         assertTrue(json.contains("\"" + count.getReportName() + "\":"), count.name());
+      }
+      for (Stage stage : Stage.values()) {
+         assertTrue(json.contains("\"" + stage.getReportName() + "\":{"), stage.name());
+      }
+
+      final var path = folder.resolve("reports").resolve("run.json");
+      Files.writeString(Files.createDirectories(path.getParent()).resolve("run.json"), "an older, longer report");
+      fixed.write(path);
+      assertEquals(List.of(json), Files.readAllLines(path));
+   }
+
+}
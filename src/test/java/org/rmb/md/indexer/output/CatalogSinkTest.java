@@ -0,0 +1,98 @@
+package org.rmb.md.indexer.output;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rmb.md.indexer.shortcut.Shortcut;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test writing shortcuts to a single catalog file.
+ */
+class CatalogSinkTest {
+
+   /**
+    * The output directory.
+    */
+   @TempDir
+   Path directory;
+
+   /**
+    * Test JSON Lines entries, including escaping and a later shortcut replacing an earlier one of the same name.
+    *
+    * @throws IOException if the catalog cannot be written
+    */
+   @Test
+   void testJsonLines() throws IOException {
+      final var catalog = directory.resolve("index.jsonl");
+      final var sink = new JsonLinesCatalogSink(catalog);
+      addShortcuts(sink);
+      sink.commit();
+
+      assertEquals(List.of(
+            "{\"name\":\"Hugo - notes\",\"url\":\"http://h/notes/\",\"source\":\"notes.md\",\"heading\":\"\"}",
+            "{\"name\":\"Hugo - notes - Say \\\"hi\\\", \\\\ bye\",\"url\":\"http://h/notes/#say-hi-bye\","
+                  + "\"source\":\"notes.md\",\"heading\":\"## Say \\\"hi\\\", \\\\ bye\\t\\u0001\"}"),
+            Files.readAllLines(catalog));
+   }
+
+   /**
+    * Test CSV entries, including quoting and a later shortcut replacing an earlier one of the same name.
+    *
+    * @throws IOException if the catalog cannot be written
+    */
+   @Test
+   void testCsv() throws IOException {
+      final var catalog = directory.resolve("index.csv");
+      final var sink = new CsvCatalogSink(catalog);
+      addShortcuts(sink);
+      sink.commit();
+
+      assertEquals(List.of(
+            "name,url,source,heading",
+            "Hugo - notes,http://h/notes/,notes.md,",
+            "\"Hugo - notes - Say \"\"hi\"\", \\ bye\",http://h/notes/#say-hi-bye,notes.md,"
+                  + "\"## Say \"\"hi\"\", \\ bye\t\u0001\""),
+            Files.readAllLines(catalog));
+   }
+
+   /**
+    * Test a catalog replaces the one from an earlier run as a whole, and no temporary files are left behind.
+    *
+    * @throws IOException if the catalog cannot be written
+    */
+   @Test
+   void testReplacesEarlierCatalog() throws IOException {
+      final var catalog = directory.resolve("index.jsonl");
+      Files.writeString(catalog, "an earlier, longer catalog\n".repeat(100));
+      final var sink = new JsonLinesCatalogSink(catalog);
+      sink.accept(new Shortcut("Hugo - only.url", "http://h/only/", Path.of("only.md"), null));
+      sink.commit();
+
+      assertEquals(1, Files.readAllLines(catalog).size());
+      try (var files = Files.list(directory)) {
+         assertEquals(List.of(catalog), files.collect(Collectors.toList()));
+      }
+   }
+
+   /**
+    * Add a file shortcut and a heading shortcut, the heading twice with different URLs.
+    *
+    * @param sink the sink
+    */
+   private static void addShortcuts(final ShortcutSink sink) {
+      final var source = Path.of("notes.md");
+      final var heading = "## Say \"hi\", \\ bye\t\u0001";
+      sink.accept(new Shortcut("Hugo - notes.url", "http://h/notes/", source, null));
+      sink.accept(new Shortcut("Hugo - notes - Say \"hi\", \\ bye.url", "http://h/notes/#old", source, heading));
+      sink.accept(new Shortcut("Hugo - notes - Say \"hi\", \\ bye.url", "http://h/notes/#say-hi-bye", source,
+            heading));
+   }
+
+}
@@ -0,0 +1,127 @@
+package org.rmb.md.indexer.output;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test reconciling shortcut files against an output directory.
+ */
+class ShortcutReconcilerTest {
+
+   /**
+    * The output directory.
+    */
+   @TempDir
+   Path directory;
+
+   /**
+    * Writes files for the reconciler under test.
+    */
+   private ShortcutWriter writer;
+
+   /**
+    * Stop the writer's threads.
+    */
+   @AfterEach
+   void closeWriter() {
+      if (writer != null) {
+         writer.close();
+      }
+   }
+
+   /**
+    * Test new, changed, identical and stale files are each handled and files we do not own are left alone.
+    *
+    * @throws IOException if the directory cannot be set up
+    */
+   @Test
+   void testReconcile() throws IOException {
+      Files.writeString(directory.resolve("Hugo - same.url"), "same");
+      Files.writeString(directory.resolve("Hugo - changed.url"), "old");
+      Files.writeString(directory.resolve("Hugo - stale.url"), "stale");
+      Files.writeString(directory.resolve("Other.url"), "not ours");
+      final var sameModified = Files.getLastModifiedTime(directory.resolve("Hugo - same.url"));
+
+      final Map<String, byte[]> desired = new LinkedHashMap<>();
+      desired.put("Hugo - same.url", "same".getBytes());
+      desired.put("Hugo - changed.url", "new".getBytes());
+      desired.put("Hugo - new.url", "new".getBytes());
+
+      final var result = reconciler().reconcile(desired);
+
+      assertEquals(new ReconcileResult(1, 1, 1, 1, 0), result);
+      assertEquals("new", Files.readString(directory.resolve("Hugo - changed.url")));
+      assertEquals("new", Files.readString(directory.resolve("Hugo - new.url")));
+      assertEquals(sameModified, Files.getLastModifiedTime(directory.resolve("Hugo - same.url")));
+      assertFalse(Files.exists(directory.resolve("Hugo - stale.url")));
+      assertTrue(Files.exists(directory.resolve("Other.url")));
+   }
+
+   /**
+    * Test only the named candidates are deleted when reconciling part of the directory.
+    *
+    * @throws IOException if the directory cannot be set up
+    */
+   @Test
+   void testReconcileCandidates() throws IOException {
+      Files.writeString(directory.resolve("Hugo - keep.url"), "keep");
+      Files.writeString(directory.resolve("Hugo - stale.url"), "stale");
+      Files.writeString(directory.resolve("Hugo - rewritten.url"), "old");
+
+      final var result = reconciler().reconcile(Map.of("Hugo - rewritten.url", "new".getBytes()),
+            List.of("Hugo - stale.url", "Hugo - rewritten.url", "Hugo - already-gone.url"));
+
+      assertEquals(new ReconcileResult(0, 1, 1, 0, 0), result);
+      assertTrue(Files.exists(directory.resolve("Hugo - keep.url")));
+      assertFalse(Files.exists(directory.resolve("Hugo - stale.url")));
+      assertEquals("new", Files.readString(directory.resolve("Hugo - rewritten.url")));
+   }
+
+   /**
+    * Test files handed over one at a time are written, and files not handed over deleted when the run finishes.
+    *
+    * @throws IOException if the directory cannot be set up
+    */
+   @Test
+   void testWriteThenFinish() throws IOException {
+      Files.writeString(directory.resolve("Hugo - same.url"), "same");
+      Files.writeString(directory.resolve("Hugo - stale.url"), "stale");
+      Files.writeString(directory.resolve("Other.url"), "not ours");
+
+      final var reconciler = reconciler();
+      reconciler.write("Hugo - same.url", "same".getBytes());
+      reconciler.write("Hugo - new.url", "new".getBytes());
+      final var result = reconciler.finish(Set.of("Hugo - same.url", "Hugo - new.url"));
+
+      assertEquals(new ReconcileResult(1, 0, 1, 1, 0), result);
+      assertEquals("new", Files.readString(directory.resolve("Hugo - new.url")));
+      assertFalse(Files.exists(directory.resolve("Hugo - stale.url")));
+      assertTrue(Files.exists(directory.resolve("Other.url")));
+   }
+
+   /**
+    * Create a reconciler for the output directory that owns Hugo shortcut files.
+    *
+    * @return the reconciler
+    */
+   private ShortcutReconciler reconciler() {
+      writer = new ShortcutWriter(directory, 2, 8, 4);
+      return new ShortcutReconciler(directory, FileSystems.getDefault().getPathMatcher("glob:**Hugo - *.url"),
+            writer);
+   }
+
+}
@@ -0,0 +1,81 @@
+package org.rmb.md.indexer.output;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test writing shortcut files in the background.
+ */
+class ShortcutWriterTest {
+
+   /**
+    * The output directory.
+    */
+   @TempDir
+   Path directory;
+
+   /**
+    * Test many more files than fit on the queue are all written, and requests for one file are carried out in order.
+    *
+    * @throws IOException if a file cannot be read
+    */
+   @Test
+   void testWritesEverythingInOrder() throws IOException {
+      try (ShortcutWriter writer = new ShortcutWriter(directory, 3, 4, 2)) {
+         for (int index = 0; index < 500; index++) {
+            writer.write("Hugo - " + index + ".url", ("first " + index).getBytes());
+         }
+         for (int index = 0; index < 500; index += 2) {
+            writer.write("Hugo - " + index + ".url", ("second " + index).getBytes());
+         }
+         writer.delete("Hugo - 499.url");
+
+         assertEquals(new ReconcileResult(500, 250, 1, 0, 0), writer.flush());
+         assertEquals("second 0", Files.readString(directory.resolve("Hugo - 0.url")));
+         assertEquals("first 1", Files.readString(directory.resolve("Hugo - 1.url")));
+         assertFalse(Files.exists(directory.resolve("Hugo - 499.url")));
+
+         writer.write("Hugo - 1.url", "first 1".getBytes());
+         assertEquals(new ReconcileResult(0, 0, 0, 1, 0), writer.flush());
+      }
+   }
+
+   /**
+    * Test failures are counted without stopping the rest of the batch.
+    */
+   @Test
+   void testFailuresAreCounted() {
+      try (ShortcutWriter writer = new ShortcutWriter(directory, 1, 16, 16)) {
+         writer.write("missing-folder/Hugo - a.url", "a".getBytes());
+         writer.write("Hugo - b.url", "b".getBytes());
+         writer.write("missing-folder/Hugo - c.url", "c".getBytes());
+
+         assertEquals(new ReconcileResult(1, 0, 0, 0, 2), writer.flush());
+      }
+   }
+
+   /**
+    * Test closing waits for outstanding writes and refuses new ones.
+    */
+   @Test
+   void testCloseFlushes() {
+      final var writer = new ShortcutWriter(directory, 2, 2, 1);
+      for (int index = 0; index < 50; index++) {
+         writer.write("Hugo - " + index + ".url", "x".getBytes());
+      }
+      writer.close();
+
+      assertEquals(50, directory.toFile().list().length);
+      assertThrows(IllegalStateException.class, () -> writer.write("Hugo - late.url", "x".getBytes()));
+      writer.close();
+   }
+
+}
@@ -0,0 +1,245 @@
+package org.rmb.md.indexer.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test the indexing pipeline.
+ */
+class IndexingPipelineTest {
+
+   /**
+    * Paths discovered by the tests.
+    */
+   private static final List<Path> PATHS = IntStream.range(0, 500)
+         .mapToObj(index -> Path.of("file-" + index + ".md"))
+         .collect(Collectors.toList());
+
+   /**
+    * Enough paths that a run without a bound would get far ahead of a slow file.
+    */
+   private static final List<Path> MANY_PATHS = IntStream.range(0, 20_000)
+         .mapToObj(index -> Path.of("many-" + index + ".md"))
+         .collect(Collectors.toList());
+
+   /**
+    * Test a concurrent run collects exactly what a sequential run does, in the same order, even when workers finish
+    * out of order.
+    *
+    * @throws IOException never
+    */
+   @Test
+   void testConcurrentMatchesSequential() throws IOException {
+      final Function<Path, String> read = path -> {
+         LockSupport.parkNanos(ThreadLocalRandom.current().nextInt(50_000));
+         return path.toString();
+      };
+      final Function<String, String> compute = String::toUpperCase;
+
+      final var sequential = new ArrayList<String>();
+      IndexingPipeline.sequential().run(sink -> PATHS.forEach(sink), read, compute, sequential::add);
+
+      final var concurrent = new ArrayList<String>();
+      new IndexingPipeline(true, 4, 3, 5).run(sink -> PATHS.forEach(sink), read, compute, concurrent::add);
+
+      assertEquals(500, sequential.size());
+      assertEquals(sequential, concurrent);
+   }
+
+   /**
+    * Test a discovery failure is thrown from a concurrent run.
+    */
+   @Test
+   void testDiscoveryFailure() {
+      final var pipeline = new IndexingPipeline(true, 2, 1, 1);
+      assertThrows(IOException.class, () -> pipeline.run(sink -> {
+         PATHS.forEach(sink);
+         throw new IOException("Cannot walk.");
+      }, Path::toString, Function.identity(), value -> {
+      }));
+   }
+
+   /**
+    * Test a failing stage is reported after the other files have been collected.
+    */
+   @Test
+   void testStageFailure() {
+      final var collected = new ArrayList<String>();
+      final var pipeline = new IndexingPipeline(true, 2, 2, 2);
+      assertThrows(IllegalStateException.class, () -> pipeline.run(sink -> PATHS.forEach(sink),
+            path -> {
+               if (path.toString().equals("file-7.md")) {
+                  throw new IllegalArgumentException("Bad file.");
+               }
+               return path.toString();
+            }, Function.identity(), collected::add));
+      assertEquals(499, collected.size());
+   }
+
+   /**
+    * Test a slow first file holds up discovery instead of letting every later result pile up behind it.
+    *
+    * @throws IOException never
+    */
+   @Test
+   void testSlowFirstFileBounded() throws IOException {
+      final var pipeline = new IndexingPipeline(true, 4, 2, 2);
+      final var discovered = new AtomicLong();
+      final var collected = new AtomicLong();
+      final var mostAhead = new AtomicLong();
+      final var results = new ArrayList<String>();
+      pipeline.run(sink -> MANY_PATHS.forEach(path -> {
+               sink.accept(path);
+               mostAhead.accumulateAndGet(discovered.incrementAndGet() - collected.get(), Math::max);
+            }),
+            path -> {
+               if (path.equals(MANY_PATHS.get(0))) {
+                  LockSupport.parkNanos(200_000_000);
+               }
+               return path.toString();
+            },
+            Function.identity(),
+            value -> {
+               results.add(value);
+               collected.incrementAndGet();
+            });
+      assertEquals(MANY_PATHS.stream().map(Path::toString).collect(Collectors.toList()), results);
+      assertTrue(mostAhead.get() <= pipeline.inFlightLimit(), mostAhead + " files ahead");
+   }
+
+   /**
+    * Test results of a source behind a slow one wait in a bounded queue rather than all being gathered first.
+    *
+    * @throws IOException never
+    */
+   @Test
+   void testRunEachBounded() throws IOException {
+      final var pipeline = new IndexingPipeline(true, 4, 2, 2);
+      final var computed = new AtomicLong();
+      final var collected = new AtomicLong();
+      final var mostWaiting = new AtomicLong();
+      pipeline.runEach(List.of("slow", "fast"),
+            source -> sink -> MANY_PATHS.forEach(sink),
+            (source, path) -> {
+               if (source.equals("slow") && path.equals(MANY_PATHS.get(0))) {
+                  LockSupport.parkNanos(200_000_000);
+               }
+               return path.toString();
+            },
+            (source, value) -> {
+               if (source.equals("fast")) {
+                  mostWaiting.accumulateAndGet(computed.incrementAndGet() - collected.get(), Math::max);
+               }
+               return value;
+            },
+            (source, value) -> {
+               if (source.equals("fast")) {
+                  collected.incrementAndGet();
+               }
+            });
+      assertEquals(MANY_PATHS.size(), collected.get());
+      // What the fast source's own run holds, its queue to the calling thread and the one result being collected.
+      assertTrue(mostWaiting.get() <= pipeline.inFlightLimit() + 4 + 1, mostWaiting + " results waiting");
+   }
+
+   /**
+    * Test several sources run at once are collected source by source, in the order given, on the calling thread.
+    *
+    * @throws IOException never
+    */
+   @Test
+   void testRunEach() throws IOException {
+      final var sources = List.of("c", "a", "b");
+      final var collected = new ArrayList<String>();
+      final var readThreads = ConcurrentHashMap.<String>newKeySet();
+      final var caller = Thread.currentThread();
+      new IndexingPipeline(true, 4, 2, 2).runEach(sources,
+            source -> sink -> PATHS.forEach(sink),
+            (source, path) -> {
+               readThreads.add(Thread.currentThread().getName());
+               LockSupport.parkNanos(ThreadLocalRandom.current().nextInt(20_000));
+               return source + "/" + path;
+            },
+            (source, value) -> value,
+            (source, value) -> {
+               assertEquals(caller, Thread.currentThread());
+               collected.add(value);
+            });
+      assertEquals(expected(sources), collected);
+      assertTrue(readThreads.size() > 1, readThreads.toString());
+   }
+
+   /**
+    * Test a sequential pipeline runs several sources one after another, every stage on the calling thread.
+    *
+    * @throws IOException never
+    */
+   @Test
+   void testRunEachSequential() throws IOException {
+      final var sources = List.of("c", "a", "b");
+      final var collected = new ArrayList<String>();
+      final var caller = Thread.currentThread();
+      IndexingPipeline.sequential().runEach(sources,
+            source -> sink -> PATHS.forEach(sink),
+            (source, path) -> {
+               assertEquals(caller, Thread.currentThread());
+               return source + "/" + path;
+            },
+            (source, value) -> {
+               assertEquals(caller, Thread.currentThread());
+               return value;
+            },
+            (source, value) -> {
+               assertEquals(caller, Thread.currentThread());
+               collected.add(value);
+            });
+      assertEquals(expected(sources), collected);
+   }
+
+   /**
+    * Test a source that fails stops the run once the sources ahead of it have been collected.
+    */
+   @Test
+   void testRunEachFailure() {
+      final var collected = new ArrayList<String>();
+      assertThrows(IOException.class, () -> IndexingPipeline.sequential().runEach(List.of("a", "b", "c"),
+            source -> sink -> {
+               if (source.equals("b")) {
+                  throw new IOException("Cannot walk " + source);
+               }
+               PATHS.forEach(sink);
+            },
+            (source, path) -> source + "/" + path, (source, value) -> value, (source, value) -> collected.add(value)));
+      assertEquals(500, collected.size());
+      assertTrue(collected.stream().allMatch(value -> value.startsWith("a/")));
+   }
+
+   /**
+    * What running every path through each source gives, source by source.
+    *
+    * @param sources the sources, in order
+    *
+    * @return each source followed by <code>/</code> and a path
+    */
+   private static List<String> expected(final List<String> sources) {
+      return sources.stream()
+            .flatMap(source -> PATHS.stream().map(path -> source + "/" + path))
+            .collect(Collectors.toList());
+   }
+
+}
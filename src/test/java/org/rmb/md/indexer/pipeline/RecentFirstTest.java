@@ -0,0 +1,91 @@
+package org.rmb.md.indexer.pipeline;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test recent files are handed on first.
+ */
+class RecentFirstTest {
+
+   /**
+    * Folder holding the files of the tests.
+    */
+   @TempDir
+   Path folder;
+
+   /**
+    * Test files of every source are handed on most recently modified first, those modified at the same time in the
+    * order they were found, and each with the source it was found in.
+    *
+    * @throws IOException if a file cannot be created
+    */
+   @Test
+   void testOrder() throws IOException {
+      final var oldest = file("oldest.md", 1_000);
+      final var newest = file("newest.md", 5_000);
+      final var sameFirst = file("same-first.md", 3_000);
+      final var sameSecond = file("same-second.md", 3_000);
+      final var sources = Map.of("a", List.of(oldest, sameFirst), "b", List.of(sameSecond, newest));
+
+      final var recent = new RecentFirst<>(List.of("a", "b"), source -> sources.get(source)::forEach,
+            Optional.empty());
+      final var handedOn = new ArrayList<Path>();
+      recent.discover(handedOn::add);
+
+      assertEquals(List.of(newest, sameFirst, sameSecond, oldest), handedOn);
+      assertEquals("a", recent.sourceOf(sameFirst));
+      assertEquals("b", recent.sourceOf(newest));
+      assertTrue(recent.unvisited().isEmpty());
+   }
+
+   /**
+    * Test files are no longer handed on once the budget has run out, and are left unvisited in the same order.
+    *
+    * @throws IOException if a file cannot be created
+    */
+   @Test
+   void testBudget() throws IOException {
+      final var older = file("older.md", 1_000);
+      final var newer = file("newer.md", 2_000);
+
+      final var recent = new RecentFirst<>(List.of("a"), source -> List.of(older, newer)::forEach,
+            Optional.of(Duration.ZERO));
+      final var handedOn = new ArrayList<Path>();
+      recent.discover(handedOn::add);
+
+      assertTrue(handedOn.isEmpty());
+      assertEquals(List.of(newer, older), recent.unvisited());
+      assertEquals("a", recent.sourceOf(older));
+   }
+
+   /**
+    * Create a markdown file.
+    *
+    * @param name         name of the file
+    * @param lastModified when it was last modified, in milliseconds since the epoch
+    *
+    * @return the file
+    *
+    * @throws IOException if it cannot be created
+    */
+   private Path file(final String name, final long lastModified) throws IOException {
+      final var path = Files.writeString(folder.resolve(name), "# " + name);
+      Files.setLastModifiedTime(path, FileTime.fromMillis(lastModified));
+      return path;
+   }
+
+}
@@ -2,10 +2,15 @@ package org.rmb.md.indexer.regex;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Test Replacement sequences.
@@ -77,4 +82,270 @@ class ReplacementSequenceTest {
       assertEquals("Bram Mark Robert", replacementSequence.apply(start));
    }
 
+   /**
+    * Test adjacent literal replacements that are merged into one pass.
+    */
+   @Test
+   void testMergedLiterals() {
+      var replacementSequence = new ReplacementSequence(List.of(
+            new Replacement("-", " "),
+            new Replacement("_", " - ")
+      ));
+      assertEquals("cheat - git tips - a b", replacementSequence.apply("cheat_git-tips_a-b"));
+   }
+
+   /**
+    * Test literal replacements that must not be merged because a later find would see an earlier result.
+    */
+   @Test
+   void testUnmergeableLiterals() {
+      final var replacements = List.of(
+            new Replacement("b", ""),
+            new Replacement("ac", "X"),
+            new Replacement("X", "\\$"),
+            new Replacement("\\\\", "/"));
+      for (String start : List.of("abc", "abcac", "a\\b", "")) {
+         assertEquals(applySequentially(replacements, start), new ReplacementSequence(replacements).apply(start));
+      }
+   }
+
+   /**
+    * Test an empty find next to a literal is left to the regex engine, as sequential replacement does it.
+    */
+   @Test
+   void testEmptyFindNextToLiteral() {
+      final var replacements = List.of(
+            new Replacement("-", " "),
+            new Replacement("", "."),
+            new Replacement("_", "+"));
+      for (String start : List.of("a-b_c", "")) {
+         assertEquals(applySequentially(replacements, start), new ReplacementSequence(replacements).apply(start));
+      }
+   }
+
+   /**
+    * Test compiled sequences from the fixture files give exactly what sequential {@link String#replaceAll(String,
+    * String)} calls give.
+    *
+    * @throws IOException if a fixture cannot be read
+    */
+   @Test
+   void testFixturesMatchSequentialReplaceAll() throws IOException {
+      final var inputs = List.of(
+            "cheat_git\\project-tech-tips\\some-file_name.md",
+            "cheat_java\\index.md",
+            "project-tech-tips/a/b/index.md",
+            "## Some heading ##",
+            "# Top heading",
+            "###   History   ",
+            "  padded - with_both  ",
+            "");
+      for (String path : List.of("/markdown-file-replacement-sequence.txt",
+            "/markdown-heading-replacement-sequence.txt",
+            "/markdown-url-replacement-sequence.txt")) {
+         final var replacementSequence = new ReplacementSequence(path);
+         for (String input : inputs) {
+            assertEquals(applySequentially(replacementSequence.replacements(), input),
+                  replacementSequence.apply(input), path + " applied to [" + input + "]");
+         }
+      }
+   }
+
+   /**
+    * Test profiling gives the same results as a compiled sequence for the fixture files, with one entry per
+    * replacement.
+    *
+    * @throws IOException if a fixture cannot be read
+    */
+   @Test
+   void testProfilingGivesSameResults() throws IOException {
+      final var inputs = List.of("cheat_git\\project-tech-tips\\some-file_name.md", "## Some heading ##", "");
+      for (String path : List.of("/markdown-file-replacement-sequence.txt",
+            "/markdown-heading-replacement-sequence.txt",
+            "/markdown-url-replacement-sequence.txt")) {
+         final var compiled = new ReplacementSequence(path);
+         final var profiled = new ReplacementSequence(path, ReplacementOptions.DEFAULT.withProfiling(true));
+         for (String input : inputs) {
+            assertEquals(compiled.apply(input), profiled.apply(input), path + " applied to [" + input + "]");
+         }
+         final var statistics = profiled.ruleStatistics();
+         assertEquals(compiled.replacements().size(), statistics.size());
+         assertTrue(statistics.stream().allMatch(rule -> rule.invocations() == inputs.size()));
+         assertTrue(compiled.ruleStatistics().isEmpty());
+      }
+   }
+
+   /**
+    * Test each replacement counts calls and matches, and remembers its slowest input, until reset.
+    */
+   @Test
+   void testRuleStatistics() {
+      final var sequence = new ReplacementSequence(List.of(
+            new Replacement("-", " "),
+            new Replacement("_", " - "),
+            new Replacement("never", "matched"),
+            new Replacement("(\\w+)@(\\w+)", "$2 at $1")), ReplacementOptions.DEFAULT.withProfiling(true));
+      final var longInput = "a-b_c".repeat(10_000);
+      sequence.apply("a-b");
+      sequence.apply("x@y");
+      sequence.apply(longInput);
+
+      final var statistics = sequence.ruleStatistics();
+      assertEquals(List.of(1, 2, 3, 4),
+            statistics.stream().map(RuleStatistics::position).collect(Collectors.toList()));
+      assertEquals(List.of(3L, 3L, 3L, 3L),
+            statistics.stream().map(RuleStatistics::invocations).collect(Collectors.toList()));
+      assertEquals(List.of(2L, 1L, 0L, 1L),
+            statistics.stream().map(RuleStatistics::matches).collect(Collectors.toList()));
+      assertEquals(longInput, statistics.get(0).worstInput());
+      assertTrue(statistics.stream().allMatch(rule -> rule.worstNanos() > 0 && rule.nanos() >= rule.worstNanos()));
+      assertTrue(sequence.describeRuleStatistics().contains("#3 find=[never] replace=[matched]: 3 calls, 0 matched"));
+
+      sequence.resetRuleStatistics();
+      assertTrue(sequence.ruleStatistics().stream()
+            .allMatch(rule -> rule.invocations() == 0 && rule.nanos() == 0 && rule.worstInput() == null));
+   }
+
+   /**
+    * Test a replacement that matches but leaves its input as it was still counts as matched.
+    */
+   @Test
+   void testRuleStatisticsCountMatchesNotChanges() {
+      final var sequence = new ReplacementSequence(List.of(
+            new Replacement("^\\s*(\\S.*?)\\s*$", "$1"),
+            new Replacement("x", "x")), ReplacementOptions.DEFAULT.withProfiling(true));
+      assertEquals("trimmed x", sequence.apply("trimmed x"));
+      assertEquals("no match", sequence.apply("no match"));
+
+      assertEquals(List.of(2L, 1L),
+            sequence.ruleStatistics().stream().map(RuleStatistics::matches).collect(Collectors.toList()));
+   }
+
+   /**
+    * Test a regular expression that backtracks catastrophically is abandoned once over budget, skipped for that input
+    * only, and counted, while the rest of the sequence still applies.
+    */
+   @Test
+   void testRuleBudget() {
+      final var sequence = new ReplacementSequence(List.of(
+            new Replacement("a*a*a*a*a*b", "found"),
+            new Replacement("c", "C")), ReplacementOptions.DEFAULT.withRuleBudget(Duration.ofMillis(50)));
+      // Each start position tries every way of splitting the run of a's five ways: without a budget, hours.
+      final var input = "a".repeat(300) + "c";
+
+      final var start = System.nanoTime();
+      assertEquals("a".repeat(300) + "C", sequence.apply(input));
+      assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(5)) < 0);
+      assertEquals("found", sequence.apply("aaab"));
+      assertEquals(1, sequence.takeOverBudgetCount());
+      assertEquals(0, sequence.takeOverBudgetCount());
+   }
+
+   /**
+    * Test which patterns are reported as repeating a group that contains a repeat, and that the shipped sequences
+    * have none.
+    *
+    * @throws IOException if a fixture cannot be read
+    */
+   @Test
+   void testNestedQuantifiers() throws IOException {
+      for (String regex : List.of("(a+)+b", "(\\w+\\s?)*", "((ab)*c)+", "(a*?)+", "(x+){2,}", "(?:a|b+)*",
+            "((a+))+")) {
+         assertTrue(RegexReplacementStep.hasNestedQuantifier(regex), regex);
+      }
+      for (String regex : List.of("(a++)+", "(?>a+)+", "(a+){3}", "[(a+)]+", "\\(a+\\)+", "a+b*", "(abc)+",
+            "(a+)?", "^\\s*(\\S.*\\S)\\s*$", "[\\]+)]+")) {
+         assertFalse(RegexReplacementStep.hasNestedQuantifier(regex), regex);
+      }
+      for (String path : List.of("/markdown-file-replacement-sequence.txt",
+            "/markdown-heading-replacement-sequence.txt",
+            "/markdown-url-replacement-sequence.txt")) {
+         for (Replacement replacement : new ReplacementSequence(path).replacements()) {
+            assertFalse(RegexReplacementStep.hasNestedQuantifier(replacement.find()), replacement.find());
+         }
+      }
+   }
+
+   /**
+    * Test cached results are the same as uncached ones for the fixture files, and inputs seen again are looked up.
+    *
+    * @throws IOException if a fixture cannot be read
+    */
+   @Test
+   void testCacheGivesSameResults() throws IOException {
+      final var inputs = List.of("cheat_git\\project-tech-tips\\some-file_name.md", "## Examples", "# Setup",
+            "  padded - with_both  ", "## Examples", "", "# Setup", "");
+      for (String path : List.of("/markdown-file-replacement-sequence.txt",
+            "/markdown-heading-replacement-sequence.txt",
+            "/markdown-url-replacement-sequence.txt")) {
+         final var uncached = new ReplacementSequence(path);
+         final var cached = new ReplacementSequence(path, ReplacementOptions.DEFAULT.withCacheSize(100));
+         for (String input : inputs) {
+            assertEquals(uncached.apply(input), cached.apply(input), path + " applied to [" + input + "]");
+         }
+         final var statistics = cached.takeCacheStatistics().orElseThrow();
+         assertEquals(3, statistics.hits());
+         assertEquals(5, statistics.misses());
+         assertEquals(5, statistics.size());
+         assertTrue(uncached.takeCacheStatistics().isEmpty());
+      }
+   }
+
+   /**
+    * Test the least recently used result is dropped when the cache is full, and counts start again once taken.
+    */
+   @Test
+   void testCacheEviction() {
+      final var sequence = new ReplacementSequence(List.of(new Replacement("a", "b")),
+            ReplacementOptions.DEFAULT.withCacheSize(2));
+      sequence.apply("a1");
+      sequence.apply("a2");
+      sequence.apply("a1");
+      sequence.apply("a3");
+      assertEquals("b1", sequence.apply("a1"));
+      assertEquals("b2", sequence.apply("a2"));
+
+      final var statistics = sequence.takeCacheStatistics().orElseThrow();
+      assertEquals(new CacheStatistics(2, 4, 2, 2, 2), statistics);
+      assertEquals(1 / 3.0, statistics.hitRate(), 1e-9);
+      assertEquals(new CacheStatistics(0, 0, 0, 2, 2), sequence.cacheStatistics().orElseThrow());
+      assertTrue(new ReplacementSequence(List.of(new Replacement("a", "b")),
+            ReplacementOptions.DEFAULT.withProfiling(true).withCacheSize(2)).cacheStatistics().isEmpty());
+   }
+
+   /**
+    * Test a result where a replacement ran over budget is not cached, as next time it may not.
+    */
+   @Test
+   void testCacheSkipsOverBudgetResults() {
+      final var sequence = new ReplacementSequence(List.of(
+            new Replacement("a*a*a*a*a*b", "found"),
+            new Replacement("c", "C")),
+            ReplacementOptions.DEFAULT.withRuleBudget(Duration.ofMillis(50)).withCacheSize(10));
+      final var input = "a".repeat(300) + "c";
+
+      assertEquals("a".repeat(300) + "C", sequence.apply(input));
+      assertEquals("found", sequence.apply("aaab"));
+      assertEquals(1, sequence.takeOverBudgetCount());
+      final var statistics = sequence.cacheStatistics().orElseThrow();
+      assertEquals(2, statistics.misses());
+      assertEquals(1, statistics.size());
+   }
+
+   /**
+    * Apply replacements the way they were applied before sequences were compiled.
+    *
+    * @param replacements replacements to apply
+    * @param start        the input
+    *
+    * @return result of calling {@link String#replaceAll(String, String)} for each replacement in turn
+    */
+   private static String applySequentially(final List<Replacement> replacements, final String start) {
+      var result = start;
+      for (Replacement replacement : replacements) {
+         result = result.replaceAll(replacement.find(), replacement.replace());
+      }
+      return result;
+   }
+
 }
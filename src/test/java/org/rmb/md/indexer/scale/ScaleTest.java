@@ -0,0 +1,279 @@
+package org.rmb.md.indexer.scale;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rmb.md.indexer.Indexer;
+import org.rmb.md.indexer.config.ApplicationProperties;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Index synthetic trees of increasing size from start to finish, record how long it took and how much memory it used,
+ * and fail if that is worse than the configured thresholds.
+ * <p>
+ * Too slow to run with every build: run it with <code>./gradlew scaleTest</code>. These system properties, passed on
+ * to the test JVM by that task, change what is run and what counts as a regression:
+ * <ul>
+ *    <li><code>scale.sizes</code> - numbers of markdown files to try, comma separated</li>
+ *    <li><code>scale.minFilesPerSecond</code> - fewest indexed files per second</li>
+ *    <li><code>scale.maxPeakHeapMb</code> - most heap used at any point, in MB</li>
+ *    <li><code>scale.maxAllocatedKbPerFile</code> - most memory allocated per indexed file, in KB</li>
+ *    <li><code>scale.report</code> - CSV file each result is added to</li>
+ * </ul>
+ * Indexing runs sequentially, so that the memory allocated by every thread involved can be counted.
+ */
+@Tag("scale")
+@Slf4j
+class ScaleTest {
+
+   /**
+    * Default numbers of markdown files to try.
+    */
+   private static final String DEFAULT_SIZES = "1000,10000,100000";
+
+   /**
+    * Heading of the CSV report.
+    */
+   private static final String REPORT_HEADING = "files,indexedFiles,shortcuts,megabytes,millis,filesPerSecond,"
+         + "peakHeapMb,allocatedMb,allocatedKbPerFile";
+
+   /**
+    * Test indexing each size of tree, then check every result against the thresholds.
+    *
+    * @param folder temporary folder the trees and their output are written to
+    *
+    * @throws IOException if a tree cannot be written
+    */
+   @Test
+   void testScale(@TempDir final Path folder) throws IOException {
+      final var sizes = Arrays.stream(System.getProperty("scale.sizes", DEFAULT_SIZES).split(","))
+            .map(String::trim).map(Integer::parseInt).collect(Collectors.toList());
+      final var minFilesPerSecond = Double.parseDouble(System.getProperty("scale.minFilesPerSecond", "200"));
+      final var maxPeakHeapMb = Double.parseDouble(System.getProperty("scale.maxPeakHeapMb", "1024"));
+      final var maxAllocatedKbPerFile = Double.parseDouble(System.getProperty("scale.maxAllocatedKbPerFile", "1024"));
+      final var report = Path.of(System.getProperty("scale.report", "build/reports/scale/results.csv"));
+
+      final var regressions = new ArrayList<String>();
+      for (int size : sizes) {
+         final var result = indexTree(folder, size);
+         log.info("Indexed {}.", result);
+         addToReport(report, result);
+         if (result.filesPerSecond() < minFilesPerSecond) {
+            regressions.add(String.format("%d files: %.0f files per second is below %.0f",
+                  size, result.filesPerSecond(), minFilesPerSecond));
+         }
+         if (result.peakHeapMb() > maxPeakHeapMb) {
+            regressions.add(String.format("%d files: peak heap of %.0f MB is above %.0f MB",
+                  size, result.peakHeapMb(), maxPeakHeapMb));
+         }
+         if (result.allocatedKbPerFile() > maxAllocatedKbPerFile) {
+            regressions.add(String.format("%d files: %.0f KB allocated per file is above %.0f KB",
+                  size, result.allocatedKbPerFile(), maxAllocatedKbPerFile));
+         }
+      }
+      assertTrue(regressions.isEmpty(), String.join("\n", regressions));
+   }
+
+   /**
+    * Generate a tree, index it and measure that, then delete the tree and its output again.
+    *
+    * @param folder temporary folder
+    * @param size   number of markdown files
+    *
+    * @return the measurements
+    *
+    * @throws IOException if the tree cannot be written or deleted
+    */
+   private static Result indexTree(final Path folder, final int size) throws IOException {
+      final var markdown = folder.resolve("markdown-" + size);
+      final var urls = Files.createDirectories(folder.resolve("urls-" + size));
+      final var corpus = SyntheticCorpus.withFiles(size).generate(markdown);
+
+      final var properties = new ApplicationProperties();
+      properties.setPathToMarkdownFiles(markdown.toString());
+      properties.setPathToUrls(urls.toString());
+      properties.setWebappBaseUrl("http://localhost:1313/");
+      properties.setPathToMarkdownFileReplacementSequence("/markdown-file-replacement-sequence.txt");
+      properties.setPathToMarkdownUrlReplacementSequence("/markdown-url-replacement-sequence.txt");
+      properties.setPathToMarkdownHeadingReplacementSequence("/markdown-heading-replacement-sequence.txt");
+      final var indexer = new Indexer(properties);
+
+      final var heap = heapPools();
+      System.gc();
+      heap.forEach(MemoryPoolMXBean::resetPeakUsage);
+      final var allocatedBefore = allocatedBytesByThread();
+      final var start = System.nanoTime();
+      final long allocated;
+      try {
+         indexer.run();
+         allocated = allocatedSince(allocatedBefore);
+      } finally {
+         indexer.close();
+      }
+      final var nanos = System.nanoTime() - start;
+      final var peakHeap = heap.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+
+      try (Stream<Path> written = Files.list(urls)) {
+         assertEquals(corpus.shortcuts(), written.count(), "shortcut files written for " + size + " files");
+      }
+      delete(markdown);
+      delete(urls);
+      return new Result(corpus, nanos, peakHeap, allocated);
+   }
+
+   /**
+    * Memory pools making up the heap.
+    *
+    * @return the pools
+    */
+   private static List<MemoryPoolMXBean> heapPools() {
+      return ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .collect(Collectors.toList());
+   }
+
+   /**
+    * Bytes allocated so far by each live thread.
+    *
+    * @return bytes allocated, keyed by thread ID
+    */
+   private static Map<Long, Long> allocatedBytesByThread() {
+      final var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+      final var ids = threads.getAllThreadIds();
+      final var bytes = threads.getThreadAllocatedBytes(ids);
+      final var byThread = new HashMap<Long, Long>();
+      for (int index = 0; index < ids.length; index++) {
+         byThread.put(ids[index], bytes[index]);
+      }
+      return byThread;
+   }
+
+   /**
+    * Bytes allocated by live threads since an earlier count. Threads that started and finished in between are not
+    * counted, which is why indexing runs sequentially.
+    *
+    * @param before the earlier count
+    *
+    * @return bytes allocated
+    */
+   private static long allocatedSince(final Map<Long, Long> before) {
+      long allocated = 0;
+      for (Map.Entry<Long, Long> thread : allocatedBytesByThread().entrySet()) {
+         allocated += thread.getValue() - before.getOrDefault(thread.getKey(), 0L);
+      }
+      return allocated;
+   }
+
+   /**
+    * Add a result to the CSV report, creating it if need be.
+    *
+    * @param report the report
+    * @param result the result
+    *
+    * @throws IOException if the report cannot be written
+    */
+   private static void addToReport(final Path report, final Result result) throws IOException {
+      final var absolute = report.toAbsolutePath();
+      Files.createDirectories(absolute.getParent());
+      final var lines = new ArrayList<String>();
+      if (!Files.exists(absolute)) {
+         lines.add(REPORT_HEADING);
+      }
+      lines.add(result.toCsv());
+      Files.write(absolute, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+   }
+
+   /**
+    * Delete a folder and everything in it.
+    *
+    * @param folder the folder
+    *
+    * @throws IOException if something cannot be deleted
+    */
+   private static void delete(final Path folder) throws IOException {
+      try (Stream<Path> paths = Files.walk(folder)) {
+         for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+            Files.delete(path);
+         }
+      }
+   }
+
+   /**
+    * Measurements from indexing one tree.
+    *
+    * @param corpus         what the tree contained
+    * @param nanos          time from starting the application to it having written every file and stopped
+    * @param peakHeapBytes  most heap used at any point
+    * @param allocatedBytes memory allocated
+    */
+   private record Result(SyntheticCorpus.Summary corpus, long nanos, long peakHeapBytes, long allocatedBytes) {
+
+      /**
+       * Indexed files per second.
+       *
+       * @return the rate
+       */
+      double filesPerSecond() {
+         return corpus.indexedFiles() * 1e9 / nanos;
+      }
+
+      /**
+       * Most heap used, in MB.
+       *
+       * @return the peak
+       */
+      double peakHeapMb() {
+         return peakHeapBytes / 1e6;
+      }
+
+      /**
+       * Memory allocated per indexed file, in KB.
+       *
+       * @return the allocation
+       */
+      double allocatedKbPerFile() {
+         return allocatedBytes / 1e3 / Math.max(1, corpus.indexedFiles());
+      }
+
+      /**
+       * The result as a line of the CSV report.
+       *
+       * @return the line
+       */
+      String toCsv() {
+         return String.format("%d,%d,%d,%.1f,%d,%.0f,%.0f,%.0f,%.1f", corpus.markdownFiles(), corpus.indexedFiles(),
+               corpus.shortcuts(), corpus.bytes() / 1e6, nanos / 1_000_000, filesPerSecond(), peakHeapMb(),
+               allocatedBytes / 1e6, allocatedKbPerFile());
+      }
+
+      @Override
+      public String toString() {
+         return String.format("%,d files (%,d indexed, %,d shortcuts, %.1f MB) in %,d ms: %.0f files per second, "
+                     + "peak heap %.0f MB, allocated %.0f MB (%.1f KB per file)", corpus.markdownFiles(),
+               corpus.indexedFiles(), corpus.shortcuts(), corpus.bytes() / 1e6, nanos / 1_000_000, filesPerSecond(),
+               peakHeapMb(), allocatedBytes / 1e6, allocatedKbPerFile());
+      }
+
+   }
+
+}
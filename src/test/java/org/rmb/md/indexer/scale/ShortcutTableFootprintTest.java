@@ -0,0 +1,136 @@
+package org.rmb.md.indexer.scale;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.rmb.md.indexer.shortcut.Shortcut;
+import org.rmb.md.indexer.shortcut.ShortcutTable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measure the heap a whole run's shortcuts take, held as a {@link ShortcutTable} and as plain objects in a
+ * {@link LinkedHashMap} keyed by file name, and fail if the table does not save enough.
+ * <p>
+ * Run it with <code>./gradlew scaleTest</code>, in a JVM with room for both. These system properties change what is
+ * measured and what counts as a regression:
+ * <ul>
+ *    <li><code>scale.shortcuts</code> - number of shortcuts, four to each markdown file</li>
+ *    <li><code>scale.maxShortcutTableRatio</code> - most heap the table may take, as a fraction of that of the
+ *    plain objects</li>
+ * </ul>
+ */
+@Tag("scale")
+@Slf4j
+class ShortcutTableFootprintTest {
+
+   /**
+    * Shortcuts made for each markdown file: one for the file and one for each heading.
+    */
+   private static final int SHORTCUTS_PER_FILE = 4;
+
+   /**
+    * Markdown files in each folder.
+    */
+   private static final int FILES_PER_FOLDER = 50;
+
+   /**
+    * Headings used in many files, as "Examples" is in a real site.
+    */
+   private static final String[] COMMON_HEADINGS = {"Examples", "Usage", "See also", "Options", "Notes"};
+
+   /**
+    * Test both ways of holding the shortcuts, then compare the heap each took.
+    */
+   @Test
+   void testFootprint() {
+      final var shortcuts = Integer.parseInt(System.getProperty("scale.shortcuts", "1000000"));
+      final var maxRatio = Double.parseDouble(System.getProperty("scale.maxShortcutTableRatio", "0.5"));
+
+      final var plain = retainedBytes(() -> {
+         final var map = new LinkedHashMap<String, Shortcut>();
+         generate(shortcuts, shortcut -> map.put(shortcut.fileName(), shortcut));
+         assertEquals(shortcuts, map.size());
+         return map;
+      });
+      final var table = retainedBytes(() -> {
+         final var compact = new ShortcutTable();
+         generate(shortcuts, compact::put);
+         assertEquals(shortcuts, compact.size());
+         return compact;
+      });
+
+      final var ratio = (double) table / plain;
+      log.info(String.format("%,d shortcuts: %,.0f MB (%,d bytes each) as objects, %,.0f MB (%,d bytes each) as a "
+                  + "table, %.0f%% of the objects.", shortcuts, plain / 1e6, plain / shortcuts, table / 1e6,
+            table / shortcuts, ratio * 100));
+      assertTrue(ratio <= maxRatio, String.format("table takes %.0f%% of the heap of plain objects, above %.0f%%",
+            ratio * 100, maxRatio * 100));
+   }
+
+   /**
+    * Measure the heap held by something once it is built.
+    *
+    * @param build builds it
+    *
+    * @return bytes of heap still used while it is held, compared to before it was built
+    */
+   private static long retainedBytes(final Supplier<Object> build) {
+      final var before = usedHeap();
+      final var held = build.get();
+      final var after = usedHeap();
+      Reference.reachabilityFence(held);
+      return after - before;
+   }
+
+   /**
+    * Heap in use after collecting garbage.
+    *
+    * @return bytes
+    */
+   private static long usedHeap() {
+      final var memory = ManagementFactory.getMemoryMXBean();
+      for (int collection = 0; collection < 3; collection++) {
+         System.gc();
+      }
+      return memory.getHeapMemoryUsage().getUsed();
+   }
+
+   /**
+    * Make the shortcuts of a Hugo-like site, as {@link org.rmb.md.indexer.shortcut.ShortcutFactory} would: the
+    * shortcuts of one markdown file share its path, every string is built afresh.
+    *
+    * @param count number of shortcuts
+    * @param sink  receives each shortcut
+    */
+   private static void generate(final int count, final Consumer<Shortcut> sink) {
+      final var files = (count + SHORTCUTS_PER_FILE - 1) / SHORTCUTS_PER_FILE;
+      var made = 0;
+      for (int file = 0; file < files && made < count; file++) {
+         final var folder = "section-" + file / FILES_PER_FOLDER % 100 + "/topic-" + file / FILES_PER_FOLDER;
+         final var name = "cheat_tool_" + file;
+         final Path source = Paths.get("/home/notes/hugo/content/" + folder + "/" + name + ".md");
+         final var title = "Hugo - " + folder.replace('/', ' ') + " - cheat - tool " + file;
+         final var url = "http://localhost:1313/" + folder + "/" + name + "/";
+         sink.accept(new Shortcut(title + ".url", url, source, null));
+         made++;
+         for (int heading = 1; heading < SHORTCUTS_PER_FILE && made < count; heading++, made++) {
+            final var text = heading == 1 ? "Installing tool " + file
+                  : COMMON_HEADINGS[(file + heading) % COMMON_HEADINGS.length];
+            // Headings are read from each file, so even common ones are separate strings.
+            sink.accept(new Shortcut(title + " - " + text + ".url", url + "#" + text.toLowerCase().replace(' ', '-'),
+                  source, new String(text)));
+         }
+      }
+   }
+
+}
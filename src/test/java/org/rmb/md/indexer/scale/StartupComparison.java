@@ -0,0 +1,210 @@
+package org.rmb.md.indexer.scale;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compare how long each way of starting the indexer takes to write its first shortcut file, and to finish, on a
+ * synthetic tree. Each mode is started once to warm the file system cache, then timed a number of times; the median
+ * is reported.
+ * <p>
+ * Run it with <code>./gradlew startupComparison</code>, which builds the jars and the class data sharing archive
+ * first. Arguments are the <code>java</code> executable, the executable jar, the fast launcher jar, the class data
+ * sharing archive and the CSV file to write the results to. These system properties change what is run:
+ * <ul>
+ *    <li><code>startup.files</code> - number of markdown files in the tree</li>
+ *    <li><code>startup.runs</code> - number of timed runs of each mode</li>
+ * </ul>
+ */
+public final class StartupComparison {
+
+   /**
+    * Longest a single run may take.
+    */
+   private static final long TIMEOUT_SECONDS = 120;
+
+   /**
+    * Heading of the CSV report.
+    */
+   private static final String REPORT_HEADING = "mode,files,runs,firstOutputMillis,finishedMillis";
+
+   /**
+    * Not instantiated.
+    */
+   private StartupComparison() {
+   }
+
+   /**
+    * Time each mode and report the results.
+    *
+    * @param args <code>java</code>, executable jar, fast launcher jar, class data sharing archive and report file
+    *
+    * @throws IOException          if the tree or the report cannot be written
+    * @throws InterruptedException if interrupted while waiting for a run
+    */
+   public static void main(final String[] args) throws IOException, InterruptedException {
+      if (args.length != 5) {
+         throw new IllegalArgumentException("Expected java, boot jar, fast jar, archive and report; got "
+               + Arrays.toString(args));
+      }
+      final var java = args[0];
+      final var bootJar = Path.of(args[1]).toAbsolutePath().toString();
+      final var fastJar = Path.of(args[2]).toAbsolutePath().toString();
+      final var archive = Path.of(args[3]).toAbsolutePath().toString();
+      final var report = Path.of(args[4]);
+      final var files = Integer.getInteger("startup.files", 200);
+      final var runs = Integer.getInteger("startup.runs", 5);
+
+      final var modes = List.of(
+            new Mode("Spring Boot", List.of(java, "--enable-preview", "-jar", bootJar)),
+            new Mode("fast launcher", List.of(java, "--enable-preview",
+                  "-Dloader.main=org.rmb.md.indexer.FastLauncher", "-jar", bootJar)),
+            new Mode("fast launcher, plain jar", List.of(java, "--enable-preview", "-jar", fastJar)),
+            new Mode("fast launcher, plain jar, AppCDS", List.of(java, "--enable-preview",
+                  "-XX:SharedArchiveFile=" + archive, "-Xshare:auto", "-jar", fastJar)));
+
+      final var folder = Files.createTempDirectory("startup-comparison");
+      try {
+         final var markdown = folder.resolve("markdown");
+         final var urls = folder.resolve("urls");
+         SyntheticCorpus.withFiles(files).generate(markdown);
+         final var lines = new ArrayList<String>();
+         lines.add(REPORT_HEADING);
+         System.out.printf("%-34s %18s %14s%n", "Mode", "First output (ms)", "Finished (ms)");
+         for (Mode mode : modes) {
+            final var command = new ArrayList<>(mode.command());
+            command.add("--application.path-to-markdown-files=" + markdown);
+            command.add("--application.path-to-urls=" + urls);
+            command.add("--application.webapp-base-url=http://localhost:1313/");
+            time(command, folder, urls);
+            final var firstOutput = new ArrayList<Long>();
+            final var finished = new ArrayList<Long>();
+            for (int run = 0; run < runs; run++) {
+               final var timing = time(command, folder, urls);
+               firstOutput.add(timing[0]);
+               finished.add(timing[1]);
+            }
+            System.out.printf("%-34s %18d %14d%n", mode.name(), median(firstOutput), median(finished));
+            lines.add(String.format("%s,%d,%d,%d,%d", mode.name().replace(",", ";"), files, runs,
+                  median(firstOutput), median(finished)));
+         }
+         Files.createDirectories(report.toAbsolutePath().getParent());
+         Files.write(report, lines, StandardCharsets.UTF_8);
+      } finally {
+         delete(folder);
+      }
+   }
+
+   /**
+    * Run the indexer into an empty folder, timing it.
+    *
+    * @param command    command that runs it
+    * @param workingDir folder it runs in, where it writes its logs
+    * @param urls       folder it writes shortcut files to
+    *
+    * @return milliseconds until the first shortcut file appeared, and until the indexer exited
+    *
+    * @throws IOException          if it cannot be started
+    * @throws InterruptedException if interrupted while waiting
+    */
+   private static long[] time(final List<String> command, final Path workingDir, final Path urls)
+         throws IOException, InterruptedException {
+      if (Files.exists(urls)) {
+         delete(urls);
+      }
+      Files.createDirectories(urls);
+      final var start = System.nanoTime();
+      final var process = new ProcessBuilder(command)
+            .directory(workingDir.toFile())
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .start();
+      var firstOutput = -1L;
+      while (firstOutput < 0 && process.isAlive()) {
+         if (hasShortcut(urls)) {
+            firstOutput = System.nanoTime();
+         } else {
+            Thread.sleep(1);
+         }
+      }
+      if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+         process.destroyForcibly();
+         throw new IllegalStateException("Timed out: " + command);
+      }
+      final var finished = System.nanoTime();
+      if (process.exitValue() != 0) {
+         throw new IllegalStateException("Exited with " + process.exitValue() + ": " + command);
+      }
+      if (firstOutput < 0) {
+         if (!hasShortcut(urls)) {
+            throw new IllegalStateException("No shortcut files written: " + command);
+         }
+         firstOutput = finished;
+      }
+      return new long[]{TimeUnit.NANOSECONDS.toMillis(firstOutput - start),
+            TimeUnit.NANOSECONDS.toMillis(finished - start)};
+   }
+
+   /**
+    * Has a shortcut file been written yet?
+    *
+    * @param urls folder shortcut files are written to
+    *
+    * @return true if one has
+    *
+    * @throws IOException if the folder cannot be listed
+    */
+   private static boolean hasShortcut(final Path urls) throws IOException {
+      try (Stream<Path> files = Files.list(urls)) {
+         return files.anyMatch(file -> file.getFileName().toString().endsWith(".url"));
+      }
+   }
+
+   /**
+    * Median of some timings.
+    *
+    * @param millis the timings
+    *
+    * @return the median
+    */
+   private static long median(final List<Long> millis) {
+      final var sorted = new ArrayList<>(millis);
+      Collections.sort(sorted);
+      return sorted.get(sorted.size() / 2);
+   }
+
+   /**
+    * Delete a folder and everything in it.
+    *
+    * @param folder the folder
+    *
+    * @throws IOException if something cannot be deleted
+    */
+   private static void delete(final Path folder) throws IOException {
+      try (Stream<Path> paths = Files.walk(folder)) {
+         for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+            Files.delete(path);
+         }
+      }
+   }
+
+   /**
+    * A way of starting the indexer.
+    *
+    * @param name    name to report it by
+    * @param command command that starts it, without arguments for the indexer
+    */
+   private record Mode(String name, List<String> command) {
+   }
+
+}
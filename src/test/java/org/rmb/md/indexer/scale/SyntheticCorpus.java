@@ -0,0 +1,203 @@
+package org.rmb.md.indexer.scale;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates a tree of markdown files shaped like a Hugo content folder, big enough to see how indexing scales.
+ * <p>
+ * Most files are ones the default rules index: <code>cheat_*.md</code> files, and files in
+ * <code>project-tech-tips</code> folders. The rest are there to be left out: an <code>_index.md</code> in every folder,
+ * editor history in <code>.history</code> folders, files in <code>current-issue</code> folders, <code>*java.md</code>
+ * files and plain notes. Files are spread over folders nested up to {@link #depth()} deep, and each has
+ * {@link #headingsPerFile()} headings over sections of prose, lists and fenced code, with comments in the code that are
+ * not headings. Section lengths vary around {@link #linesPerSection()}, so file sizes vary too. The same settings
+ * always generate the same tree.
+ *
+ * @param files           number of markdown files, not counting the <code>_index.md</code> in each folder
+ * @param depth           how deep folders are nested below the root, at least 1
+ * @param headingsPerFile headings in each file
+ * @param linesPerSection average lines of prose under each heading
+ * @param seed            seed for everything that varies
+ */
+public record SyntheticCorpus(int files, int depth, int headingsPerFile, int linesPerSection, long seed) {
+
+   /**
+    * Markdown files in each folder, not counting its <code>_index.md</code>.
+    */
+   static final int FILES_PER_FOLDER = 25;
+
+   /**
+    * Folders at the top of the tree.
+    */
+   private static final List<String> AREAS = List.of("tech", "work", "home");
+
+   /**
+    * Sub-folders of each folder, at every level but the last.
+    */
+   private static final int FOLDERS_PER_LEVEL = 8;
+
+   /**
+    * Words headings and prose are made of.
+    */
+   private static final List<String> WORDS = List.of("install", "configure", "docker", "git", "branch", "merge",
+         "powershell", "query", "index", "cache", "build", "deploy", "logging", "regex", "Hugo", "Maven", "proxy",
+         "cert", "backup", "restore", "tunnel", "script", "alias", "debug");
+
+   /**
+    * A corpus with typical settings.
+    *
+    * @param files number of markdown files
+    *
+    * @return the corpus
+    */
+   public static SyntheticCorpus withFiles(final int files) {
+      return new SyntheticCorpus(files, 4, 12, 8, 42);
+   }
+
+   /**
+    * Write the tree.
+    *
+    * @param root folder to write it in; created if it does not exist
+    *
+    * @return what was written
+    *
+    * @throws IOException if a file cannot be written
+    */
+   public Summary generate(final Path root) throws IOException {
+      final var random = new Random(seed);
+      final var markdown = new StringBuilder();
+      int folders = 0;
+      int indexedFiles = 0;
+      long bytes = 0;
+      for (int file = 0; file < files; file++) {
+         final var folder = root.resolve(folder(file / FILES_PER_FOLDER));
+         if (file % FILES_PER_FOLDER == 0) {
+            Files.createDirectories(folder);
+            bytes += write(folder.resolve("_index.md"), "---\ntitle: \"Section " + folders + "\"\n---\n");
+            folders++;
+         }
+         final var kind = file % 20;
+         final var name = WORDS.get(file % WORDS.size()).toLowerCase() + "-" + file;
+         final Path path;
+         if (kind < 12) {
+            path = folder.resolve("cheat_" + name + ".md");
+            indexedFiles++;
+         } else if (kind < 15) {
+            path = folder.resolve("project-tech-tips").resolve(name + ".md");
+            indexedFiles++;
+         } else if (kind == 15) {
+            path = folder.resolve(".history").resolve("cheat_" + name + "_20201122101112.md");
+         } else if (kind == 16) {
+            path = folder.resolve("current-issue").resolve("cheat_" + name + ".md");
+         } else if (kind == 17) {
+            path = folder.resolve("cheat_" + name + "_java.md");
+         } else {
+            path = folder.resolve("notes_" + name + ".md");
+         }
+         Files.createDirectories(path.getParent());
+         markdown.setLength(0);
+         appendMarkdown(markdown, name, random);
+         bytes += write(path, markdown);
+      }
+      return new Summary(files + folders, indexedFiles, indexedFiles * (headingsPerFile + 1), bytes);
+   }
+
+   /**
+    * Path of a folder relative to the root. Every folder index gives a different path.
+    *
+    * @param index folder index
+    *
+    * @return the path
+    */
+   private Path folder(final int index) {
+      var path = Path.of(AREAS.get(index % AREAS.size()));
+      var remaining = index / AREAS.size();
+      for (int level = 1; level < depth; level++) {
+         path = path.resolve("topic-" + remaining % FOLDERS_PER_LEVEL);
+         remaining /= FOLDERS_PER_LEVEL;
+      }
+      return path.resolve("group-" + remaining);
+   }
+
+   /**
+    * Append the content of one markdown file.
+    *
+    * @param markdown receives the content
+    * @param name     name the file is about
+    * @param random   source of variation
+    */
+   private void appendMarkdown(final StringBuilder markdown, final String name, final Random random) {
+      markdown.append("---\ntitle: \"").append(name).append("\"\n---\n\n");
+      for (int heading = 0; heading < headingsPerFile; heading++) {
+         markdown.append("#".repeat(2 + random.nextInt(3))).append(' ')
+               .append(capitalise(word(random))).append(' ').append(word(random))
+               .append(" step ").append(heading).append(" (").append(name).append(")\n\n");
+         final var lines = linesPerSection / 2 + random.nextInt(linesPerSection + 1);
+         for (int line = 0; line < lines; line++) {
+            markdown.append("- ").append(capitalise(word(random))).append(" the ").append(word(random))
+                  .append(" with `").append(word(random)).append(" --").append(word(random))
+                  .append("`, see [docs](https://example.com/").append(word(random)).append(").\n");
+         }
+         if (random.nextInt(3) == 0) {
+            markdown.append("\n```bash\n# ").append(word(random)).append(" is not a heading\n")
+                  .append(word(random)).append(" | grep ").append(word(random)).append("\n```\n");
+         }
+         markdown.append('\n');
+      }
+   }
+
+   /**
+    * Pick a word.
+    *
+    * @param random source of variation
+    *
+    * @return the word
+    */
+   private static String word(final Random random) {
+      return WORDS.get(random.nextInt(WORDS.size()));
+   }
+
+   /**
+    * Upper-case the first letter of a word.
+    *
+    * @param word the word
+    *
+    * @return the capitalised word
+    */
+   private static String capitalise(final String word) {
+      return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+   }
+
+   /**
+    * Write a file as UTF-8.
+    *
+    * @param path    the file
+    * @param content its content
+    *
+    * @return bytes written
+    *
+    * @throws IOException if the file cannot be written
+    */
+   private static long write(final Path path, final CharSequence content) throws IOException {
+      final var bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+      Files.write(path, bytes);
+      return bytes.length;
+   }
+
+   /**
+    * What a corpus turned out to contain.
+    *
+    * @param markdownFiles every markdown file written
+    * @param indexedFiles  markdown files the default rules index
+    * @param shortcuts     shortcuts indexing them produces: one per file and one per heading
+    * @param bytes         size of all markdown files together
+    */
+   public record Summary(int markdownFiles, int indexedFiles, int shortcuts, long bytes) {
+   }
+
+}
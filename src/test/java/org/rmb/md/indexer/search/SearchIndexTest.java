@@ -0,0 +1,159 @@
+package org.rmb.md.indexer.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rmb.md.indexer.shortcut.Shortcut;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test writing, reading and searching a search index.
+ */
+class SearchIndexTest {
+
+   /**
+    * Folder the index is written to.
+    */
+   @TempDir
+   Path folder;
+
+   /**
+    * Test every word must match, the last as a prefix, and shorter titles rank first.
+    *
+    * @throws IOException if the index cannot be written or read
+    */
+   @Test
+   void testExactAndPrefix() throws IOException {
+      final var index = SearchIndex.open(writeIndex());
+
+      assertEquals(List.of("cheat git - Reset", "cheat git - Rebase onto main"), titles(index.search("git re", 10)));
+      assertEquals(List.of("cheat git", "cheat git - Reset", "cheat git - Preset", "cheat git - Rebase onto main"),
+            titles(index.search("GIT", 10)));
+      assertEquals(List.of("cheat git"), titles(index.search("git", 1)));
+      assertEquals(List.of("cheat java - Streams"), titles(index.search("stre", 10)));
+      assertEquals(List.of(), titles(index.search("re git", 10)));
+      assertEquals(List.of(), index.search(" - ", 10));
+   }
+
+   /**
+    * Test words with a typo still match, ranked below exact matches.
+    *
+    * @throws IOException if the index cannot be written or read
+    */
+   @Test
+   void testTypos() throws IOException {
+      final var index = SearchIndex.open(writeIndex());
+
+      assertEquals(List.of("cheat java - Streams"), titles(index.search("strams", 10)));
+      assertEquals(List.of("cheat git - Rebase onto main"), titles(index.search("git rbease", 10)));
+      assertEquals(List.of("cheat java", "cheat java - Streams"), titles(index.search("jaav", 10)));
+      assertEquals(List.of(), titles(index.search("gti", 10)), "too short to allow an edit");
+      assertEquals(List.of("cheat git - Reset", "cheat git - Preset"), titles(index.search("reset", 10)));
+   }
+
+   /**
+    * Test an index read into memory holds the same entries as a mapped one, each title once, with the URL and source
+    * of the last shortcut of that name.
+    *
+    * @throws IOException if the index cannot be written or read
+    */
+   @Test
+   void testEntries() throws IOException {
+      final var path = writeIndex();
+      final var mapped = SearchIndex.open(path);
+      final var read = SearchIndex.read(path);
+
+      assertEquals(6, mapped.size());
+      assertEquals(mapped.entries(), read.entries());
+      assertEquals(new SearchEntry("cheat git - Reset", "http://h/git/#reset", "git.md"),
+            read.search("reset", 1).get(0));
+      assertEquals(List.of("cheat git", "cheat git - Preset", "cheat git - Rebase onto main", "cheat git - Reset",
+            "cheat java", "cheat java - Streams"), titles(read.entries()));
+   }
+
+   /**
+    * Test a file that is not an index is rejected.
+    *
+    * @throws IOException if the file cannot be written
+    */
+   @Test
+   void testNotAnIndex() throws IOException {
+      final var path = Files.writeString(folder.resolve("index"), "not an index at all, just some text");
+      assertThrows(IOException.class, () -> SearchIndex.open(path));
+      assertThrows(IOException.class, () -> SearchIndex.read(path));
+   }
+
+   /**
+    * Test titles are split into lower case words.
+    */
+   @Test
+   void testTerms() {
+      assertEquals(Set.of("cheat", "git", "rebase", "onto", "main2"),
+            SearchIndex.terms("cheat git - Rebase ONTO main2 - git"));
+      assertTrue(SearchIndex.terms(" - ").isEmpty());
+   }
+
+   /**
+    * Test counting edits, including swapped characters.
+    */
+   @Test
+   void testWithinEdits() {
+      assertTrue(SearchIndex.withinEdits("rebase", "rebase", 0));
+      assertTrue(SearchIndex.withinEdits("rbease", "rebase", 1));
+      assertTrue(SearchIndex.withinEdits("rebse", "rebase", 1));
+      assertTrue(SearchIndex.withinEdits("rebasse", "rebase", 1));
+      assertTrue(SearchIndex.withinEdits("rebaze", "rebase", 1));
+      assertFalse(SearchIndex.withinEdits("rbeaze", "rebase", 1));
+      assertTrue(SearchIndex.withinEdits("rbeaze", "rebase", 2));
+      assertFalse(SearchIndex.withinEdits("reb", "rebase", 2));
+   }
+
+   /**
+    * Write an index of a few shortcuts, one of them twice.
+    *
+    * @return the index file
+    *
+    * @throws IOException if it cannot be written
+    */
+   private Path writeIndex() throws IOException {
+      final var builder = new SearchIndexBuilder();
+      final var git = Path.of("git.md");
+      final var java = Path.of("java.md");
+      builder.add(SearchEntry.of(new Shortcut("Hugo - cheat git.url", "http://h/git/", git, null)));
+      builder.add(SearchEntry.of(new Shortcut("Hugo - cheat git - Reset.url", "http://h/git/#old", git, "## Reset")));
+      builder.add(SearchEntry.of(new Shortcut("Hugo - cheat git - Rebase onto main.url",
+            "http://h/git/#rebase-onto-main", git, "## Rebase onto main")));
+      builder.add(SearchEntry.of(new Shortcut("Hugo - cheat git - Reset.url", "http://h/git/#reset", git, "## Reset")));
+      builder.add(SearchEntry.of(new Shortcut("Hugo - cheat git - Preset.url", "http://h/git/#preset", git,
+            "## Preset")));
+      builder.add(SearchEntry.of(new Shortcut("Hugo - cheat java.url", "http://h/java/", java, null)));
+      builder.add(SearchEntry.of(new Shortcut("Hugo - cheat java - Streams.url", "http://h/java/#streams", java,
+            "## Streams")));
+      assertEquals(6, builder.size());
+      final var path = folder.resolve("search-index");
+      builder.write(path);
+      return path;
+   }
+
+   /**
+    * Titles of some entries.
+    *
+    * @param entries the entries
+    *
+    * @return their titles, in the same order
+    */
+   private static List<String> titles(final List<SearchEntry> entries) {
+      return entries.stream().map(SearchEntry::title).collect(Collectors.toList());
+   }
+
+}
@@ -0,0 +1,178 @@
+package org.rmb.md.indexer.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test writing, updating and searching a full-text index.
+ */
+class TextIndexTest {
+
+   /**
+    * Folder the index is written to.
+    */
+   @TempDir
+   Path folder;
+
+   /**
+    * Test words in section text find the section's URL, every word must match, and the last may be a prefix.
+    *
+    * @throws IOException if the index cannot be written or read
+    */
+   @Test
+   void testSearch() throws IOException {
+      TextIndex.rebuild(folder, List.of(
+            section("git", "", "Notes on git."),
+            section("git", "rebase", "Use git rebase --interactive to squash commits. Squash squash."),
+            section("git", "reset", "Use git reset --hard to throw away commits."),
+            section("java", "streams", "Collectors group a stream. Squash " + "x".repeat(100) + " here.")));
+      final var index = TextIndex.open(folder);
+
+      assertEquals(4, index.size());
+      assertEquals(List.of("git.html#reset", "git.html#rebase"), urls(index.search("commits", 10)),
+            "shorter sections rank higher");
+      assertEquals(List.of("git.html#rebase", "java.html#streams"), urls(index.search("squash", 10)),
+            "more occurrences rank higher");
+      assertEquals(List.of("git.html#reset"), urls(index.search("throw comm", 10)));
+      assertEquals(List.of(), urls(index.search("comm throw", 10)), "only the last word may be a prefix");
+      assertEquals(List.of("git.html"), urls(index.search("notes", 10)));
+      assertEquals(List.of("java.html#streams"), urls(index.search("collectors", 10)));
+      assertEquals(List.of(), urls(index.search("collectors reset", 10)));
+      assertEquals(List.of(), urls(index.search("x".repeat(100), 10)), "long terms are not indexed");
+      assertEquals(List.of(), index.search(" - ", 10));
+   }
+
+   /**
+    * Test an update deletes the sections of changed and deleted files without changing existing segments.
+    *
+    * @throws IOException if the index cannot be written or read
+    */
+   @Test
+   void testUpdate() throws IOException {
+      TextIndex.rebuild(folder, List.of(
+            section("git", "rebase", "Squash commits."),
+            section("java", "streams", "Collectors."),
+            section("bash", "loops", "For loops.")));
+      final var firstSegment = segmentFiles().get(0);
+      final var firstBytes = Files.readAllBytes(firstSegment);
+
+      final var live = Set.of("git.md", "java.md");
+      TextIndex.update(folder, source -> live.contains(source) && !source.equals("git.md"),
+            List.of(section("git", "fixup", "Fixup commits.")));
+      final var index = TextIndex.open(folder);
+
+      assertEquals(2, index.size());
+      assertEquals(2, index.segmentCount());
+      assertEquals(List.of("git.html#fixup"), urls(index.search("commits", 10)));
+      assertEquals(List.of(), urls(index.search("loops", 10)));
+      assertEquals(List.of("java.html#streams"), urls(index.search("collectors", 10)));
+      assertArrayEquals(firstBytes, Files.readAllBytes(firstSegment));
+      assertTrue(Files.readString(folder.resolve(TextIndex.COMMIT_FILE_NAME)).contains("\tgit.md\n"));
+   }
+
+   /**
+    * Test many small updates are merged, unused segment files are deleted, and nothing is lost.
+    *
+    * @throws IOException if the index cannot be written or read
+    */
+   @Test
+   void testMerge() throws IOException {
+      final var sections = new ArrayList<TextSection>();
+      for (int file = 0; file < 20; file++) {
+         sections.add(section("file" + file, "", "version zero of file " + file));
+      }
+      TextIndex.rebuild(folder, sections);
+      for (int update = 1; update <= 30; update++) {
+         final var changed = "file" + update % 20 + ".md";
+         TextIndex.update(folder, source -> !source.equals(changed),
+               List.of(section("file" + update % 20, "", "version v" + update + " of file " + update % 20)));
+         final var index = TextIndex.open(folder);
+         assertTrue(index.segmentCount() <= TextIndex.MAX_SEGMENTS, "segments after update " + update);
+         assertEquals(20, index.size());
+         assertEquals(index.segmentCount(), segmentFiles().size());
+      }
+      final var index = TextIndex.open(folder);
+      assertEquals(List.of("file3.html"), urls(index.search("v23 version", 10)));
+      assertEquals(List.of(), urls(index.search("v3 version", 10)), "replaced by v23");
+      assertEquals(List.of("file19.html"), urls(index.search("v19 file", 10)));
+   }
+
+   /**
+    * Test there is no index until one is written, and a rebuild replaces everything.
+    *
+    * @throws IOException if the index cannot be written or read
+    */
+   @Test
+   void testRebuild() throws IOException {
+      assertFalse(TextIndex.exists(folder));
+      assertThrows(IOException.class, () -> TextIndex.open(folder));
+      assertThrows(IOException.class, () -> TextIndex.update(folder, source -> true, List.of()));
+
+      TextIndex.rebuild(folder, List.of(section("git", "", "one")));
+      TextIndex.update(folder, source -> true, List.of(section("java", "", "two")));
+      TextIndex.rebuild(folder, List.of(section("bash", "", "three")));
+
+      assertTrue(TextIndex.exists(folder));
+      final var index = TextIndex.open(folder);
+      assertEquals(1, index.size());
+      assertEquals(List.of(), urls(index.search("one", 10)));
+      assertEquals(List.of("bash.html"), urls(index.search("three", 10)));
+      assertEquals(1, segmentFiles().size());
+   }
+
+   /**
+    * A section of a markdown file.
+    *
+    * @param file    name of the file, without extension
+    * @param heading anchor of the heading, or empty for the text before the first heading
+    * @param text    the text
+    *
+    * @return the section
+    */
+   private static TextSection section(final String file, final String heading, final String text) {
+      final var url = heading.isEmpty() ? file + ".html" : file + ".html#" + heading;
+      final var title = heading.isEmpty() ? file : file + " - " + heading;
+      return new TextSection(new SearchEntry(title, url, file + ".md"), text);
+   }
+
+   /**
+    * URLs of some entries.
+    *
+    * @param entries the entries
+    *
+    * @return their URLs, in the same order
+    */
+   private static List<String> urls(final List<SearchEntry> entries) {
+      return entries.stream().map(SearchEntry::url).collect(Collectors.toList());
+   }
+
+   /**
+    * The segment files in the index folder.
+    *
+    * @return the files, sorted by name
+    *
+    * @throws IOException if the folder cannot be listed
+    */
+   private List<Path> segmentFiles() throws IOException {
+      try (Stream<Path> files = Files.list(folder)) {
+         return files.filter(file -> file.getFileName().toString().endsWith(".seg")).sorted()
+               .collect(Collectors.toList());
+      }
+   }
+
+}
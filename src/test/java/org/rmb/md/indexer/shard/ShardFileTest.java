@@ -0,0 +1,99 @@
+package org.rmb.md.indexer.shard;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rmb.md.indexer.shortcut.Shortcut;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test staging the results of a shard and reading them back.
+ */
+class ShardFileTest {
+
+   /**
+    * Fingerprint of the configuration.
+    */
+   private static final String FINGERPRINT = "a".repeat(64);
+
+   /**
+    * Fingerprint of the files found.
+    */
+   private static final String LISTING = "b".repeat(64);
+
+   /**
+    * Folder for shard files.
+    */
+   @TempDir
+   Path folder;
+
+   /**
+    * Test files survive being written and read back, with and without their text.
+    *
+    * @throws IOException if the shard cannot be written
+    */
+   @Test
+   void testRoundTrip() throws IOException {
+      final var source = Paths.get("/notes/cheat_git/index.md");
+      final var withText = new ShardFile.Entry(0, 3, List.of(
+            new Shortcut("Hugo - cheat - git.url", "http://host/cheat/git/", source, null),
+            new Shortcut("Hugo - cheat - git - Caf\u00e9.url", "http://host/cheat/git/#caf\u00e9", source,
+                  "Caf\u00e9")),
+            List.of("Intro\n", "Tabs\tand\nlines\n"));
+      final var withoutText = new ShardFile.Entry(1, 7, List.of(
+            new Shortcut("Hugo - notes.url", "http://host/notes/", Paths.get("/work/notes.md"), null)), List.of());
+      final var path = folder.resolve("shard-1-of-2");
+      try (ShardFile.Writer writer = new ShardFile.Writer(path, new ShardSpec(1, 2), FINGERPRINT)) {
+         writer.add(withText);
+         writer.add(withoutText);
+         writer.commit(LISTING);
+      }
+
+      try (ShardFile.Reader reader = new ShardFile.Reader(path)) {
+         assertEquals(new ShardSpec(1, 2), reader.shard());
+         assertEquals(FINGERPRINT, reader.fingerprint());
+         assertEquals(LISTING, reader.listing());
+         assertEquals(Optional.of(withText), reader.next());
+         assertEquals(Optional.of(withoutText), reader.next());
+         assertEquals(Optional.empty(), reader.next());
+      }
+   }
+
+   /**
+    * Test a shard that is never committed leaves nothing behind.
+    *
+    * @throws IOException if the shard cannot be written
+    */
+   @Test
+   void testUncommitted() throws IOException {
+      final var path = folder.resolve("shard-0-of-1");
+      try (ShardFile.Writer writer = new ShardFile.Writer(path, new ShardSpec(0, 1), FINGERPRINT)) {
+         writer.add(new ShardFile.Entry(0, 0, List.of(), List.of()));
+      }
+      assertFalse(Files.exists(path));
+      try (var files = Files.list(folder)) {
+         assertEquals(0, files.count());
+      }
+   }
+
+   /**
+    * Test a file that is not a shard is refused.
+    *
+    * @throws IOException if the file cannot be written
+    */
+   @Test
+   void testNotAShard() throws IOException {
+      final var path = Files.writeString(folder.resolve("shard-0-of-1"), "# Not a shard\n");
+      assertThrows(IOException.class, () -> new ShardFile.Reader(path));
+   }
+
+}
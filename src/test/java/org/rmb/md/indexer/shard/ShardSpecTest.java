@@ -0,0 +1,52 @@
+package org.rmb.md.indexer.shard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test naming shards and sharing files out between them.
+ */
+class ShardSpecTest {
+
+   /**
+    * Test a shard is parsed from, and shown as, its number and count.
+    */
+   @Test
+   void testParse() {
+      final var shard = ShardSpec.parse("2/4");
+      assertEquals(new ShardSpec(2, 4), shard);
+      assertEquals("2/4", shard.toString());
+      assertEquals("shard-2-of-4", shard.fileName());
+   }
+
+   /**
+    * Test shards that do not exist are refused.
+    */
+   @Test
+   void testInvalid() {
+      assertThrows(IllegalArgumentException.class, () -> ShardSpec.parse("4/4"));
+      assertThrows(IllegalArgumentException.class, () -> ShardSpec.parse("-1/4"));
+      assertThrows(IllegalArgumentException.class, () -> ShardSpec.parse("0/0"));
+      assertThrows(IllegalArgumentException.class, () -> ShardSpec.parse("1"));
+      assertThrows(IllegalArgumentException.class, () -> ShardSpec.parse("a/b"));
+   }
+
+   /**
+    * Test every file belongs to exactly one shard.
+    */
+   @Test
+   void testOwns() {
+      final var shards = List.of(new ShardSpec(0, 3), new ShardSpec(1, 3), new ShardSpec(2, 3));
+      for (String key : List.of("default:cheat_git/index.md", "default:cheat_java.md", "work:a/b/c.md", "")) {
+         assertEquals(1, shards.stream().filter(shard -> shard.owns(key)).count(), key);
+         assertTrue(shards.get(ShardSpec.shardOf(key, 3)).owns(key));
+      }
+      assertTrue(new ShardSpec(0, 1).owns("anything"));
+   }
+
+}
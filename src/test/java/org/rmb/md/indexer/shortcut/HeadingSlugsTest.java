@@ -0,0 +1,192 @@
+package org.rmb.md.indexer.shortcut;
+
+import org.junit.jupiter.api.Test;
+import org.rmb.md.indexer.regex.Replacement;
+import org.rmb.md.indexer.regex.ReplacementSequence;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test turning headings into shortcut file names and anchors.
+ */
+class HeadingSlugsTest {
+
+   /**
+    * Headings of the sort found in cheat sheets.
+    */
+   private static final List<String> HEADINGS = List.of(
+         "Install", "Rebase onto main", "  Padded heading\t", "Java 15 - records", "C++ / Java", "What's new?",
+         "Foo_bar & Baz", "--double--hyphen--", "\u00dcber \u00e7a", "\u0130stanbul \u212aelvin",
+         "emoji \ud83d\ude00 here", "tab\tinside", "", " ", "123", "MiXeD CaSe");
+
+   /**
+    * Test legacy anchors and file names are the same as the regular expressions they replace, for every character on
+    * its own, some real headings and a lot of random ones.
+    */
+   @Test
+   void testLegacyMatchesRegularExpressions() {
+      final var slugs = new HeadingSlugs(AnchorStyle.LEGACY);
+      for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++) {
+         assertLegacy(slugs, "a" + (char) c + "b");
+         assertLegacy(slugs, String.valueOf((char) c));
+      }
+      HEADINGS.forEach(heading -> assertLegacy(slugs, heading));
+
+      final var random = new Random(17);
+      final var alphabet = "aZ9- _\t#&.\u00e9\u0130\u212a\u00a0\ud83d\ude00";
+      for (int count = 0; count < 10_000; count++) {
+         final var heading = new StringBuilder();
+         for (int length = random.nextInt(20); length > 0; length--) {
+            heading.append(alphabet.charAt(random.nextInt(alphabet.length())));
+         }
+         assertLegacy(slugs, heading.toString());
+      }
+   }
+
+   /**
+    * Test Hugo anchors for headings that need more than lower casing.
+    */
+   @Test
+   void testHugoAnchors() {
+      assertEquals(List.of("install", "rebase-onto-main", "padded-heading", "java-15---records", "c--java",
+            "whats-new", "foo_bar--baz", "--double--hyphen--", "\u00fcber-\u00e7a", "istanbul-kelvin",
+            "emoji--here", "tabinside", "heading", "heading-1", "123", "mixed-case"),
+            anchors(AnchorStyle.HUGO, HEADINGS));
+   }
+
+   /**
+    * Test Hugo numbers duplicate anchors, skipping numbers already taken by other headings.
+    */
+   @Test
+   void testHugoDuplicates() {
+      assertEquals(List.of("same", "same-1", "same-1-1", "same-2", "other"),
+            anchors(AnchorStyle.HUGO, List.of("Same", "Same", "Same-1", "same", "Other")));
+      assertEquals(List.of("same", "same", "same-1", "same", "other"),
+            anchors(AnchorStyle.LEGACY, List.of("Same", "Same", "Same-1", "same", "Other")));
+   }
+
+   /**
+    * Test Hugo and legacy anchors are the same for distinct headings made of ASCII letters, digits, spaces and hyphens,
+    * so those links don't change.
+    */
+   @Test
+   void testHugoMatchesLegacyForPlainHeadings() {
+      final var plain = List.of("Install", "Rebase onto main", "Java 15 - records", "123", "MiXeD CaSe", "a-b c");
+      assertEquals(anchors(AnchorStyle.LEGACY, plain), anchors(AnchorStyle.HUGO, plain));
+   }
+
+   /**
+    * Test the factory numbers duplicate headings within a file, but not across files.
+    */
+   @Test
+   void testFactoryAnchors() {
+      final var headings = new ReplacementSequence(List.of(new Replacement("^#+\\s+(\\S.*)$", "$1")));
+      final var name = new ReplacementSequence(List.of(new Replacement("^.*[\\\\/]", "")));
+      final var lines = List.of("# Title", "## Usage", "text", "## Usage", "### Usage");
+
+      final var hugo = new ShortcutFactory("root", "http://h/", name, name, headings,
+            ShortcutOptions.defaults().withAnchorStyle(AnchorStyle.HUGO));
+      for (int run = 0; run < 2; run++) {
+         assertEquals(List.of("http://h/page.html", "http://h/page.html#title", "http://h/page.html#usage",
+               "http://h/page.html#usage-1", "http://h/page.html#usage-2"),
+               urls(hugo.createShortcuts(Path.of("page"), lines)));
+      }
+      final var legacy = new ShortcutFactory("root", "http://h/", name, name, headings,
+            ShortcutOptions.defaults().withAnchorStyle(AnchorStyle.LEGACY));
+      assertEquals(List.of("http://h/page.html", "http://h/page.html#title", "http://h/page.html#usage",
+            "http://h/page.html#usage", "http://h/page.html#usage"),
+            urls(legacy.createShortcuts(Path.of("page"), lines)));
+      assertEquals("Hugo - page - Usage.url", legacy.createShortcuts(Path.of("page"), lines).get(2).fileName());
+   }
+
+   /**
+    * Test a heading line that gets no shortcut still takes its anchor, as Hugo gives it one, so that a later heading
+    * with the same text is numbered as in Hugo. Lines that are not headings take nothing.
+    */
+   @Test
+   void testHugoSkippedHeadings() {
+      final var slugs = new HeadingSlugs(AnchorStyle.HUGO);
+      slugs.skip("# Notes");
+      slugs.skip("## Usage ##");
+      slugs.skip("#hashtag");
+      slugs.skip("####### Too deep");
+      slugs.skip("#");
+      assertEquals(List.of("notes-1", "usage-1", "hashtag", "too-deep", "heading-1"),
+            anchors(slugs, List.of("Notes", "Usage", "hashtag", "Too deep", "")));
+
+      final var legacy = new HeadingSlugs(AnchorStyle.LEGACY);
+      legacy.skip("# Notes");
+      assertEquals("notes", legacy.anchor("Notes"));
+   }
+
+   /**
+    * Test the factory numbers a heading after one with the same text that the heading sequence blanked out, as Hugo
+    * does: the shipped sequence blanks every first level heading, but Hugo still gives it an anchor.
+    */
+   @Test
+   void testFactoryAnchorsAfterBlankedHeading() {
+      final var headings = new ReplacementSequence(List.of(new Replacement("^# .*", ""),
+            new Replacement("^#+\\s+(\\S.*)$", "$1")));
+      final var name = new ReplacementSequence(List.of(new Replacement("^.*[\\\\/]", "")));
+      final var factory = new ShortcutFactory("root", "http://h/", name, name, headings,
+            ShortcutOptions.defaults().withAnchorStyle(AnchorStyle.HUGO));
+
+      assertEquals(List.of("http://h/page.html", "http://h/page.html#notes-1", "http://h/page.html#notes-2"),
+            urls(factory.createShortcuts(Path.of("page"), List.of("# Notes", "## Notes", "text", "## Notes"))));
+   }
+
+   /**
+    * Assert a legacy anchor and file name are the same as the regular expressions they replace.
+    *
+    * @param slugs   legacy slugs
+    * @param heading the heading
+    */
+   private static void assertLegacy(final HeadingSlugs slugs, final String heading) {
+      assertEquals(heading.trim().replaceAll(" ", "-").toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9-]", ""),
+            slugs.anchor(heading), heading);
+      assertEquals("Hugo - f - " + heading.replaceAll("[^a-zA-Z0-9- ]", "") + ".url",
+            slugs.fileName("Hugo - f.url", heading), heading);
+   }
+
+   /**
+    * Anchors for the headings of one file.
+    *
+    * @param style    anchor style
+    * @param headings the headings, in order
+    *
+    * @return their anchors
+    */
+   private static List<String> anchors(final AnchorStyle style, final List<String> headings) {
+      return anchors(new HeadingSlugs(style), headings);
+   }
+
+   /**
+    * Anchors for more headings of one file.
+    *
+    * @param slugs    slugs for the file, given its earlier headings
+    * @param headings the headings, in order
+    *
+    * @return their anchors
+    */
+   private static List<String> anchors(final HeadingSlugs slugs, final List<String> headings) {
+      return headings.stream().map(slugs::anchor).collect(Collectors.toList());
+   }
+
+   /**
+    * URLs of some shortcuts.
+    *
+    * @param shortcuts the shortcuts
+    *
+    * @return their URLs, in the same order
+    */
+   private static List<String> urls(final List<Shortcut> shortcuts) {
+      return shortcuts.stream().map(Shortcut::url).collect(Collectors.toList());
+   }
+
+}
@@ -0,0 +1,33 @@
+package org.rmb.md.indexer.shortcut;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test noticing shortcuts written to the same file.
+ */
+class ShortcutCollisionsTest {
+
+   /**
+    * Test a different shortcut with a claimed file name collides with the latest claim, and the same shortcut again
+    * does not.
+    */
+   @Test
+   void testClaim() {
+      final var collisions = new ShortcutCollisions();
+      final var docs = new Shortcut("Hugo - a.url", "http://docs/a.html", Path.of("docs", "a.md"), null);
+      final var notes = new Shortcut("Hugo - a.url", "http://notes/a.html", Path.of("notes", "a.md"), null);
+      final var other = new Shortcut("Hugo - b.url", "http://docs/b.html", Path.of("docs", "b.md"), null);
+
+      assertEquals(Optional.empty(), collisions.claim("docs", docs));
+      assertEquals(Optional.empty(), collisions.claim("docs", other));
+      assertEquals(Optional.empty(), collisions.claim("docs", docs));
+      assertEquals(Optional.of(new ShortcutCollisions.Claim("docs", docs)), collisions.claim("notes", notes));
+      assertEquals(Optional.of(new ShortcutCollisions.Claim("notes", notes)), collisions.claim("docs", docs));
+   }
+
+}
@@ -0,0 +1,124 @@
+package org.rmb.md.indexer.shortcut;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test holding shortcuts compactly.
+ */
+class ShortcutTableTest {
+
+   /**
+    * Test shortcuts come back as they went in, including file shortcuts, fragments, non-ASCII text and relative
+    * sources.
+    */
+   @Test
+   void testRoundTrip() {
+      final var shortcuts = List.of(
+            new Shortcut("Hugo - cheat - git.url", "http://localhost:1313/cheat/git/",
+                  Paths.get("/notes/cheat_git/index.md"), null),
+            new Shortcut("Hugo - cheat - git - Rebase.url", "http://localhost:1313/cheat/git/#rebase",
+                  Paths.get("/notes/cheat_git/index.md"), "Rebase"),
+            new Shortcut("Hugo - caf\u00e9 - \u00dcbersicht.url", "http://localhost:1313/caf\u00e9.html#\u00fcbersicht",
+                  Paths.get("notes/cafe.md"), "\u00dcbersicht"),
+            new Shortcut("Hugo - no slash.url", "no-slash#fragment", Paths.get("top.md"), "Examples"),
+            new Shortcut("Hugo - long.url", "http://h/" + "x".repeat(70_000), Paths.get("/long.md"), "Examples"));
+      final var table = new ShortcutTable();
+      shortcuts.forEach(table::put);
+
+      assertEquals(shortcuts.size(), table.size());
+      final var read = new ArrayList<Shortcut>();
+      table.forEach(read::add);
+      assertEquals(shortcuts, read);
+      assertEquals(2, table.indexOf("Hugo - caf\u00e9 - \u00dcbersicht.url"));
+      assertEquals(-1, table.indexOf("Hugo - missing.url"));
+   }
+
+   /**
+    * Test a shortcut with a file name already in the table replaces the earlier one in its place.
+    */
+   @Test
+   void testReplace() {
+      final var table = new ShortcutTable();
+      final var first = new Shortcut("Hugo - a.url", "http://h/a/", Paths.get("/a.md"), null);
+      final var second = new Shortcut("Hugo - b.url", "http://h/b/", Paths.get("/b.md"), null);
+      final var replacement = new Shortcut("Hugo - a.url", "http://h/other/a/#a", Paths.get("/other/a.md"), "A");
+      assertEquals(0, table.put(first));
+      assertEquals(1, table.put(second));
+      assertEquals(0, table.put(replacement));
+
+      assertEquals(2, table.size());
+      assertEquals(replacement, table.get(0));
+      assertEquals(second, table.get(1));
+   }
+
+   /**
+    * Test entries are sorted by file name, and many entries are kept apart.
+    */
+   @Test
+   void testSorted() {
+      final var table = new ShortcutTable();
+      final var names = new ArrayList<String>();
+      for (int index = 0; index < 10_000; index++) {
+         final var name = "Hugo - " + Integer.toString(index * 7919 % 10_007, 36) + ".url";
+         names.add(name);
+         table.put(new Shortcut(name, "http://h/" + index + "/", Paths.get("/notes/" + index + ".md"), null));
+      }
+      assertEquals(names.size(), table.size());
+      final var sorted = Arrays.stream(table.sortedByFileName()).mapToObj(table::fileName)
+            .collect(Collectors.toList());
+      assertEquals(names.stream().sorted().collect(Collectors.toList()), sorted);
+      assertEquals(names.size(), Set.copyOf(sorted).size());
+   }
+
+   /**
+    * Test file names that start with the first file name of their source are found, told apart and sorted like any
+    * other.
+    */
+   @Test
+   void testSharedPrefixes() {
+      final var source = Paths.get("/notes/cheat_git/index.md");
+      final var names = List.of("Hugo - cheat - git.url", "Hugo - cheat - git - Rebase.url",
+            "Hugo - cheat - git - Branches.url", "Hugo - cheat - gi.url", "Hugo - cheat - git - Rebase - More.url");
+      final var table = new ShortcutTable();
+      names.forEach(name -> table.put(new Shortcut(name, "http://h/cheat/git/#" + name.length(), source, name)));
+      table.put(new Shortcut("Hugo - cheat - git - A.url", "http://h/other/", Paths.get("/other.md"), null));
+
+      for (int index = 0; index < names.size(); index++) {
+         assertEquals(index, table.indexOf(names.get(index)));
+         assertEquals(names.get(index), table.fileName(index));
+      }
+      assertEquals(-1, table.indexOf("Hugo - cheat - git - Rebas.url"));
+      assertEquals(-1, table.indexOf("Hugo - cheat - git"));
+      final var sorted = Arrays.stream(table.sortedByFileName()).mapToObj(table::fileName)
+            .collect(Collectors.toList());
+      assertEquals(List.of("Hugo - cheat - gi.url", "Hugo - cheat - git - A.url", "Hugo - cheat - git - Branches.url",
+            "Hugo - cheat - git - Rebase - More.url", "Hugo - cheat - git - Rebase.url", "Hugo - cheat - git.url"),
+            sorted);
+   }
+
+   /**
+    * Test the set of file names looks names up in the table.
+    */
+   @Test
+   void testFileNames() {
+      final var table = new ShortcutTable();
+      table.put(new Shortcut("Hugo - a.url", "http://h/a/", Paths.get("/a.md"), null));
+      table.put(new Shortcut("Hugo - b.url", "http://h/b/", Paths.get("/b.md"), null));
+      final var fileNames = table.fileNames();
+      assertEquals(Set.of("Hugo - a.url", "Hugo - b.url"), fileNames);
+      assertTrue(fileNames.contains("Hugo - b.url"));
+      assertFalse(fileNames.contains("Hugo - c.url"));
+   }
+
+}
@@ -0,0 +1,156 @@
+package org.rmb.md.indexer.source;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rmb.md.indexer.manifest.GitCheckpoint;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Test asking git what changed in a folder. Skipped if git is not installed.
+ */
+class GitRepositoryTest {
+
+   /**
+    * Work tree of the repository.
+    */
+   @TempDir
+   Path workTree;
+
+   /**
+    * Folder of markdown files inside the work tree.
+    */
+   private Path notes;
+
+   /**
+    * Create a repository with two committed markdown files in a sub-folder, and one outside it.
+    *
+    * @throws IOException          if the files cannot be written
+    * @throws InterruptedException if interrupted waiting for git
+    */
+   @BeforeEach
+   void createRepository() throws IOException, InterruptedException {
+      assumeTrue(git(workTree, "init", "-q"), "git is not installed");
+      notes = Files.createDirectories(workTree.resolve("notes"));
+      Files.writeString(notes.resolve("cheat_git.md"), "# Git\n");
+      Files.createDirectories(notes.resolve("java"));
+      Files.writeString(notes.resolve("java/cheat_java.md"), "# Java\n");
+      Files.writeString(workTree.resolve("readme.md"), "# Readme\n");
+      Files.writeString(workTree.resolve(".gitignore"), "*.tmp\n");
+      commit();
+   }
+
+   /**
+    * Test a checkpoint of a clean work tree has no uncommitted files, and nothing changed since it.
+    */
+   @Test
+   void testClean() {
+      final var repository = new GitRepository(notes);
+      final var checkpoint = repository.checkpoint().orElseThrow();
+      assertEquals(List.of(), checkpoint.uncommitted());
+      assertEquals(Optional.of(Set.of()), repository.changedSince(checkpoint, checkpoint));
+   }
+
+   /**
+    * Test changed, deleted, renamed and untracked files in the folder are found, but not ignored files or files
+    * outside the folder.
+    *
+    * @throws IOException          if the files cannot be written
+    * @throws InterruptedException if interrupted waiting for git
+    */
+   @Test
+   void testUncommitted() throws IOException, InterruptedException {
+      Files.writeString(notes.resolve("cheat_git.md"), "# Git\n## Rebase\n");
+      Files.move(notes.resolve("java/cheat_java.md"), notes.resolve("java/cheat_jvm.md"));
+      Files.writeString(notes.resolve("cheat_new.md"), "# New\n");
+      Files.writeString(notes.resolve("cheat_draft.tmp"), "# Draft\n");
+      Files.writeString(workTree.resolve("readme.md"), "# Changed\n");
+      assertTrue(git(workTree, "add", "notes/java/cheat_jvm.md"));
+
+      final var checkpoint = new GitRepository(notes).checkpoint().orElseThrow();
+      assertEquals(List.of("cheat_git.md", "cheat_new.md", "java/cheat_java.md", "java/cheat_jvm.md"),
+            checkpoint.uncommitted());
+   }
+
+   /**
+    * Test files changed by commits since a checkpoint are found, as well as files that were uncommitted at the
+    * checkpoint, even if they have since been put back as they were.
+    *
+    * @throws IOException          if the files cannot be written
+    * @throws InterruptedException if interrupted waiting for git
+    */
+   @Test
+   void testCommitted() throws IOException, InterruptedException {
+      final var repository = new GitRepository(notes);
+      Files.writeString(notes.resolve("cheat_git.md"), "# Git\n## Draft\n");
+      final var previous = repository.checkpoint().orElseThrow();
+      Files.writeString(notes.resolve("cheat_git.md"), "# Git\n");
+      Files.delete(notes.resolve("java/cheat_java.md"));
+      Files.writeString(notes.resolve("cheat_new.md"), "# New\n");
+      commit();
+
+      final var current = repository.checkpoint().orElseThrow();
+      assertEquals(List.of(), current.uncommitted());
+      assertEquals(Optional.of(Set.of("cheat_git.md", "cheat_new.md", "java/cheat_java.md")),
+            repository.changedSince(previous, current));
+   }
+
+   /**
+    * Test git cannot say what changed since a commit it does not have, or in a folder outside a work tree.
+    *
+    * @param outside a folder outside any work tree
+    */
+   @Test
+   void testUntrusted(@TempDir final Path outside) {
+      final var repository = new GitRepository(notes);
+      final var current = repository.checkpoint().orElseThrow();
+      final var unknown = new GitCheckpoint("0123456789012345678901234567890123456789", List.of());
+      assertTrue(repository.changedSince(unknown, current).isEmpty());
+      assertTrue(new GitRepository(outside).checkpoint().isEmpty());
+   }
+
+   /**
+    * Commit everything in the work tree.
+    *
+    * @throws IOException          if git cannot be run
+    * @throws InterruptedException if interrupted waiting for git
+    */
+   private void commit() throws IOException, InterruptedException {
+      assertTrue(git(workTree, "add", "-A"));
+      assertTrue(git(workTree, "-c", "user.name=Test", "-c", "user.email=test@example.com", "commit", "-q",
+            "--allow-empty", "-m", "Test"));
+   }
+
+   /**
+    * Run git.
+    *
+    * @param folder    folder to run it in
+    * @param arguments arguments after <code>git</code>
+    *
+    * @return true if it succeeded
+    *
+    * @throws InterruptedException if interrupted waiting for git
+    */
+   private static boolean git(final Path folder, final String... arguments) throws InterruptedException {
+      final var command = new ArrayList<String>();
+      command.add("git");
+      command.addAll(List.of(arguments));
+      try {
+         return new ProcessBuilder(command).directory(folder.toFile()).inheritIO().start().waitFor() == 0;
+      } catch (IOException e) {
+         return false;
+      }
+   }
+
+}
@@ -0,0 +1,91 @@
+package org.rmb.md.indexer.source;
+
+import org.junit.jupiter.api.Test;
+import org.rmb.md.indexer.config.ApplicationProperties;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test include and exclude rules.
+ */
+class PathRulesTest {
+
+   /**
+    * Test globs agree with the JDK's glob path matcher for the syntax both support.
+    */
+   @Test
+   void testGlobsMatchJdk() {
+      final var globs = List.of("*.md", "**.md", "**/*.md", "a/**/b.md", "a/*/b.md", "?.md", "[ab].md", "[!ab].md",
+            "{x,y}/*.md", "a\\*.md", "**/cheat_**.md", "a/**");
+      final var paths = List.of("x.md", "a.md", "c.md", "a/b.md", "a/c/b.md", "a/c/d/b.md", "x/y.md", "y/z.md",
+            "a*.md", "ab.md", "cheat_x.md", "notes/cheat_x.md", "notes/cheat_git/more.md", "notes/xcheat_x.md",
+            "a/b/c.txt");
+      for (String glob : globs) {
+         final var rules = new PathRules(List.of(glob), List.of());
+         final var jdk = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+         // Unlike the JDK's, our **/ also matches nothing.
+         final var jdkWithoutAnyFolders = FileSystems.getDefault().getPathMatcher("glob:" + glob.replace("**/", ""));
+         for (String path : paths) {
+            final var expected = jdk.matches(Path.of(path))
+                  || glob.contains("**/") && jdkWithoutAnyFolders.matches(Path.of(path));
+            assertEquals(expected, rules.includesFile(path), glob + " against " + path);
+         }
+      }
+   }
+
+   /**
+    * Test the default rules choose the same files the hard-coded rules used to.
+    */
+   @Test
+   void testDefaultRules() {
+      final var properties = new ApplicationProperties();
+      final var rules = new PathRules(properties.getInclude(), properties.getExclude());
+
+      assertTrue(rules.includesFile("cheat_git.md"));
+      assertTrue(rules.includesFile("notes/cheat_git.md"));
+      assertTrue(rules.includesFile("notes/cheat_tools/maven.md"));
+      assertTrue(rules.includesFile("work/project-tech-tips/docker.md"));
+      assertFalse(rules.includesFile("notes/git.md"));
+      assertFalse(rules.includesFile("notes/cheat_git.txt"));
+      assertFalse(rules.includesFile("notes/cheat_java.md"));
+      assertFalse(rules.includesFile("notes/cheat_tools/_index.md"));
+      assertFalse(rules.includesFile("notes/cheat_tools/_footer.md"));
+      assertFalse(rules.includesFile(".history/notes/cheat_git_20201122.md"));
+      assertFalse(rules.includesFile("work/current-issue/cheat_issue.md"));
+
+      assertTrue(rules.entersFolder(Path.of("")));
+      assertTrue(rules.entersFolder(Path.of("notes")));
+      assertFalse(rules.entersFolder(Path.of("notes", ".history")));
+      assertFalse(rules.entersFolder(Path.of("work", "current-issue")));
+   }
+
+   /**
+    * Test regular expression rules.
+    */
+   @Test
+   void testRegex() {
+      final var rules = new PathRules(List.of("regex:notes/.*\\.md"), List.of("regex:.*/draft-[0-9]+\\.md"));
+
+      assertTrue(rules.includesFile("notes/a.md"));
+      assertFalse(rules.includesFile("notes/sub/draft-12.md"));
+      assertFalse(rules.includesFile("other/a.md"));
+   }
+
+   /**
+    * Test invalid rules are reported.
+    */
+   @Test
+   void testInvalid() {
+      assertThrows(IllegalArgumentException.class, () -> new PathRules(List.of("{a,b"), List.of()));
+      assertThrows(IllegalArgumentException.class, () -> new PathRules(List.of("[ab"), List.of()));
+      assertThrows(IllegalArgumentException.class, () -> new PathRules(List.of("regex:(a"), List.of()));
+   }
+
+}
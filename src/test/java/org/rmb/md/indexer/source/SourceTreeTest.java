@@ -0,0 +1,106 @@
+package org.rmb.md.indexer.source;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rmb.md.indexer.metrics.RunMetrics;
+import org.rmb.md.indexer.metrics.RunMetrics.Count;
+import org.rmb.md.indexer.metrics.RunMetrics.Stage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test finding markdown files under a folder.
+ */
+class SourceTreeTest {
+
+   /**
+    * The folder of markdown files.
+    */
+   @TempDir
+   Path root;
+
+   /**
+    * Test only included files are found and excluded folders are never entered.
+    *
+    * @throws IOException if the folder cannot be set up
+    */
+   @Test
+   void testExcludedFoldersAreSkipped() throws IOException {
+      write("notes/a.md");
+      write("notes/b.txt");
+      write("notes/deeper/c.md");
+      write("notes/.history/a_1.md");
+      write("top.md");
+      final var excluded = Files.createDirectories(root.resolve("skipped"));
+      write("skipped/d.md");
+      // An excluded folder that could not even be listed does no harm, as it is never entered.
+      final var unreadable = excluded.toFile().setReadable(false);
+
+      try {
+         final var tree = new SourceTree(root, new PathRules(List.of("**/*.md"),
+               List.of("**/.history/**", "skipped/**")));
+         final var found = new ArrayList<Path>();
+         tree.discover(found::add);
+
+         assertEquals(List.of("notes/a.md", "notes/deeper/c.md", "top.md"),
+               found.stream().map(path -> PathRules.normalise(root.relativize(path))).sorted()
+                     .collect(Collectors.toList()));
+         assertTrue(found.stream().allMatch(Path::isAbsolute));
+         assertTrue(tree.includesFile(root.resolve("notes/gone.md")));
+         assertFalse(tree.includesFile(root.resolve("notes/.history/gone.md")));
+         assertFalse(tree.entersFolder(root.resolve("skipped")));
+      } finally {
+         if (unreadable) {
+            excluded.toFile().setReadable(true);
+         }
+      }
+   }
+
+   /**
+    * Test discovery counts the files it looks at and the folders it skips.
+    *
+    * @throws IOException if the folder cannot be set up
+    */
+   @Test
+   void testMetrics() throws IOException {
+      write("notes/a.md");
+      write("notes/b.txt");
+      write("notes/.history/a_1.md");
+      write("top.md");
+      final var metrics = new RunMetrics();
+      final var tree = new SourceTree(root, new PathRules(List.of("**/*.md"), List.of("**/.history/**")), metrics);
+      tree.discover(path -> { });
+
+      final var report = metrics.report("test");
+      assertEquals(3, report.count(Count.FILES_SEEN));
+      assertEquals(2, report.count(Count.FILES_ACCEPTED));
+      assertEquals(1, report.count(Count.FILES_REJECTED));
+      assertEquals(1, report.count(Count.FOLDERS_SKIPPED));
+      assertEquals(1, report.stages().get(Stage.TRAVERSAL).calls());
+      // Three folders and three files.
+      assertEquals(6, report.stages().get(Stage.FILTERING).calls());
+   }
+
+   /**
+    * Create a file under the root.
+    *
+    * @param relativePath path relative to the root
+    *
+    * @throws IOException if the file cannot be created
+    */
+   private void write(final String relativePath) throws IOException {
+      final var path = root.resolve(relativePath);
+      Files.createDirectories(path.getParent());
+      Files.writeString(path, "# " + relativePath);
+   }
+
+}
@@ -0,0 +1,123 @@
+package org.rmb.md.indexer.watch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test watching a folder for changes.
+ */
+class MarkdownWatcherTest {
+
+   /**
+    * Debounce period used by tests.
+    */
+   private static final Duration DEBOUNCE = Duration.ofMillis(200);
+
+   /**
+    * How long a test waits for events before giving up.
+    */
+   private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+   /**
+    * Test a burst of changes to a few files is reported as just those files.
+    *
+    * @param root temporary folder
+    *
+    * @throws Exception if the folder cannot be watched
+    */
+   @Test
+   void testBurst(@TempDir final Path root) throws Exception {
+      final var existing = Files.writeString(root.resolve("existing.md"), "# Existing");
+      Files.createDirectories(root.resolve("sub"));
+      try (MarkdownWatcher watcher = new MarkdownWatcher(root, DEBOUNCE)) {
+         final var first = root.resolve("first.md");
+         final var second = root.resolve("sub").resolve("second.md");
+         for (int save = 0; save < 5; save++) {
+            Files.writeString(first, "# First " + save);
+            Files.writeString(second, "# Second " + save);
+         }
+         Files.delete(existing);
+
+         final var paths = collectUntil(watcher, Set.of(first, second, existing));
+         assertEquals(Set.of(first, second, existing), paths);
+      }
+   }
+
+   /**
+    * Test a new folder is watched, and files written to it before it could be watched are reported.
+    *
+    * @param root temporary folder
+    *
+    * @throws Exception if the folder cannot be watched
+    */
+   @Test
+   void testNewFolder(@TempDir final Path root) throws Exception {
+      try (MarkdownWatcher watcher = new MarkdownWatcher(root, DEBOUNCE)) {
+         final var folder = Files.createDirectories(root.resolve("new").resolve("deeper"));
+         final var early = Files.writeString(folder.resolve("early.md"), "# Early");
+         assertTrue(collectUntil(watcher, Set.of(early)).contains(early));
+
+         final var later = Files.writeString(folder.resolve("later.md"), "# Later");
+         assertTrue(collectUntil(watcher, Set.of(later)).contains(later));
+      }
+   }
+
+   /**
+    * Test nothing is reported when nothing changes.
+    *
+    * @param root temporary folder
+    *
+    * @throws Exception if the folder cannot be watched
+    */
+   @Test
+   void testQuiet(@TempDir final Path root) throws Exception {
+      try (MarkdownWatcher watcher = new MarkdownWatcher(root, DEBOUNCE)) {
+         assertFalse(watcher.poll(DEBOUNCE).isPresent());
+      }
+   }
+
+   /**
+    * Test a folder that does not exist cannot be watched.
+    *
+    * @param root temporary folder
+    */
+   @Test
+   void testMissingFolder(@TempDir final Path root) {
+      assertThrows(IOException.class, () -> new MarkdownWatcher(root.resolve("missing"), DEBOUNCE).close());
+   }
+
+   /**
+    * Collect batches until all expected paths have been seen. Platforms that poll may split a burst over batches.
+    *
+    * @param watcher  the watcher
+    * @param expected paths expected to change
+    *
+    * @return every path seen
+    *
+    * @throws InterruptedException if interrupted
+    */
+   private static Set<Path> collectUntil(final MarkdownWatcher watcher, final Set<Path> expected)
+         throws InterruptedException {
+      final var seen = new HashSet<Path>();
+      while (!seen.containsAll(expected)) {
+         final var batch = watcher.poll(TIMEOUT);
+         assertTrue(batch.isPresent(), "Expected changes to " + expected + " but only saw " + seen);
+         assertFalse(batch.get().overflow());
+         seen.addAll(batch.get().paths());
+      }
+      return seen;
+   }
+
+}